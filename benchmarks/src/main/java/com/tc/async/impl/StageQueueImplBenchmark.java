@@ -0,0 +1,166 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.async.impl;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import com.tc.async.api.MultiThreadedEventContext;
+import com.tc.async.api.Source;
+import com.tc.logging.DefaultLoggerProvider;
+import com.tc.util.concurrent.QueueFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Enqueue/dequeue through a {@link StageQueueImpl} with several producers racing one consumer on a single queue, and
+ * with keyed multi-threaded contexts spread over several queues.
+ * <p>
+ * The queues are unbounded so that a producer can never be left blocked in put() when the consumer stops at the end of
+ * an iteration; the backlog is cleared between iterations instead.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class StageQueueImplBenchmark {
+
+  @State(Scope.Group)
+  public static class SingleQueue {
+    StageQueueImpl<Object>               queue;
+    Source<ContextWrapper<Object>>       source;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+      queue = new StageQueueImpl<Object>(1, new QueueFactory<ContextWrapper<Object>>(), new DefaultLoggerProvider(),
+                                         "benchmark-single", Integer.MAX_VALUE);
+      source = queue.getSource(0);
+    }
+
+    @TearDown(Level.Iteration)
+    public void drain() {
+      queue.clear();
+    }
+  }
+
+  @State(Scope.Group)
+  public static class KeyedQueues {
+    @Param({ "4" })
+    int                                  queueCount;
+
+    StageQueueImpl<Object>               queue;
+    KeyedContext[]                       contexts;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+      queue = new StageQueueImpl<Object>(queueCount, new QueueFactory<ContextWrapper<Object>>(),
+                                         new DefaultLoggerProvider(), "benchmark-keyed", Integer.MAX_VALUE);
+      contexts = new KeyedContext[64];
+      for (int i = 0; i < contexts.length; i++) {
+        contexts[i] = new KeyedContext(i);
+      }
+    }
+
+    @TearDown(Level.Iteration)
+    public void drain() {
+      queue.clear();
+    }
+  }
+
+  @Benchmark
+  @Group("single")
+  @GroupThreads(3)
+  public void singleEnqueue(SingleQueue state) {
+    state.queue.addSingleThreaded(state);
+  }
+
+  @Benchmark
+  @Group("single")
+  @GroupThreads(1)
+  public void singleDequeue(SingleQueue state, Blackhole bh) throws InterruptedException {
+    bh.consume(state.source.poll(0));
+  }
+
+  @Benchmark
+  @Group("keyed")
+  @GroupThreads(3)
+  public void keyedEnqueue(KeyedQueues state, ProducerIndex producer) {
+    state.queue.addMultiThreaded(state.contexts[producer.next() & (state.contexts.length - 1)]);
+  }
+
+  @Benchmark
+  @Group("keyed")
+  @GroupThreads(4)
+  public void keyedDequeue(KeyedQueues state, ConsumerIndex consumer, Blackhole bh) throws InterruptedException {
+    bh.consume(state.queue.getSource(consumer.index % state.queueCount).poll(0));
+  }
+
+  @State(Scope.Thread)
+  public static class ProducerIndex {
+    int counter;
+
+    int next() {
+      return counter++;
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class ConsumerIndex {
+    int index;
+
+    @Setup(Level.Trial)
+    public void setUp(ThreadParams params) {
+      index = params.getSubgroupThreadIndex();
+    }
+  }
+
+  static class KeyedContext implements MultiThreadedEventContext {
+    private final Integer key;
+
+    KeyedContext(int key) {
+      this.key = key;
+    }
+
+    @Override
+    public Object getSchedulingKey() {
+      return key;
+    }
+
+    @Override
+    public boolean flush() {
+      return false;
+    }
+  }
+}
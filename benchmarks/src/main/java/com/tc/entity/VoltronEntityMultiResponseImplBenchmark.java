@@ -0,0 +1,151 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.entity;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.tc.bytes.TCByteBuffer;
+import com.tc.io.TCByteBufferOutputStream;
+import com.tc.net.protocol.tcm.MessageChannel;
+import com.tc.net.protocol.tcm.MessageMonitor;
+import com.tc.net.protocol.tcm.NullMessageMonitor;
+import com.tc.net.protocol.tcm.TCMessageHeader;
+import com.tc.net.protocol.tcm.TCMessageType;
+import com.tc.net.protocol.tcm.UnknownNameException;
+import com.tc.object.session.SessionID;
+import com.tc.object.tx.TransactionID;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialize and hydrate a {@link VoltronEntityMultiResponseImpl} carrying a batch of received acks, results and
+ * retirements, the same shape the server sends back to a busy client.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class VoltronEntityMultiResponseImplBenchmark {
+
+  @Param({ "1", "64", "1024" })
+  int             batchSize;
+
+  @Param({ "128" })
+  int             resultSize;
+
+  MessageMonitor  monitor;
+  TransactionID[] ids;
+  byte[]          result;
+  TCMessageHeader header;
+  TCByteBuffer[]  payload;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    monitor = new NullMessageMonitor();
+    ids = new TransactionID[batchSize];
+    for (int i = 0; i < batchSize; i++) {
+      ids[i] = new TransactionID(1000000L + i);
+    }
+    result = new byte[resultSize];
+    VoltronEntityMultiResponseImpl message = fill();
+    message.dehydrate();
+    header = (TCMessageHeader) message.getHeader();
+    payload = message.getPayload();
+  }
+
+  @Benchmark
+  public int serialize() {
+    VoltronEntityMultiResponseImpl message = fill();
+    message.dehydrate();
+    int length = message.getDataLength();
+    message.recycle();
+    return length;
+  }
+
+  @Benchmark
+  public int hydrate() throws IOException, UnknownNameException {
+    VoltronEntityMultiResponseImpl message = new RetainedResponse(monitor, header, payload);
+    message.hydrate();
+    return message.replay(NullReceiver.INSTANCE);
+  }
+
+  private VoltronEntityMultiResponseImpl fill() {
+    TCByteBufferOutputStream out = new TCByteBufferOutputStream(4, 4096, false);
+    VoltronEntityMultiResponseImpl message = new VoltronEntityMultiResponseImpl(new SessionID(0), monitor, out, null,
+                                                                                TCMessageType.VOLTRON_ENTITY_MULTI_RESPONSE);
+    for (TransactionID id : ids) {
+      message.addReceived(id);
+    }
+    for (TransactionID id : ids) {
+      message.addResult(id, result);
+    }
+    for (TransactionID id : ids) {
+      message.addRetired(id);
+    }
+    return message;
+  }
+
+  /**
+   * Hydrates the same encoded payload on every invocation, so it must not hand the buffers back to the pool the way a
+   * message read off the network does.
+   */
+  static class RetainedResponse extends VoltronEntityMultiResponseImpl {
+    RetainedResponse(MessageMonitor monitor, TCMessageHeader header, TCByteBuffer[] data) {
+      super(SessionID.NULL_ID, monitor, (MessageChannel) null, header, data);
+    }
+
+    @Override
+    public void doRecycleOnRead() {
+      // the payload is shared between invocations
+    }
+  }
+
+  enum NullReceiver implements VoltronEntityMultiResponse.ReplayReceiver {
+    INSTANCE;
+
+    @Override
+    public void received(long tid) {
+      //
+    }
+
+    @Override
+    public void result(long tid, byte[] result) {
+      //
+    }
+
+    @Override
+    public void retired(long tid) {
+      //
+    }
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.io;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.tc.bytes.TCByteBuffer;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dehydration into a {@link TCByteBufferOutputStream} and hydration back out of a {@link TCByteBufferInputStream}, using
+ * a record shaped roughly like a voltron invoke: a few ids, a short entity name and an opaque payload.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TCByteBufferStreamBenchmark {
+
+  @Param({ "64", "4096", "65536" })
+  int            payloadSize;
+
+  @Param({ "16" })
+  int            records;
+
+  byte[]         payload;
+  String[]       names;
+  TCByteBuffer[] encoded;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    payload = new byte[payloadSize];
+    for (int i = 0; i < payload.length; i++) {
+      payload[i] = (byte) i;
+    }
+    names = new String[8];
+    for (int i = 0; i < names.length; i++) {
+      names[i] = "com.tc.benchmarks.entity-" + i;
+    }
+    TCByteBufferOutputStream out = new TCByteBufferOutputStream();
+    write(out);
+    encoded = out.toArray();
+  }
+
+  @Benchmark
+  public int dehydrate() {
+    TCByteBufferOutputStream out = new TCByteBufferOutputStream();
+    write(out);
+    int count = out.toArray().length;
+    out.recycle();
+    return count;
+  }
+
+  @Benchmark
+  public void hydrate(Blackhole bh) throws IOException {
+    TCByteBufferInputStream in = new TCByteBufferInputStream(encoded);
+    byte[] read = new byte[payloadSize];
+    for (int i = 0; i < records; i++) {
+      bh.consume(in.readLong());
+      bh.consume(in.readInt());
+      bh.consume(in.readString());
+      bh.consume(in.readBoolean());
+      in.readFully(read);
+    }
+    bh.consume(read);
+    in.close();
+  }
+
+  private void write(TCByteBufferOutputStream out) {
+    for (int i = 0; i < records; i++) {
+      out.writeLong(i);
+      out.writeInt(i);
+      out.writeString(names[i & 7]);
+      out.writeBoolean((i & 1) == 0);
+      out.write(payload);
+    }
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.loadgen;
+
+import org.terracotta.config.service.ServiceConfigParser;
+
+import com.tc.classloader.ServiceLocator;
+import com.tc.config.schema.setup.ConfigurationSetupException;
+import com.tc.config.schema.setup.L2ConfigurationSetupManager;
+import com.tc.config.schema.setup.StandardConfigurationSetupManagerFactory;
+import com.tc.config.schema.setup.StandardConfigurationSetupManagerFactory.ConfigMode;
+import com.tc.l2.state.StateManager;
+import com.tc.lang.TCThreadGroup;
+import com.tc.lang.TestThrowableHandler;
+import com.tc.logging.TCLogging;
+import com.tc.server.ServiceClassLoader;
+import com.tc.server.TCServerImpl;
+
+import java.io.File;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+
+/**
+ * A server that can share its VM with other servers: it registers its MBeans in a private MBean server, its threads
+ * never exit the VM, and it is stopped with {@link #halt()} rather than {@link #shutdown()}.
+ */
+class InProcessServer extends TCServerImpl {
+
+  private final String               name;
+  private final MBeanServer          mBeanServer = MBeanServerFactory.newMBeanServer();
+
+  private InProcessServer(L2ConfigurationSetupManager setup, TCThreadGroup group, String name) {
+    super(setup, group);
+    this.name = name;
+  }
+
+  static InProcessServer create(File config, String name) throws ConfigurationSetupException {
+    StandardConfigurationSetupManagerFactory factory = new StandardConfigurationSetupManagerFactory(
+        new String[] { "-f", config.getAbsolutePath() }, ConfigMode.L2, null);
+    ClassLoader platformLoader = ServiceLocator.getPlatformLoader();
+    L2ConfigurationSetupManager setup = factory.createL2TVSConfigurationSetupManager(name,
+        new ServiceClassLoader(ServiceLocator.getImplementations(ServiceConfigParser.class, platformLoader)));
+    TestThrowableHandler throwableHandler = new TestThrowableHandler(TCLogging.getLogger(InProcessServer.class));
+    return new InProcessServer(setup, new TCThreadGroup(throwableHandler, name), name);
+  }
+
+  @Override
+  public void start() {
+    // the server's threads inherit the loader that entities and services are resolved against, as in TCServerMain
+    Thread current = Thread.currentThread();
+    ClassLoader previous = current.getContextClassLoader();
+    current.setContextClassLoader(ServiceLocator.getPlatformLoader());
+    try {
+      super.start();
+    } finally {
+      current.setContextClassLoader(previous);
+    }
+  }
+
+  @Override
+  protected MBeanServer getMBeanServer() {
+    return mBeanServer;
+  }
+
+  String getName() {
+    return name;
+  }
+
+  boolean isHalted() {
+    return StateManager.STOP_STATE.equals(getState());
+  }
+
+  @Override
+  public String toString() {
+    return name + "[" + getState().getName() + "]";
+  }
+}
@@ -0,0 +1,253 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.loadgen;
+
+import org.terracotta.entity.EntityServerService;
+
+import com.tc.loadgen.entity.LoadEntityServerService;
+import com.tc.util.PortChooser;
+import com.tc.util.concurrent.ThreadUtil;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * One active and any number of passives running in this VM on loopback ports. Servers are killed with
+ * {@link InProcessServer#halt()}, which closes their sockets the way a crash would, and are restarted from scratch with
+ * empty in-memory storage, so a restarted server always has to go through passive sync.
+ */
+public class InProcessStripe implements Closeable {
+
+  private static final String     HOST          = "localhost";
+  private static final long       POLL_MILLIS   = 5;
+
+  private final File              dir;
+  private final File              config;
+  private final String[]          names;
+  private final int[]             tsaPorts;
+  private final InProcessServer[] servers;
+  private final long              timeoutMillis;
+
+  public InProcessStripe(File dir, int serverCount, long timeout, TimeUnit unit) {
+    if (serverCount < 1) {
+      throw new IllegalArgumentException("A stripe needs at least one server");
+    }
+    checkEntityPackaging();
+    this.dir = dir;
+    this.config = new File(dir, "tc-config.xml");
+    this.names = new String[serverCount];
+    for (int i = 0; i < serverCount; i++) {
+      names[i] = "server-" + i;
+    }
+    this.tsaPorts = new int[serverCount];
+    this.servers = new InProcessServer[serverCount];
+    this.timeoutMillis = unit.toMillis(timeout);
+  }
+
+  /**
+   * Writes the configuration, starts the first server and waits for it to become active, then starts the others one
+   * at a time and waits for each to reach passive standby.
+   */
+  public synchronized void start() throws Exception {
+    writeConfig();
+    startServer(0);
+    await(() -> servers[0].isActive(), names[0] + " to become active");
+    for (int i = 1; i < servers.length; i++) {
+      restart(i);
+    }
+  }
+
+  /**
+   * @return a URI listing every server, so clients find the active on startup and after a failover
+   */
+  public URI getConnectionURI() {
+    StringBuilder uri = new StringBuilder("terracotta://");
+    for (int i = 0; i < tsaPorts.length; i++) {
+      if (i > 0) {
+        uri.append(',');
+      }
+      uri.append(HOST).append(':').append(tsaPorts[i]);
+    }
+    return URI.create(uri.toString());
+  }
+
+  /**
+   * Halts the active and waits for a passive to take over.
+   * 
+   * @return nanoseconds from the halt until a new active is in place
+   */
+  public synchronized long killActive() throws TimeoutException {
+    InProcessServer active = getActive();
+    if (active == null) {
+      throw new IllegalStateException("No active in " + this);
+    }
+    if (getPassives().isEmpty()) {
+      throw new IllegalStateException("No passive to fail over to in " + this);
+    }
+    long start = System.nanoTime();
+    active.halt();
+    await(() -> getActive() != null, "a passive to take over from " + active.getName());
+    return System.nanoTime() - start;
+  }
+
+  /**
+   * Halts one passive. The active drops it from replication as soon as it sees the connection close.
+   */
+  public synchronized void killPassive() {
+    List<InProcessServer> passives = getPassives();
+    if (passives.isEmpty()) {
+      throw new IllegalStateException("No passive to kill in " + this);
+    }
+    passives.get(0).halt();
+  }
+
+  /**
+   * Starts a fresh server in the first halted slot and waits for it to finish passive sync, or to become active if the
+   * stripe has no active.
+   * 
+   * @return nanoseconds from the start until the server reached passive standby (or active)
+   */
+  public synchronized long restart() throws Exception {
+    for (int i = 0; i < servers.length; i++) {
+      if (servers[i] != null && servers[i].isHalted()) {
+        return restart(i);
+      }
+    }
+    throw new IllegalStateException("No halted server to restart in " + this);
+  }
+
+  private long restart(int index) throws Exception {
+    boolean expectActive = getActive() == null;
+    long start = System.nanoTime();
+    startServer(index);
+    InProcessServer server = servers[index];
+    if (expectActive) {
+      await(server::isActive, server.getName() + " to become active");
+    } else {
+      await(server::isPassiveStandby, server.getName() + " to reach passive standby");
+    }
+    return System.nanoTime() - start;
+  }
+
+  public synchronized InProcessServer getActive() {
+    for (InProcessServer server : servers) {
+      if (server != null && server.isActive()) {
+        return server;
+      }
+    }
+    return null;
+  }
+
+  public synchronized List<InProcessServer> getPassives() {
+    List<InProcessServer> passives = new ArrayList<>();
+    for (InProcessServer server : servers) {
+      if (server != null && server.isPassiveStandby()) {
+        passives.add(server);
+      }
+    }
+    return passives;
+  }
+
+  @Override
+  public synchronized void close() {
+    for (InProcessServer server : servers) {
+      if (server != null && server.isStarted() && !server.isHalted()) {
+        server.halt();
+      }
+    }
+  }
+
+  @Override
+  public synchronized String toString() {
+    StringBuilder sb = new StringBuilder("stripe[");
+    for (int i = 0; i < servers.length; i++) {
+      if (i > 0) {
+        sb.append(", ");
+      }
+      sb.append(servers[i] == null ? names[i] + "[not started]" : servers[i].toString());
+    }
+    return sb.append(']').toString();
+  }
+
+  private void startServer(int index) throws Exception {
+    servers[index] = InProcessServer.create(config, names[index]);
+    servers[index].start();
+  }
+
+  private void await(BooleanSupplier condition, String what) throws TimeoutException {
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+    while (!condition.getAsBoolean()) {
+      if (System.nanoTime() - deadline > 0) {
+        throw new TimeoutException("Timed out after " + timeoutMillis + "ms waiting for " + what + ": " + this);
+      }
+      ThreadUtil.reallySleep(POLL_MILLIS);
+    }
+  }
+
+  private void writeConfig() throws IOException {
+    PortChooser portChooser = new PortChooser();
+    StringBuilder xml = new StringBuilder();
+    xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n");
+    xml.append("<tc-config xmlns=\"http://www.terracotta.org/config\">\n");
+    xml.append("  <servers>\n");
+    for (int i = 0; i < servers.length; i++) {
+      tsaPorts[i] = portChooser.chooseRandomPort();
+      int groupPort = portChooser.chooseRandomPort();
+      xml.append("    <server name=\"").append(names[i]).append("\" host=\"").append(HOST).append("\">\n");
+      xml.append("      <logs>").append(new File(dir, names[i] + "-logs").getAbsolutePath()).append("</logs>\n");
+      xml.append("      <tsa-port>").append(tsaPorts[i]).append("</tsa-port>\n");
+      xml.append("      <tsa-group-port>").append(groupPort).append("</tsa-group-port>\n");
+      xml.append("    </server>\n");
+    }
+    xml.append("  </servers>\n");
+    xml.append("</tc-config>\n");
+
+    if (!dir.isDirectory() && !dir.mkdirs()) {
+      throw new IOException("Could not create " + dir);
+    }
+    try (Writer out = new OutputStreamWriter(new FileOutputStream(config), StandardCharsets.UTF_8)) {
+      out.write(xml.toString());
+    }
+  }
+
+  /**
+   * The server loads entities in a child-first loader over the classpath entry that provides them. If that entry also
+   * holds the entity API, as a shaded jar does, the entity gets its own copy of the API and cannot be cast to it.
+   */
+  private static void checkEntityPackaging() {
+    CodeSource entity = LoadEntityServerService.class.getProtectionDomain().getCodeSource();
+    CodeSource api = EntityServerService.class.getProtectionDomain().getCodeSource();
+    if (entity != null && api != null && entity.getLocation().equals(api.getLocation())) {
+      throw new IllegalStateException("The load entity and the entity API both come from " + entity.getLocation()
+                                      + "; run the load generator from the module classpath, not the shaded jar");
+    }
+  }
+}
@@ -0,0 +1,218 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.loadgen;
+
+import org.terracotta.connection.Connection;
+import org.terracotta.connection.ConnectionException;
+import org.terracotta.connection.ConnectionFactory;
+import org.terracotta.connection.entity.EntityRef;
+import org.terracotta.exception.EntityAlreadyExistsException;
+import org.terracotta.exception.EntityException;
+import org.terracotta.entity.InvokeFuture;
+import org.terracotta.entity.MessageCodecException;
+
+import com.tc.loadgen.entity.LoadEntity;
+import com.tc.loadgen.entity.LoadEntity.Ack;
+import com.tc.loadgen.entity.LoadResponse;
+import com.tc.logging.TCLogger;
+import com.tc.logging.TCLogging;
+import com.tc.stats.LatencyHistogram;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Drives a {@link LoadSpec} against a stripe: every client is its own connection, and every client thread runs a
+ * closed loop of one invoke at a time. Besides throughput and latency it tracks the longest gap between two
+ * completions since the last {@link #mark()}, which is how long clients were stalled by whatever happened to the
+ * stripe at that mark.
+ */
+public class LoadGenerator implements Closeable {
+
+  private static final TCLogger       logger      = TCLogging.getLogger(LoadGenerator.class);
+  private static final long           JOIN_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+  private final URI                   uri;
+  private final LoadSpec              spec;
+  private final List<Connection>      connections = new ArrayList<>();
+  private final List<LoadEntity>      entities    = new ArrayList<>();
+  private final List<Thread>          workers     = new ArrayList<>();
+
+  private final LatencyHistogram      writes      = new LatencyHistogram("write");
+  private final LatencyHistogram      reads       = new LatencyHistogram("read");
+  private final LongAdder             interval    = new LongAdder();
+  private final LongAdder             errors      = new LongAdder();
+  private final AtomicLong            lastCompletion = new AtomicLong(System.nanoTime());
+  private final LongAccumulator       longestStall   = new LongAccumulator(Math::max, 0L);
+
+  private volatile boolean            running;
+
+  public LoadGenerator(URI uri, LoadSpec spec) {
+    this.uri = uri;
+    this.spec = spec;
+  }
+
+  /**
+   * Connects every client, creates the entity if it does not exist yet and starts the client threads.
+   */
+  public synchronized void start() throws ConnectionException, EntityException {
+    for (int c = 0; c < spec.getClients(); c++) {
+      Connection connection = ConnectionFactory.connect(uri, new Properties());
+      connections.add(connection);
+      EntityRef<LoadEntity, Integer> ref = connection.getEntityRef(LoadEntity.class, LoadEntity.VERSION,
+                                                                   spec.getEntityName());
+      if (c == 0) {
+        try {
+          ref.create(spec.getKeys());
+        } catch (EntityAlreadyExistsException e) {
+          logger.info("Reusing existing entity " + spec.getEntityName());
+        }
+      }
+      LoadEntity entity = ref.fetchEntity();
+      entities.add(entity);
+      for (int t = 0; t < spec.getThreadsPerClient(); t++) {
+        Thread worker = new Thread(() -> drive(entity), "load-client-" + c + "-" + t);
+        worker.setDaemon(true);
+        workers.add(worker);
+      }
+    }
+    running = true;
+    mark();
+    for (Thread worker : workers) {
+      worker.start();
+    }
+  }
+
+  private void drive(LoadEntity entity) {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    Ack ack = spec.getAck();
+    while (running) {
+      int key = 1 + random.nextInt(spec.getKeys());
+      boolean write = random.nextInt(100) < spec.getWritePercent();
+      long start = System.nanoTime();
+      try {
+        InvokeFuture<LoadResponse> future = write ? entity.write(key, payload(random), ack) : entity.read(key, ack);
+        if (ack != Ack.RECEIVED) {
+          future.get();
+        }
+        (write ? writes : reads).record(completed() - start);
+      } catch (InterruptedException e) {
+        return;
+      } catch (EntityException | MessageCodecException | RuntimeException e) {
+        if (running) {
+          errors.increment();
+          logger.warn("Invoke failed", e);
+        }
+      }
+    }
+  }
+
+  private byte[] payload(ThreadLocalRandom random) {
+    int min = spec.getMinPayloadBytes();
+    byte[] payload = new byte[min + random.nextInt(spec.getMaxPayloadBytes() - min + 1)];
+    random.nextBytes(payload);
+    return payload;
+  }
+
+  private long completed() {
+    long now = System.nanoTime();
+    longestStall.accumulate(now - lastCompletion.getAndSet(now));
+    interval.increment();
+    return now;
+  }
+
+  /**
+   * Starts a new stall window at the current time.
+   * 
+   * @return the longest gap between completions in the window that just ended, in nanoseconds
+   */
+  public long mark() {
+    lastCompletion.set(System.nanoTime());
+    return longestStall.getThenReset();
+  }
+
+  /**
+   * @return invokes completed since the last call
+   */
+  public long sampleInterval() {
+    return interval.sumThenReset();
+  }
+
+  /**
+   * Drops the latencies recorded so far, typically at the end of the warmup.
+   */
+  public void resetLatencies() {
+    writes.reset();
+    reads.reset();
+    errors.reset();
+  }
+
+  public LatencyHistogram.Snapshot getWriteLatency() {
+    return writes.snapshot();
+  }
+
+  public LatencyHistogram.Snapshot getReadLatency() {
+    return reads.snapshot();
+  }
+
+  public long getErrors() {
+    return errors.sum();
+  }
+
+  /**
+   * Stops the client threads, giving in-flight invokes time to finish.
+   */
+  public synchronized void stop() throws InterruptedException {
+    running = false;
+    for (Thread worker : workers) {
+      worker.join(JOIN_MILLIS);
+      if (worker.isAlive()) {
+        logger.warn(worker.getName() + " did not finish its last invoke, interrupting it");
+        worker.interrupt();
+      }
+    }
+    workers.clear();
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    try {
+      stop();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    for (LoadEntity entity : entities) {
+      entity.close();
+    }
+    entities.clear();
+    for (Connection connection : connections) {
+      connection.close();
+    }
+    connections.clear();
+  }
+}
@@ -0,0 +1,131 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.loadgen;
+
+import com.tc.loadgen.entity.LoadEntity.Ack;
+
+/**
+ * What a {@link LoadGenerator} sends: how many clients and threads, which keys, how big the payloads are, the mix of
+ * writes and reads and which ack each invoke waits for.
+ */
+public class LoadSpec {
+
+  private String entityName       = "load";
+  private int    clients          = 4;
+  private int    threadsPerClient = 4;
+  private int    keys             = 16;
+  private int    minPayloadBytes  = 128;
+  private int    maxPayloadBytes  = 128;
+  private int    writePercent     = 80;
+  private Ack    ack              = Ack.COMPLETED;
+
+  public String getEntityName() {
+    return entityName;
+  }
+
+  public LoadSpec setEntityName(String entityName) {
+    this.entityName = entityName;
+    return this;
+  }
+
+  public int getClients() {
+    return clients;
+  }
+
+  public LoadSpec setClients(int clients) {
+    this.clients = atLeast(1, clients, "clients");
+    return this;
+  }
+
+  public int getThreadsPerClient() {
+    return threadsPerClient;
+  }
+
+  public LoadSpec setThreadsPerClient(int threadsPerClient) {
+    this.threadsPerClient = atLeast(1, threadsPerClient, "threads per client");
+    return this;
+  }
+
+  public int getKeys() {
+    return keys;
+  }
+
+  /**
+   * @param keys number of concurrency keys the entity spreads invokes over; 1 serializes every invoke
+   */
+  public LoadSpec setKeys(int keys) {
+    this.keys = atLeast(1, keys, "keys");
+    return this;
+  }
+
+  public int getMinPayloadBytes() {
+    return minPayloadBytes;
+  }
+
+  public int getMaxPayloadBytes() {
+    return maxPayloadBytes;
+  }
+
+  /**
+   * Each write carries a payload of a size drawn uniformly from the range. Reads carry none.
+   */
+  public LoadSpec setPayloadBytes(int min, int max) {
+    if (min < 0 || max < min) {
+      throw new IllegalArgumentException("Bad payload range " + min + "-" + max);
+    }
+    this.minPayloadBytes = min;
+    this.maxPayloadBytes = max;
+    return this;
+  }
+
+  public int getWritePercent() {
+    return writePercent;
+  }
+
+  public LoadSpec setWritePercent(int writePercent) {
+    if (writePercent < 0 || writePercent > 100) {
+      throw new IllegalArgumentException("Write percentage must be 0-100: " + writePercent);
+    }
+    this.writePercent = writePercent;
+    return this;
+  }
+
+  public Ack getAck() {
+    return ack;
+  }
+
+  public LoadSpec setAck(Ack ack) {
+    this.ack = ack;
+    return this;
+  }
+
+  private static int atLeast(int min, int value, String what) {
+    if (value < min) {
+      throw new IllegalArgumentException("Need at least " + min + " " + what + ": " + value);
+    }
+    return value;
+  }
+
+  @Override
+  public String toString() {
+    return "clients=" + clients + " threads/client=" + threadsPerClient + " keys=" + keys + " payload="
+           + minPayloadBytes + (maxPayloadBytes != minPayloadBytes ? "-" + maxPayloadBytes : "") + "B writes="
+           + writePercent + "% ack=" + ack;
+  }
+}
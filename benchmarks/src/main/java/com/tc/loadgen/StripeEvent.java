@@ -0,0 +1,93 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.loadgen;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One step of a failure script: something done to the stripe at a fixed offset into the measured run. A script is a
+ * comma separated list of {@code <seconds>s:<action>}, for example {@code 20s:kill-passive,30s:restart,60s:kill-active}.
+ */
+public class StripeEvent {
+
+  public enum Action {
+    /** Halt the active and wait for a passive to take over. */
+    KILL_ACTIVE,
+    /** Halt one passive. */
+    KILL_PASSIVE,
+    /** Start a fresh server in a halted slot and wait for it to finish passive sync. */
+    RESTART;
+
+    String label() {
+      return name().toLowerCase(Locale.ROOT).replace('_', '-');
+    }
+
+    static Action fromLabel(String label) {
+      for (Action action : values()) {
+        if (action.label().equals(label)) {
+          return action;
+        }
+      }
+      throw new IllegalArgumentException("Unknown action '" + label + "'");
+    }
+  }
+
+  private final long   atMillis;
+  private final Action action;
+
+  public StripeEvent(long at, TimeUnit unit, Action action) {
+    this.atMillis = unit.toMillis(at);
+    this.action = action;
+  }
+
+  public static List<StripeEvent> parseScript(String script) {
+    List<StripeEvent> events = new ArrayList<>();
+    if (script == null || script.trim().isEmpty()) {
+      return events;
+    }
+    for (String step : script.split(",")) {
+      String[] parts = step.trim().split(":");
+      if (parts.length != 2 || !parts[0].endsWith("s")) {
+        throw new IllegalArgumentException("Expected <seconds>s:<action>, got '" + step + "'");
+      }
+      long seconds = Long.parseLong(parts[0].substring(0, parts[0].length() - 1));
+      events.add(new StripeEvent(seconds, TimeUnit.SECONDS, Action.fromLabel(parts[1])));
+    }
+    Collections.sort(events, Comparator.comparingLong(StripeEvent::getAtMillis));
+    return events;
+  }
+
+  public long getAtMillis() {
+    return atMillis;
+  }
+
+  public Action getAction() {
+    return action;
+  }
+
+  @Override
+  public String toString() {
+    return (atMillis / 1000) + "s:" + action.label();
+  }
+}
@@ -0,0 +1,202 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.loadgen;
+
+import com.tc.cli.CommandLineBuilder;
+import com.tc.loadgen.entity.LoadEntity.Ack;
+import com.tc.stats.LatencyHistogram;
+import com.tc.util.concurrent.ThreadUtil;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Starts an in-process stripe, drives a {@link LoadSpec} against it and plays a failure script while it runs. Prints
+ * throughput every interval and, at the end, latency percentiles plus what each scripted event cost: the server side
+ * time (failover or passive sync) and the longest stall the clients saw after it.
+ */
+public class StripeLoad {
+
+  private final InProcessStripe     stripe;
+  private final LoadGenerator       generator;
+  private final List<StripeEvent>   script;
+  private final long                warmupMillis;
+  private final long                durationMillis;
+  private final long                intervalMillis;
+  private final List<String>        eventResults = new ArrayList<>();
+
+  public StripeLoad(InProcessStripe stripe, LoadSpec spec, List<StripeEvent> script, long warmup, long duration,
+                    long interval, TimeUnit unit) {
+    this.stripe = stripe;
+    this.generator = new LoadGenerator(stripe.getConnectionURI(), spec);
+    this.script = script;
+    this.warmupMillis = unit.toMillis(warmup);
+    this.durationMillis = unit.toMillis(duration);
+    this.intervalMillis = unit.toMillis(interval);
+  }
+
+  public void run() throws Exception {
+    generator.start();
+    ThreadUtil.reallySleep(warmupMillis);
+    generator.resetLatencies();
+    generator.sampleInterval();
+
+    long start = System.currentTimeMillis();
+    ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor();
+    reporter.scheduleAtFixedRate(() -> System.out.println(String.format(Locale.ROOT, "%7.1fs %10d ops/s  %s",
+                                                                        (System.currentTimeMillis() - start) / 1000d,
+                                                                        generator.sampleInterval() * 1000 / intervalMillis,
+                                                                        stripe)),
+                                 intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    try {
+      StripeEvent previous = null;
+      long previousAt = 0;
+      for (StripeEvent event : script) {
+        if (event.getAtMillis() >= durationMillis) {
+          break;
+        }
+        ThreadUtil.reallySleep(Math.max(0, start + event.getAtMillis() - System.currentTimeMillis()));
+        long stall = generator.mark();
+        if (previous != null) {
+          recordStall(previous, previousAt, stall);
+        }
+        previousAt = System.currentTimeMillis() - start;
+        previous = event;
+        perform(event);
+      }
+      ThreadUtil.reallySleep(Math.max(0, start + durationMillis - System.currentTimeMillis()));
+      long stall = generator.mark();
+      if (previous != null) {
+        recordStall(previous, previousAt, stall);
+      }
+    } finally {
+      reporter.shutdownNow();
+      generator.close();
+    }
+    report(System.currentTimeMillis() - start);
+  }
+
+  private void perform(StripeEvent event) throws Exception {
+    switch (event.getAction()) {
+      case KILL_ACTIVE:
+        eventResults.add(event + " failover " + millis(stripe.killActive()) + " ms");
+        break;
+      case KILL_PASSIVE:
+        stripe.killPassive();
+        eventResults.add(event.toString());
+        break;
+      case RESTART:
+        eventResults.add(event + " passive sync " + millis(stripe.restart()) + " ms");
+        break;
+      default:
+        throw new AssertionError(event);
+    }
+  }
+
+  private void recordStall(StripeEvent event, long atMillis, long stallNanos) {
+    int last = eventResults.size() - 1;
+    eventResults.set(last, eventResults.get(last) + ", at " + atMillis + " ms, longest client stall " + millis(stallNanos)
+                           + " ms");
+  }
+
+  private void report(long elapsedMillis) {
+    LatencyHistogram.Snapshot writes = generator.getWriteLatency();
+    LatencyHistogram.Snapshot reads = generator.getReadLatency();
+    long total = writes.getCount() + reads.getCount();
+    System.out.println();
+    System.out.println("completed " + total + " invokes in " + elapsedMillis + " ms ("
+                       + (total * 1000 / Math.max(1, elapsedMillis)) + " ops/s), " + generator.getErrors() + " errors");
+    System.out.println(writes);
+    System.out.println(reads);
+    for (String result : eventResults) {
+      System.out.println(result);
+    }
+  }
+
+  private static long millis(long nanos) {
+    return TimeUnit.NANOSECONDS.toMillis(nanos);
+  }
+
+  public static void main(String[] args) throws Exception {
+    CommandLineBuilder cli = new CommandLineBuilder(StripeLoad.class.getName(), args);
+    cli.addOption("s", "servers", true, "Servers in the stripe (default 2).", Integer.class, false, "count");
+    cli.addOption("c", "clients", true, "Client connections (default 4).", Integer.class, false, "count");
+    cli.addOption("t", "threads", true, "Invoking threads per client (default 4).", Integer.class, false, "count");
+    cli.addOption("k", "keys", true, "Concurrency keys (default 16).", Integer.class, false, "count");
+    cli.addOption("p", "payload", true, "Write payload size, or a min-max range (default 128).", String.class, false,
+                  "bytes");
+    cli.addOption("w", "writes", true, "Percentage of invokes that are writes (default 80).", Integer.class, false,
+                  "percent");
+    cli.addOption("a", "ack", true, "received, completed or retired (default completed).", String.class, false, "ack");
+    cli.addOption("d", "duration", true, "Measured seconds (default 60).", Integer.class, false, "seconds");
+    cli.addOption("u", "warmup", true, "Unmeasured seconds before the run (default 10).", Integer.class, false,
+                  "seconds");
+    cli.addOption("i", "interval", true, "Seconds between throughput lines (default 1).", Integer.class, false,
+                  "seconds");
+    cli.addOption("e", "events", true, "Failure script, e.g. 20s:kill-passive,30s:restart,60s:kill-active.",
+                  String.class, false, "script");
+    cli.addOption("o", "dir", true, "Directory for the config and server logs (default a new temp dir).", String.class,
+                  false, "dir");
+    cli.addOption("h", "help", String.class, false);
+    cli.parse();
+    if (cli.hasOption('h')) {
+      cli.usageAndDie();
+    }
+
+    LoadSpec spec = new LoadSpec().setClients(intOption(cli, "c", 4)).setThreadsPerClient(intOption(cli, "t", 4))
+        .setKeys(intOption(cli, "k", 16)).setWritePercent(intOption(cli, "w", 80));
+    String payload = cli.getOptionValue("p");
+    if (payload != null) {
+      String[] range = payload.split("-");
+      int min = Integer.parseInt(range[0]);
+      spec.setPayloadBytes(min, range.length > 1 ? Integer.parseInt(range[1]) : min);
+    }
+    String ack = cli.getOptionValue("a");
+    if (ack != null) {
+      spec.setAck(Ack.valueOf(ack.toUpperCase(Locale.ROOT)));
+    }
+    List<StripeEvent> script = StripeEvent.parseScript(cli.getOptionValue("e"));
+    String dir = cli.getOptionValue("o");
+    File workDir = dir != null ? new File(dir) : Files.createTempDirectory("stripe-load").toFile();
+
+    InProcessStripe stripe = new InProcessStripe(workDir, intOption(cli, "s", 2), 2, TimeUnit.MINUTES);
+    System.out.println("starting " + stripe + " in " + workDir);
+    try {
+      stripe.start();
+      System.out.println(spec + " script=" + script);
+      new StripeLoad(stripe, spec, script, intOption(cli, "u", 10), intOption(cli, "d", 60), intOption(cli, "i", 1),
+                     TimeUnit.SECONDS).run();
+    } finally {
+      stripe.close();
+    }
+    // client and server timers are not all daemons
+    System.exit(0);
+  }
+
+  private static int intOption(CommandLineBuilder cli, String option, int defaultValue) {
+    String value = cli.getOptionValue(option);
+    return value == null ? defaultValue : Integer.parseInt(value);
+  }
+}
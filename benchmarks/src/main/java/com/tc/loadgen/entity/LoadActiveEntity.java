@@ -0,0 +1,73 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.loadgen.entity;
+
+import org.terracotta.entity.ActiveServerEntity;
+import org.terracotta.entity.ClientDescriptor;
+import org.terracotta.entity.PassiveSynchronizationChannel;
+
+class LoadActiveEntity implements ActiveServerEntity<LoadMessage, LoadResponse> {
+
+  private final LoadState state = new LoadState();
+
+  @Override
+  public void connected(ClientDescriptor clientDescriptor) {
+  }
+
+  @Override
+  public void handleReconnect(ClientDescriptor clientDescriptor, byte[] extendedReconnectData) {
+  }
+
+  @Override
+  public void disconnected(ClientDescriptor clientDescriptor) {
+  }
+
+  @Override
+  public LoadResponse invoke(ClientDescriptor clientDescriptor, LoadMessage message) {
+    switch (message.getOp()) {
+      case WRITE:
+        return state.write(message.getKey(), message.getPayload());
+      case READ:
+        return state.read(message.getKey());
+      default:
+        throw new IllegalArgumentException("Unexpected message on the active: " + message);
+    }
+  }
+
+  @Override
+  public void synchronizeKeyToPassive(PassiveSynchronizationChannel<LoadMessage> syncChannel, int concurrencyKey) {
+    LoadMessage sync = state.syncMessage(concurrencyKey);
+    if (sync != null) {
+      syncChannel.synchronizeToPassive(sync);
+    }
+  }
+
+  @Override
+  public void createNew() {
+  }
+
+  @Override
+  public void loadExisting() {
+  }
+
+  @Override
+  public void destroy() {
+    state.clear();
+  }
+}
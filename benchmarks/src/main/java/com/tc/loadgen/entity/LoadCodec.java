@@ -0,0 +1,96 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.loadgen.entity;
+
+import org.terracotta.entity.MessageCodec;
+import org.terracotta.entity.MessageCodecException;
+import org.terracotta.entity.SyncMessageCodec;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Messages are encoded as {@code op:byte key:int count:long payload}, responses as {@code count:long size:int}.
+ */
+public class LoadCodec implements MessageCodec<LoadMessage, LoadResponse>, SyncMessageCodec<LoadMessage> {
+
+  private static final int MESSAGE_HEADER = 1 + 4 + 8;
+
+  /**
+   * The entity's configuration is its number of concurrency keys.
+   */
+  public static byte[] encodeConfiguration(int keys) {
+    return ByteBuffer.allocate(4).putInt(keys).array();
+  }
+
+  public static int decodeConfiguration(byte[] configuration) {
+    return ByteBuffer.wrap(configuration).getInt();
+  }
+
+  @Override
+  public byte[] encodeMessage(LoadMessage message) {
+    byte[] payload = message.getPayload();
+    ByteBuffer buffer = ByteBuffer.allocate(MESSAGE_HEADER + payload.length);
+    buffer.put((byte) message.getOp().ordinal());
+    buffer.putInt(message.getKey());
+    buffer.putLong(message.getCount());
+    buffer.put(payload);
+    return buffer.array();
+  }
+
+  @Override
+  public LoadMessage decodeMessage(byte[] bytes) throws MessageCodecException {
+    try {
+      ByteBuffer buffer = ByteBuffer.wrap(bytes);
+      LoadMessage.Op op = LoadMessage.Op.values()[buffer.get()];
+      int key = buffer.getInt();
+      long count = buffer.getLong();
+      byte[] payload = new byte[buffer.remaining()];
+      buffer.get(payload);
+      return new LoadMessage(op, key, count, payload);
+    } catch (BufferUnderflowException | ArrayIndexOutOfBoundsException e) {
+      throw new MessageCodecException("Malformed load message", e);
+    }
+  }
+
+  @Override
+  public byte[] encodeResponse(LoadResponse response) {
+    return ByteBuffer.allocate(8 + 4).putLong(response.getCount()).putInt(response.getSize()).array();
+  }
+
+  @Override
+  public LoadResponse decodeResponse(byte[] bytes) throws MessageCodecException {
+    try {
+      ByteBuffer buffer = ByteBuffer.wrap(bytes);
+      return new LoadResponse(buffer.getLong(), buffer.getInt());
+    } catch (BufferUnderflowException e) {
+      throw new MessageCodecException("Malformed load response", e);
+    }
+  }
+
+  @Override
+  public byte[] encode(int concurrencyKey, LoadMessage message) {
+    return encodeMessage(message);
+  }
+
+  @Override
+  public LoadMessage decode(int concurrencyKey, byte[] payload) throws MessageCodecException {
+    return decodeMessage(payload);
+  }
+}
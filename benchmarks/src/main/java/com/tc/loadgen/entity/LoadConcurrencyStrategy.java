@@ -0,0 +1,54 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.loadgen.entity;
+
+import org.terracotta.entity.ConcurrencyStrategy;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Every message runs on its own key, keys 1 to {@code keys}. A single key serializes the whole entity.
+ */
+class LoadConcurrencyStrategy implements ConcurrencyStrategy<LoadMessage> {
+
+  private final int keys;
+
+  LoadConcurrencyStrategy(int keys) {
+    this.keys = keys;
+  }
+
+  @Override
+  public int concurrencyKey(LoadMessage message) {
+    int key = message.getKey();
+    if (key < 1 || key > keys) {
+      throw new IllegalArgumentException("Key " + key + " outside 1.." + keys);
+    }
+    return key;
+  }
+
+  @Override
+  public Set<Integer> getKeysForSynchronization() {
+    Set<Integer> all = new HashSet<>();
+    for (int key = 1; key <= keys; key++) {
+      all.add(key);
+    }
+    return all;
+  }
+}
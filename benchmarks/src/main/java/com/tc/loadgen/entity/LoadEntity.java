@@ -0,0 +1,47 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.loadgen.entity;
+
+import org.terracotta.connection.entity.Entity;
+import org.terracotta.entity.InvokeFuture;
+import org.terracotta.entity.MessageCodecException;
+
+/**
+ * A small entity for driving load through a stripe. It keeps, per concurrency key, the number of writes and the last
+ * payload written, replicates writes to its passives and synchronizes that state to a passive that joins late.
+ */
+public interface LoadEntity extends Entity {
+  long VERSION = 1;
+
+  /**
+   * How far an invoke must get before the caller is released.
+   */
+  enum Ack {
+    /** {@code invoke()} returns once the active has the message; the response is not waited for. */
+    RECEIVED,
+    /** {@code get()} returns once the active has run the message. */
+    COMPLETED,
+    /** {@code get()} returns once the message has been run and retired on the active and its passives. */
+    RETIRED
+  }
+
+  InvokeFuture<LoadResponse> write(int key, byte[] payload, Ack ack) throws MessageCodecException;
+
+  InvokeFuture<LoadResponse> read(int key, Ack ack) throws MessageCodecException;
+}
@@ -0,0 +1,67 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.loadgen.entity;
+
+import org.terracotta.entity.EntityClientEndpoint;
+import org.terracotta.entity.InvocationBuilder;
+import org.terracotta.entity.InvokeFuture;
+import org.terracotta.entity.MessageCodecException;
+
+class LoadEntityClient implements LoadEntity {
+
+  private final EntityClientEndpoint<LoadMessage, LoadResponse> endpoint;
+
+  LoadEntityClient(EntityClientEndpoint<LoadMessage, LoadResponse> endpoint) {
+    this.endpoint = endpoint;
+  }
+
+  @Override
+  public InvokeFuture<LoadResponse> write(int key, byte[] payload, Ack ack) throws MessageCodecException {
+    return invoke(LoadMessage.write(key, payload), true, ack);
+  }
+
+  @Override
+  public InvokeFuture<LoadResponse> read(int key, Ack ack) throws MessageCodecException {
+    return invoke(LoadMessage.read(key), false, ack);
+  }
+
+  private InvokeFuture<LoadResponse> invoke(LoadMessage message, boolean replicate, Ack ack)
+      throws MessageCodecException {
+    InvocationBuilder<LoadMessage, LoadResponse> builder = endpoint.beginInvoke().message(message).replicate(replicate);
+    switch (ack) {
+      case RECEIVED:
+        builder.ackReceived().blockGetOnRetire(false);
+        break;
+      case COMPLETED:
+        builder.ackCompleted().blockGetOnRetire(false);
+        break;
+      case RETIRED:
+        builder.ackRetired().blockGetOnRetire(true);
+        break;
+      default:
+        throw new AssertionError(ack);
+    }
+    return builder.invoke();
+  }
+
+  @Override
+  public void close() {
+    endpoint.close();
+  }
+}
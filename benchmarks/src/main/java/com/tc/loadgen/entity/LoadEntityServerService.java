@@ -0,0 +1,69 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.loadgen.entity;
+
+import org.terracotta.entity.ConcurrencyStrategy;
+import org.terracotta.entity.EntityServerService;
+import org.terracotta.entity.MessageCodec;
+import org.terracotta.entity.ServiceRegistry;
+import org.terracotta.entity.SyncMessageCodec;
+
+/**
+ * Server side of {@link LoadEntity}. The server loads this class in its own component class loader, so nothing in
+ * this package may reach outside it other than the entity API.
+ */
+public class LoadEntityServerService implements EntityServerService<LoadMessage, LoadResponse> {
+
+  private final LoadCodec codec = new LoadCodec();
+
+  @Override
+  public long getVersion() {
+    return LoadEntity.VERSION;
+  }
+
+  @Override
+  public boolean handlesEntityType(String typeName) {
+    return LoadEntity.class.getName().equals(typeName);
+  }
+
+  @Override
+  public LoadActiveEntity createActiveEntity(ServiceRegistry registry, byte[] configuration) {
+    return new LoadActiveEntity();
+  }
+
+  @Override
+  public LoadPassiveEntity createPassiveEntity(ServiceRegistry registry, byte[] configuration) {
+    return new LoadPassiveEntity();
+  }
+
+  @Override
+  public ConcurrencyStrategy<LoadMessage> getConcurrencyStrategy(byte[] configuration) {
+    return new LoadConcurrencyStrategy(LoadCodec.decodeConfiguration(configuration));
+  }
+
+  @Override
+  public MessageCodec<LoadMessage, LoadResponse> getMessageCodec() {
+    return codec;
+  }
+
+  @Override
+  public SyncMessageCodec<LoadMessage> getSyncMessageCodec() {
+    return codec;
+  }
+}
@@ -0,0 +1,82 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.loadgen.entity;
+
+import org.terracotta.entity.EntityMessage;
+
+/**
+ * A message to the load entity. Writes and reads address one concurrency key; sync messages carry a key's state
+ * from the active to a passive that is catching up.
+ */
+public class LoadMessage implements EntityMessage {
+
+  public enum Op {
+    WRITE, READ, SYNC
+  }
+
+  private static final byte[] NO_PAYLOAD = new byte[0];
+
+  private final Op            op;
+  private final int           key;
+  private final long          count;
+  private final byte[]        payload;
+
+  LoadMessage(Op op, int key, long count, byte[] payload) {
+    this.op = op;
+    this.key = key;
+    this.count = count;
+    this.payload = payload;
+  }
+
+  public static LoadMessage write(int key, byte[] payload) {
+    return new LoadMessage(Op.WRITE, key, 0, payload);
+  }
+
+  public static LoadMessage read(int key) {
+    return new LoadMessage(Op.READ, key, 0, NO_PAYLOAD);
+  }
+
+  static LoadMessage sync(int key, long count, byte[] payload) {
+    return new LoadMessage(Op.SYNC, key, count, payload);
+  }
+
+  public Op getOp() {
+    return op;
+  }
+
+  public int getKey() {
+    return key;
+  }
+
+  /**
+   * @return the number of writes the key has seen, only meaningful for sync messages
+   */
+  public long getCount() {
+    return count;
+  }
+
+  public byte[] getPayload() {
+    return payload;
+  }
+
+  @Override
+  public String toString() {
+    return "LoadMessage{" + op + ", key=" + key + ", payload=" + payload.length + "}";
+  }
+}
@@ -0,0 +1,48 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.loadgen.entity;
+
+import org.terracotta.entity.EntityResponse;
+
+/**
+ * The state of one key after a write or read: how many writes it has seen and the size of the last payload.
+ */
+public class LoadResponse implements EntityResponse {
+
+  private final long count;
+  private final int  size;
+
+  LoadResponse(long count, int size) {
+    this.count = count;
+    this.size = size;
+  }
+
+  public long getCount() {
+    return count;
+  }
+
+  public int getSize() {
+    return size;
+  }
+
+  @Override
+  public String toString() {
+    return "LoadResponse{count=" + count + ", size=" + size + "}";
+  }
+}
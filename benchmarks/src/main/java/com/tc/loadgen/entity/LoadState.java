@@ -0,0 +1,71 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.loadgen.entity;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Per-key state shared by the active and passive entities. The platform runs at most one invoke per key at a time, so
+ * each key's slot is only ever replaced by one thread; different keys are updated concurrently.
+ */
+class LoadState {
+
+  private static final byte[]              EMPTY = new byte[0];
+
+  private final ConcurrentMap<Integer, Slot> slots = new ConcurrentHashMap<>();
+
+  LoadResponse write(int key, byte[] payload) {
+    Slot slot = slots.get(key);
+    long count = (slot == null ? 0 : slot.count) + 1;
+    slots.put(key, new Slot(count, payload));
+    return new LoadResponse(count, payload.length);
+  }
+
+  LoadResponse read(int key) {
+    Slot slot = slots.get(key);
+    return slot == null ? new LoadResponse(0, 0) : new LoadResponse(slot.count, slot.payload.length);
+  }
+
+  void load(int key, long count, byte[] payload) {
+    slots.put(key, new Slot(count, payload));
+  }
+
+  /**
+   * @return the message that recreates this key on a passive, or null if the key was never written
+   */
+  LoadMessage syncMessage(int key) {
+    Slot slot = slots.get(key);
+    return slot == null ? null : LoadMessage.sync(key, slot.count, slot.payload);
+  }
+
+  void clear() {
+    slots.clear();
+  }
+
+  private static class Slot {
+    private final long   count;
+    private final byte[] payload;
+
+    private Slot(long count, byte[] payload) {
+      this.count = count;
+      this.payload = payload == null ? EMPTY : payload;
+    }
+  }
+}
@@ -0,0 +1,87 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.net.protocol.transport;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.tc.bytes.TCByteBuffer;
+import com.tc.bytes.TCByteBufferFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checksum computation on an outgoing {@link WireProtocolHeader} and parse/validate of an incoming one, which between
+ * them are paid once per network message in each direction.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class WireProtocolHeaderBenchmark {
+
+  WireProtocolHeader outgoing;
+  byte[]             incoming;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    outgoing = new WireProtocolHeader();
+    outgoing.setProtocol(WireProtocolHeader.PROTOCOL_OOOP);
+    outgoing.setMessageCount(1);
+    outgoing.setSourceAddress(new byte[] { 10, 0, 0, 1 });
+    outgoing.setSourcePort(50213);
+    outgoing.setDestinationAddress(new byte[] { 10, 0, 0, 2 });
+    outgoing.setDestinationPort(9510);
+    outgoing.setTotalPacketLength(WireProtocolHeader.MIN_LENGTH + 1024);
+    outgoing.computeChecksum();
+
+    TCByteBuffer data = outgoing.getDataBuffer().duplicate().rewind();
+    incoming = new byte[data.limit()];
+    data.get(incoming);
+  }
+
+  @Benchmark
+  public long computeChecksum() {
+    outgoing.computeChecksum();
+    return outgoing.getChecksum();
+  }
+
+  @Benchmark
+  public int parse() throws WireProtocolHeaderFormatException {
+    TCByteBuffer buffer = TCByteBufferFactory.getInstance(false, WireProtocolHeader.MAX_LENGTH);
+    buffer.put(incoming).flip();
+    WireProtocolHeader header = new WireProtocolHeader(buffer);
+    // validate() includes the checksum check
+    header.validate();
+    int count = header.getMessageCount();
+    buffer.recycle();
+    return count;
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.objectserver.handler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+import org.terracotta.entity.ConcurrencyStrategy;
+import org.terracotta.entity.EntityMessage;
+
+import com.tc.object.tx.TransactionID;
+import com.tc.objectserver.api.Retiree;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Register/retire round trips through a shared {@link RetirementManager}, once with every thread on its own
+ * concurrency key and once on the universal key, which spreads over the stripes by identity.
+ * <p>
+ * Runs on 4 threads unless overridden with {@code -t}; the benchmarks README sweeps 1, 2, 4 and 8 threads to show
+ * whether throughput per thread holds as callers are added.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@Threads(4)
+public class RetirementManagerBenchmark {
+
+  @State(Scope.Benchmark)
+  public static class Manager {
+    RetirementManager manager;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+      manager = new RetirementManager();
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class Caller {
+    int     concurrencyKey;
+    Message message;
+
+    @Setup(Level.Trial)
+    public void setUp(ThreadParams params) {
+      // a distinct positive key per thread, so no caller is ever sequenced behind another
+      concurrencyKey = params.getThreadIndex() + 1;
+      message = new Message();
+    }
+  }
+
+  @Benchmark
+  public List<Retiree> keyed(Manager state, Caller caller) {
+    return registerAndRetire(state.manager, caller.message, caller.concurrencyKey);
+  }
+
+  @Benchmark
+  public List<Retiree> universal(Manager state, Caller caller) {
+    return registerAndRetire(state.manager, caller.message, ConcurrencyStrategy.UNIVERSAL_KEY);
+  }
+
+  private static List<Retiree> registerAndRetire(RetirementManager manager, Message message, int key) {
+    manager.registerWithMessage(message, key);
+    manager.updateWithRetiree(message, message);
+    return manager.retireForCompletion(message);
+  }
+
+  /**
+   * Stands in for both the invoke and its response; each thread reuses its own, which is safe because it is retired
+   * before it is registered again.
+   */
+  static class Message implements EntityMessage, Retiree {
+    private static final TransactionID TRANSACTION = new TransactionID(1);
+
+    @Override
+    public void retired() {
+      //
+    }
+
+    @Override
+    public TransactionID getTransaction() {
+      return TRANSACTION;
+    }
+  }
+}
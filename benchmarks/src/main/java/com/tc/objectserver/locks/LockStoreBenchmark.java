@@ -0,0 +1,78 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.objectserver.locks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.tc.object.locks.LockID;
+import com.tc.object.locks.LongLockID;
+import com.tc.objectserver.locks.factory.ServerLockFactoryImpl;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checkout/checkin on a shared {@link LockStore}.  With few distinct locks the threads pile up on the same segment
+ * guards; with many they mostly miss each other and the cost is the hashing and the segment map.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class LockStoreBenchmark {
+
+  @Param({ "4", "4096" })
+  int       lockCount;
+
+  LockStore store;
+  LockID[]  ids;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    store = new LockStore(new ServerLockFactoryImpl());
+    ids = new LockID[lockCount];
+    for (int i = 0; i < lockCount; i++) {
+      ids[i] = new LongLockID(i);
+      // populate up front so the measurement is of the steady state, not of lock creation
+      store.checkIn(store.checkOut(ids[i]));
+    }
+  }
+
+  @Benchmark
+  public ServerLock checkOutCheckIn() {
+    ServerLock lock = store.checkOut(ids[ThreadLocalRandom.current().nextInt(lockCount)]);
+    store.checkIn(lock);
+    return lock;
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.objectserver.persistence;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.terracotta.persistence.KeyValueStorage;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A single put into a {@link FlatFilePersistentStorage} map.  Every put rewrites the whole store, so the cost grows
+ * with the number of entries already present; the parameter shows how steeply.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class FlatFilePersistentStorageBenchmark {
+
+  @Param({ "0", "1000" })
+  int                            existingEntries;
+
+  @Param({ "256" })
+  int                            valueSize;
+
+  File                           directory;
+  FlatFilePersistentStorage      storage;
+  KeyValueStorage<Long, byte[]>  map;
+  byte[]                         value;
+  long                           next;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("flatfile-benchmark").toFile();
+    storage = new FlatFilePersistentStorage(new File(directory, "store.map"));
+    storage.create();
+    map = storage.getKeyValueStorage("benchmark", Long.class, byte[].class);
+    value = new byte[valueSize];
+    for (next = 0; next < existingEntries; next++) {
+      map.put(next, value);
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    storage.close();
+    for (File file : directory.listFiles()) {
+      file.delete();
+    }
+    directory.delete();
+  }
+
+  @Benchmark
+  public void put() {
+    // cycle through 64 extra keys so the store size stays put
+    map.put(existingEntries + (next++ & 63), value);
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.objectserver.persistence;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import com.tc.net.ClientID;
+import com.tc.object.tx.TransactionID;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link TransactionOrderPersistor#updateWithNewMessage} from several clients at once, each keeping a fixed number of
+ * transactions in flight.  Storage is the in-memory {@link NullPlatformPersistentStorage} so this measures the ordering
+ * bookkeeping and its lock rather than the disk.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@Threads(4)
+public class TransactionOrderPersistorBenchmark {
+
+  @State(Scope.Benchmark)
+  public static class Persistor {
+    TransactionOrderPersistor persistor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+      persistor = new TransactionOrderPersistor(new NullPlatformPersistentStorage(), Collections.emptySet());
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class Client {
+    @Param({ "1", "64" })
+    int      inFlight;
+
+    ClientID client;
+    long     next;
+
+    @Setup(Level.Trial)
+    public void setUp(ThreadParams params) {
+      client = new ClientID(params.getThreadIndex() + 1);
+      next = 1;
+    }
+  }
+
+  @Benchmark
+  public void updateWithNewMessage(Persistor state, Client client) {
+    long current = client.next++;
+    TransactionID oldest = new TransactionID(Math.max(1, current - client.inFlight + 1));
+    state.persistor.updateWithNewMessage(client.client, new TransactionID(current), oldest);
+  }
+}
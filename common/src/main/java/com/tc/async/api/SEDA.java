@@ -23,6 +23,8 @@ import com.tc.bytes.TCByteBufferFactory;
 import com.tc.lang.TCThreadGroup;
 import com.tc.util.concurrent.QueueFactory;
 
+import java.util.concurrent.Executor;
+
 /**
  * Manages the startup and shutdown of a SEDA environment
  * 
@@ -33,8 +35,16 @@ public class SEDA<EC> {
   private final TCThreadGroup threadGroup;
 
   public SEDA(TCThreadGroup threadGroup) {
+    this(threadGroup, null);
+  }
+
+  /**
+   * @param sharedExecutor if not null, the stages of this environment run on this executor rather than on threads of
+   *        their own
+   */
+  public SEDA(TCThreadGroup threadGroup, Executor sharedExecutor) {
     this.threadGroup = threadGroup;
-    this.stageManager = new StageManagerImpl(threadGroup, new QueueFactory<EC>());
+    this.stageManager = new StageManagerImpl(threadGroup, new QueueFactory<EC>(), sharedExecutor);
     TCByteBufferFactory.registerThreadGroup(threadGroup);
   }
 
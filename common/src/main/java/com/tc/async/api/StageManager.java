@@ -23,10 +23,19 @@ import com.tc.stats.Stats;
 import com.tc.text.PrettyPrintable;
 
 import java.util.List;
+import java.util.concurrent.Executor;
 
 
 public interface StageManager extends PrettyPrintable {
   public <EC> Stage<EC> createStage(String name, Class<EC> verification, EventHandler<EC> handler, int threads, int maxSize);
+/**
+ * Create a stage without threads of its own, drained on the given executor.  Contexts with the same scheduling key
+ * stay in order however many threads the executor runs.
+ * @param queueCount the number of queues scheduling keys are spread over, independent of the executor's threads
+ * @param executor the executor to drain the stage on, or null for a stage with one thread of its own per queue even
+ * when this manager shares an executor between its other stages
+ */
+  public <EC> Stage<EC> createStage(String name, Class<EC> verification, EventHandler<EC> handler, int queueCount, int maxSize, Executor executor);
 /**
  * Start all the stages created on this stage manager.
  * @param context 
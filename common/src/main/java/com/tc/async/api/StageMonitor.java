@@ -41,6 +41,10 @@ public interface StageMonitor {
     public Number getMaxQueueDepth();
 
     public Number getAvgQueueDepth();
+
+    public Number getMedianQueueDepth();
+
+    public Number get99thPercentileQueueDepth();
     
   }
 
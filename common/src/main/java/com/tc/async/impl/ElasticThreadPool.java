@@ -0,0 +1,286 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.async.impl;
+
+import com.tc.logging.TCLogger;
+import com.tc.logging.TCLogging;
+import com.tc.text.PrettyPrintable;
+import com.tc.text.PrettyPrinter;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An executor whose thread count follows the observed ratio of waiting to computing. Every task is timed twice, on the
+ * wall clock and on the thread's CPU clock; the difference is time the thread spent blocked (on locks, services,
+ * replication acks, I/O). Tasks still running are credited up to the moment of each sample, so threads stuck on a slow
+ * dependency count as waiting before they finish. Every sample interval the pool asks its {@link Sizer} for the thread
+ * count that ratio calls for and moves half way towards it, within its bounds.
+ * <p>
+ * The pool only grows while tasks are queued, so a wait-heavy but lightly loaded stage does not collect idle threads.
+ * It never shrinks while tasks are queued or every thread is busy, and otherwise shrinks by one thread per interval
+ * while it has nothing to do. Ordering is the business of whoever submits:
+ * {@link PooledStageImpl} drains each of its queues with at most one task at a time, so keyed contexts keep their order
+ * however many threads the pool has.
+ */
+public class ElasticThreadPool implements Executor, PrettyPrintable {
+
+  /**
+   * Turns an observed wait and compute time into a thread count.
+   */
+  public interface Sizer {
+    int threadsFor(long waitNanos, long computeNanos);
+  }
+
+  private static final TCLogger     logger     = TCLogging.getLogger(ElasticThreadPool.class);
+  private static final ThreadMXBean THREAD_MX  = ManagementFactory.getThreadMXBean();
+
+  private final String              name;
+  private final int                 minThreads;
+  private final int                 maxThreads;
+  private final Sizer               sizer;
+  private final ThreadPoolExecutor  executor;
+  private final ScheduledExecutorService sampler;
+  private final boolean             cpuTimed;
+
+  private final LongAdder           waitNanos    = new LongAdder();
+  private final LongAdder           computeNanos = new LongAdder();
+  private final Set<TimedTask>      running      = ConcurrentHashMap.newKeySet();
+  private volatile long             lastWait;
+  private volatile long             lastCompute;
+  private volatile int              resizes;
+
+  /**
+   * @param sampleMillis how often the size is revisited, 0 to only resize on explicit calls to {@link #resize()}
+   */
+  public ElasticThreadPool(String name, ThreadGroup group, int minThreads, int maxThreads, int initialThreads,
+                           Sizer sizer, long sampleMillis) {
+    if (minThreads < 1 || maxThreads < minThreads) {
+      throw new IllegalArgumentException("Bad bounds [" + minThreads + ", " + maxThreads + "] for " + name);
+    }
+    this.name = name;
+    this.minThreads = minThreads;
+    this.maxThreads = maxThreads;
+    this.sizer = sizer;
+    this.cpuTimed = THREAD_MX.isCurrentThreadCpuTimeSupported() && THREAD_MX.isThreadCpuTimeEnabled();
+    int initial = clamp(initialThreads);
+    this.executor = new ThreadPoolExecutor(initial, initial, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                                           new PoolThreadFactory(group, name));
+    if (sampleMillis > 0) {
+      this.sampler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(group, r, name + " sizer");
+        t.setDaemon(true);
+        return t;
+      });
+      this.sampler.scheduleWithFixedDelay(this::sample, sampleMillis, sampleMillis, TimeUnit.MILLISECONDS);
+    } else {
+      this.sampler = null;
+    }
+    if (!cpuTimed) {
+      logger.warn("Thread CPU time is not available, " + name + " will stay at " + initial + " threads");
+    }
+    logger.info(name + " starts with " + initial + " threads, bounds [" + minThreads + ", " + maxThreads + "]");
+  }
+
+  @Override
+  public void execute(Runnable task) {
+    executor.execute(cpuTimed ? new TimedTask(task) : task);
+  }
+
+  /**
+   * Revisits the thread count from the times recorded since the last call.
+   * 
+   * @return the new thread count
+   */
+  public synchronized int resize() {
+    for (TimedTask task : running) {
+      task.checkpoint();
+    }
+    long waited = waitNanos.sumThenReset();
+    long computed = computeNanos.sumThenReset();
+    lastWait = waited;
+    lastCompute = computed;
+    int current = executor.getCorePoolSize();
+    boolean busy = !executor.getQueue().isEmpty() || executor.getActiveCount() >= current;
+    int target;
+    if (computed == 0 && waited == 0) {
+      target = current - 1;
+    } else {
+      int wanted = sizer.threadsFor(waited, Math.max(computed, 1));
+      if (wanted > current && executor.getQueue().isEmpty()) {
+        // everything submitted is already being run, more threads would only sit idle
+        wanted = current;
+      }
+      target = current + (wanted - current) / 2;
+      if (target == current && wanted != current) {
+        target += Integer.signum(wanted - current);
+      }
+    }
+    if (busy && target < current) {
+      // shedding a thread now would only leave the queued work waiting longer
+      target = current;
+    }
+    target = clamp(target);
+    if (target != current) {
+      if (target > current) {
+        executor.setMaximumPoolSize(target);
+        executor.setCorePoolSize(target);
+      } else {
+        // idle threads above the core size exit right away, busy ones once they finish their task
+        executor.setCorePoolSize(target);
+        executor.setMaximumPoolSize(target);
+      }
+      resizes++;
+      if (logger.isDebugEnabled()) {
+        logger.debug(name + " resized from " + current + " to " + target + " threads, wait/compute " + waited + "/"
+                     + computed + "ns");
+      }
+    }
+    return target;
+  }
+
+  private void sample() {
+    // an exception escaping a periodic task cancels it, and the pool would never be resized again
+    try {
+      resize();
+    } catch (Throwable t) {
+      logger.error("Failed to resize " + name, t);
+    }
+  }
+
+  private int clamp(int threads) {
+    return Math.max(minThreads, Math.min(maxThreads, threads));
+  }
+
+  public int getThreadCount() {
+    return executor.getCorePoolSize();
+  }
+
+  public int getMinThreads() {
+    return minThreads;
+  }
+
+  public int getMaxThreads() {
+    return maxThreads;
+  }
+
+  public void shutdown() {
+    if (sampler != null) {
+      sampler.shutdownNow();
+    }
+    executor.shutdown();
+  }
+
+  @Override
+  public PrettyPrinter prettyPrint(PrettyPrinter out) {
+    out.print(getClass().getName()).print(" ").print(name).print(" threads=").print(getThreadCount())
+        .print(" bounds=[").print(minThreads).print(", ").print(maxThreads).print("] active=")
+        .print(executor.getActiveCount()).print(" queued=").print(executor.getQueue().size()).print(" resizes=")
+        .print(resizes).print(" lastWaitNanos=").print(lastWait).print(" lastComputeNanos=").print(lastCompute)
+        .flush();
+    return out;
+  }
+
+  @Override
+  public String toString() {
+    return "ElasticThreadPool(" + name + ", " + getThreadCount() + " threads)";
+  }
+
+  private class TimedTask implements Runnable {
+    private final Runnable task;
+    // The thread running the task and the clocks up to which it has been credited, guarded by this.
+    private Thread         thread;
+    private long           wallMark;
+    private long           cpuMark;
+    private boolean        done;
+
+    TimedTask(Runnable task) {
+      this.task = task;
+    }
+
+    @Override
+    public void run() {
+      synchronized (this) {
+        thread = Thread.currentThread();
+        wallMark = System.nanoTime();
+        cpuMark = THREAD_MX.getCurrentThreadCpuTime();
+      }
+      running.add(this);
+      try {
+        task.run();
+      } finally {
+        running.remove(this);
+        synchronized (this) {
+          credit(System.nanoTime(), THREAD_MX.getCurrentThreadCpuTime());
+          done = true;
+        }
+      }
+    }
+
+    /**
+     * Credits the time the task has run so far, called by {@link #resize()} from another thread.
+     */
+    synchronized void checkpoint() {
+      if (thread != null && !done) {
+        long cpuNow = THREAD_MX.getThreadCpuTime(thread.getId());
+        if (cpuNow >= 0) {
+          credit(System.nanoTime(), cpuNow);
+        }
+      }
+    }
+
+    private void credit(long wallNow, long cpuNow) {
+      long wall = wallNow - wallMark;
+      long cpu = Math.max(0, Math.min(cpuNow - cpuMark, wall));
+      computeNanos.add(cpu);
+      waitNanos.add(wall - cpu);
+      wallMark = wallNow;
+      cpuMark = cpuNow;
+    }
+  }
+
+  private static class PoolThreadFactory implements ThreadFactory {
+    private final AtomicInteger threadNumber = new AtomicInteger();
+    private final ThreadGroup   group;
+    private final String        name;
+
+    PoolThreadFactory(ThreadGroup group, String name) {
+      this.group = group;
+      this.name = name;
+    }
+
+    @Override
+    public Thread newThread(Runnable r) {
+      Thread t = new Thread(group, r, name + " - " + threadNumber.incrementAndGet());
+      t.setDaemon(true);
+      return t;
+    }
+  }
+}
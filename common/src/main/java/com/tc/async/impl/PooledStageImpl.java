@@ -0,0 +1,317 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.async.impl;
+
+import com.tc.async.api.ConfigurationContext;
+import com.tc.async.api.EventHandler;
+import com.tc.async.api.EventHandlerException;
+import com.tc.async.api.Sink;
+import com.tc.async.api.Source;
+import com.tc.async.api.SpecializedEventContext;
+import com.tc.async.api.Stage;
+import com.tc.exception.TCNotRunningException;
+import com.tc.exception.TCRuntimeException;
+import com.tc.logging.TCLogger;
+import com.tc.logging.TCLoggerProvider;
+import com.tc.stats.Stats;
+import com.tc.text.PrettyPrinter;
+import com.tc.util.concurrent.QueueFactory;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A SEDA stage without threads of its own. Each internal queue of the stage is drained by at most one task at a time
+ * on a shared executor, so contexts sharing a queue (and therefore a scheduling key) are still handled one by one in
+ * the order they were added, while many stages multiplex onto the same few threads.
+ * <p>
+ * Failures in the handler are reported to the thread group of the owner of the stage rather than to the group of the
+ * executor thread which happened to run it.
+ */
+public class PooledStageImpl<EC> implements Stage<EC> {
+  // Contexts handled by one drain task before the executor thread is handed to other stages
+  private static final int         DRAIN_BATCH = 64;
+  private static final long        POLL_TIME   = 1000;
+  // Set while an executor thread is draining any pooled stage
+  private static final ThreadLocal<Boolean> DRAINING = new ThreadLocal<Boolean>();
+
+  private final String             name;
+  private final EventHandler<EC>   handler;
+  private final StageQueueImpl<EC> stageQueue;
+  private final Drainer[]          drainers;
+  private final Sink<EC>           sink;
+  private final ThreadGroup        group;
+  private final Executor           executor;
+  private final TCLogger           logger;
+
+  private volatile boolean         paused;
+  private volatile boolean         shutdown    = true;
+
+  @SuppressWarnings("unchecked")
+  public PooledStageImpl(TCLoggerProvider loggerProvider, String name, EventHandler<EC> handler, int queueCount,
+                         ThreadGroup group, QueueFactory<ContextWrapper<EC>> queueFactory, int queueSize,
+                         Executor executor) {
+    this.logger = loggerProvider.getLogger(Stage.class.getName() + ": " + name);
+    this.name = name;
+    this.handler = handler;
+    this.group = group;
+    this.executor = executor;
+    this.stageQueue = new StageQueueImpl<EC>(queueCount, queueFactory, loggerProvider, name, queueSize);
+    this.drainers = new PooledStageImpl.Drainer[queueCount];
+    for (int i = 0; i < queueCount; i++) {
+      this.drainers[i] = new Drainer(i, this.stageQueue.getSource(i));
+    }
+    // a flushing context hops from queue to queue, and the queue it lands on has to be drained
+    this.stageQueue.setRequeueListener(this::schedule);
+    this.sink = new SchedulingSink();
+  }
+
+  @Override
+  public void destroy() {
+    shutdown = true;
+    paused = false;
+    stageQueue.setClosed(true);
+    scheduleAll();
+    for (Drainer drainer : drainers) {
+      drainer.awaitIdle();
+    }
+    handler.destroy();
+  }
+
+  @Override
+  public void start(ConfigurationContext context) {
+    if (!shutdown) {
+      return;
+    }
+    shutdown = false;
+    stageQueue.setClosed(false);
+    handler.initializeContext(context);
+    scheduleAll();
+  }
+
+  @Override
+  public Sink<EC> getSink() {
+    return sink;
+  }
+
+  @Override
+  public int pause() {
+    paused = true;
+    return stageQueue.size();
+  }
+
+  @Override
+  public void unpause() {
+    paused = false;
+    scheduleAll();
+  }
+
+  @Override
+  public String getName() {
+    return name;
+  }
+
+  private void scheduleAll() {
+    if (paused) {
+      return;
+    }
+    for (Drainer drainer : drainers) {
+      drainer.schedule();
+    }
+  }
+
+  // Only the queue a context was added to can have become runnable; with many queues walking all of them on every add
+  // costs more than the add itself.
+  private void schedule(int index) {
+    if (!paused) {
+      drainers[index].schedule();
+    }
+  }
+
+  private void handle(ContextWrapper<EC> ctxt) {
+    try {
+      ctxt.runWithHandler(handler);
+    } catch (EventHandlerException e) {
+      if (!shutdown) {
+        reportUncaught(new TCRuntimeException(e));
+      }
+    } catch (Exception e) {
+      if (isTCNotRunningException(e)) {
+        if (!shutdown) {
+          logger.info("Ignoring " + TCNotRunningException.class.getSimpleName() + " while handling context: " + ctxt);
+        }
+      } else {
+        reportUncaught(new TCRuntimeException("Uncaught exception in stage", e));
+      }
+    }
+  }
+
+  private void reportUncaught(Throwable t) {
+    group.uncaughtException(Thread.currentThread(), t);
+  }
+
+  private static boolean isTCNotRunningException(Throwable e) {
+    Throwable rootCause = null;
+    while (e != null) {
+      rootCause = e;
+      e = e.getCause();
+    }
+    return rootCause instanceof TCNotRunningException;
+  }
+
+  @Override
+  public String toString() {
+    return "PooledStageImpl(" + name + ")";
+  }
+
+  @Override
+  public PrettyPrinter prettyPrint(PrettyPrinter out) {
+    out.print("Queue depth: " + getSink().size() + " " + this.name).flush();
+    return out;
+  }
+
+  private class Drainer implements Runnable {
+    private final int                        index;
+    private final Source<ContextWrapper<EC>> source;
+    private final AtomicBoolean              scheduled = new AtomicBoolean();
+
+    Drainer(int index, Source<ContextWrapper<EC>> source) {
+      this.index = index;
+      this.source = source;
+    }
+
+    void schedule() {
+      if (!source.isEmpty() && scheduled.compareAndSet(false, true)) {
+        try {
+          executor.execute(this);
+        } catch (RuntimeException e) {
+          scheduled.set(false);
+          throw e;
+        }
+      }
+    }
+
+    @Override
+    public void run() {
+      DRAINING.set(Boolean.TRUE);
+      try {
+        for (int i = 0; i < DRAIN_BATCH && !paused; i++) {
+          ContextWrapper<EC> ctxt = source.poll(0);
+          if (ctxt == null) {
+            break;
+          }
+          handle(ctxt);
+        }
+      } catch (InterruptedException ie) {
+        Thread.currentThread().interrupt();
+      } finally {
+        DRAINING.remove();
+        synchronized (this) {
+          scheduled.set(false);
+          notifyAll();
+        }
+      }
+      // contexts may have arrived after the last poll, or be left over from a full batch
+      PooledStageImpl.this.schedule(index);
+    }
+
+    synchronized void awaitIdle() {
+      // A handler stopping stages must not park a shared thread the remaining contexts may need; whatever is left is
+      // still drained, just not waited for.
+      if (DRAINING.get() != null) {
+        return;
+      }
+      boolean interrupted = false;
+      while (scheduled.get() || !source.isEmpty()) {
+        try {
+          wait(POLL_TIME);
+        } catch (InterruptedException ie) {
+          interrupted = true;
+        }
+        schedule();
+      }
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  private class SchedulingSink implements Sink<EC> {
+    @Override
+    public void addSingleThreaded(EC context) {
+      stageQueue.addSingleThreaded(context);
+      schedule(0);
+    }
+
+    @Override
+    public void addMultiThreaded(EC context) {
+      schedule(stageQueue.putMultiThreaded(context));
+    }
+
+    @Override
+    public void addSpecialized(SpecializedEventContext specialized) {
+      schedule(stageQueue.putSpecialized(specialized));
+    }
+
+    @Override
+    public int size() {
+      return stageQueue.size();
+    }
+
+    @Override
+    public void clear() {
+      stageQueue.clear();
+    }
+
+    @Override
+    public void setClosed(boolean closed) {
+      stageQueue.setClosed(closed);
+    }
+
+    @Override
+    public void enableStatsCollection(boolean enable) {
+      stageQueue.enableStatsCollection(enable);
+    }
+
+    @Override
+    public boolean isStatsCollectionEnabled() {
+      return stageQueue.isStatsCollectionEnabled();
+    }
+
+    @Override
+    public Stats getStats(long frequency) {
+      return stageQueue.getStats(frequency);
+    }
+
+    @Override
+    public Stats getStatsAndReset(long frequency) {
+      return stageQueue.getStatsAndReset(frequency);
+    }
+
+    @Override
+    public void resetStats() {
+      stageQueue.resetStats();
+    }
+
+    @Override
+    public String toString() {
+      return stageQueue.toString();
+    }
+  }
+}
@@ -40,6 +40,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 
 /**
  * @author steve
@@ -57,12 +58,21 @@ public class StageManagerImpl implements StageManager {
   private final ThreadGroup          group;
   private String[]                   stageNames    = new String[] {};
   private final QueueFactory<?> queueFactory;
+  private final Executor             sharedExecutor;
   private volatile boolean           started;
 
   public StageManagerImpl(ThreadGroup threadGroup, QueueFactory<?> queueFactory) {
+    this(threadGroup, queueFactory, null);
+  }
+
+  /**
+   * @param sharedExecutor if not null, stages get no threads of their own and are drained on this executor instead
+   */
+  public StageManagerImpl(ThreadGroup threadGroup, QueueFactory<?> queueFactory, Executor sharedExecutor) {
     this.loggerProvider = new DefaultLoggerProvider();
     this.group = threadGroup;
     this.queueFactory = queueFactory;
+    this.sharedExecutor = sharedExecutor;
 
     if (MONITOR) {
       startMonitor();
@@ -103,7 +113,12 @@ public class StageManagerImpl implements StageManager {
   }
 
   @Override
-  public synchronized <EC> Stage<EC> createStage(String name, Class<EC> verification, EventHandler<EC> handler, int queueCount, int maxSize) {
+  public <EC> Stage<EC> createStage(String name, Class<EC> verification, EventHandler<EC> handler, int queueCount, int maxSize) {
+    return createStage(name, verification, handler, queueCount, maxSize, sharedExecutor);
+  }
+
+  @Override
+  public synchronized <EC> Stage<EC> createStage(String name, Class<EC> verification, EventHandler<EC> handler, int queueCount, int maxSize, Executor executor) {
     if (started) {
       throw new IllegalStateException("A new stage cannot be created, because StageManager is already started.");
     }
@@ -112,7 +127,9 @@ public class StageManagerImpl implements StageManager {
     // Note that the queue factory is used by all the stages under this manager so it can't be type-safe.
     @SuppressWarnings("unchecked")
     QueueFactory<ContextWrapper<EC>> queueFactory = (QueueFactory<ContextWrapper<EC>>) this.queueFactory;
-    Stage<EC> s = new StageImpl<EC>(loggerProvider, name, handler, queueCount, group, queueFactory, capacity);
+    Stage<EC> s = (executor == null)
+        ? new StageImpl<EC>(loggerProvider, name, handler, queueCount, group, queueFactory, capacity)
+        : new PooledStageImpl<EC>(loggerProvider, name, handler, queueCount, group, queueFactory, capacity, executor);
     addStage(name, s);
     this.classVerifications.put(name,  verification);
     return s;
@@ -21,16 +21,29 @@ package com.tc.async.impl;
 import com.tc.async.api.StageMonitor;
 import com.tc.text.StringFormatter;
 
-import java.util.ArrayList;
-import java.util.List;
-
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps streaming queue depth aggregates rather than a sample per event, so the cost and footprint are the same however
+ * many events go through between dumps. Percentiles come from a power of two histogram and are reported as the upper
+ * bound of the bucket they fall in.
+ */
 class StageMonitorImpl implements StageMonitor {
 
+  // bucket 0 holds depth 0, bucket b holds depths in [2^(b-1), 2^b)
+  private static final int      BUCKETS   = Integer.SIZE + 1;
+
   private final String          name;
   private final StringFormatter formatter;
 
-  private final List<Snapshot>  snapshots = new ArrayList<Snapshot>();
-  private long                  begin     = System.currentTimeMillis();
+  private final LongAdder       count     = new LongAdder();
+  private final LongAdder       sum       = new LongAdder();
+  private final AtomicInteger   min       = new AtomicInteger(-1);
+  private final AtomicInteger   max       = new AtomicInteger(0);
+  private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+  private volatile long         begin     = System.currentTimeMillis();
 
   StageMonitorImpl(String name, StringFormatter formatter) {
     this.name = formatter.rightPad(30, name);
@@ -38,21 +51,29 @@ class StageMonitorImpl implements StageMonitor {
   }
 
   @Override
-  public synchronized void eventBegin(int queueDepth) {
-    snapshots.add(new Snapshot(queueDepth));
+  public void eventBegin(int queueDepth) {
+    count.increment();
+    sum.add(queueDepth);
+    int cur;
+    while (((cur = min.get()) < 0 || queueDepth < cur) && !min.compareAndSet(cur, queueDepth)) {
+      // retry
+    }
+    while (queueDepth > (cur = max.get()) && !max.compareAndSet(cur, queueDepth)) {
+      // retry
+    }
+    histogram.incrementAndGet(bucketFor(queueDepth));
   }
 
   @Override
   public synchronized String dumpAndFlush() {
-    long elapsed = System.currentTimeMillis() - begin;
     StringBuffer rv = new StringBuffer();
-    dump(elapsed, rv);
+    dump(rv);
     flush();
     return rv.toString();
   }
 
-  private StringBuffer dump(long elapsed, StringBuffer buf) {
-    Analysis an = analyze();
+  private StringBuffer dump(StringBuffer buf) {
+    AnalysisImpl an = analyze();
     buf.append(name).append("| period: ").append(formatter.leftPad(10, an.getElapsedTime())).append("ms.| events: ")
         .append(formatter.leftPad(10, an.getEventCount()));
 
@@ -61,6 +82,8 @@ class StageMonitorImpl implements StageMonitor {
     buf.append("| Q depth, min: ").append(formatter.leftPad(10, an.getMinQueueDepth()));
     buf.append(", max: ").append(formatter.leftPad(10, an.getMaxQueueDepth()));
     buf.append(", avg: ").append(formatter.leftPad(10, an.getAvgQueueDepth()));
+    buf.append(", p50: ").append(formatter.leftPad(10, an.getMedianQueueDepth()));
+    buf.append(", p99: ").append(formatter.leftPad(10, an.get99thPercentileQueueDepth()));
 
     return buf;
   }
@@ -75,28 +98,56 @@ class StageMonitorImpl implements StageMonitor {
   }
 
   @Override
-  public synchronized Analysis analyze() {
+  public AnalysisImpl analyze() {
     long elapsed = System.currentTimeMillis() - begin;
-    int min = -1, max = 0;
-    long sum = 0;
-    for (Snapshot snapshot : snapshots) {
-      int qd = snapshot.getQueueDepth();
-      if (qd < min || min < 0) min = qd;
-      if (qd > max) max = qd;
-      sum += qd;
-    }
-
-    return new AnalysisImpl(Long.valueOf(elapsed), Integer.valueOf(snapshots.size()), safeDiv(snapshots.size() * 1000,
-                                                                                              elapsed),
-                            Integer.valueOf(min), Integer.valueOf(max), safeDiv(sum, snapshots.size()));
+    long events = count.sum();
+    long[] buckets = new long[BUCKETS];
+    for (int i = 0; i < BUCKETS; i++) {
+      buckets[i] = histogram.get(i);
+    }
+    int maxDepth = max.get();
+
+    return new AnalysisImpl(Long.valueOf(elapsed), Integer.valueOf((int) Math.min(events, Integer.MAX_VALUE)),
+                            safeDiv(events * 1000, elapsed), Integer.valueOf(min.get()), Integer.valueOf(maxDepth),
+                            safeDiv(sum.sum(), events), Integer.valueOf(percentile(buckets, 0.50, maxDepth)),
+                            Integer.valueOf(percentile(buckets, 0.99, maxDepth)));
   }
 
   @Override
   public synchronized void flush() {
-    snapshots.clear();
+    // events racing with a flush may land on either side of it; close enough for monitoring
+    count.reset();
+    sum.reset();
+    min.set(-1);
+    max.set(0);
+    for (int i = 0; i < BUCKETS; i++) {
+      histogram.set(i, 0);
+    }
     begin = System.currentTimeMillis();
   }
 
+  static int bucketFor(int queueDepth) {
+    return queueDepth <= 0 ? 0 : Integer.SIZE - Integer.numberOfLeadingZeros(queueDepth);
+  }
+
+  private static int percentile(long[] buckets, double fraction, int maxDepth) {
+    long total = 0;
+    for (long b : buckets) {
+      total += b;
+    }
+    if (total == 0) { return -1; }
+    long rank = (long) Math.ceil(total * fraction);
+    long seen = 0;
+    for (int i = 0; i < buckets.length; i++) {
+      seen += buckets[i];
+      if (seen >= rank) {
+        int upper = (i == 0) ? 0 : (int) Math.min((1L << i) - 1, Integer.MAX_VALUE);
+        return Math.min(upper, maxDepth);
+      }
+    }
+    return maxDepth;
+  }
+
   public static class AnalysisImpl implements Analysis {
     private final Number eventCount;
     private final Number eventsPerSecond;
@@ -104,15 +155,19 @@ class StageMonitorImpl implements StageMonitor {
     private final Number maxQueueDepth;
     private final Number avgQueueDepth;
     private final Number elapsedTime;
+    private final Number medianQueueDepth;
+    private final Number p99QueueDepth;
 
     private AnalysisImpl(Number elapsedTime, Number eventCount, Number eventsPerSecond, Number minQueueDepth,
-                         Number maxQueueDepth, Number avgQueueDepth) {
+                         Number maxQueueDepth, Number avgQueueDepth, Number medianQueueDepth, Number p99QueueDepth) {
       this.elapsedTime = elapsedTime;
       this.eventCount = eventCount;
       this.eventsPerSecond = eventsPerSecond;
       this.minQueueDepth = minQueueDepth;
       this.maxQueueDepth = maxQueueDepth;
       this.avgQueueDepth = avgQueueDepth;
+      this.medianQueueDepth = medianQueueDepth;
+      this.p99QueueDepth = p99QueueDepth;
     }
 
     @Override
@@ -145,17 +200,15 @@ class StageMonitorImpl implements StageMonitor {
       return eventCount;
     }
 
-  }
-
-  private static class Snapshot {
-    private final int queueDepth;
-
-    private Snapshot(int queueDepth) {
-      this.queueDepth = queueDepth;
+    @Override
+    public Number getMedianQueueDepth() {
+      return medianQueueDepth;
     }
 
-    public int getQueueDepth() {
-      return queueDepth;
+    @Override
+    public Number get99thPercentileQueueDepth() {
+      return p99QueueDepth;
     }
+
   }
 }
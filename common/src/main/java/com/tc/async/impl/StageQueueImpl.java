@@ -28,12 +28,14 @@ import com.tc.async.api.StageQueueStats;
 import com.tc.exception.TCRuntimeException;
 import com.tc.logging.TCLogger;
 import com.tc.logging.TCLoggerProvider;
+import com.tc.stats.FlightRecorder;
 import com.tc.stats.Stats;
 import com.tc.util.Assert;
 import com.tc.util.concurrent.QueueFactory;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
 
 /**
  * This StageQueueImpl represents the sink and gives a handle to the source. We are internally justun using a queue
@@ -46,6 +48,7 @@ public class StageQueueImpl<EC> implements Sink<EC> {
   private final TCLogger          logger;
   private final SourceQueueImpl<ContextWrapper<EC>>[] sourceQueues;
   private volatile boolean closed = false;
+  private volatile IntConsumer requeueListener;
   /**
    * The Constructor.
    * 
@@ -73,6 +76,7 @@ public class StageQueueImpl<EC> implements Sink<EC> {
   private void createWorkerQueues(int queueCount, QueueFactory<ContextWrapper<EC>> queueFactory, int queueSize, String stage) {
     StageQueueStatsCollector statsCollector = new NullStageQueueStatsCollector(stage);
     BlockingQueue<ContextWrapper<EC>> q = null;
+    int recorderName = FlightRecorder.getInstance().name(stage);
 
     if (queueSize != Integer.MAX_VALUE) {
       queueSize = (int) Math.ceil(((double) queueSize) / queueCount);
@@ -81,7 +85,8 @@ public class StageQueueImpl<EC> implements Sink<EC> {
 
     for (int i = 0; i < queueCount; i++) {
       q = queueFactory.createInstance(queueSize);
-      this.sourceQueues[i] = new SourceQueueImpl<ContextWrapper<EC>>(q, String.valueOf(queueCount), statsCollector);
+      this.sourceQueues[i] = new SourceQueueImpl<ContextWrapper<EC>>(q, String.valueOf(queueCount), statsCollector,
+                                                                     recorderName, i);
     }
   }
 
@@ -89,6 +94,14 @@ public class StageQueueImpl<EC> implements Sink<EC> {
     return (index < 0 || index >= this.sourceQueues.length) ? null : this.sourceQueues[index];
   }
 
+  /**
+   * @param listener told the index of the queue a flushing context has moved on to, for stages which only drain a
+   *        queue once told it has work
+   */
+  void setRequeueListener(IntConsumer listener) {
+    this.requeueListener = listener;
+  }
+
   @Override
   public void setClosed(boolean closed) {
     this.closed = closed;
@@ -126,6 +139,13 @@ public class StageQueueImpl<EC> implements Sink<EC> {
 
   @Override
   public void addMultiThreaded(EC context) {
+    putMultiThreaded(context);
+  }
+
+  /**
+   * @return the index of the queue the context went to
+   */
+  int putMultiThreaded(EC context) {
     Assert.assertNotNull(context);
     Assert.assertTrue(context instanceof MultiThreadedEventContext);
     if (closed) {
@@ -155,10 +175,18 @@ public class StageQueueImpl<EC> implements Sink<EC> {
         Thread.currentThread().interrupt();
       }
     }
+    return index;
   }
 
   @Override
   public void addSpecialized(SpecializedEventContext specialized) {
+    putSpecialized(specialized);
+  }
+
+  /**
+   * @return the index of the queue the context went to
+   */
+  int putSpecialized(SpecializedEventContext specialized) {
     if (closed) {
       throw new IllegalStateException("closed");
     }
@@ -180,6 +208,7 @@ public class StageQueueImpl<EC> implements Sink<EC> {
         Thread.currentThread().interrupt();
       }
     }
+    return index;
   }
   
   private volatile int fcheck = 0;
@@ -315,11 +344,16 @@ public class StageQueueImpl<EC> implements Sink<EC> {
     private final BlockingQueue<W> queue;
     private final String                      sourceName;
     private volatile StageQueueStatsCollector statsCollector;
+    private final int                         recorderName;
+    private final int                         index;
 
-    public SourceQueueImpl(BlockingQueue<W> queue, String sourceName, StageQueueStatsCollector statsCollector) {
+    public SourceQueueImpl(BlockingQueue<W> queue, String sourceName, StageQueueStatsCollector statsCollector,
+                           int recorderName, int index) {
       this.queue = queue;
       this.sourceName = sourceName;
       this.statsCollector = statsCollector;
+      this.recorderName = recorderName;
+      this.index = index;
     }
 
     public StageQueueStatsCollector getStatsCollector() {
@@ -353,6 +387,7 @@ public class StageQueueImpl<EC> implements Sink<EC> {
       W rv = this.queue.poll(timeout, TimeUnit.MILLISECONDS);
       if (rv != null) {
         this.statsCollector.contextRemoved();
+        FlightRecorder.getInstance().record(FlightRecorder.Event.STAGE_DEQUEUE, recorderName, index, queue.size());
       }
       return rv;
     }
@@ -360,6 +395,7 @@ public class StageQueueImpl<EC> implements Sink<EC> {
     public void put(W context) throws InterruptedException {
       this.queue.put(context);
       this.statsCollector.contextAdded();
+      FlightRecorder.getInstance().record(FlightRecorder.Event.STAGE_ENQUEUE, recorderName, index, queue.size());
     }
 
     public int size() {
@@ -527,14 +563,15 @@ public class StageQueueImpl<EC> implements Sink<EC> {
         handler.handleEvent(this.context);
       } else {
 //  move to next queue
+        int next = (executionCount + offset) % sourceQueues.length;
         boolean interrupted = false;
         try {
           while (true) {
             try {
-              sourceQueues[(executionCount + offset) % sourceQueues.length].put(this);
+              sourceQueues[next].put(this);
               break;
             } catch (InterruptedException e) {
-              logger.debug("FlushingHandledContext move to next queue: " + e + " : " + ((executionCount + offset) % sourceQueues.length));
+              logger.debug("FlushingHandledContext move to next queue: " + e + " : " + next);
               interrupted = true;
             }
           }
@@ -543,6 +580,10 @@ public class StageQueueImpl<EC> implements Sink<EC> {
             Thread.currentThread().interrupt();
           }
         }
+        IntConsumer listener = requeueListener;
+        if (listener != null) {
+          listener.accept(next);
+        }
       }
     }
 
@@ -38,4 +38,19 @@ public class TCByteBufferFactoryConfigImpl implements TCByteBufferFactoryConfig
     return (TCPropertiesImpl.getProperties().getInt(TCPropertiesConsts.TC_BYTEBUFFER_COMMON_POOL_MAXCOUNT, 3000));
   }
 
+  @Override
+  public int getSlabMaxClassSize() {
+    return (TCPropertiesImpl.getProperties().getInt(TCPropertiesConsts.TC_BYTEBUFFER_SLAB_MAXCLASS, 1024 * 1024));
+  }
+
+  @Override
+  public int getSlabArenaSize() {
+    return (TCPropertiesImpl.getProperties().getInt(TCPropertiesConsts.TC_BYTEBUFFER_SLAB_ARENA_SIZE, 4 * 1024 * 1024));
+  }
+
+  @Override
+  public long getSlabMaxDirectBytes() {
+    return (TCPropertiesImpl.getProperties().getLong(TCPropertiesConsts.TC_BYTEBUFFER_SLAB_DIRECT_MAX, 128L * 1024 * 1024));
+  }
+
 }
@@ -31,16 +31,25 @@ public class AbstractReconnectConfig implements ReconnectConfig {
   private final int             reconnectSendQueueCap;
   private final int             reconnectMaxDelayedAcks;
   private final int             reconnectSendWindow;
+  private final int             reconnectDelayedAckMillis;
   private static final TCLogger logger = TCLogging.getLogger(AbstractReconnectConfig.class);
 
   public AbstractReconnectConfig(boolean reconnectEnabled, int reconnectTimeout, int reconnectSendQueueCap,
                                  int reconnectMaxDelayedAcks, int reconnectSendWindow, String name) {
+    this(reconnectEnabled, reconnectTimeout, reconnectSendQueueCap, reconnectMaxDelayedAcks, reconnectSendWindow, 0,
+         name);
+  }
+
+  public AbstractReconnectConfig(boolean reconnectEnabled, int reconnectTimeout, int reconnectSendQueueCap,
+                                 int reconnectMaxDelayedAcks, int reconnectSendWindow, int reconnectDelayedAckMillis,
+                                 String name) {
     this.name = name;
     this.reconnectEnabled = reconnectEnabled;
     this.reconnectTimeout = reconnectTimeout;
     this.reconnectSendQueueCap = reconnectSendQueueCap;
     this.reconnectMaxDelayedAcks = reconnectMaxDelayedAcks;
     this.reconnectSendWindow = (reconnectSendWindow > 0 ? reconnectSendWindow : 0);
+    this.reconnectDelayedAckMillis = (reconnectDelayedAckMillis > 0 ? reconnectDelayedAckMillis : 0);
     validateConfig();
   }
 
@@ -84,4 +93,9 @@ public class AbstractReconnectConfig implements ReconnectConfig {
     return reconnectSendWindow;
   }
 
+  @Override
+  public int getDelayedAckMillis() {
+    return reconnectDelayedAckMillis;
+  }
+
 }
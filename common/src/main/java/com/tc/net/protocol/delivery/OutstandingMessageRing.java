@@ -0,0 +1,86 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.net.protocol.delivery;
+
+/**
+ * Array backed FIFO of the messages a {@link SendStateMachine} has sent but not yet seen acked. Sized to the send
+ * window up front and only grows when the window is unbounded, so steady state sending allocates nothing per message.
+ * Not thread safe; the send state machine guards it.
+ */
+class OutstandingMessageRing {
+  private static final int     DEFAULT_CAPACITY = 16;
+
+  private OOOProtocolMessage[] ring;
+  private int                  head;
+  private int                  size;
+
+  OutstandingMessageRing(int expectedCapacity) {
+    this.ring = new OOOProtocolMessage[expectedCapacity > 0 ? expectedCapacity : DEFAULT_CAPACITY];
+  }
+
+  void addLast(OOOProtocolMessage msg) {
+    if (size == ring.length) {
+      grow();
+    }
+    ring[(head + size) % ring.length] = msg;
+    size++;
+  }
+
+  OOOProtocolMessage removeFirst() {
+    if (size == 0) { throw new IllegalStateException("no outstanding messages"); }
+    OOOProtocolMessage msg = ring[head];
+    ring[head] = null;
+    head = (head + 1) % ring.length;
+    size--;
+    return msg;
+  }
+
+  /**
+   * The i'th oldest outstanding message, 0 being the next one to be acked.
+   */
+  OOOProtocolMessage get(int i) {
+    if (i < 0 || i >= size) { throw new IndexOutOfBoundsException(i + " of " + size); }
+    return ring[(head + i) % ring.length];
+  }
+
+  int size() {
+    return size;
+  }
+
+  boolean isEmpty() {
+    return size == 0;
+  }
+
+  void clear() {
+    for (int i = 0; i < size; i++) {
+      ring[(head + i) % ring.length] = null;
+    }
+    head = 0;
+    size = 0;
+  }
+
+  private void grow() {
+    OOOProtocolMessage[] bigger = new OOOProtocolMessage[ring.length * 2];
+    for (int i = 0; i < size; i++) {
+      bigger[i] = ring[(head + i) % ring.length];
+    }
+    ring = bigger;
+    head = 0;
+  }
+}
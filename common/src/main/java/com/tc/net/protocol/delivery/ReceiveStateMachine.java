@@ -18,26 +18,38 @@
  */
 package com.tc.net.protocol.delivery;
 
+import com.tc.logging.TCLogger;
+import com.tc.logging.TCLogging;
 import com.tc.properties.ReconnectConfig;
 import com.tc.util.Assert;
 import com.tc.util.DebugUtil;
 import com.tc.util.UUID;
 
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
 /**
- * State Machine handling message receive for OOO
+ * State Machine handling message receive for OOO. Acks normally ride back on the header of outgoing send messages (see
+ * {@link #ackSequence()}); a standalone ack goes out every maxDelayedAcks messages, or after the delayed ack timeout
+ * when nothing has been sent back in the meantime.
  */
 public class ReceiveStateMachine extends AbstractStateMachine {
+  private static final TCLogger            logger             = TCLogging.getLogger(ReceiveStateMachine.class);
   private final State                      MESSAGE_WAIT_STATE = new MessageWaitState();
   private final int                        maxDelayedAcks;
+  private final int                        delayedAckMillis;
   private final String                     debugId;
   private final OOOProtocolMessageDelivery delivery;
   private static final boolean             debug              = false;
 
   private volatile long                    received           = -1;
   private volatile long                    lastAcked          = -1;
+  private boolean                          ackScheduled       = false;
 
   public ReceiveStateMachine(OOOProtocolMessageDelivery delivery, ReconnectConfig reconnectConfig, boolean isClient) {
     maxDelayedAcks = reconnectConfig.getMaxDelayAcks();
+    delayedAckMillis = reconnectConfig.getDelayedAckMillis();
     this.debugId = (isClient) ? "CLIENT" : "SERVER";
     this.delivery = delivery;
   }
@@ -101,9 +113,46 @@ public class ReceiveStateMachine extends AbstractStateMachine {
       if (!sendAck(next)) {
         debugLog("Failed to send ack:" + next);
       }
+    } else if (delayedAckMillis > 0 && !ackScheduled) {
+      ackScheduled = true;
+      DelayedAckTimer.TIMER.schedule(this::delayedAck, delayedAckMillis, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  private synchronized void delayedAckExpired() {
+    ackScheduled = false;
+    // an outgoing message may have carried the ack since this was scheduled
+    if (!isPaused() && received > lastAcked) {
+      if (!sendAck(received)) {
+        debugLog("Failed to send delayed ack:" + received);
+      }
     }
   }
 
+  /**
+   * Runs on the shared timer thread, so nothing one connection does here, such as a connection reset or closed since
+   * the ack was scheduled, may escape to the other connections' acks.
+   */
+  private void delayedAck() {
+    try {
+      delayedAckExpired();
+    } catch (Throwable t) {
+      logger.warn("Failed to send delayed ack for " + delivery.getConnectionId(), t);
+    }
+  }
+
+  /**
+   * One daemon thread shared by every connection; each task only builds and sends an ack, so it never holds the thread
+   * for long.
+   */
+  private static class DelayedAckTimer {
+    static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread thread = new Thread(r, "OOO Delayed Ack Timer");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
   private boolean sendAck(long seq) {
     OOOProtocolMessage opm = delivery.createAckMessage(seq);
     Assert.assertTrue(!opm.getSessionId().equals(UUID.NULL_ID));
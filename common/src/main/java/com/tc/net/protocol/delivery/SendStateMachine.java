@@ -26,8 +26,6 @@ import com.tc.util.Assert;
 import com.tc.util.DebugUtil;
 import com.tc.util.Util;
 
-import java.util.LinkedList;
-import java.util.ListIterator;
 import java.util.concurrent.LinkedBlockingQueue;
 
 /**
@@ -42,7 +40,7 @@ public class SendStateMachine extends AbstractStateMachine {
   final State                              PAUSED_STATE          = new PausedState();
 
   private final OOOProtocolMessageDelivery delivery;
-  private final LinkedList<OOOProtocolMessage> outstandingMsgs       = new LinkedList<OOOProtocolMessage>();
+  private final OutstandingMessageRing     outstandingMsgs;
   private final int                        sendWindow;
   private final boolean                    isClient;
   private final String                     debugId;
@@ -59,6 +57,7 @@ public class SendStateMachine extends AbstractStateMachine {
     this.delivery = delivery;
     // set sendWindow from tc.properties if exist. 0 to disable window send.
     sendWindow = reconnectConfig.getSendWindow();
+    outstandingMsgs = new OutstandingMessageRing(sendWindow);
     int queueCap = reconnectConfig.getSendQueueCapacity();
     this.sendQueueCap = (queueCap == 0) ? Integer.MAX_VALUE : queueCap;
     this.sendQueue = new LinkedBlockingQueue<TCNetworkMessage>(this.sendQueueCap);
@@ -266,15 +265,13 @@ public class SendStateMachine extends AbstractStateMachine {
     final OOOProtocolMessage opm = delivery.createProtocolMessage(count, dequeue(sendQueue));
     Assert.eval(opm != null);
     outstandingCnt++;
-    outstandingMsgs.add(opm);
+    outstandingMsgs.addLast(opm);
     return (opm);
   }
 
-  private void resendOutstandings() { 
-    ListIterator<OOOProtocolMessage> it = outstandingMsgs.listIterator(0);
-    while (it.hasNext()) {
-      OOOProtocolMessage msg = it.next();
-      delivery.sendMessage(msg);
+  private void resendOutstandings() {
+    for (int i = 0; i < outstandingMsgs.size(); i++) {
+      delivery.sendMessage(outstandingMsgs.get(i));
     }
   }
 
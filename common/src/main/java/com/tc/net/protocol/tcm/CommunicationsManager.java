@@ -24,6 +24,7 @@ import com.tc.net.core.ConnectionAddressProvider;
 import com.tc.net.core.TCConnectionManager;
 import com.tc.net.protocol.transport.ConnectionIDFactory;
 import com.tc.net.protocol.transport.MessageTransportFactory;
+import com.tc.net.protocol.transport.ReconnectAdmission;
 import com.tc.net.protocol.transport.WireProtocolMessageSink;
 import com.tc.object.session.SessionProvider;
 
@@ -73,6 +74,11 @@ public interface CommunicationsManager {
                                                   ConnectionAddressProvider addressProvider,
                                                   MessageTransportFactory transportFactory);
 
+  /**
+   * Paces reconnects of existing connections to listeners created after this call.
+   */
+  public void setReconnectAdmission(ReconnectAdmission reconnectAdmission);
+
   public NetworkListener createListener(SessionProvider sessionProvider, TCSocketAddress addr,
                                         boolean transportDisconnectRemovesChannel,
                                         ConnectionIDFactory connectionIdFactory);
@@ -49,6 +49,8 @@ import com.tc.net.protocol.transport.HealthCheckerConfig;
 import com.tc.net.protocol.transport.MessageTransport;
 import com.tc.net.protocol.transport.MessageTransportFactory;
 import com.tc.net.protocol.transport.MessageTransportListener;
+import com.tc.net.protocol.transport.NullReconnectAdmission;
+import com.tc.net.protocol.transport.ReconnectAdmission;
 import com.tc.net.protocol.transport.ReconnectionRejectedHandler;
 import com.tc.net.protocol.transport.ReconnectionRejectedHandlerL1;
 import com.tc.net.protocol.transport.ReconnectionRejectedHandlerL2;
@@ -98,6 +100,7 @@ public class CommunicationsManagerImpl implements CommunicationsManager {
   private final TCMessageRouter                                                messageRouter;
   private final HealthCheckerConfig                                            healthCheckerConfig;
   private final ConnectionPolicy                                               connectionPolicy;
+  private volatile ReconnectAdmission                                          reconnectAdmission = new NullReconnectAdmission();
   private final ReconnectionRejectedHandler                                    reconnectionRejectedHandler;
   protected final ProductID                                                    productId;
   protected final ConcurrentHashMap<TCMessageType, Class<? extends TCMessage>> messageTypeClassMapping   = new ConcurrentHashMap<TCMessageType, Class<? extends TCMessage>>();
@@ -315,6 +318,11 @@ public class CommunicationsManagerImpl implements CommunicationsManager {
   /**
    * Creates a network listener with a default network stack.
    */
+  @Override
+  public void setReconnectAdmission(ReconnectAdmission reconnectAdmission) {
+    this.reconnectAdmission = reconnectAdmission;
+  }
+
   @Override
   public NetworkListener createListener(SessionProvider sessionProvider, TCSocketAddress addr,
                                         boolean transportDisconnectRemovesChannel,
@@ -410,7 +418,7 @@ public class CommunicationsManagerImpl implements CommunicationsManager {
     ServerStackProvider stackProvider = new ServerStackProvider(initialConnectionIDs, stackHarnessFactory,
                                                                 channelFactory, transportFactory,
                                                                 this.transportMessageFactory, connectionIdFactory,
-                                                                this.connectionPolicy,
+                                                                this.connectionPolicy, this.reconnectAdmission,
                                                                 new WireProtocolAdaptorFactoryImpl(),
                                                                 wireProtocolMessageSink, licenseLock,
                                                                 this.commsMgrName, this.securityManager);
@@ -25,6 +25,8 @@ public class HydrateContext<T> implements MultiThreadedEventContext {
 
   private final Sink<T>      destSink;
   private final TCMessage message;
+  private OrderedHydrateSink sequencer;
+  private long               sequence;
 
   public HydrateContext(TCMessage message, Sink<T> destSink) {
     this.message = message;
@@ -39,9 +41,48 @@ public class HydrateContext<T> implements MultiThreadedEventContext {
     return message;
   }
 
+  void sequence(OrderedHydrateSink sequencer, long sequence) {
+    this.sequencer = sequencer;
+    this.sequence = sequence;
+  }
+
+  long getSequence() {
+    return sequence;
+  }
+
+  /**
+   * Hands the hydrated message to its destination, or to the sequencer which releases messages hydrated in parallel
+   * in the order they were received.
+   */
+  void hydrated() {
+    if (sequencer != null) {
+      sequencer.release(this, true);
+    } else {
+      deliver();
+    }
+  }
+
+  void failed() {
+    if (sequencer != null) {
+      sequencer.release(this, false);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  void deliver() {
+    // TODO: Rationalize this hack to explicitly know whether this is multi-threaded, or not.
+    // This hack is just a stop-gap to phase in the SEDA types in smaller changes.
+    if (message instanceof MultiThreadedEventContext) {
+      destSink.addMultiThreaded((T) message);
+    } else {
+      destSink.addSingleThreaded((T) message);
+    }
+  }
+
   @Override
   public Object getSchedulingKey() {
-    return message.getSourceNodeID();
+    // sequenced messages can be hydrated on any queue, the sequencer restores their order
+    return (sequencer != null) ? null : message.getSourceNodeID();
   }
   
   @Override
@@ -19,7 +19,6 @@
 package com.tc.net.protocol.tcm;
 
 import com.tc.async.api.AbstractEventHandler;
-import com.tc.async.api.MultiThreadedEventContext;
 import com.tc.logging.TCLogger;
 import com.tc.logging.TCLogging;
 
@@ -39,15 +38,10 @@ public class HydrateHandler extends AbstractEventHandler<HydrateContext> {
         // oh well
       }
       message.getChannel().close();
+      hc.failed();
       return;
     }
-    // TODO: Rationalize this hack to explicitly know whether this is multi-threaded, or not.
-    // This hack is just a stop-gap to phase in the SEDA types in smaller changes.
-    if (message instanceof MultiThreadedEventContext) {
-      hc.getDestSink().addMultiThreaded(message);
-    } else {
-      hc.getDestSink().addSingleThreaded(message);
-    }
+    hc.hydrated();
   }
 
 }
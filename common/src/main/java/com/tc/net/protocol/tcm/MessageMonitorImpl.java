@@ -29,15 +29,18 @@ import java.util.Map;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.TreeMap;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Counts messages and bytes per message type. Counters live in an array indexed by {@link TCMessageType#getType()}
+ * and are created up front, so recording a message is a couple of uncontended adds with no lookup or locking.
+ */
 public class MessageMonitorImpl implements MessageMonitor {
 
-  private final Map<TCMessageType, MessageCounter> counters     = new TreeMap<TCMessageType, MessageCounter>(
-                                                                                                             new TCMessageTypeComparator());
-  private final StringFormatter                    formatter    = new StringFormatter();
-  private final Timer                              timer;
-  private int                                      maxTypeWidth = 0;
+  private final MessageCounter[] counters;
+  private final StringFormatter  formatter = new StringFormatter();
+  private final Timer            timer;
+  private final int              maxTypeWidth;
 
   public static MessageMonitor createMonitor(TCProperties tcProps, TCLogger logger) {
     final MessageMonitor mm;
@@ -53,6 +56,16 @@ public class MessageMonitorImpl implements MessageMonitor {
 
   public MessageMonitorImpl() {
     this.timer = new Timer("MessageMonitor logger", true);
+    this.counters = new MessageCounter[TCMessageType.TYPE_LAST_MESSAGE_DO_NOT_USE + 1];
+    int width = 0;
+    for (int i = 1; i < counters.length; i++) {
+      TCMessageType type = TCMessageType.getInstance(i);
+      if (type != null) {
+        counters[i] = new MessageCounter(formatter, type);
+        width = Math.max(width, type.getTypeName().length());
+      }
+    }
+    this.maxTypeWidth = width;
   }
 
   public void startLogging(final TCLogger logger, int intervalSeconds) {
@@ -69,28 +82,29 @@ public class MessageMonitorImpl implements MessageMonitor {
 
   @Override
   public void newIncomingMessage(TCMessage message) {
-    getOrCreateMessageCounter(message.getMessageType()).newIncomingMessage(message);
+    getMessageCounter(message.getMessageType()).newIncomingMessage(message);
   }
 
   @Override
   public void newOutgoingMessage(TCMessage message) {
-    getOrCreateMessageCounter(message.getMessageType()).newOutgoingMessage(message);
+    getMessageCounter(message.getMessageType()).newOutgoingMessage(message);
   }
 
-  private MessageCounter getOrCreateMessageCounter(TCMessageType type) {
-    synchronized (counters) {
-      MessageCounter rv = counters.get(type);
-      if (rv == null) {
-        maxTypeWidth = Math.max(maxTypeWidth, type.getTypeName().length());
-        rv = new MessageCounter(formatter, type.getTypeName());
-        counters.put(type, rv);
-      }
-      return rv;
-    }
+  private MessageCounter getMessageCounter(TCMessageType type) {
+    return counters[type.getType()];
   }
 
+  /**
+   * Counters for the message types that have seen any traffic, ordered by type name.
+   */
   public Map<TCMessageType, MessageCounter> getCounters() {
-    return counters;
+    Map<TCMessageType, MessageCounter> rv = new TreeMap<TCMessageType, MessageCounter>(new TCMessageTypeComparator());
+    for (MessageCounter counter : counters) {
+      if (counter != null && counter.isActive()) {
+        rv.put(counter.getType(), counter);
+      }
+    }
+    return rv;
   }
 
   @Override
@@ -98,64 +112,70 @@ public class MessageMonitorImpl implements MessageMonitor {
     String nl = System.getProperty("line.separator");
     StringBuffer rv = new StringBuffer(nl);
 
-    synchronized (counters) {
-      for (MessageCounter counter : counters.values()) {
-        rv.append(counter.toString(maxTypeWidth)).append(nl);
-      }
+    for (MessageCounter counter : getCounters().values()) {
+      rv.append(counter.toString(maxTypeWidth)).append(nl);
     }
 
     return rv.toString();
   }
 
   public static class MessageCounter {
-    private final AtomicLong      incomingCount = new AtomicLong(0);
-    private final AtomicLong      incomingData  = new AtomicLong(0);
+    private final LongAdder       incomingCount = new LongAdder();
+    private final LongAdder       incomingData  = new LongAdder();
 
-    private final AtomicLong      outgoingCount = new AtomicLong(0);
-    private final AtomicLong      outgoingData  = new AtomicLong(0);
+    private final LongAdder       outgoingCount = new LongAdder();
+    private final LongAdder       outgoingData  = new LongAdder();
     private final StringFormatter formatter;
-    private final String          name;
+    private final TCMessageType   type;
 
-    private MessageCounter(StringFormatter formatter, String name) {
+    private MessageCounter(StringFormatter formatter, TCMessageType type) {
       this.formatter = formatter;
-      this.name = name;
+      this.type = type;
+    }
+
+    private void newIncomingMessage(TCMessage message) {
+      incomingCount.increment();
+      incomingData.add(message.getTotalLength());
     }
 
-    private synchronized void newIncomingMessage(TCMessage message) {
-      incomingCount.incrementAndGet();
-      incomingData.addAndGet(message.getTotalLength());
+    private void newOutgoingMessage(TCMessage message) {
+      outgoingCount.increment();
+      outgoingData.add(message.getTotalLength());
     }
 
-    private synchronized void newOutgoingMessage(TCMessage message) {
-      outgoingCount.incrementAndGet();
-      outgoingData.addAndGet(message.getTotalLength());
+    private boolean isActive() {
+      return incomingCount.sum() > 0 || outgoingCount.sum() > 0;
     }
 
     public String toString(int nameWidth) {
-      return formatter.rightPad(nameWidth, name) + " | IN: " + formatter.leftPad(15, incomingCount) + ", "
-             + formatter.leftPad(30, incomingData) + " bytes " + "| OUT: " + formatter.leftPad(15, outgoingCount)
-             + ", " + formatter.leftPad(30, outgoingData) + " bytes";
+      return formatter.rightPad(nameWidth, getName()) + " | IN: " + formatter.leftPad(15, getIncomingCount()) + ", "
+             + formatter.leftPad(30, getIncomingData()) + " bytes " + "| OUT: "
+             + formatter.leftPad(15, getOutgoingCount()) + ", " + formatter.leftPad(30, getOutgoingData()) + " bytes";
 
     }
 
-    public AtomicLong getIncomingCount() {
-      return incomingCount;
+    public long getIncomingCount() {
+      return incomingCount.sum();
     }
 
-    public AtomicLong getIncomingData() {
-      return incomingData;
+    public long getIncomingData() {
+      return incomingData.sum();
     }
 
-    public AtomicLong getOutgoingCount() {
-      return outgoingCount;
+    public long getOutgoingCount() {
+      return outgoingCount.sum();
     }
 
-    public AtomicLong getOutgoingData() {
-      return outgoingData;
+    public long getOutgoingData() {
+      return outgoingData.sum();
     }
 
     public String getName() {
-      return name;
+      return type.getTypeName();
+    }
+
+    TCMessageType getType() {
+      return type;
     }
   }
 
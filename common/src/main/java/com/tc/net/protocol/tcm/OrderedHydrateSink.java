@@ -0,0 +1,168 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.net.protocol.tcm;
+
+import com.tc.async.api.Sink;
+import com.tc.async.api.SpecializedEventContext;
+import com.tc.stats.Stats;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Lets a multi-threaded hydrate stage decode the messages of a channel in parallel while their destinations still see
+ * them in the order they were received. Every context is numbered on the way in; once hydrated it is held back until
+ * all the contexts numbered before it have been delivered (or have failed to hydrate).
+ * <p>
+ * Destination stages can then spread the messages again by their own scheduling key, e.g. per entity.
+ * <p>
+ * Delivery happens outside the lock, so a destination stage which is full only holds up the thread delivering to it and
+ * never the network reader adding contexts. One thread at a time drains the released contexts, which keeps them in
+ * order; others finding a drain in progress leave their context for it.
+ * <p>
+ * Only {@link TCMessageSinkToSedaSink} feeds this sink, and it only ever adds contexts multi-threaded. A context added
+ * any other way would carry no sequence number, so those calls are refused.
+ */
+public class OrderedHydrateSink implements Sink<HydrateContext> {
+
+  private final Sink<HydrateContext>      sink;
+  private final Map<Long, HydrateContext> pending = new TreeMap<Long, HydrateContext>();
+  private long                            assigned;
+  private long                            released;
+  // guarded by pending, set while a thread is delivering released contexts
+  private boolean                         draining;
+
+  public OrderedHydrateSink(Sink<HydrateContext> sink) {
+    this.sink = sink;
+  }
+
+  @Override
+  public void addSingleThreaded(HydrateContext context) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public void addMultiThreaded(HydrateContext context) {
+    synchronized (pending) {
+      context.sequence(this, assigned++);
+    }
+    try {
+      sink.addMultiThreaded(context);
+    } catch (RuntimeException e) {
+      // never hydrated, don't let it hold back the ones behind it
+      release(context, false);
+      throw e;
+    }
+  }
+
+  @Override
+  public void addSpecialized(SpecializedEventContext specialized) {
+    throw new UnsupportedOperationException();
+  }
+
+  void release(HydrateContext context, boolean hydrated) {
+    synchronized (pending) {
+      if (context.getSequence() < released) {
+        // assigned before a clear
+        return;
+      }
+      // failed contexts are kept as placeholders so the sequence has no gap
+      pending.put(context.getSequence(), hydrated ? context : null);
+      if (draining) {
+        return;
+      }
+      draining = true;
+    }
+    List<HydrateContext> ready = new ArrayList<HydrateContext>();
+    boolean drained = false;
+    try {
+      while (true) {
+        synchronized (pending) {
+          while (pending.containsKey(released)) {
+            HydrateContext next = pending.remove(released++);
+            if (next != null) {
+              ready.add(next);
+            }
+          }
+          if (ready.isEmpty()) {
+            draining = false;
+            drained = true;
+            return;
+          }
+        }
+        for (HydrateContext next : ready) {
+          next.deliver();
+        }
+        ready.clear();
+      }
+    } finally {
+      if (!drained) {
+        synchronized (pending) {
+          draining = false;
+        }
+      }
+    }
+  }
+
+  @Override
+  public int size() {
+    return sink.size();
+  }
+
+  @Override
+  public void clear() {
+    synchronized (pending) {
+      sink.clear();
+      pending.clear();
+      released = assigned;
+    }
+  }
+
+  @Override
+  public void setClosed(boolean closed) {
+    sink.setClosed(closed);
+  }
+
+  @Override
+  public void enableStatsCollection(boolean enable) {
+    sink.enableStatsCollection(enable);
+  }
+
+  @Override
+  public boolean isStatsCollectionEnabled() {
+    return sink.isStatsCollectionEnabled();
+  }
+
+  @Override
+  public Stats getStats(long frequency) {
+    return sink.getStats(frequency);
+  }
+
+  @Override
+  public Stats getStatsAndReset(long frequency) {
+    return sink.getStatsAndReset(frequency);
+  }
+
+  @Override
+  public void resetStats() {
+    sink.resetStats();
+  }
+}
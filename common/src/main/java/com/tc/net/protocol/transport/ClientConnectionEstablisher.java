@@ -43,6 +43,7 @@ import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.util.LinkedList;
 import java.util.Queue;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
@@ -259,6 +260,8 @@ public class ClientConnectionEstablisher {
           } catch (ReconnectionRejectedException e) {
             reconnectionRejected = true;
             handleConnectException(e, false, connectionErrorLossyLogger, connection);
+          } catch (ReconnectionDeferredException e) {
+            handleReconnectDeferred(e, connectionErrorLossyLogger, connection);
           } catch (TCTimeoutException e) {
             handleConnectException(e, true, connectionErrorLossyLogger, connection);
           } catch (IOException e) {
@@ -318,6 +321,8 @@ public class ClientConnectionEstablisher {
         } catch (ReconnectionRejectedException e) {
           reconnectionRejected = true;
           handleConnectException(e, false, cmt.getLogger(), connection);
+        } catch (ReconnectionDeferredException e) {
+          handleReconnectDeferred(e, cmt.getLogger(), connection);
         } catch (IOException e) {
           handleConnectException(e, false, cmt.getLogger(), connection);
         } catch (Exception e) {
@@ -355,6 +360,24 @@ public class ClientConnectionEstablisher {
     }
   }
 
+  /**
+   * The server is pacing reconnects.  Wait at least as long as it asked, plus up to half as long again so that all the
+   * clients it deferred together don't come back together.
+   */
+  private void handleReconnectDeferred(ReconnectionDeferredException e, TCLogger logger, TCConnection connection) {
+    if (connection != null) {
+      connection.close(100);
+    }
+    long retryAfter = Math.max(MIN_RETRY_INTERVAL, e.getRetryAfterMillis());
+    long backoff = retryAfter + ThreadLocalRandom.current().nextLong(retryAfter / 2 + 1);
+    logger.info(e.getMessage() + ", waiting " + backoff + " ms");
+    try {
+      Thread.sleep(backoff);
+    } catch (InterruptedException e1) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
   public void asyncReconnect(ClientMessageTransport cmt) {
     putConnectionRequest(ConnectionRequest.newReconnectRequest(cmt));
   }
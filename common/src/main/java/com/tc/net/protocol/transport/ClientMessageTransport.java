@@ -147,6 +147,8 @@ public class ClientMessageTransport extends MessageTransportBase {
           fireTransportReconnectionRejectedEvent();
           throw new ReconnectionRejectedException(
                                                   "Reconnection rejected by L2 due to stack not found. Client will be unable to join the cluster again unless rejoin is enabled.");
+        case TransportHandshakeError.ERROR_RETRY_LATER:
+          throw new ReconnectionDeferredException(result.retryAfterMillis());
         default:
           throw new TransportHandshakeException("Disconnected due to transport handshake error");
       }
@@ -406,6 +408,10 @@ public class ClientMessageTransport extends MessageTransportBase {
       return this.synAck.isMaxConnectionsExceeded() || this.synAck.hasErrorContext();
     }
 
+    public long retryAfterMillis() {
+      return this.synAck.getRetryAfterMillis();
+    }
+
     public short getErrorType() {
       if (this.synAck.isMaxConnectionsExceeded()) {
         return TransportHandshakeError.ERROR_MAX_CONNECTION_EXCEED;
@@ -0,0 +1,32 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.net.protocol.transport;
+
+/**
+ * Decides whether a client reconnecting an existing connection may proceed with its transport handshake now, so the
+ * server can pace a reconnect storm instead of taking every handshake at once.
+ */
+public interface ReconnectAdmission {
+
+  /**
+   * @return 0 if the reconnect may go ahead, otherwise the number of milliseconds the client should wait before trying
+   *         again
+   */
+  public long admitReconnect(ConnectionID connectionId);
+}
@@ -0,0 +1,36 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.net.protocol.transport;
+
+/**
+ * The server is admitting reconnects at a limited rate and asked this client to come back later.
+ */
+public class ReconnectionDeferredException extends TransportHandshakeException {
+
+  private final long retryAfterMillis;
+
+  ReconnectionDeferredException(long retryAfterMillis) {
+    super("Reconnect deferred by server, retry after " + retryAfterMillis + " ms");
+    this.retryAfterMillis = retryAfterMillis;
+  }
+
+  public long getRetryAfterMillis() {
+    return this.retryAfterMillis;
+  }
+}
@@ -55,6 +55,7 @@ public class ServerStackProvider implements NetworkStackProvider, MessageTranspo
   private final TransportHandshakeMessageFactory handshakeMessageFactory;
   private final ConnectionIDFactory              connectionIdFactory;
   private final ConnectionPolicy                 connectionPolicy;
+  private final ReconnectAdmission               reconnectAdmission;
   private final WireProtocolAdaptorFactory       wireProtocolAdaptorFactory;
   private final WireProtocolMessageSink          wireProtoMsgsink;
   private final TCSecurityManager                securityManager;
@@ -71,8 +72,8 @@ public class ServerStackProvider implements NetworkStackProvider, MessageTranspo
                              ConnectionIDFactory connectionIdFactory, ConnectionPolicy connectionPolicy,
                              WireProtocolAdaptorFactory wireProtocolAdaptorFactory, ReentrantLock licenseLock) {
     this(initialConnectionIDs, harnessFactory, channelFactory, messageTransportFactory,
-         handshakeMessageFactory, connectionIdFactory, connectionPolicy, wireProtocolAdaptorFactory, null, licenseLock,
-         CommunicationsManager.COMMSMGR_SERVER, null);
+         handshakeMessageFactory, connectionIdFactory, connectionPolicy, new NullReconnectAdmission(),
+         wireProtocolAdaptorFactory, null, licenseLock, CommunicationsManager.COMMSMGR_SERVER, null);
   }
 
   public ServerStackProvider(Set<ConnectionID>  initialConnectionIDs, NetworkStackHarnessFactory harnessFactory,
@@ -80,11 +81,13 @@ public class ServerStackProvider implements NetworkStackProvider, MessageTranspo
                              MessageTransportFactory messageTransportFactory,
                              TransportHandshakeMessageFactory handshakeMessageFactory,
                              ConnectionIDFactory connectionIdFactory, ConnectionPolicy connectionPolicy,
+                             ReconnectAdmission reconnectAdmission,
                              WireProtocolAdaptorFactory wireProtocolAdaptorFactory,
                              WireProtocolMessageSink wireProtoMsgSink, ReentrantLock licenseLock,
                              String commsMgrName, TCSecurityManager securityManager) {
     this.messageTransportFactory = messageTransportFactory;
     this.connectionPolicy = connectionPolicy;
+    this.reconnectAdmission = reconnectAdmission;
     this.wireProtocolAdaptorFactory = wireProtocolAdaptorFactory;
     this.wireProtoMsgsink = wireProtoMsgSink;
     this.securityManager = securityManager;
@@ -305,6 +308,21 @@ public class ServerStackProvider implements NetworkStackProvider, MessageTranspo
         return;
       }
 
+      if (!connectionId.isNewConnection()) {
+        long retryAfter = reconnectAdmission.admitReconnect(connectionId);
+        if (retryAfter > 0) {
+          // Leave the existing stack alone, the client keeps its connection id and comes back after retryAfter.
+          if (logger.isDebugEnabled()) {
+            logger.debug("Deferring reconnect of " + connectionId + " for " + retryAfter + " ms");
+          }
+          syn.getSource().putMessage(handshakeMessageFactory.createSynAck(connectionId,
+              new TransportHandshakeErrorContext("Reconnect deferred", retryAfter),
+              syn.getSource(), false, connectionPolicy.getMaxConnections()));
+          this.isHandshakeError = true;
+          return;
+        }
+      }
+
       /*
        * New Clients after max License Count are not given any valid clientID. clients anyway close after seeing max
        * connection error message from server.
@@ -22,6 +22,7 @@ public class TransportHandshakeErrorContext implements TransportHandshakeError {
   private String    message;
   private short     errorType;
   private Throwable throwable;
+  private long      retryAfterMillis;
 
   public TransportHandshakeErrorContext(String message) {
     this.message = message;
@@ -39,6 +40,14 @@ public class TransportHandshakeErrorContext implements TransportHandshakeError {
     this.errorType = errorType;
   }
 
+  /**
+   * An ERROR_RETRY_LATER telling the client when to come back.
+   */
+  public TransportHandshakeErrorContext(String message, long retryAfterMillis) {
+    this(message, ERROR_RETRY_LATER);
+    this.retryAfterMillis = retryAfterMillis;
+  }
+
   @Override
   public String getMessage() {
     return message;
@@ -49,6 +58,11 @@ public class TransportHandshakeErrorContext implements TransportHandshakeError {
     return errorType;
   }
 
+  @Override
+  public long getRetryAfterMillis() {
+    return retryAfterMillis;
+  }
+
   @Override
   public String toString() {
     StringBuffer rv = new StringBuffer(getClass().getName() + ": " + this.message);
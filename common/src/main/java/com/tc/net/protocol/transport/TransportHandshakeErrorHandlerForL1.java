@@ -33,6 +33,8 @@ public class TransportHandshakeErrorHandlerForL1 implements TransportHandshakeEr
     } else if (e.getErrorType() == TransportHandshakeError.ERROR_RECONNECTION_REJECTED) {
       // do not log here because ClientChannelEventController will be logging this event as
       // TRANSPORT_RECONNECTION_REJECTED_EVENT
+    } else if (e.getErrorType() == TransportHandshakeError.ERROR_RETRY_LATER) {
+      // not an error, the server is pacing reconnects and ClientConnectionEstablisher waits as asked
     } else {
       consoleLogger.error(e);
     }
@@ -41,13 +43,15 @@ public class TransportHandshakeErrorHandlerForL1 implements TransportHandshakeEr
      * These errors don't need sleep time before the next connect attempt. 1. ERROR_RECONNECTION_REJECTED: we want to
      * throw the rejected event asap so that rejoin will be attempted immediately. 2. ERROR_MAX_CONNECTION_EXCEED,
      * ERROR_STACK_MISMATCH : Client will be anyway killed at top layer by DOClient. However, Invalid ConnectionID and
-     * other generic errors can be given some sleep time before the next connection attempt.
+     * other generic errors can be given some sleep time before the next connection attempt. 3. ERROR_RETRY_LATER:
+     * ClientConnectionEstablisher sleeps for as long as the server asked.
      */
 
     switch (e.getErrorType()) {
       case TransportHandshakeError.ERROR_STACK_MISMATCH:
       case TransportHandshakeError.ERROR_MAX_CONNECTION_EXCEED:
       case TransportHandshakeError.ERROR_RECONNECTION_REJECTED:
+      case TransportHandshakeError.ERROR_RETRY_LATER:
         // no sleep;
         break;
       default:
@@ -62,6 +62,9 @@ public class TestClientHandshakeMessage extends TestTCMessage implements ClientH
   private int                   pid;
   private final Set<ClientEntityReferenceContext> reconnectReferenceSet = new HashSet<ClientEntityReferenceContext>();
   private final Set<ResendVoltronEntityMessage> resendMessageSet = new HashSet<ResendVoltronEntityMessage>();
+  private int                   streamedResendCount;
+  private int                   resendChunkSequence            = -1;
+  private boolean               lastResendChunk;
 
   @Override
   public boolean send() {
@@ -193,4 +196,37 @@ public class TestClientHandshakeMessage extends TestTCMessage implements ClientH
   public Collection<ResendVoltronEntityMessage> getResendMessages() {
     return this.resendMessageSet;
   }
+
+  @Override
+  public Collection<ResendVoltronEntityMessage> takeResendMessages() {
+    Collection<ResendVoltronEntityMessage> taken = new ArrayList<ResendVoltronEntityMessage>(this.resendMessageSet);
+    this.resendMessageSet.clear();
+    return taken;
+  }
+
+  @Override
+  public void setStreamedResendCount(int count) {
+    this.streamedResendCount = count;
+  }
+
+  @Override
+  public int getStreamedResendCount() {
+    return this.streamedResendCount;
+  }
+
+  @Override
+  public void setResendChunk(int sequence, boolean last) {
+    this.resendChunkSequence = sequence;
+    this.lastResendChunk = last;
+  }
+
+  @Override
+  public int getResendChunkSequence() {
+    return this.resendChunkSequence;
+  }
+
+  @Override
+  public boolean isLastResendChunk() {
+    return this.lastResendChunk;
+  }
 }
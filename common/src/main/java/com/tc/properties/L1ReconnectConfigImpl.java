@@ -29,7 +29,8 @@ public class L1ReconnectConfigImpl extends AbstractReconnectConfig {
         .getProperties().getInt(TCPropertiesConsts.L2_L1RECONNECT_TIMEOUT_MILLS), TCPropertiesImpl.getProperties()
         .getInt(TCPropertiesConsts.L2_L1RECONNECT_SENDQUEUE_CAP), TCPropertiesImpl.getProperties()
         .getInt(TCPropertiesConsts.L2_L1RECONNECT_MAX_DELAYEDACKS), TCPropertiesImpl.getProperties()
-        .getInt(TCPropertiesConsts.L2_L1RECONNECT_SEND_WINDOW), NAME);
+        .getInt(TCPropertiesConsts.L2_L1RECONNECT_SEND_WINDOW), TCPropertiesImpl.getProperties()
+        .getInt(TCPropertiesConsts.L2_L1RECONNECT_DELAYEDACK_MILLIS), NAME);
   }
 
   public L1ReconnectConfigImpl(boolean l1ReconnectEnabled, int l1ReconnectTimeout, int l1ReconnectSendQueueCap,
@@ -38,4 +39,10 @@ public class L1ReconnectConfigImpl extends AbstractReconnectConfig {
           l1ReconnectSendWindow, NAME);
   }
 
+  public L1ReconnectConfigImpl(boolean l1ReconnectEnabled, int l1ReconnectTimeout, int l1ReconnectSendQueueCap,
+                               int l1ReconnectMaxDelayedAcks, int l1ReconnectSendWindow, int l1ReconnectDelayedAckMillis) {
+    super(l1ReconnectEnabled, l1ReconnectTimeout, l1ReconnectSendQueueCap, l1ReconnectMaxDelayedAcks,
+          l1ReconnectSendWindow, l1ReconnectDelayedAckMillis, NAME);
+  }
+
 }
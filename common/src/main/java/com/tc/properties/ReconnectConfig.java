@@ -29,5 +29,11 @@ public interface ReconnectConfig {
   int getMaxDelayAcks();
   
   int getSendWindow();
+
+  /**
+   * Longest a receiver may sit on unacknowledged messages when there is no outgoing traffic to carry the ack. 0 means
+   * acks are only sent every {@link #getMaxDelayAcks()} messages.
+   */
+  int getDelayedAckMillis();
   
 }
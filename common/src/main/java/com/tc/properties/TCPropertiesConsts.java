@@ -45,9 +45,26 @@ public interface TCPropertiesConsts {
    *                                      seda stage
    * stage.sink.capacity                : Capacity of seda stage queue, Integer.MAX_VALUE if not set
    *                                      (experimental, do not change)
+   * server.entity.processor.elastic.enabled : If true the entity request processor runs on a pool sized from
+   *                                      the observed wait/compute ratio of its threads, unless
+   *                                      server.entity.processor.threads fixes the thread count (off by default)
+   * server.entity.processor.elastic.min.threads : Lower bound of the elastic pool
+   * server.entity.processor.elastic.max.threads : Upper bound of the elastic pool
+   * server.entity.processor.elastic.queues : Number of queues concurrency keys are spread over, fixed
+   *                                      whatever the size of the pool
+   * server.entity.processor.elastic.sample.interval : Milliseconds between two resizes of the pool
+   * server.entity.processor.virtual.threads : If true and the JVM has virtual threads, every queue of the
+   *                                      entity request processor is drained on a virtual thread of its own;
+   *                                      takes precedence over the elastic pool
    * </code>
    ********************************************************************************************************************/
   public static final String ENTITY_PROCESSOR_THREADS                                    = "server.entity.processor.threads";
+  public static final String ENTITY_PROCESSOR_ELASTIC_ENABLED                               = "server.entity.processor.elastic.enabled";
+  public static final String ENTITY_PROCESSOR_ELASTIC_MIN_THREADS                           = "server.entity.processor.elastic.min.threads";
+  public static final String ENTITY_PROCESSOR_ELASTIC_MAX_THREADS                           = "server.entity.processor.elastic.max.threads";
+  public static final String ENTITY_PROCESSOR_ELASTIC_QUEUES                                = "server.entity.processor.elastic.queues";
+  public static final String ENTITY_PROCESSOR_ELASTIC_SAMPLE_INTERVAL                       = "server.entity.processor.elastic.sample.interval";
+  public static final String ENTITY_PROCESSOR_VIRTUAL_THREADS                               = "server.entity.processor.virtual.threads";
   public static final String L2_SEDA_STAGE_SINK_CAPACITY                                    = "l2.seda.stage.sink.capacity";
   String L2_TCCOM_WORKERTHREADS                                                          = "l2.tccom.workerthreads";
   String L2_SEDA_STAGE_WORKERTHREADS                                                     = "l2.seda.stage.workerthreads";
@@ -58,9 +75,20 @@ public interface TCPropertiesConsts {
    * Description : This section contains configuration for SEDA stages for L1
    * stage.sink.capacity  : Capacity of L1's seda stage queue, Integer.MAX_VALUE if not set
    * pinned.entry.fault.stage.threads : Number of threads for pinned entry fault stage
+   * seda.hydrate.stage.threads        : Threads decoding incoming messages, their delivery order is preserved
+   * seda.serverentitymessage.stage.threads : Threads delivering server pushed entity messages, ordered per entity
+   * runtime.shared.enabled            : Multiplex all connections of this JVM onto one shared runtime
+   * runtime.shared.stage.threads      : Threads draining the stages of all connections in shared mode, 0 to use
+   *                                     the number of available processors
+   * runtime.shared.comm.workerthreads : Number of NIO worker comm threads shared by all connections in shared mode
    * </code>
    ********************************************************************************************************************/
   public static final String L1_SEDA_STAGE_SINK_CAPACITY                                    = "l1.seda.stage.sink.capacity";
+  public static final String L1_SEDA_HYDRATE_STAGE_THREADS                                  = "l1.seda.hydrate.stage.threads";
+  public static final String L1_SEDA_SERVER_ENTITY_MESSAGE_STAGE_THREADS                    = "l1.seda.serverentitymessage.stage.threads";
+  public static final String L1_RUNTIME_SHARED_ENABLED                                      = "l1.runtime.shared.enabled";
+  public static final String L1_RUNTIME_SHARED_STAGE_THREADS                                = "l1.runtime.shared.stage.threads";
+  public static final String L1_RUNTIME_SHARED_COMM_WORKERTHREADS                           = "l1.runtime.shared.comm.workerthreads";
 
   /*********************************************************************************************************************
    * <code>
@@ -74,6 +102,8 @@ public interface TCPropertiesConsts {
    * tcgroupcomm.reconnect.sendqueue.cap  - Sendqueue capacity, 0 for Integer.MAX_VALUE
    * tcgroupcomm.reconnect.maxDelayedAcks - At least one ack per maxDelayedAcks messages received
    * tcgroupcomm.reconnect.sendWindow     - Max outstanding messages before ack received
+   * tcgroupcomm.reconnect.delayedAck.millis - Longest an ack is held back when no outgoing message carries it,
+   *                                        0 to ack only every maxDelayedAcks messages
    * tcgroupcomm.reconnect.enabled        - Enable L2-L2 reconnect
    * send.timeout.millis                  - Number of milliseconds to retry sending a message
    * dirtydb.backup.enabled               - Creates BackUp of DirtyDB only If it is set to true.
@@ -85,6 +115,7 @@ public interface TCPropertiesConsts {
   public static final String L2_NHA_TCGROUPCOMM_RECONNECT_SENDQUEUE_CAP                     = "l2.nha.tcgroupcomm.reconnect.sendqueue.cap";
   public static final String L2_NHA_TCGROUPCOMM_RECONNECT_MAX_DELAYEDACKS                   = "l2.nha.tcgroupcomm.reconnect.maxDelayedAcks";
   public static final String L2_NHA_TCGROUPCOMM_RECONNECT_SEND_WINDOW                       = "l2.nha.tcgroupcomm.reconnect.sendWindow";
+  public static final String L2_NHA_TCGROUPCOMM_RECONNECT_DELAYEDACK_MILLIS                 = "l2.nha.tcgroupcomm.reconnect.delayedAck.millis";
   public static final String L2_NHA_TCGROUPCOMM_DISCOVERY_INTERVAL                          = "l2.nha.tcgroupcomm.discovery.interval";
   // a hidden tc.properties only used for l2 proxy testing purpose
   public static final String L2_NHA_TCGROUPCOMM_RECONNECT_L2PROXY_TO_PORT                   = "l2.nha.tcgroupcomm.l2proxytoport";
@@ -100,10 +131,26 @@ public interface TCPropertiesConsts {
    *                                 instance in a cluster with no passives present
    * startuplock.retries.enabled   : If true then L2s will try to lock indefinitely on the data
    *                                 directory while starting up
+   * server.entity.latency.histograms.enabled : If true then L2s record per-stage latency histograms
+   *                                 for every entity request
+   * server.entity.concurrency.stats.enabled : If true then L2s track requests per concurrency key,
+   *                                 request queue collisions and flush stalls for every entity
+   * server.entity.response.senders : Number of threads sending responses to clients, each client is
+   *                                 always served by the same one
+   * server.entity.response.batch.max.count : Acknowledgements pending for a client which force a flush
+   * server.entity.response.batch.max.bytes : Bytes of results pending for a client which force a flush
+   * server.entity.response.batch.max.delay.micros : Longest a pending acknowledgement waits for more
+   *                                 to batch with; 0 queues a flush on the first one
    * </code>
    ********************************************************************************************************************/
   public static final String L2_STARTUPLOCK_RETRIES_ENABLED                                 = "l2.startuplock.retries.enabled";
   public static final String ENTITY_DEFERMENT_QUEUE_SIZE                                    = "server.entity.deferment.queue.size";
+  public static final String ENTITY_LATENCY_HISTOGRAMS_ENABLED                              = "server.entity.latency.histograms.enabled";
+  public static final String ENTITY_CONCURRENCY_STATS_ENABLED                               = "server.entity.concurrency.stats.enabled";
+  public static final String ENTITY_RESPONSE_SENDERS                                        = "server.entity.response.senders";
+  public static final String ENTITY_RESPONSE_BATCH_MAX_COUNT                                = "server.entity.response.batch.max.count";
+  public static final String ENTITY_RESPONSE_BATCH_MAX_BYTES                                = "server.entity.response.batch.max.bytes";
+  public static final String ENTITY_RESPONSE_BATCH_MAX_DELAY_MICROS                         = "server.entity.response.batch.max.delay.micros";
   
   /*********************************************************************************************************************
    * <code>
@@ -138,10 +185,15 @@ public interface TCPropertiesConsts {
    * socket.connect.timeout            - Socket timeout (ms) when connecting to server
    * reconnect.waitInterval            - Sleep time (ms) between trying connections to the server
    *                                     (values less than 10ms will be set to 10ms)
+   * reconnect.resend.chunk.bytes      - Maximum payload bytes of in-flight messages resent in one chunk after a
+   *                                     reconnect handshake
+   * reconnect.resend.window           - Number of resend chunks which can be sent before the server acknowledges one
    * </code>
    ********************************************************************************************************************/
   public static final String L1_SOCKET_CONNECT_TIMEOUT                                      = "l1.socket.connect.timeout";
   public static final String L1_SOCKET_RECONNECT_WAIT_INTERVAL                              = "l1.socket.reconnect.waitInterval";
+  public static final String L1_RECONNECT_RESEND_CHUNK_BYTES                                = "l1.reconnect.resend.chunk.bytes";
+  public static final String L1_RECONNECT_RESEND_WINDOW                                     = "l1.reconnect.resend.window";
   public static final String L1_CLUSTEREVENTS_OOB_JOINTIME_MILLIS                           = "l1.clusterevents.outofbandnotifier.jointime.millis";
   public static final String L1_CLUSTEREVENT_EXECUTOR_MAX_THREADS                           = "l1.clusterevent.executor.maxThreads";
   public static final String L1_CLUSTEREVENT_EXECUTOR_MAX_WAIT_SECONDS                      = "l1.clusterevent.executor.maxWaitSeconds";
@@ -156,7 +208,13 @@ public interface TCPropertiesConsts {
    *                  reconnect to L2 that has not crashed
    * maxDelayedAcks - Max number of messages received for which ack may not be sent
    * sendWindow     - Max number of messages that can be sent without getting an ack back
+   * delayedAck.millis - Longest an ack is held back when no outgoing message carries it, 0 to ack only every
+   *                  maxDelayedAcks messages
    * rejoin.sleep.millis - Number of milliseconds to sleep before retry rejoin, if rejoin attempt was unsuccessful for some reason
+   * admission.enabled  - If true, a restarted server paces reconnecting clients instead of taking every handshake at once
+   * admission.burst    - Number of reconnects admitted back to back before pacing kicks in
+   * admission.initialRate - Reconnects admitted per second until the handshake processing rate has been measured
+   * admission.maxRetryAfter.millis - Longest a deferred client is asked to wait before trying again
    * </code>
    ********************************************************************************************************************/
   public static final String L2_L1RECONNECT_ENABLED                                         = "l2.l1reconnect.enabled";
@@ -164,6 +222,11 @@ public interface TCPropertiesConsts {
   public static final String L2_L1RECONNECT_SENDQUEUE_CAP                                   = "l2.l1reconnect.sendqueue.cap";
   public static final String L2_L1RECONNECT_MAX_DELAYEDACKS                                 = "l2.l1reconnect.maxDelayedAcks";
   public static final String L2_L1RECONNECT_SEND_WINDOW                                     = "l2.l1reconnect.sendWindow";
+  public static final String L2_L1RECONNECT_DELAYEDACK_MILLIS                               = "l2.l1reconnect.delayedAck.millis";
+  public static final String L2_L1RECONNECT_ADMISSION_ENABLED                               = "l2.l1reconnect.admission.enabled";
+  public static final String L2_L1RECONNECT_ADMISSION_BURST                                 = "l2.l1reconnect.admission.burst";
+  public static final String L2_L1RECONNECT_ADMISSION_INITIAL_RATE                          = "l2.l1reconnect.admission.initialRate";
+  public static final String L2_L1RECONNECT_ADMISSION_MAX_RETRY_AFTER_MILLIS                = "l2.l1reconnect.admission.maxRetryAfter.millis";
 
   /*********************************************************************************************************************
    * <code>
@@ -185,6 +248,9 @@ public interface TCPropertiesConsts {
    * bytebuffer.pooling.enabled           : Enable/disable tc byte buffer pooling
    * bytebuffer.common.pool.maxcount      : Max size of pool for tc byte buffer
    * bytebuffer.threadlocal.pool.maxcount : Thread pool size
+   * bytebuffer.slab.maxclass             : Largest buffer size, in bytes, served from the pooled size classes
+   * bytebuffer.slab.arena.size           : Size, in bytes, of each direct arena pooled buffers are carved from
+   * bytebuffer.slab.direct.max           : Max direct memory, in bytes, reserved for arenas
    * </code>
    ********************************************************************************************************************/
   public static final String TC_STAGE_MONITOR_ENABLED                                       = "tc.stage.monitor.enabled";
@@ -192,6 +258,9 @@ public interface TCPropertiesConsts {
   public static final String TC_BYTEBUFFER_POOLING_ENABLED                                  = "tc.bytebuffer.pooling.enabled";
   public static final String TC_BYTEBUFFER_COMMON_POOL_MAXCOUNT                             = "tc.bytebuffer.common.pool.maxcount";
   public static final String TC_BYTEBUFFER_THREADLOCAL_POOL_MAXCOUNT                        = "tc.bytebuffer.threadlocal.pool.maxcount";
+  public static final String TC_BYTEBUFFER_SLAB_MAXCLASS                                    = "tc.bytebuffer.slab.maxclass";
+  public static final String TC_BYTEBUFFER_SLAB_ARENA_SIZE                                  = "tc.bytebuffer.slab.arena.size";
+  public static final String TC_BYTEBUFFER_SLAB_DIRECT_MAX                                  = "tc.bytebuffer.slab.direct.max";
   public static final String TC_MESSAGE_GROUPING_ENABLED                                    = "tc.messages.grouping.enabled";
   public static final String TC_MESSAGE_GROUPING_MAXSIZE_KB                                 = "tc.messages.grouping.maxSizeKiloBytes";
   public static final String TC_MESSAGE_PACKUP_ENABLED                                      = "tc.messages.packup.enabled";
@@ -327,6 +396,17 @@ public interface TCPropertiesConsts {
   public static final String TCM_MONITOR_ENABLED                                            = "tcm.monitor.enabled";
   public static final String TCM_MONITOR_DELAY                                              = "tcm.monitor.delay";
 
+  /*********************************************************************************************************************
+   * <code>
+   * Section : Flight Recorder
+   * tc.flightrecorder.enabled          - If enabled each thread records stage, replication, invoke and persistence
+   *                                      events into a fixed size ring which can be dumped over JMX
+   * tc.flightrecorder.events.per.thread - Number of events kept per thread, rounded up to a power of two
+   * </code>
+   ********************************************************************************************************************/
+  public static final String TC_FLIGHTRECORDER_ENABLED                                      = "tc.flightrecorder.enabled";
+  public static final String TC_FLIGHTRECORDER_EVENTS_PER_THREAD                            = "tc.flightrecorder.events.per.thread";
+
   /*********************************************************************************************************************
    * <code>
    * Section :  Stats Printer
@@ -0,0 +1,337 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.stats;
+
+import com.tc.properties.TCProperties;
+import com.tc.properties.TCPropertiesConsts;
+import com.tc.properties.TCPropertiesImpl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Method;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * An always-on record of the last few thousand events seen by each thread, meant for working out after the fact what
+ * a stalled server was doing.
+ * <p>
+ * Every thread that records gets its own fixed size ring of binary records (a timestamp, the event, an interned name
+ * and two arguments), so recording is a handful of plain stores with no locking or allocation.  Virtual threads are the
+ * exception: they are typically created per task, so rather than each allocating and registering a ring of its own
+ * they share a few rings, one per processor, and take that ring's lock to record. {@link #dump()} copies
+ * every ring into a compact binary image which {@link FlightRecording} turns back into a merged timeline, on the server
+ * or offline.
+ * <p>
+ * Names (stage queues, entities, log directories) are interned once through {@link #name(String)} and the returned id
+ * is what gets recorded.
+ */
+public class FlightRecorder {
+
+  public enum Event {
+    STAGE_ENQUEUE("queue", "depth"),
+    STAGE_DEQUEUE("queue", "depth"),
+    REPLICATION_SEND("rid", "passives"),
+    REPLICATION_ACK_RECEIVED("rid", null),
+    REPLICATION_ACK_COMPLETED("rid", null),
+    REPLICATION_RECEIVE("rid", "concurrency"),
+    INVOKE_BEGIN("concurrency", null),
+    INVOKE_END("concurrency", null),
+    PERSIST_FLUSH_BEGIN("bytes", null),
+    PERSIST_FLUSH_END("bytes", null);
+
+    private final String firstArg;
+    private final String secondArg;
+
+    private Event(String firstArg, String secondArg) {
+      this.firstArg = firstArg;
+      this.secondArg = secondArg;
+    }
+
+    public String getFirstArg() {
+      return firstArg;
+    }
+
+    public String getSecondArg() {
+      return secondArg;
+    }
+  }
+
+  static final int                            MAGIC            = 0x54434652;
+  static final int                            VERSION          = 1;
+  static final int                            LONGS_PER_RECORD = 4;
+  static final int                            NO_NAME          = 0;
+  static final int                            MAX_NAMES        = 64 * 1024;
+  private static final int                    MAX_DEAD_RINGS   = 128;
+
+  private static final Method                 IS_VIRTUAL       = lookupIsVirtual();
+  private static final FlightRecorder         INSTANCE         = createDefault();
+
+  private final boolean                       enabled;
+  private final int                           recordsPerThread;
+  private final ConcurrentHashMap<String, Integer> names        = new ConcurrentHashMap<String, Integer>();
+  private final AtomicInteger                 nextName         = new AtomicInteger(NO_NAME + 1);
+  private final ConcurrentLinkedQueue<Ring>   rings            = new ConcurrentLinkedQueue<Ring>();
+  private final Predicate<Thread>             sharesRing;
+  private volatile Ring[]                     sharedRings;
+  private final ThreadLocal<Ring>             threadRing       = new ThreadLocal<Ring>() {
+                                                                 @Override
+                                                                 protected Ring initialValue() {
+                                                                   return ringFor(Thread.currentThread());
+                                                                 }
+                                                               };
+
+  public static FlightRecorder getInstance() {
+    return INSTANCE;
+  }
+
+  private static FlightRecorder createDefault() {
+    TCProperties props = TCPropertiesImpl.getProperties();
+    return new FlightRecorder(props.getBoolean(TCPropertiesConsts.TC_FLIGHTRECORDER_ENABLED, true),
+                              props.getInt(TCPropertiesConsts.TC_FLIGHTRECORDER_EVENTS_PER_THREAD, 2048));
+  }
+
+  public FlightRecorder(boolean enabled, int eventsPerThread) {
+    this(enabled, eventsPerThread, FlightRecorder::isVirtual);
+  }
+
+  /**
+   * @param sharesRing which threads record into the shared rings instead of one of their own
+   */
+  FlightRecorder(boolean enabled, int eventsPerThread, Predicate<Thread> sharesRing) {
+    this.enabled = enabled;
+    this.recordsPerThread = Integer.highestOneBit(Math.max(eventsPerThread - 1, 1)) << 1;
+    this.sharesRing = sharesRing;
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Interns a name to record against. Callers should do this once and keep the id, not once per event.
+   */
+  public int name(String name) {
+    if (!enabled || name == null) { return NO_NAME; }
+    Integer id = names.get(name);
+    if (id != null) { return id.intValue(); }
+    if (names.size() >= MAX_NAMES) { return NO_NAME; }
+    Integer candidate = Integer.valueOf(nextName.getAndIncrement());
+    Integer prev = names.putIfAbsent(name, candidate);
+    return (prev == null) ? candidate.intValue() : prev.intValue();
+  }
+
+  public void record(Event event, int name, long first, long second) {
+    if (enabled) {
+      threadRing.get().write(System.nanoTime(), ((long) event.ordinal() << 32) | (name & 0xFFFFFFFFL), first, second);
+    }
+  }
+
+  /**
+   * A binary image of every thread's ring, readable with {@link FlightRecording#read(byte[])}.
+   */
+  public byte[] dump() {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    try {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeLong(System.currentTimeMillis());
+      out.writeLong(System.nanoTime());
+
+      Event[] events = Event.values();
+      out.writeInt(events.length);
+      for (Event e : events) {
+        out.writeUTF(e.name());
+        out.writeUTF(e.getFirstArg() == null ? "" : e.getFirstArg());
+        out.writeUTF(e.getSecondArg() == null ? "" : e.getSecondArg());
+      }
+
+      Map<String, Integer> snapshot = new ConcurrentHashMap<String, Integer>(names);
+      out.writeInt(snapshot.size());
+      for (Map.Entry<String, Integer> e : snapshot.entrySet()) {
+        out.writeInt(e.getValue().intValue());
+        out.writeUTF(e.getKey());
+      }
+
+      int count = 0;
+      for (Iterator<Ring> i = rings.iterator(); i.hasNext(); i.next()) {
+        count++;
+      }
+      // rings registered after counting are left for the next dump
+      out.writeInt(count);
+      Iterator<Ring> i = rings.iterator();
+      for (int r = 0; r < count; r++) {
+        i.next().writeTo(out);
+      }
+      out.flush();
+    } catch (IOException e) {
+      // writing to memory
+      throw new AssertionError(e);
+    }
+    return bytes.toByteArray();
+  }
+
+  private Ring ringFor(Thread owner) {
+    if (!sharesRing.test(owner)) {
+      return register(new Ring(owner, recordsPerThread));
+    }
+    Ring[] shared = sharedRings;
+    if (shared == null) {
+      synchronized (this) {
+        shared = sharedRings;
+        if (shared == null) {
+          shared = new Ring[Runtime.getRuntime().availableProcessors()];
+          for (int i = 0; i < shared.length; i++) {
+            // negative ids keep the shared rings apart from real threads in the timeline
+            shared[i] = register(new Ring("virtual threads " + i, -1 - i, recordsPerThread));
+          }
+          sharedRings = shared;
+        }
+      }
+    }
+    return shared[(int) (owner.getId() % shared.length)];
+  }
+
+  private static Method lookupIsVirtual() {
+    try {
+      return Thread.class.getMethod("isVirtual");
+    } catch (NoSuchMethodException e) {
+      // before Java 21 there are no virtual threads
+      return null;
+    }
+  }
+
+  private static boolean isVirtual(Thread thread) {
+    if (IS_VIRTUAL == null) {
+      return false;
+    }
+    try {
+      return (Boolean) IS_VIRTUAL.invoke(thread);
+    } catch (ReflectiveOperationException e) {
+      return false;
+    }
+  }
+
+  private Ring register(Ring ring) {
+    int dead = 0;
+    for (Ring r : rings) {
+      if (!r.isAlive()) {
+        dead++;
+      }
+    }
+    // rings are queued oldest first; drop the oldest dead threads and keep the more recent ones for the post-mortem
+    for (Iterator<Ring> i = rings.iterator(); i.hasNext() && dead > MAX_DEAD_RINGS;) {
+      if (!i.next().isAlive()) {
+        i.remove();
+        dead--;
+      }
+    }
+    rings.add(ring);
+    return ring;
+  }
+
+  /**
+   * Single writer ring; the owning thread publishes each record by moving the position after writing it, so a reader
+   * can tell which records may have been overwritten while it was copying.  A shared ring has many owners, which take
+   * turns under its lock.
+   */
+  private static final class Ring {
+    private final String                  threadName;
+    private final long                    threadId;
+    private final WeakReference<Thread>   thread;
+    private final boolean                 shared;
+    private final long[]                  slots;
+    private final int                     mask;
+    private final AtomicLong              position = new AtomicLong();
+
+    Ring(Thread owner, int records) {
+      this(owner.getName(), owner.getId(), new WeakReference<Thread>(owner), false, records);
+    }
+
+    Ring(String name, long id, int records) {
+      this(name, id, null, true, records);
+    }
+
+    private Ring(String name, long id, WeakReference<Thread> thread, boolean shared, int records) {
+      this.threadName = name;
+      this.threadId = id;
+      this.thread = thread;
+      this.shared = shared;
+      this.slots = new long[records * LONGS_PER_RECORD];
+      this.mask = records - 1;
+    }
+
+    boolean isAlive() {
+      if (shared) {
+        return true;
+      }
+      Thread t = thread.get();
+      return t != null && t.isAlive();
+    }
+
+    void write(long time, long kind, long first, long second) {
+      if (shared) {
+        synchronized (this) {
+          append(time, kind, first, second);
+        }
+      } else {
+        append(time, kind, first, second);
+      }
+    }
+
+    private void append(long time, long kind, long first, long second) {
+      long p = position.get();
+      int base = ((int) p & mask) * LONGS_PER_RECORD;
+      slots[base] = time;
+      slots[base + 1] = kind;
+      slots[base + 2] = first;
+      slots[base + 3] = second;
+      position.lazySet(p + 1);
+    }
+
+    void writeTo(DataOutputStream out) throws IOException {
+      int records = mask + 1;
+      long end = position.get();
+      long start = Math.max(0, end - records);
+      long[] copy = new long[(int) (end - start) * LONGS_PER_RECORD];
+      for (long r = start; r < end; r++) {
+        System.arraycopy(slots, ((int) r & mask) * LONGS_PER_RECORD, copy, (int) (r - start) * LONGS_PER_RECORD,
+                         LONGS_PER_RECORD);
+      }
+      // anything the owner may have overwritten while we copied is dropped
+      long valid = Math.min(end, Math.max(start, position.get() - records + 1));
+
+      Thread t = (thread != null) ? thread.get() : null;
+      out.writeUTF(t != null ? t.getName() : threadName);
+      out.writeLong(threadId);
+      out.writeInt((int) (end - valid));
+      for (int i = (int) (valid - start) * LONGS_PER_RECORD; i < copy.length; i++) {
+        out.writeLong(copy[i]);
+      }
+    }
+  }
+}
@@ -0,0 +1,211 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.stats;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decodes a {@link FlightRecorder#dump()} image into a single timeline of every thread's events, oldest first. Event
+ * names and argument labels are carried in the image itself, so a recording can be read by a build other than the one
+ * which produced it.
+ * <p>
+ * Run as {@code FlightRecording <file> [seconds]} to print a saved recording, optionally only its last few seconds.
+ */
+public class FlightRecording {
+
+  public static class Entry {
+    private final long   wallClockMicros;
+    private final long   nanoTime;
+    private final String thread;
+    private final String event;
+    private final String name;
+    private final String firstLabel;
+    private final long   first;
+    private final String secondLabel;
+    private final long   second;
+
+    private Entry(long wallClockMicros, long nanoTime, String thread, String event, String name, String firstLabel,
+                  long first, String secondLabel, long second) {
+      this.wallClockMicros = wallClockMicros;
+      this.nanoTime = nanoTime;
+      this.thread = thread;
+      this.event = event;
+      this.name = name;
+      this.firstLabel = firstLabel;
+      this.first = first;
+      this.secondLabel = secondLabel;
+      this.second = second;
+    }
+
+    public long getWallClockMillis() {
+      return wallClockMicros / 1000;
+    }
+
+    public long getNanoTime() {
+      return nanoTime;
+    }
+
+    public String getThread() {
+      return thread;
+    }
+
+    public String getEvent() {
+      return event;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public long getFirst() {
+      return first;
+    }
+
+    public long getSecond() {
+      return second;
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder sb = new StringBuilder();
+      sb.append(new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS").format(new Date(getWallClockMillis())));
+      sb.append(String.format("%03d", wallClockMicros % 1000));
+      sb.append(" [").append(thread).append("] ").append(event);
+      if (name.length() > 0) {
+        sb.append(' ').append(name);
+      }
+      if (firstLabel.length() > 0) {
+        sb.append(' ').append(firstLabel).append('=').append(first);
+      }
+      if (secondLabel.length() > 0) {
+        sb.append(' ').append(secondLabel).append('=').append(second);
+      }
+      return sb.toString();
+    }
+  }
+
+  private final long        dumpNanoTime;
+  private final List<Entry> entries;
+
+  private FlightRecording(long dumpNanoTime, List<Entry> entries) {
+    this.dumpNanoTime = dumpNanoTime;
+    this.entries = entries;
+  }
+
+  public static FlightRecording read(byte[] image) throws IOException {
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(image));
+    if (in.readInt() != FlightRecorder.MAGIC) { throw new IOException("not a flight recording"); }
+    int version = in.readInt();
+    if (version != FlightRecorder.VERSION) { throw new IOException("unsupported flight recording version " + version); }
+    long wallClock = in.readLong();
+    long dumpNanos = in.readLong();
+
+    int eventCount = in.readInt();
+    String[][] events = new String[eventCount][];
+    for (int i = 0; i < eventCount; i++) {
+      events[i] = new String[] { in.readUTF(), in.readUTF(), in.readUTF() };
+    }
+
+    Map<Integer, String> names = new HashMap<Integer, String>();
+    int nameCount = in.readInt();
+    for (int i = 0; i < nameCount; i++) {
+      int id = in.readInt();
+      names.put(Integer.valueOf(id), in.readUTF());
+    }
+
+    List<Entry> entries = new ArrayList<Entry>();
+    int rings = in.readInt();
+    for (int r = 0; r < rings; r++) {
+      String thread = in.readUTF() + "/" + in.readLong();
+      int records = in.readInt();
+      for (int i = 0; i < records; i++) {
+        long time = in.readLong();
+        long kind = in.readLong();
+        long first = in.readLong();
+        long second = in.readLong();
+        int ordinal = (int) (kind >>> 32);
+        String[] event = (ordinal < events.length) ? events[ordinal] : new String[] { "EVENT_" + ordinal, "a", "b" };
+        String name = names.get(Integer.valueOf((int) kind));
+        long micros = wallClock * 1000 - TimeUnit.NANOSECONDS.toMicros(dumpNanos - time);
+        entries.add(new Entry(micros, time, thread, event[0], name == null ? "" : name, event[1], first, event[2],
+                              second));
+      }
+    }
+
+    Collections.sort(entries, new Comparator<Entry>() {
+      @Override
+      public int compare(Entry e1, Entry e2) {
+        // nanoTime values may wrap, so compare the difference
+        return Long.signum(e1.nanoTime - e2.nanoTime);
+      }
+    });
+    return new FlightRecording(dumpNanos, entries);
+  }
+
+  public List<Entry> getEntries() {
+    return Collections.unmodifiableList(entries);
+  }
+
+  /**
+   * Entries recorded in the given window before the dump was taken.
+   */
+  public List<Entry> getEntries(long duration, TimeUnit unit) {
+    long since = dumpNanoTime - unit.toNanos(duration);
+    List<Entry> rv = new ArrayList<Entry>();
+    for (Entry e : entries) {
+      if (e.nanoTime - since >= 0) {
+        rv.add(e);
+      }
+    }
+    return rv;
+  }
+
+  public static String format(List<Entry> entries) {
+    String nl = System.getProperty("line.separator");
+    StringBuilder sb = new StringBuilder();
+    for (Entry e : entries) {
+      sb.append(e).append(nl);
+    }
+    return sb.toString();
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length < 1 || args.length > 2) {
+      System.err.println("usage: " + FlightRecording.class.getName() + " <recording file> [last N seconds]");
+      System.exit(1);
+    }
+    FlightRecording recording = read(Files.readAllBytes(new File(args[0]).toPath()));
+    List<Entry> entries = (args.length == 2) ? recording.getEntries(Long.parseLong(args[1]), TimeUnit.SECONDS)
+        : recording.getEntries();
+    System.out.print(format(entries));
+  }
+}
@@ -0,0 +1,197 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.stats;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed-size, log-linear latency histogram in the spirit of HdrHistogram. Every power of two is split into
+ * {@link #SUB_BUCKETS} linear buckets, which bounds the relative error of any reported percentile to 1/SUB_BUCKETS
+ * while keeping the whole histogram at a few hundred counters.
+ * <p>
+ * Recording is lock-free (each bucket is a {@link LongAdder}) and allocation-free, so it is cheap enough to leave on
+ * in the request path. Values are nanoseconds; anything above ~68 seconds is recorded in the last bucket.
+ */
+public class LatencyHistogram {
+
+  private static final int  SUB_BUCKET_BITS = 3;
+  public static final int   SUB_BUCKETS     = 1 << SUB_BUCKET_BITS;
+  private static final int  MAX_MAGNITUDE   = 36;
+  private static final int  BUCKET_COUNT    = SUB_BUCKETS + (MAX_MAGNITUDE - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+  private final String      name;
+  private final LongAdder[] buckets         = new LongAdder[BUCKET_COUNT];
+  private final LongAdder   total           = new LongAdder();
+  private final LongAccumulator max         = new LongAccumulator(Math::max, 0L);
+
+  public LatencyHistogram(String name) {
+    this.name = name;
+    for (int i = 0; i < buckets.length; i++) {
+      buckets[i] = new LongAdder();
+    }
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public void record(long nanos) {
+    if (nanos < 0) {
+      // nanoTime is monotonic but hand-offs may be stamped on different cores; treat skew as zero
+      nanos = 0;
+    }
+    buckets[indexFor(nanos)].increment();
+    total.add(nanos);
+    max.accumulate(nanos);
+  }
+
+  /**
+   * Records the time elapsed since {@code startNanos}, a value previously taken from {@link System#nanoTime()}.
+   * 
+   * @return the current time, so successive hand-offs can be chained without reading the clock twice
+   */
+  public long recordSince(long startNanos) {
+    long now = System.nanoTime();
+    record(now - startNanos);
+    return now;
+  }
+
+  public void reset() {
+    for (LongAdder bucket : buckets) {
+      bucket.reset();
+    }
+    total.reset();
+    max.reset();
+  }
+
+  public Snapshot snapshot() {
+    long[] counts = new long[BUCKET_COUNT];
+    long count = 0;
+    for (int i = 0; i < counts.length; i++) {
+      counts[i] = buckets[i].sum();
+      count += counts[i];
+    }
+    return new Snapshot(name, counts, count, total.sum(), max.get());
+  }
+
+  static int indexFor(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    int magnitude = 63 - Long.numberOfLeadingZeros(value);
+    if (magnitude > MAX_MAGNITUDE) {
+      return BUCKET_COUNT - 1;
+    }
+    int shift = magnitude - SUB_BUCKET_BITS;
+    int sub = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+    return SUB_BUCKETS + shift * SUB_BUCKETS + sub;
+  }
+
+  /**
+   * @return the highest value that maps to the given bucket
+   */
+  static long highestValueFor(int index) {
+    if (index < SUB_BUCKETS) {
+      return index;
+    }
+    int shift = (index - SUB_BUCKETS) / SUB_BUCKETS;
+    int sub = (index - SUB_BUCKETS) % SUB_BUCKETS;
+    long lowest = ((long) (SUB_BUCKETS | sub)) << shift;
+    return lowest + (1L << shift) - 1;
+  }
+
+  /**
+   * A point-in-time copy of a histogram. Concurrent recording may make the copy slightly inconsistent (e.g. the
+   * count may include a value whose sum is not yet visible), which is acceptable for monitoring.
+   */
+  public static class Snapshot {
+    private final String name;
+    private final long[] counts;
+    private final long   count;
+    private final long   total;
+    private final long   max;
+
+    Snapshot(String name, long[] counts, long count, long total, long max) {
+      this.name = name;
+      this.counts = counts;
+      this.count = count;
+      this.total = total;
+      this.max = max;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public long getCount() {
+      return count;
+    }
+
+    public long getMean() {
+      return count == 0 ? 0 : total / count;
+    }
+
+    public long getMax() {
+      return max;
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return the latency in nanoseconds at or below which the given percentage of recorded values fall
+     */
+    public long getValueAtPercentile(double percentile) {
+      if (count == 0) {
+        return 0;
+      }
+      long target = Math.max(1, (long) Math.ceil(count * (percentile / 100.0)));
+      long seen = 0;
+      for (int i = 0; i < counts.length; i++) {
+        seen += counts[i];
+        if (seen >= target) {
+          return i == counts.length - 1 ? max : Math.min(highestValueFor(i), max);
+        }
+      }
+      return max;
+    }
+
+    /**
+     * @return count, mean, max and the usual percentiles, latencies converted to the given unit
+     */
+    public Map<String, Long> toMap(TimeUnit unit) {
+      Map<String, Long> map = new LinkedHashMap<>();
+      map.put("count", count);
+      map.put("mean", unit.convert(getMean(), TimeUnit.NANOSECONDS));
+      map.put("p50", unit.convert(getValueAtPercentile(50), TimeUnit.NANOSECONDS));
+      map.put("p90", unit.convert(getValueAtPercentile(90), TimeUnit.NANOSECONDS));
+      map.put("p99", unit.convert(getValueAtPercentile(99), TimeUnit.NANOSECONDS));
+      map.put("p999", unit.convert(getValueAtPercentile(99.9), TimeUnit.NANOSECONDS));
+      map.put("max", unit.convert(max, TimeUnit.NANOSECONDS));
+      return map;
+    }
+
+    @Override
+    public String toString() {
+      return name + " " + toMap(TimeUnit.MICROSECONDS) + " (us)";
+    }
+  }
+}
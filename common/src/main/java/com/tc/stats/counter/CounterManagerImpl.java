@@ -20,8 +20,10 @@ package com.tc.stats.counter;
 
 import com.tc.stats.counter.sampled.SampledCounter;
 import com.tc.stats.counter.sampled.SampledCounterImpl;
+import com.tc.stats.counter.sampled.StripedSampledCounterImpl;
 
 import java.util.Timer;
+import java.util.TimerTask;
 
 public class CounterManagerImpl implements CounterManager {
   private final Timer timer    = new Timer("SampledCounterManager Timer", true);
@@ -49,13 +51,19 @@ public class CounterManagerImpl implements CounterManager {
     Counter counter = config.createCounter();
     if (counter instanceof SampledCounterImpl) {
       SampledCounterImpl sampledCounter = (SampledCounterImpl) counter;
-      timer.schedule(sampledCounter.getTimerTask(), sampledCounter.getIntervalMillis(), sampledCounter
-          .getIntervalMillis());
+      schedule(sampledCounter.getTimerTask(), sampledCounter.getIntervalMillis());
+    } else if (counter instanceof StripedSampledCounterImpl) {
+      StripedSampledCounterImpl sampledCounter = (StripedSampledCounterImpl) counter;
+      schedule(sampledCounter.getTimerTask(), sampledCounter.getIntervalMillis());
     }
     return counter;
 
   }
 
+  private void schedule(TimerTask task, long intervalMillis) {
+    timer.schedule(task, intervalMillis, intervalMillis);
+  }
+
   @Override
   public void shutdownCounter(Counter counter) {
     if (counter instanceof SampledCounter) {
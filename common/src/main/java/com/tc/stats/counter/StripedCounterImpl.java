@@ -0,0 +1,88 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.stats.counter;
+
+import java.io.Serializable;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A counter that spreads updates across striped cells (see {@link LongAdder}) rather than a single shared value, so
+ * that many threads can bump the same counter without contending on one cache line.
+ * <p>
+ * Updates are cheap but reads merge all stripes. The values returned from the update methods are therefore only a
+ * best-effort snapshot. {@link #getAndSet(long)} never loses concurrent updates: anything added after the stripes were
+ * summed is carried over into the new value. Use {@link CounterImpl} where callers depend on the update methods
+ * returning an exact result.
+ */
+public class StripedCounterImpl implements Counter, Serializable {
+  private final LongAdder adder = new LongAdder();
+  // value = adder.sum() - offset; lets us set/reset without ever touching the stripes
+  private volatile long   offset;
+
+  public StripedCounterImpl() {
+    this(0L);
+  }
+
+  public StripedCounterImpl(long initialValue) {
+    this.adder.add(initialValue);
+  }
+
+  @Override
+  public long increment() {
+    adder.increment();
+    return getValue();
+  }
+
+  @Override
+  public long decrement() {
+    adder.decrement();
+    return getValue();
+  }
+
+  @Override
+  public long increment(long amount) {
+    adder.add(amount);
+    return getValue();
+  }
+
+  @Override
+  public long decrement(long amount) {
+    adder.add(amount * -1);
+    return getValue();
+  }
+
+  @Override
+  public synchronized long getAndSet(long newValue) {
+    long sum = adder.sum();
+    long old = sum - offset;
+    offset = sum - newValue;
+    return old;
+  }
+
+  @Override
+  public long getValue() {
+    return adder.sum() - offset;
+  }
+
+  @Override
+  public synchronized void setValue(long newValue) {
+    offset = adder.sum() - newValue;
+  }
+
+}
@@ -0,0 +1,90 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.stats.counter.sampled;
+
+import java.util.TimerTask;
+
+/**
+ * The sampling half of a sampled counter: the timer task which takes the samples and the most recent one.  Shared by
+ * {@link SampledCounterImpl} and {@link StripedSampledCounterImpl}, which only differ in how they store the count.
+ */
+final class CounterSampler {
+  private final SampledCounter           counter;
+  private final boolean                  resetOnSample;
+  private final TimerTask                samplerTask;
+  private final long                     intervalMillis;
+  private volatile TimeStampedCounterValue mostRecentSample;
+
+  /**
+   * Called from the counter's constructor, so the counter itself is not read here: subclasses may override
+   * {@link SampledCounter#getValue()} with state that isn't initialized yet.  The first sample is the initial value.
+   */
+  CounterSampler(SampledCounter counter, SampledCounterConfig config) {
+    this.counter = counter;
+    this.intervalMillis = config.getIntervalSecs() * 1000;
+    this.resetOnSample = config.isResetOnSample();
+    this.samplerTask = new TimerTask() {
+      @Override
+      public void run() {
+        recordSample();
+      }
+    };
+    this.mostRecentSample = new TimeStampedCounterValue(System.currentTimeMillis(), config.getInitialValue());
+  }
+
+  /**
+   * The value a counter starts from.  A counter which resets on sample has already handed its initial value to the
+   * first sample.
+   */
+  static long startingValue(SampledCounterConfig config) {
+    return config.isResetOnSample() ? 0L : config.getInitialValue();
+  }
+
+  boolean isResetOnSample() {
+    return resetOnSample;
+  }
+
+  TimeStampedCounterValue getMostRecentSample() {
+    return mostRecentSample;
+  }
+
+  void shutdown() {
+    samplerTask.cancel();
+  }
+
+  TimerTask getTimerTask() {
+    return samplerTask;
+  }
+
+  long getIntervalMillis() {
+    return intervalMillis;
+  }
+
+  void recordSample() {
+    final long sample;
+    if (resetOnSample) {
+      sample = counter.getAndReset();
+    } else {
+      sample = counter.getValue();
+    }
+
+    final long now = System.currentTimeMillis();
+    mostRecentSample = new TimeStampedCounterValue(now, sample);
+  }
+}
@@ -26,57 +26,35 @@ import java.util.TimerTask;
  * A counter that keeps sampled values
  */
 public class SampledCounterImpl extends CounterImpl implements SampledCounter {
-  protected final boolean                                     resetOnSample;
-  private final TimerTask                                     samplerTask;
-  private final long                                          intervalMillis;
-  private volatile TimeStampedCounterValue                    mostRecentSample;
-  
-  public SampledCounterImpl(SampledCounterConfig config) {
-    super(config.getInitialValue());
-
-    this.intervalMillis = config.getIntervalSecs() * 1000;
-    this.resetOnSample = config.isResetOnSample();
+  protected final boolean resetOnSample;
+  private final CounterSampler sampler;
 
-    this.samplerTask = new TimerTask() {
-      @Override
-      public void run() {
-        recordSample();
-      }
-    };
-    
-    recordSample();
+  public SampledCounterImpl(SampledCounterConfig config) {
+    super(CounterSampler.startingValue(config));
+    this.sampler = new CounterSampler(this, config);
+    this.resetOnSample = sampler.isResetOnSample();
   }
 
   @Override
   public TimeStampedCounterValue getMostRecentSample() {
-    return mostRecentSample;
+    return sampler.getMostRecentSample();
   }
 
   @Override
   public void shutdown() {
-    if (samplerTask != null) {
-      samplerTask.cancel();
-    }
+    sampler.shutdown();
   }
 
   public TimerTask getTimerTask() {
-    return this.samplerTask;
+    return sampler.getTimerTask();
   }
 
   public long getIntervalMillis() {
-    return intervalMillis;
+    return sampler.getIntervalMillis();
   }
 
   void recordSample() {
-    final long sample;
-    if (resetOnSample) {
-      sample = getAndReset();
-    } else {
-      sample = getValue();
-    }
-
-    final long now = System.currentTimeMillis();
-    mostRecentSample = new TimeStampedCounterValue(now, sample);
+    sampler.recordSample();
   }
 
   @Override
@@ -0,0 +1,65 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.stats.counter.sampled;
+
+import com.tc.stats.counter.StripedCounterImpl;
+
+import java.util.TimerTask;
+
+/**
+ * A sampled counter backed by striped cells. Samples merge the stripes, so the update path never contends between
+ * threads. Drop-in replacement for {@link SampledCounterImpl} on hot counters.
+ */
+public class StripedSampledCounterImpl extends StripedCounterImpl implements SampledCounter {
+  protected final boolean resetOnSample;
+  private final CounterSampler sampler;
+
+  public StripedSampledCounterImpl(SampledCounterConfig config) {
+    super(CounterSampler.startingValue(config));
+    this.sampler = new CounterSampler(this, config);
+    this.resetOnSample = sampler.isResetOnSample();
+  }
+
+  @Override
+  public TimeStampedCounterValue getMostRecentSample() {
+    return sampler.getMostRecentSample();
+  }
+
+  @Override
+  public void shutdown() {
+    sampler.shutdown();
+  }
+
+  public TimerTask getTimerTask() {
+    return sampler.getTimerTask();
+  }
+
+  public long getIntervalMillis() {
+    return sampler.getIntervalMillis();
+  }
+
+  void recordSample() {
+    sampler.recordSample();
+  }
+
+  @Override
+  public long getAndReset() {
+    return getAndSet(0L);
+  }
+}
@@ -0,0 +1,65 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.stats.counter.sampled;
+
+import java.util.concurrent.atomic.LongAdder;
+
+public class StripedSampledCumulativeCounterImpl extends StripedSampledCounterImpl implements SampledCumulativeCounter {
+
+  private final LongAdder cumulativeCount = new LongAdder();
+
+  public StripedSampledCumulativeCounterImpl(SampledCounterConfig config) {
+    super(config);
+    cumulativeCount.add(config.getInitialValue());
+  }
+
+  @Override
+  public long getCumulativeValue() {
+    if (resetOnSample) {
+      return cumulativeCount.sum();
+    } else {
+      return getValue();
+    }
+  }
+
+  @Override
+  public long decrement() {
+    cumulativeCount.decrement();
+    return super.decrement();
+  }
+
+  @Override
+  public long decrement(long amount) {
+    cumulativeCount.add(amount * -1);
+    return super.decrement(amount);
+  }
+
+  @Override
+  public long increment() {
+    cumulativeCount.increment();
+    return super.increment();
+  }
+
+  @Override
+  public long increment(long amount) {
+    cumulativeCount.add(amount);
+    return super.increment(amount);
+  }
+
+}
@@ -0,0 +1,243 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.async.impl;
+
+import com.tc.async.api.AbstractEventHandler;
+import com.tc.async.api.MultiThreadedEventContext;
+import com.tc.logging.DefaultLoggerProvider;
+import com.tc.util.concurrent.QueueFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ElasticThreadPoolTest {
+
+  private ElasticThreadPool pool;
+
+  @After
+  public void tearDown() {
+    if (pool != null) {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void testGrowsHalfWayWhileTasksQueue() throws Exception {
+    final AtomicLong seenWait = new AtomicLong();
+    final AtomicLong seenCompute = new AtomicLong();
+    pool = new ElasticThreadPool("grow", null, 1, 8, 1, (wait, compute) -> {
+      seenWait.set(wait);
+      seenCompute.set(compute);
+      return 8;
+    }, 0);
+    CountDownLatch first = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    pool.execute(() -> sleep(50, first));
+    for (int i = 0; i < 10; i++) {
+      pool.execute(() -> await(release));
+    }
+    assertTrue(first.await(30, TimeUnit.SECONDS));
+    // let the first task's times be recorded
+    Thread.sleep(100);
+
+    assertEquals(4, pool.resize());
+    assertTrue(seenWait.get() > seenCompute.get());
+    assertEquals(4, pool.getThreadCount());
+    release.countDown();
+  }
+
+  @Test
+  public void testDoesNotGrowWithoutBacklog() throws Exception {
+    pool = new ElasticThreadPool("nobacklog", null, 1, 8, 2, (wait, compute) -> 8, 0);
+    CountDownLatch done = new CountDownLatch(1);
+    pool.execute(() -> sleep(20, done));
+    assertTrue(done.await(30, TimeUnit.SECONDS));
+    Thread.sleep(100);
+
+    assertEquals(2, pool.resize());
+  }
+
+  @Test
+  public void testShrinksByOneWhenIdleDownToMin() {
+    pool = new ElasticThreadPool("idle", null, 2, 8, 4, (wait, compute) -> 8, 0);
+    assertEquals(3, pool.resize());
+    assertEquals(2, pool.resize());
+    assertEquals(2, pool.resize());
+  }
+
+  @Test
+  public void testBlockedWorkersWithBacklogDoNotShrink() throws Exception {
+    final AtomicLong seenWait = new AtomicLong();
+    pool = new ElasticThreadPool("blocked", null, 1, 8, 2, (wait, compute) -> {
+      seenWait.set(wait);
+      return 1;
+    }, 0);
+    CountDownLatch started = new CountDownLatch(2);
+    CountDownLatch release = new CountDownLatch(1);
+    for (int i = 0; i < 4; i++) {
+      pool.execute(() -> {
+        started.countDown();
+        await(release);
+      });
+    }
+    assertTrue(started.await(30, TimeUnit.SECONDS));
+    Thread.sleep(50);
+
+    // nothing has finished, but the blocked tasks are still credited with their waiting
+    assertEquals(2, pool.resize());
+    assertTrue(seenWait.get() > 0);
+    assertEquals(2, pool.resize());
+    release.countDown();
+  }
+
+  @Test
+  public void testFailedResizeKeepsSampling() throws Exception {
+    final CountDownLatch failed = new CountDownLatch(1);
+    pool = new ElasticThreadPool("failing", null, 1, 8, 4, (wait, compute) -> {
+      failed.countDown();
+      throw new IllegalStateException("sizer failure");
+    }, 10);
+    CountDownLatch done = new CountDownLatch(1);
+    pool.execute(() -> sleep(20, done));
+    assertTrue(failed.await(30, TimeUnit.SECONDS));
+    // idle samples after the failure still shed one thread each
+    long deadline = System.currentTimeMillis() + 30000;
+    while (pool.getThreadCount() > 1 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertEquals(1, pool.getThreadCount());
+  }
+
+  @Test
+  public void testInitialSizeIsClamped() {
+    pool = new ElasticThreadPool("clamped", null, 2, 4, 100, (wait, compute) -> 4, 0);
+    assertEquals(4, pool.getThreadCount());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testBadBounds() {
+    new ElasticThreadPool("bad", null, 4, 2, 2, (wait, compute) -> 2, 0);
+  }
+
+  @Test
+  public void testKeyedOrderSurvivesResize() throws Exception {
+    pool = new ElasticThreadPool("keyed", null, 1, 8, 1, (wait, compute) -> 8, 0);
+    int keys = 16;
+    int perKey = 500;
+    CountDownLatch done = new CountDownLatch(keys * perKey);
+    KeyedHandler handler = new KeyedHandler(done);
+    PooledStageImpl<Keyed> stage = new PooledStageImpl<Keyed>(new DefaultLoggerProvider(), "keyed", handler, 32, null,
+        new QueueFactory<ContextWrapper<Keyed>>(), Integer.MAX_VALUE, pool);
+    stage.start(new ConfigurationContextImpl(null));
+
+    for (int i = 0; i < perKey; i++) {
+      for (int k = 0; k < keys; k++) {
+        stage.getSink().addMultiThreaded(new Keyed(k, i));
+      }
+      if (i % 100 == 0) {
+        pool.resize();
+      }
+    }
+    assertTrue(done.await(30, TimeUnit.SECONDS));
+
+    handler.assertInOrder(keys, perKey);
+    stage.destroy();
+  }
+
+  private static void sleep(long millis, CountDownLatch done) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    done.countDown();
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static class Keyed implements MultiThreadedEventContext {
+    final int key;
+    final int sequence;
+
+    Keyed(int key, int sequence) {
+      this.key = key;
+      this.sequence = sequence;
+    }
+
+    @Override
+    public Object getSchedulingKey() {
+      return key;
+    }
+
+    @Override
+    public boolean flush() {
+      return false;
+    }
+  }
+
+  private static class KeyedHandler extends AbstractEventHandler<Keyed> {
+    private final Map<Integer, List<Integer>> seen = new HashMap<Integer, List<Integer>>();
+    private final CountDownLatch              done;
+
+    KeyedHandler(CountDownLatch done) {
+      this.done = done;
+    }
+
+    @Override
+    public void handleEvent(Keyed context) {
+      synchronized (seen) {
+        List<Integer> sequences = seen.get(context.key);
+        if (sequences == null) {
+          sequences = new ArrayList<Integer>();
+          seen.put(context.key, sequences);
+        }
+        sequences.add(context.sequence);
+      }
+      done.countDown();
+    }
+
+    void assertInOrder(int keys, int perKey) {
+      synchronized (seen) {
+        assertEquals(keys, seen.size());
+        for (List<Integer> sequences : seen.values()) {
+          assertEquals(perKey, sequences.size());
+          for (int i = 0; i < perKey; i++) {
+            assertEquals(i, sequences.get(i).intValue());
+          }
+        }
+      }
+    }
+  }
+}
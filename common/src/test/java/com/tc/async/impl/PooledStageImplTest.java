@@ -0,0 +1,200 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.async.impl;
+
+import com.tc.async.api.AbstractEventHandler;
+import com.tc.async.api.ConfigurationContext;
+import com.tc.async.api.EventHandlerException;
+import com.tc.async.api.MultiThreadedEventContext;
+import com.tc.logging.DefaultLoggerProvider;
+import com.tc.util.concurrent.QueueFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PooledStageImplTest {
+
+  private ExecutorService      executor;
+  private ConfigurationContext context;
+
+  @Before
+  public void setUp() {
+    executor = Executors.newFixedThreadPool(2);
+    context = new ConfigurationContextImpl(null);
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testStagesShareExecutorAndKeepOrder() throws Exception {
+    int count = 5000;
+    CountDownLatch done = new CountDownLatch(2 * count);
+    RecordingHandler first = new RecordingHandler(done);
+    RecordingHandler second = new RecordingHandler(done);
+    PooledStageImpl<Integer> firstStage = createStage("first", first);
+    PooledStageImpl<Integer> secondStage = createStage("second", second);
+    firstStage.start(context);
+    secondStage.start(context);
+
+    for (int i = 0; i < count; i++) {
+      firstStage.getSink().addSingleThreaded(i);
+      secondStage.getSink().addSingleThreaded(i);
+    }
+    assertTrue(done.await(30, TimeUnit.SECONDS));
+
+    first.assertInOrder(count);
+    second.assertInOrder(count);
+    firstStage.destroy();
+    secondStage.destroy();
+  }
+
+  @Test
+  public void testPausedStageHoldsContexts() throws Exception {
+    CountDownLatch done = new CountDownLatch(3);
+    RecordingHandler handler = new RecordingHandler(done);
+    PooledStageImpl<Integer> stage = createStage("paused", handler);
+    stage.start(context);
+    stage.pause();
+    for (int i = 0; i < 3; i++) {
+      stage.getSink().addSingleThreaded(i);
+    }
+    assertEquals(3, stage.getSink().size());
+
+    stage.unpause();
+    assertTrue(done.await(30, TimeUnit.SECONDS));
+    handler.assertInOrder(3);
+    stage.destroy();
+  }
+
+  @Test
+  public void testDestroyDrainsPendingContexts() throws Exception {
+    RecordingHandler handler = new RecordingHandler(new CountDownLatch(0));
+    PooledStageImpl<Integer> stage = createStage("destroy", handler);
+    stage.start(context);
+    for (int i = 0; i < 1000; i++) {
+      stage.getSink().addSingleThreaded(i);
+    }
+    stage.destroy();
+    handler.assertInOrder(1000);
+  }
+
+  @Test
+  public void testFlushingContextVisitsEveryQueue() throws Exception {
+    final CountDownLatch flushed = new CountDownLatch(1);
+    PooledStageImpl<Flushing> stage = new PooledStageImpl<Flushing>(new DefaultLoggerProvider(), "flushing",
+        new AbstractEventHandler<Flushing>() {
+          @Override
+          public void handleEvent(Flushing context) {
+            flushed.countDown();
+          }
+        }, 4, null, new QueueFactory<ContextWrapper<Flushing>>(), Integer.MAX_VALUE, executor);
+    stage.start(context);
+    // nothing else is added, so only the move from queue to queue can get the context drained
+    stage.getSink().addMultiThreaded(new Flushing());
+    assertTrue(flushed.await(30, TimeUnit.SECONDS));
+    stage.destroy();
+  }
+
+  @Test
+  public void testFailureReportedToOwnerGroup() throws Exception {
+    final AtomicReference<Throwable> reported = new AtomicReference<Throwable>();
+    final CountDownLatch latch = new CountDownLatch(1);
+    ThreadGroup owner = new ThreadGroup("owner") {
+      @Override
+      public void uncaughtException(Thread t, Throwable e) {
+        reported.set(e);
+        latch.countDown();
+      }
+    };
+    PooledStageImpl<Integer> stage = new PooledStageImpl<Integer>(new DefaultLoggerProvider(), "failing",
+        new AbstractEventHandler<Integer>() {
+          @Override
+          public void handleEvent(Integer context) throws EventHandlerException {
+            throw new EventHandlerException("boom");
+          }
+        }, 1, owner, new QueueFactory<ContextWrapper<Integer>>(), Integer.MAX_VALUE, executor);
+    stage.start(context);
+    stage.getSink().addSingleThreaded(1);
+    assertTrue(latch.await(30, TimeUnit.SECONDS));
+    assertTrue(reported.get().getCause() instanceof EventHandlerException);
+    stage.destroy();
+  }
+
+  private PooledStageImpl<Integer> createStage(String name, RecordingHandler handler) {
+    return new PooledStageImpl<Integer>(new DefaultLoggerProvider(), name, handler, 1, null,
+        new QueueFactory<ContextWrapper<Integer>>(), Integer.MAX_VALUE, executor);
+  }
+
+  private static class Flushing implements MultiThreadedEventContext {
+    @Override
+    public Object getSchedulingKey() {
+      return null;
+    }
+
+    @Override
+    public boolean flush() {
+      return true;
+    }
+  }
+
+  private static class RecordingHandler extends AbstractEventHandler<Integer> {
+    private final List<Integer>  seen = new ArrayList<Integer>();
+    private final CountDownLatch done;
+    private volatile Thread      running;
+
+    RecordingHandler(CountDownLatch done) {
+      this.done = done;
+    }
+
+    @Override
+    public void handleEvent(Integer context) {
+      // contexts of one queue must never overlap
+      assertTrue(running == null);
+      running = Thread.currentThread();
+      synchronized (seen) {
+        seen.add(context);
+      }
+      running = null;
+      done.countDown();
+    }
+
+    void assertInOrder(int count) {
+      synchronized (seen) {
+        assertEquals(count, seen.size());
+        for (int i = 0; i < count; i++) {
+          assertEquals(i, seen.get(i).intValue());
+        }
+      }
+    }
+  }
+}
@@ -20,7 +20,9 @@ package com.tc.async.impl;
 
 import static java.util.concurrent.TimeUnit.SECONDS;
 
+import com.tc.async.api.AbstractEventHandler;
 import com.tc.async.api.MultiThreadedEventContext;
+import com.tc.async.api.Sink;
 import com.tc.async.api.Stage;
 import com.tc.lang.TCThreadGroup;
 import com.tc.lang.ThrowableHandlerImpl;
@@ -28,6 +30,11 @@ import com.tc.logging.TCLogger;
 import com.tc.logging.TCLogging;
 import com.tc.util.concurrent.QueueFactory;
 
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 import junit.framework.TestCase;
 
 /**
@@ -164,6 +171,47 @@ public class StageManagerImplTest extends TestCase {
     stageManager.stopAll();
   }
   
+  public void testHandlerBlockedOnDedicatedStageKeepsSharedThreads() throws Exception {
+    ExecutorService shared = Executors.newSingleThreadExecutor();
+    try {
+      StageManagerImpl sharing = new StageManagerImpl(new TCThreadGroup(new ThrowableHandlerImpl(TCLogging.getLogger(StageManagerImpl.class))), new QueueFactory<Object>(), shared);
+      final CountDownLatch responded = new CountDownLatch(1);
+      final CountDownLatch handled = new CountDownLatch(1);
+      final AtomicBoolean gotResponse = new AtomicBoolean();
+      Stage<Object> responses = sharing.createStage("responses", Object.class, new AbstractEventHandler<Object>() {
+        @Override
+        public void handleEvent(Object context) {
+          responded.countDown();
+        }
+      }, 1, 10, null);
+      assertTrue(responses instanceof StageImpl);
+      final Sink<Object> responseSink = responses.getSink();
+      Stage<Object> blocking = sharing.createStage("blocking", Object.class, new AbstractEventHandler<Object>() {
+        @Override
+        public void handleEvent(Object context) {
+          // takes the only shared thread until the response stage has run
+          responseSink.addSingleThreaded(context);
+          try {
+            gotResponse.set(responded.await(30, SECONDS));
+          } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+          }
+          handled.countDown();
+        }
+      }, 1, 10);
+      assertTrue(blocking instanceof PooledStageImpl);
+      responses.start(new ConfigurationContextImpl(null));
+      blocking.start(new ConfigurationContextImpl(null));
+
+      blocking.getSink().addSingleThreaded(new Object());
+      assertTrue(handled.await(60, SECONDS));
+      assertTrue(gotResponse.get());
+      sharing.stopAll();
+    } finally {
+      shared.shutdownNow();
+    }
+  }
+
   /*
    * @see TestCase#tearDown()
    */
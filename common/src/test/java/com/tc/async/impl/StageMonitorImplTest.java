@@ -76,4 +76,28 @@ public class StageMonitorImplTest extends TestCase {
 
   }
 
+  public void testPercentiles() throws Exception {
+    StageMonitorImpl sm = new StageMonitorImpl("name", new StringFormatter());
+
+    for (int i = 0; i < 98; i++) {
+      sm.eventBegin(3);
+    }
+    sm.eventBegin(100);
+    sm.eventBegin(1000);
+
+    Analysis an = sm.analyze();
+    assertEquals(Integer.valueOf(100), an.getEventCount());
+    assertEquals(Integer.valueOf(3), an.getMinQueueDepth());
+    assertEquals(Integer.valueOf(1000), an.getMaxQueueDepth());
+    assertEquals(Double.valueOf((98 * 3 + 100 + 1000) / 100.0), an.getAvgQueueDepth());
+    assertEquals(Integer.valueOf(3), an.getMedianQueueDepth());
+    assertEquals(Integer.valueOf(127), an.get99thPercentileQueueDepth());
+
+    sm.flush();
+    an = sm.analyze();
+    assertEquals(Integer.valueOf(0), an.getEventCount());
+    assertEquals(Integer.valueOf(-1), an.getMinQueueDepth());
+    assertEquals(Integer.valueOf(-1), an.getMedianQueueDepth());
+  }
+
 }
@@ -0,0 +1,74 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.net.protocol.delivery;
+
+import com.tc.test.TCTestCase;
+
+public class OutstandingMessageRingTest extends TCTestCase {
+
+  public void testFifoAcrossWrap() {
+    OutstandingMessageRing ring = new OutstandingMessageRing(4);
+    TestProtocolMessage[] msgs = new TestProtocolMessage[10];
+    for (int i = 0; i < msgs.length; i++) {
+      msgs[i] = new TestProtocolMessage(null, i, -1);
+    }
+
+    ring.addLast(msgs[0]);
+    ring.addLast(msgs[1]);
+    ring.addLast(msgs[2]);
+    assertSame(msgs[0], ring.removeFirst());
+    assertSame(msgs[1], ring.removeFirst());
+    ring.addLast(msgs[3]);
+    ring.addLast(msgs[4]);
+    ring.addLast(msgs[5]);
+    assertEquals(4, ring.size());
+    for (int i = 0; i < ring.size(); i++) {
+      assertSame(msgs[i + 2], ring.get(i));
+    }
+    for (int i = 2; i < 6; i++) {
+      assertSame(msgs[i], ring.removeFirst());
+    }
+    assertTrue(ring.isEmpty());
+  }
+
+  public void testGrowsWhenUnbounded() {
+    OutstandingMessageRing ring = new OutstandingMessageRing(0);
+    TestProtocolMessage[] msgs = new TestProtocolMessage[100];
+    for (int i = 0; i < msgs.length; i++) {
+      msgs[i] = new TestProtocolMessage(null, i, -1);
+      ring.addLast(msgs[i]);
+      if (i % 3 == 0) {
+        assertSame(msgs[i / 3], ring.removeFirst());
+      }
+    }
+    int first = 34;
+    assertEquals(msgs.length - first, ring.size());
+    for (int i = 0; i < ring.size(); i++) {
+      assertSame(msgs[first + i], ring.get(i));
+    }
+    ring.clear();
+    assertTrue(ring.isEmpty());
+    try {
+      ring.removeFirst();
+      fail();
+    } catch (IllegalStateException expected) {
+      // expected
+    }
+  }
+}
@@ -58,4 +58,76 @@ public class ReceiveStateMachineTest extends TCTestCase {
     assertEquals(received, delivery.receivedMessageCount);
     assertTrue(receiveQueue.poll() == null);
   }
+
+  public void testDelayedAck() throws Exception {
+    BlockingQueue<TCNetworkMessage> receiveQueue = new LinkedBlockingQueue<TCNetworkMessage>();
+    TestProtocolMessageDelivery delivery = new TestProtocolMessageDelivery(receiveQueue);
+    ReceiveStateMachine rsm = new ReceiveStateMachine(delivery, new L1ReconnectConfigImpl(true, 5000, 5000, 16, 32, 50),
+                                                      true);
+    rsm.start();
+    rsm.resume();
+
+    TestProtocolMessage tpm = new TestProtocolMessage(new PingMessage(new NullMessageMonitor()), 0, -1);
+    tpm.isSend = true;
+    rsm.execute(tpm);
+    // below maxDelayedAcks, nothing goes out straight away
+    assertFalse(delivery.sentAck);
+
+    long deadline = System.currentTimeMillis() + 5000;
+    while (!delivery.sentAck && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertTrue(delivery.sentAck);
+    assertEquals(0, delivery.ackCount);
+  }
+
+  public void testPiggybackedAckSuppressesDelayedAck() throws Exception {
+    BlockingQueue<TCNetworkMessage> receiveQueue = new LinkedBlockingQueue<TCNetworkMessage>();
+    TestProtocolMessageDelivery delivery = new TestProtocolMessageDelivery(receiveQueue);
+    ReceiveStateMachine rsm = new ReceiveStateMachine(delivery, new L1ReconnectConfigImpl(true, 5000, 5000, 16, 32, 50),
+                                                      true);
+    rsm.start();
+    rsm.resume();
+
+    TestProtocolMessage tpm = new TestProtocolMessage(new PingMessage(new NullMessageMonitor()), 0, -1);
+    tpm.isSend = true;
+    rsm.execute(tpm);
+    // an outgoing send message picks up the ack
+    assertEquals(0, rsm.ackSequence());
+
+    Thread.sleep(200);
+    assertFalse(delivery.sentAck);
+  }
+
+  public void testFailedDelayedAckDoesNotStopOtherConnections() throws Exception {
+    TestProtocolMessageDelivery broken = new TestProtocolMessageDelivery(new LinkedBlockingQueue<TCNetworkMessage>()) {
+      @Override
+      public OOOProtocolMessage createAckMessage(long sequence) {
+        throw new IllegalStateException("connection closed");
+      }
+    };
+    ReceiveStateMachine failing = new ReceiveStateMachine(broken, new L1ReconnectConfigImpl(true, 5000, 5000, 16, 32, 10),
+                                                          true);
+    failing.start();
+    failing.resume();
+    TestProtocolMessage first = new TestProtocolMessage(new PingMessage(new NullMessageMonitor()), 0, -1);
+    first.isSend = true;
+    failing.execute(first);
+    Thread.sleep(100);
+
+    TestProtocolMessageDelivery delivery = new TestProtocolMessageDelivery(new LinkedBlockingQueue<TCNetworkMessage>());
+    ReceiveStateMachine rsm = new ReceiveStateMachine(delivery, new L1ReconnectConfigImpl(true, 5000, 5000, 16, 32, 10),
+                                                      true);
+    rsm.start();
+    rsm.resume();
+    TestProtocolMessage tpm = new TestProtocolMessage(new PingMessage(new NullMessageMonitor()), 0, -1);
+    tpm.isSend = true;
+    rsm.execute(tpm);
+
+    long deadline = System.currentTimeMillis() + 5000;
+    while (!delivery.sentAck && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertTrue(delivery.sentAck);
+  }
 }
@@ -18,6 +18,7 @@
  */
 package com.tc.net.protocol.tcm;
 
+import java.util.Map;
 
 import junit.framework.TestCase;
 
@@ -29,4 +30,23 @@ public class MessageMonitorImplTest extends TestCase {
     mm.newOutgoingMessage(new TestTCMessage());
     System.out.println(mm);
   }
+
+  public void testCountsPerType() throws Exception {
+    MessageMonitorImpl mm = new MessageMonitorImpl();
+    assertTrue(mm.getCounters().isEmpty());
+
+    TestTCMessage ping = new TestTCMessage();
+    TestTCMessage noop = new TestTCMessage();
+    noop.type = TCMessageType.NOOP_MESSAGE;
+    mm.newIncomingMessage(ping);
+    mm.newIncomingMessage(ping);
+    mm.newOutgoingMessage(noop);
+
+    Map<TCMessageType, MessageMonitorImpl.MessageCounter> counters = mm.getCounters();
+    assertEquals(2, counters.size());
+    assertEquals(2, counters.get(TCMessageType.PING_MESSAGE).getIncomingCount());
+    assertEquals(0, counters.get(TCMessageType.PING_MESSAGE).getOutgoingCount());
+    assertEquals(1, counters.get(TCMessageType.NOOP_MESSAGE).getOutgoingCount());
+    assertEquals(noop.getTotalLength(), counters.get(TCMessageType.NOOP_MESSAGE).getOutgoingData());
+  }
 }
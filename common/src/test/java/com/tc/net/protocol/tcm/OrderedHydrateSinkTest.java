@@ -0,0 +1,143 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.net.protocol.tcm;
+
+import com.tc.async.api.Sink;
+import com.tc.async.impl.MockSink;
+import com.tc.test.TCTestCase;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class OrderedHydrateSinkTest extends TCTestCase {
+
+  private final HydrateHandler     handler = new HydrateHandler();
+  private final MockSink<TCMessage> dest    = new MockSink<TCMessage>();
+  private Sink<HydrateContext>      stageSink;
+  private OrderedHydrateSink        sink;
+
+  @Override
+  @SuppressWarnings("unchecked")
+  protected void setUp() throws Exception {
+    super.setUp();
+    stageSink = mock(Sink.class);
+    sink = new OrderedHydrateSink(stageSink);
+  }
+
+  public void testDeliversInArrivalOrder() throws Exception {
+    TCMessage[] messages = new TCMessage[3];
+    HydrateContext[] contexts = new HydrateContext[3];
+    for (int i = 0; i < contexts.length; i++) {
+      messages[i] = mock(TCMessage.class);
+      contexts[i] = new HydrateContext(messages[i], dest);
+      sink.addMultiThreaded(contexts[i]);
+      verify(stageSink).addMultiThreaded(contexts[i]);
+      // free to hydrate on any queue
+      assertNull(contexts[i].getSchedulingKey());
+    }
+
+    handler.handleEvent(contexts[2]);
+    handler.handleEvent(contexts[1]);
+    assertEquals(0, dest.size());
+
+    handler.handleEvent(contexts[0]);
+    assertEquals(3, dest.size());
+    for (TCMessage message : messages) {
+      assertSame(message, dest.take());
+    }
+  }
+
+  public void testFailedHydrateDoesNotHoldBackOthers() throws Exception {
+    MessageChannel channel = mock(MessageChannel.class);
+    TCMessage broken = when(mock(TCMessage.class).getChannel()).thenReturn(channel).getMock();
+    doThrow(new RuntimeException("bummer")).when(broken).hydrate();
+    TCMessage good = mock(TCMessage.class);
+
+    HydrateContext first = new HydrateContext(broken, dest);
+    HydrateContext second = new HydrateContext(good, dest);
+    sink.addMultiThreaded(first);
+    sink.addMultiThreaded(second);
+
+    handler.handleEvent(second);
+    assertEquals(0, dest.size());
+    handler.handleEvent(first);
+    verify(channel).close();
+    assertEquals(1, dest.size());
+    assertSame(good, dest.take());
+  }
+
+  public void testRejectedContextDoesNotHoldBackOthers() throws Exception {
+    TCMessage rejected = mock(TCMessage.class);
+    TCMessage good = mock(TCMessage.class);
+    HydrateContext first = new HydrateContext(rejected, dest);
+    HydrateContext second = new HydrateContext(good, dest);
+    doThrow(new IllegalStateException("closed")).when(stageSink).addMultiThreaded(first);
+
+    try {
+      sink.addMultiThreaded(first);
+      fail();
+    } catch (IllegalStateException expected) {
+      // expected
+    }
+    sink.addMultiThreaded(second);
+    handler.handleEvent(second);
+    assertSame(good, dest.take());
+  }
+
+  public void testFullDestinationDoesNotBlockOtherThreads() throws Exception {
+    CountDownLatch entered = new CountDownLatch(1);
+    CountDownLatch unblock = new CountDownLatch(1);
+    MockSink<TCMessage> full = new MockSink<TCMessage>() {
+      @Override
+      public void addSingleThreaded(TCMessage context) {
+        if (queue.isEmpty()) {
+          entered.countDown();
+          try {
+            unblock.await();
+          } catch (InterruptedException e) {
+            throw new AssertionError(e);
+          }
+        }
+        super.addSingleThreaded(context);
+      }
+    };
+    TCMessage first = mock(TCMessage.class);
+    TCMessage second = mock(TCMessage.class);
+    HydrateContext firstContext = new HydrateContext(first, full);
+    sink.addMultiThreaded(firstContext);
+    Thread deliverer = new Thread(() -> handler.handleEvent(firstContext));
+    deliverer.start();
+    entered.await();
+
+    // the deliverer is stuck in the destination but adding and releasing go on
+    HydrateContext secondContext = new HydrateContext(second, full);
+    sink.addMultiThreaded(secondContext);
+    handler.handleEvent(secondContext);
+    assertEquals(0, full.size());
+
+    unblock.countDown();
+    deliverer.join();
+    assertSame(first, full.take());
+    assertSame(second, full.take());
+  }
+}
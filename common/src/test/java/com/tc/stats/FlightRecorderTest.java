@@ -0,0 +1,109 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.stats;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+public class FlightRecorderTest extends TestCase {
+
+  public void testRoundTripAcrossThreads() throws Exception {
+    final FlightRecorder recorder = new FlightRecorder(true, 16);
+    final int queue = recorder.name("queue");
+    assertEquals(queue, recorder.name("queue"));
+    int entity = recorder.name("entity");
+
+    recorder.record(FlightRecorder.Event.STAGE_ENQUEUE, queue, 0, 3);
+    Thread other = new Thread("recorder-test") {
+      @Override
+      public void run() {
+        recorder.record(FlightRecorder.Event.STAGE_DEQUEUE, queue, 0, 2);
+      }
+    };
+    other.start();
+    other.join();
+    recorder.record(FlightRecorder.Event.INVOKE_BEGIN, entity, 7, 0);
+
+    List<FlightRecording.Entry> entries = FlightRecording.read(recorder.dump()).getEntries();
+    assertEquals(3, entries.size());
+    assertEquals("STAGE_ENQUEUE", entries.get(0).getEvent());
+    assertEquals("queue", entries.get(0).getName());
+    assertEquals(3, entries.get(0).getSecond());
+    assertEquals("STAGE_DEQUEUE", entries.get(1).getEvent());
+    assertTrue(entries.get(1).getThread().startsWith("recorder-test/"));
+    assertEquals("INVOKE_BEGIN", entries.get(2).getEvent());
+    assertEquals("entity", entries.get(2).getName());
+    assertEquals(7, entries.get(2).getFirst());
+    assertTrue(entries.get(2).toString().contains("concurrency=7"));
+  }
+
+  public void testRingKeepsMostRecent() throws Exception {
+    FlightRecorder recorder = new FlightRecorder(true, 10);
+    for (int i = 0; i < 100; i++) {
+      recorder.record(FlightRecorder.Event.REPLICATION_SEND, FlightRecorder.NO_NAME, i, 1);
+    }
+    FlightRecording recording = FlightRecording.read(recorder.dump());
+    List<FlightRecording.Entry> entries = recording.getEntries();
+    // rounded up to 16, less the oldest slot which the owner could be rewriting while the dump copies
+    assertEquals(15, entries.size());
+    for (int i = 0; i < entries.size(); i++) {
+      assertEquals(85 + i, entries.get(i).getFirst());
+      assertEquals("", entries.get(i).getName());
+    }
+    assertEquals(15, recording.getEntries(1, TimeUnit.HOURS).size());
+    assertEquals(0, recording.getEntries(0, TimeUnit.SECONDS).size());
+  }
+
+  public void testOneShotThreadsShareRings() throws Exception {
+    final FlightRecorder recorder = new FlightRecorder(true, 16, t -> t.getName().startsWith("one-shot"));
+    final int queue = recorder.name("queue");
+    int threads = Runtime.getRuntime().availableProcessors() * 4 + 200;
+    for (int i = 0; i < threads; i++) {
+      final int sequence = i;
+      Thread oneShot = new Thread("one-shot " + i) {
+        @Override
+        public void run() {
+          recorder.record(FlightRecorder.Event.STAGE_DEQUEUE, queue, sequence, 0);
+        }
+      };
+      oneShot.start();
+      oneShot.join();
+    }
+
+    List<FlightRecording.Entry> entries = FlightRecording.read(recorder.dump()).getEntries();
+    Set<String> rings = new HashSet<String>();
+    for (FlightRecording.Entry entry : entries) {
+      rings.add(entry.getThread());
+    }
+    assertTrue(rings.size() <= Runtime.getRuntime().availableProcessors());
+    // the most recent events survive, however many threads recorded them
+    assertEquals(threads - 1, entries.get(entries.size() - 1).getFirst());
+  }
+
+  public void testDisabledRecordsNothing() throws Exception {
+    FlightRecorder recorder = new FlightRecorder(false, 16);
+    assertEquals(FlightRecorder.NO_NAME, recorder.name("queue"));
+    recorder.record(FlightRecorder.Event.PERSIST_FLUSH_BEGIN, FlightRecorder.NO_NAME, 1, 0);
+    assertTrue(FlightRecording.read(recorder.dump()).getEntries().isEmpty());
+  }
+}
@@ -0,0 +1,71 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.stats;
+
+import junit.framework.TestCase;
+
+public class LatencyHistogramTest extends TestCase {
+
+  public void testBucketsCoverValues() {
+    for (long value : new long[] { 0, 1, 7, 8, 9, 15, 16, 1000, 123456789L, 1L << 36 }) {
+      int index = LatencyHistogram.indexFor(value);
+      assertTrue(value <= LatencyHistogram.highestValueFor(index));
+      if (index > 0) {
+        assertTrue(value > LatencyHistogram.highestValueFor(index - 1));
+      }
+    }
+  }
+
+  public void testPercentilesWithinPrecision() {
+    LatencyHistogram histogram = new LatencyHistogram("test");
+    for (long i = 1; i <= 10000; i++) {
+      histogram.record(i * 1000);
+    }
+    LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+    assertEquals(10000, snapshot.getCount());
+    assertEquals(10000L * 1000, snapshot.getMax());
+    assertEquals(5000500, snapshot.getMean());
+    assertWithin(5000L * 1000, snapshot.getValueAtPercentile(50));
+    assertWithin(9900L * 1000, snapshot.getValueAtPercentile(99));
+    assertEquals(snapshot.getMax(), snapshot.getValueAtPercentile(100));
+  }
+
+  public void testHugeAndNegativeValues() {
+    LatencyHistogram histogram = new LatencyHistogram("test");
+    histogram.record(-5);
+    histogram.record(Long.MAX_VALUE);
+    LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+    assertEquals(2, snapshot.getCount());
+    assertEquals(0, snapshot.getValueAtPercentile(50));
+    assertEquals(Long.MAX_VALUE, snapshot.getValueAtPercentile(100));
+  }
+
+  public void testReset() {
+    LatencyHistogram histogram = new LatencyHistogram("test");
+    histogram.record(100);
+    histogram.reset();
+    assertEquals(0, histogram.snapshot().getCount());
+    assertEquals(0, histogram.snapshot().getValueAtPercentile(99));
+  }
+
+  private static void assertWithin(long expected, long actual) {
+    double error = Math.abs(actual - expected) / (double) expected;
+    assertTrue("expected " + expected + " got " + actual, error <= 1.0 / LatencyHistogram.SUB_BUCKETS);
+  }
+}
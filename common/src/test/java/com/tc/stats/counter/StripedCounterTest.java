@@ -0,0 +1,120 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.stats.counter;
+
+import com.tc.stats.counter.sampled.SampledCounter;
+import com.tc.stats.counter.sampled.StripedSampledCounterConfig;
+import com.tc.stats.counter.sampled.StripedSampledCounterImpl;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import junit.framework.TestCase;
+
+public class StripedCounterTest extends TestCase {
+
+  public void testInitialValue() {
+    Counter counter = new StripedCounterImpl();
+    assertEquals(0L, counter.getValue());
+
+    counter = new StripedCounterImpl(42L);
+    assertEquals(42L, counter.getValue());
+  }
+
+  public void test() {
+    Counter counter = new StripedCounterImpl();
+    counter.decrement();
+    assertEquals(-1L, counter.getValue());
+
+    counter.increment();
+    assertEquals(0L, counter.getValue());
+
+    counter.decrement(10L);
+    assertEquals(-10L, counter.getValue());
+
+    counter.increment(10L);
+    assertEquals(0L, counter.getValue());
+
+    counter.setValue(Long.MAX_VALUE);
+    assertEquals(Long.MAX_VALUE, counter.getValue());
+
+    counter.setValue(0L);
+    counter.increment();
+    counter.increment();
+    counter.increment();
+    long value = counter.getAndSet(42L);
+    assertEquals(3L, value);
+    assertEquals(42L, counter.getValue());
+  }
+
+  public void testConcurrentResetLosesNothing() throws InterruptedException {
+    final StripedCounterImpl counter = new StripedCounterImpl();
+    final AtomicLong drained = new AtomicLong();
+    final int perThread = 100000;
+
+    Thread[] threads = new Thread[8];
+    for (int i = 0; i < threads.length; i++) {
+      threads[i] = new Thread() {
+        @Override
+        public void run() {
+          for (int n = 0; n < perThread; n++) {
+            counter.increment();
+          }
+        }
+      };
+      threads[i].start();
+    }
+    while (threads[0].isAlive()) {
+      drained.addAndGet(counter.getAndSet(0L));
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    drained.addAndGet(counter.getAndSet(0L));
+
+    assertEquals((long) perThread * threads.length, drained.get());
+  }
+
+  public void testManagerSchedulesStripedSampledCounter() throws InterruptedException {
+    CounterManager manager = new CounterManagerImpl();
+    try {
+      SampledCounter counter = (SampledCounter) manager.createCounter(new StripedSampledCounterConfig(1, 10, true, 0L));
+      counter.increment(5L);
+      Thread.sleep(2500);
+      assertNotNull(counter.getMostRecentSample());
+      assertEquals(0L, counter.getValue());
+    } finally {
+      manager.shutdown();
+    }
+  }
+
+  public void testSubclassValueIsNotReadDuringConstruction() {
+    StripedSampledCounterImpl counter = new StripedSampledCounterImpl(new StripedSampledCounterConfig(1, 10, false, 7L)) {
+      private final StripedCounterImpl numerator = new StripedCounterImpl();
+
+      @Override
+      public long getValue() {
+        return numerator.getValue();
+      }
+    };
+    assertEquals(7L, counter.getMostRecentSample().getCounterValue());
+    assertEquals(0L, counter.getValue());
+    counter.shutdown();
+  }
+
+}
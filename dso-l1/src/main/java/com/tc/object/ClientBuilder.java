@@ -22,6 +22,7 @@ import com.tc.async.api.StageManager;
 import com.tc.util.ProductID;
 import com.tc.logging.TCLogger;
 import com.tc.management.TCClient;
+import com.tc.net.core.TCConnectionManager;
 import com.tc.net.core.security.TCSecurityManager;
 import com.tc.net.protocol.NetworkStackHarnessFactory;
 import com.tc.net.protocol.tcm.ClientMessageChannel;
@@ -53,6 +54,7 @@ public interface ClientBuilder {
   CommunicationsManager createCommunicationsManager(MessageMonitor monitor,
                                                     TCMessageRouter messageRouter,
                                                     NetworkStackHarnessFactory stackHarnessFactory,
+                                                    TCConnectionManager connectionManager,
                                                     ConnectionPolicy connectionPolicy,
                                                     int workerCommThreads,
                                                     HealthCheckerConfig hcConfig,
@@ -61,7 +61,6 @@ import java.io.IOException;
 import java.util.Collections;
 
 import java.util.EnumSet;
-import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -595,20 +594,10 @@ public class ClientEntityManagerImpl implements ClientEntityManager {
     }
 
     @Override
-    public synchronized TransactionID[] getReceivedTransactions() {
+    public synchronized int replay(ReplayReceiver receiver) {
       accessed = true;
       notifyAll();
-      return new TransactionID[0];
-    }
-
-    @Override
-    public TransactionID[] getRetiredTransactions() {
-      return new TransactionID[0];
-    }
-
-    @Override
-    public Map<TransactionID, byte[]> getResults() {
-      return Collections.emptyMap();
+      return 0;
     }
 
     @Override
@@ -59,6 +59,7 @@ import com.tc.net.protocol.tcm.ClientMessageChannel;
 import com.tc.net.protocol.tcm.CommunicationsManager;
 import com.tc.net.protocol.tcm.HydrateContext;
 import com.tc.net.protocol.tcm.HydrateHandler;
+import com.tc.net.protocol.tcm.OrderedHydrateSink;
 import com.tc.net.protocol.tcm.MessageMonitor;
 import com.tc.net.protocol.tcm.MessageMonitorImpl;
 import com.tc.net.protocol.tcm.TCMessage;
@@ -80,6 +81,7 @@ import com.tc.object.handshakemanager.ClientHandshakeManagerImpl;
 import com.tc.object.msg.ClientHandshakeAckMessageImpl;
 import com.tc.object.msg.ClientHandshakeMessageImpl;
 import com.tc.object.msg.ClientHandshakeRefusedMessageImpl;
+import com.tc.object.msg.ClientHandshakeResendAckMessageImpl;
 import com.tc.object.msg.ClusterMembershipMessage;
 import com.tc.object.msg.InvokeRegisteredServiceMessage;
 import com.tc.object.msg.InvokeRegisteredServiceResponseMessage;
@@ -162,6 +164,7 @@ public class DistributedObjectClient implements TCClient {
   private ClientShutdownManager                      shutdownManager;
 
   private final Thread                               shutdownAction;
+  private SharedClientRuntime                        sharedRuntime;
 
   private final SetOnceFlag                          clientStopped                       = new SetOnceFlag();
   private final SetOnceFlag                          connectionMade                       = new SetOnceFlag();
@@ -193,8 +196,15 @@ public class DistributedObjectClient implements TCClient {
     this.shutdownAction = new Thread(new ShutdownAction(), L1VMShutdownHookName);
     Runtime.getRuntime().addShutdownHook(this.shutdownAction);
     
+    // In shared mode the stages are drained by the runtime's threads instead of threads of their own. Secured
+    // connections keep a private runtime since the selector threads are tied to a security manager.
+    final TCProperties tcProperties = TCPropertiesImpl.getProperties();
+    if (securityManager == null && SharedClientRuntime.isEnabled(tcProperties)) {
+      this.sharedRuntime = SharedClientRuntime.acquire(tcProperties);
+    }
+
     // We need a StageManager to create the SEDA stages used for handling the messages.
-    final SEDA<Void> seda = new SEDA<Void>(threadGroup);
+    final SEDA<Void> seda = new SEDA<Void>(threadGroup, sharedRuntime == null ? null : sharedRuntime.getStageExecutor());
     communicationStageManager = seda.getStageManager();
     this.tcMemManager = new TCMemoryManagerImpl(threadGroup);
   }
@@ -237,6 +247,11 @@ public class DistributedObjectClient implements TCClient {
       public int getSendWindow() {
         return 32;
       }
+
+      @Override
+      public int getDelayedAckMillis() {
+        return 0;
+      }
     };
     return reconnectConfig;
   }
@@ -289,6 +304,7 @@ public class DistributedObjectClient implements TCClient {
         .createCommunicationsManager(mm,
                                      messageRouter,
                                      networkStackHarnessFactory,
+                                     sharedRuntime == null ? null : sharedRuntime.getConnectionManager(),
                                      new NullConnectionPolicy(),
                                      this.connectionComponents.createConnectionInfoConfigItemByGroup().length,
                                      new HealthCheckerConfigClientImpl(tcProperties
@@ -322,9 +338,14 @@ public class DistributedObjectClient implements TCClient {
     this.clientEntityManager = this.clientBuilder.createClientEntityManager(this.channel, this.communicationStageManager);
     RequestReceiveHandler receivingHandler = new RequestReceiveHandler(this.clientEntityManager);
     MultiRequestReceiveHandler mutil = new MultiRequestReceiveHandler(this.clientEntityManager);
-    Stage<VoltronEntityResponse> entityResponseStage = this.communicationStageManager.createStage(ClientConfigurationContext.VOLTRON_ENTITY_RESPONSE_STAGE, VoltronEntityResponse.class, receivingHandler, 1, maxSize);
-    Stage<VoltronEntityMultiResponse> multiResponseStage = this.communicationStageManager.createStage(ClientConfigurationContext.VOLTRON_ENTITY_MULTI_RESPONSE_STAGE, VoltronEntityMultiResponse.class, mutil, 1, maxSize);
-    Stage<Void> serverMessageStage = this.communicationStageManager.createStage(ClientConfigurationContext.SERVER_ENTITY_MESSAGE_STAGE, Void.class, new ServerMessageReceiveHandler<Void>(channel), 1, maxSize);
+    // Acks and responses always get threads of their own, as does the hydrate stage they pass through.  Server message
+    // handlers run entity code which may block on an invoke; in shared mode enough of them would otherwise take every
+    // pooled thread and leave none to deliver the response they are waiting for.
+    Stage<VoltronEntityResponse> entityResponseStage = this.communicationStageManager.createStage(ClientConfigurationContext.VOLTRON_ENTITY_RESPONSE_STAGE, VoltronEntityResponse.class, receivingHandler, 1, maxSize, null);
+    Stage<VoltronEntityMultiResponse> multiResponseStage = this.communicationStageManager.createStage(ClientConfigurationContext.VOLTRON_ENTITY_MULTI_RESPONSE_STAGE, VoltronEntityMultiResponse.class, mutil, 1, maxSize, null);
+    // server messages are keyed by entity, see ServerEntityMessageImpl
+    final int serverMessageThreads = tcProperties.getInt(TCPropertiesConsts.L1_SEDA_SERVER_ENTITY_MESSAGE_STAGE_THREADS);
+    Stage<Void> serverMessageStage = this.communicationStageManager.createStage(ClientConfigurationContext.SERVER_ENTITY_MESSAGE_STAGE, Void.class, new ServerMessageReceiveHandler<Void>(channel), serverMessageThreads, maxSize);
 
     TerracottaOperatorEventLogging.setNodeNameProvider(new ClientNameProvider(this.cluster));
 
@@ -345,7 +366,10 @@ public class DistributedObjectClient implements TCClient {
     // CDV-1181 warn if using CMS
     this.tcMemManager.checkGarbageCollectors();
 
-    final Stage<HydrateContext> hydrateStage = this.communicationStageManager.createStage(ClientConfigurationContext.HYDRATE_MESSAGE_STAGE, HydrateContext.class, new HydrateHandler(), 1, maxSize);
+    // With more than one thread messages are hydrated in parallel and put back in arrival order before delivery.
+    final int hydrateThreads = tcProperties.getInt(TCPropertiesConsts.L1_SEDA_HYDRATE_STAGE_THREADS);
+    final Stage<HydrateContext> hydrateStage = this.communicationStageManager.createStage(ClientConfigurationContext.HYDRATE_MESSAGE_STAGE, HydrateContext.class, new HydrateHandler(), hydrateThreads, maxSize, null);
+    final Sink<HydrateContext> hydrateSink = (hydrateThreads > 1) ? new OrderedHydrateSink(hydrateStage.getSink()) : hydrateStage.getSink();
 
     // By design this stage needs to be single threaded. If it wasn't then cluster membership messages could get
     // processed before the client handshake ack, and this client would get a faulty view of the cluster at best, or
@@ -372,7 +396,7 @@ public class DistributedObjectClient implements TCClient {
     // DO NOT create any stages after this call
     this.communicationStageManager.startAll(cc, Collections.<PostInit> emptyList());
 
-    initChannelMessageRouter(messageRouter, hydrateStage.getSink(), pauseSink, clusterMembershipEventStage.getSink(), entityResponseStage.getSink(), multiResponseStage.getSink(), serverMessageStage.getSink());
+    initChannelMessageRouter(messageRouter, hydrateSink, pauseSink, clusterMembershipEventStage.getSink(), entityResponseStage.getSink(), multiResponseStage.getSink(), serverMessageStage.getSink());
     new Thread(threadGroup, new Runnable() {
         public void run() {
           while (!clientStopped.isSet()) {
@@ -462,6 +486,8 @@ public class DistributedObjectClient implements TCClient {
 
     messageTypeClassMapping.put(TCMessageType.CLIENT_HANDSHAKE_MESSAGE, ClientHandshakeMessageImpl.class);
     messageTypeClassMapping.put(TCMessageType.CLIENT_HANDSHAKE_ACK_MESSAGE, ClientHandshakeAckMessageImpl.class);
+    messageTypeClassMapping.put(TCMessageType.CLIENT_HANDSHAKE_RESEND_MESSAGE, ClientHandshakeMessageImpl.class);
+    messageTypeClassMapping.put(TCMessageType.CLIENT_HANDSHAKE_RESEND_ACK_MESSAGE, ClientHandshakeResendAckMessageImpl.class);
     messageTypeClassMapping
         .put(TCMessageType.CLIENT_HANDSHAKE_REFUSED_MESSAGE, ClientHandshakeRefusedMessageImpl.class);
     messageTypeClassMapping.put(TCMessageType.CLUSTER_MEMBERSHIP_EVENT_MESSAGE, ClusterMembershipMessage.class);
@@ -486,6 +512,7 @@ public class DistributedObjectClient implements TCClient {
                                         Sink<Void> clusterMembershipEventSink, Sink<VoltronEntityResponse> responseSink, Sink<VoltronEntityMultiResponse> multiSink, Sink<Void> serverEntityMessageSink) {
     messageRouter.routeMessageType(TCMessageType.CLIENT_HANDSHAKE_ACK_MESSAGE, pauseSink, hydrateSink);
     messageRouter.routeMessageType(TCMessageType.CLIENT_HANDSHAKE_REFUSED_MESSAGE, pauseSink, hydrateSink);
+    messageRouter.routeMessageType(TCMessageType.CLIENT_HANDSHAKE_RESEND_ACK_MESSAGE, pauseSink, hydrateSink);
     messageRouter.routeMessageType(TCMessageType.CLUSTER_MEMBERSHIP_EVENT_MESSAGE, clusterMembershipEventSink, hydrateSink);
     messageRouter.routeMessageType(TCMessageType.VOLTRON_ENTITY_RECEIVED_RESPONSE, responseSink, hydrateSink);
     messageRouter.routeMessageType(TCMessageType.VOLTRON_ENTITY_APPLIED_RESPONSE, responseSink, hydrateSink);
@@ -573,6 +600,16 @@ public class DistributedObjectClient implements TCClient {
       }
     }
 
+    if (this.sharedRuntime != null) {
+      try {
+        this.sharedRuntime.release();
+      } catch (final Throwable t) {
+        logger.error("Error releasing shared client runtime", t);
+      } finally {
+        this.sharedRuntime = null;
+      }
+    }
+
     CommonShutDownHook.shutdown();
     this.cluster.shutdown();
 
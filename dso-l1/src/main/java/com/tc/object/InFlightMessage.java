@@ -31,6 +31,9 @@ import java.util.HashSet;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 
 /**
@@ -58,6 +61,10 @@ public class InFlightMessage implements InvokeFuture<byte[]> {
   private boolean canSetResult;
   private boolean getCanComplete;
   private final boolean blockGetOnRetired;
+  // Waits park on conditions rather than in Object.wait(), so a caller on a virtual thread does not pin its carrier.
+  private final Lock lock = new ReentrantLock();
+  private final Condition acked = lock.newCondition();
+  private final Condition completed = lock.newCondition();
 
   public InFlightMessage(NetworkVoltronEntityMessage message, Set<VoltronEntityMessage.Acks> acks, boolean shouldBlockGetOnRetire) {
     this.message = message;
@@ -87,118 +94,157 @@ public class InFlightMessage implements InvokeFuture<byte[]> {
     return this.message.send();
   }
   
-  public synchronized void waitForAcks() {
+  public void waitForAcks() {
     boolean interrupted = false;
-    while (!this.pendingAcks.isEmpty()) {
-      try {
-        wait();
-      } catch (InterruptedException e) {
-        interrupted = true;
+    lock.lock();
+    try {
+      while (!this.pendingAcks.isEmpty()) {
+        try {
+          acked.await();
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
       }
+    } finally {
+      lock.unlock();
     }
     if (interrupted) {
       Thread.currentThread().interrupt();
     }
   }
 
-  public synchronized void sent() {
-    if (this.pendingAcks.remove(VoltronEntityMessage.Acks.SENT)) {
-      if (this.pendingAcks.isEmpty()) {
-        notifyAll();
-      }
-    }
+  public void sent() {
+    removeAck(VoltronEntityMessage.Acks.SENT);
+  }
+
+  public void received() {
+    removeAck(VoltronEntityMessage.Acks.RECEIVED);
   }
 
-  public synchronized void received() {
-    if (this.pendingAcks.remove(VoltronEntityMessage.Acks.RECEIVED)) {
-      if (this.pendingAcks.isEmpty()) {
-        notifyAll();
+  private void removeAck(VoltronEntityMessage.Acks ack) {
+    lock.lock();
+    try {
+      if (this.pendingAcks.remove(ack)) {
+        if (this.pendingAcks.isEmpty()) {
+          acked.signalAll();
+        }
       }
+    } finally {
+      lock.unlock();
     }
   }
 
   @Override
-  public synchronized void interrupt() {
-    for (Thread waitingThread : this.waitingThreads) {
-      waitingThread.interrupt();
+  public void interrupt() {
+    lock.lock();
+    try {
+      for (Thread waitingThread : this.waitingThreads) {
+        waitingThread.interrupt();
+      }
+    } finally {
+      lock.unlock();
     }
   }
 
   @Override
-  public synchronized boolean isDone() {
-    return this.getCanComplete;
+  public boolean isDone() {
+    lock.lock();
+    try {
+      return this.getCanComplete;
+    } finally {
+      lock.unlock();
+    }
   }
 
   @Override
-  public synchronized byte[] get() throws InterruptedException, EntityException {
+  public byte[] get() throws InterruptedException, EntityException {
     Thread callingThread = Thread.currentThread();
-    boolean didAdd = this.waitingThreads.add(callingThread);
-    // We can't have already been waiting.
-    Assert.assertTrue(didAdd);
-    
+    lock.lock();
     try {
-      while (!this.getCanComplete) {
-        wait();
+      boolean didAdd = this.waitingThreads.add(callingThread);
+      // We can't have already been waiting.
+      Assert.assertTrue(didAdd);
+
+      try {
+        while (!this.getCanComplete) {
+          completed.await();
+        }
+      } finally {
+        // We will hit this path on interrupt, for example.
+        this.waitingThreads.remove(callingThread);
+      }
+
+      // If we didn't throw due to interruption, we fall through here.
+      if (exception != null) {
+        throw ExceptionUtils.addLocalStackTraceToEntityException(exception);
+      } else {
+        return value;
       }
     } finally {
-      // We will hit this path on interrupt, for example.
-      this.waitingThreads.remove(callingThread);
-    }
-    
-    // If we didn't throw due to interruption, we fall through here.
-    if (exception != null) {
-      throw ExceptionUtils.addLocalStackTraceToEntityException(exception);
-    } else {
-      return value;
+      lock.unlock();
     }
   }
 
   @Override
-  public synchronized byte[] getWithTimeout(long timeout, TimeUnit unit) throws InterruptedException, EntityException, TimeoutException {
+  public byte[] getWithTimeout(long timeout, TimeUnit unit) throws InterruptedException, EntityException, TimeoutException {
     Thread callingThread = Thread.currentThread();
-    boolean didAdd = this.waitingThreads.add(callingThread);
-    // We can't have already been waiting.
-    Assert.assertTrue(didAdd);
-    
-    long end = System.nanoTime() + unit.toNanos(timeout);
+    lock.lock();
     try {
-      while (!this.getCanComplete) {
-        long timing = end - System.nanoTime();
-        if (timing <= 0) {
-          throw new TimeoutException();
-        } else {
-          wait(timing / TimeUnit.MILLISECONDS.toNanos(1), (int)(timing % TimeUnit.MILLISECONDS.toNanos(1))); 
+      boolean didAdd = this.waitingThreads.add(callingThread);
+      // We can't have already been waiting.
+      Assert.assertTrue(didAdd);
+
+      long timing = unit.toNanos(timeout);
+      try {
+        while (!this.getCanComplete) {
+          if (timing <= 0) {
+            throw new TimeoutException();
+          } else {
+            timing = completed.awaitNanos(timing);
+          }
         }
+      } finally {
+        this.waitingThreads.remove(callingThread);
+      }
+      if (exception != null) {
+        throw ExceptionUtils.addLocalStackTraceToEntityException(exception);
+      } else {
+        return value;
       }
     } finally {
-      this.waitingThreads.remove(callingThread);
-    }
-    if (exception != null) {
-      throw ExceptionUtils.addLocalStackTraceToEntityException(exception);
-    } else {
-      return value;
+      lock.unlock();
     }
   }
 
-  synchronized void setResult(byte[] value, EntityException error) {
-    this.pendingAcks.remove(VoltronEntityMessage.Acks.APPLIED);
-    if (this.canSetResult) {
-      this.exception = error;
-      this.value = value;
-      if (!this.blockGetOnRetired) {
-        this.getCanComplete = true;
-        notifyAll();
+  void setResult(byte[] value, EntityException error) {
+    lock.lock();
+    try {
+      removeAck(VoltronEntityMessage.Acks.APPLIED);
+      if (this.canSetResult) {
+        this.exception = error;
+        this.value = value;
+        if (!this.blockGetOnRetired) {
+          this.getCanComplete = true;
+          completed.signalAll();
+        }
+        // Determine if this can be over-written - only if we are waiting for the retired.
+        this.canSetResult = this.blockGetOnRetired;
       }
-      // Determine if this can be over-written - only if we are waiting for the retired.
-      this.canSetResult = this.blockGetOnRetired;
+    } finally {
+      lock.unlock();
     }
   }
 
-  public synchronized void retired() {
-    this.pendingAcks.remove(VoltronEntityMessage.Acks.RETIRED);
-    if (this.blockGetOnRetired) {
-      this.getCanComplete = true;
+  public void retired() {
+    lock.lock();
+    try {
+      removeAck(VoltronEntityMessage.Acks.RETIRED);
+      if (this.blockGetOnRetired) {
+        this.getCanComplete = true;
+      }
+      completed.signalAll();
+    } finally {
+      lock.unlock();
     }
-    notifyAll();
   }
 }
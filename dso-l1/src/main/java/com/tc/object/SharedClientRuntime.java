@@ -0,0 +1,147 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.object;
+
+import com.tc.bytes.TCByteBufferFactory;
+import com.tc.logging.TCLogger;
+import com.tc.logging.TCLogging;
+import com.tc.net.core.TCConnectionManager;
+import com.tc.net.core.TCConnectionManagerImpl;
+import com.tc.net.protocol.transport.HealthCheckerConfigClientImpl;
+import com.tc.properties.TCProperties;
+import com.tc.properties.TCPropertiesConsts;
+import com.tc.util.Assert;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The NIO selector threads and stage threads shared by all the {@link DistributedObjectClient}s of this JVM when
+ * <code>l1.runtime.shared.enabled</code> is set. Each client still owns its stages, channel and health checker; only
+ * the threads running them are shared, apart from those of the response path which every client keeps to itself. The runtime is reference counted and torn down with the last client.
+ */
+public class SharedClientRuntime {
+  private static final TCLogger      logger = TCLogging.getLogger(SharedClientRuntime.class);
+
+  private static SharedClientRuntime current;
+
+  private final ThreadGroup          group;
+  private final ExecutorService      stageExecutor;
+  private final TCConnectionManager  connectionManager;
+  private int                        references;
+
+  private SharedClientRuntime(TCProperties tcProperties) {
+    int stageThreads = tcProperties.getInt(TCPropertiesConsts.L1_RUNTIME_SHARED_STAGE_THREADS);
+    if (stageThreads <= 0) {
+      stageThreads = Runtime.getRuntime().availableProcessors();
+    }
+    final int workerCommThreads = tcProperties.getInt(TCPropertiesConsts.L1_RUNTIME_SHARED_COMM_WORKERTHREADS);
+    final HealthCheckerConfigClientImpl healthCheckerConfig = new HealthCheckerConfigClientImpl(tcProperties
+        .getPropertiesFor(TCPropertiesConsts.L1_L2_HEALTH_CHECK_CATEGORY), "DSO Client");
+
+    this.group = new ThreadGroup("TC Shared Client Runtime");
+    TCByteBufferFactory.registerThreadGroup(this.group);
+    this.stageExecutor = Executors.newFixedThreadPool(stageThreads, new RuntimeThreadFactory(this.group));
+    // created on a runtime thread so that the comm threads join the runtime's group rather than the caller's
+    try {
+      this.connectionManager = this.stageExecutor.submit(new Callable<TCConnectionManager>() {
+        @Override
+        public TCConnectionManager call() {
+          return new TCConnectionManagerImpl("Shared Client", workerCommThreads, healthCheckerConfig, null);
+        }
+      }).get();
+    } catch (InterruptedException e) {
+      this.stageExecutor.shutdownNow();
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("interrupted while starting the shared client runtime", e);
+    } catch (ExecutionException e) {
+      this.stageExecutor.shutdownNow();
+      throw new IllegalStateException("failed to start the shared client runtime", e.getCause());
+    }
+    logger.info("Started shared client runtime with " + stageThreads + " stage threads and " + workerCommThreads
+                + " worker comm threads");
+  }
+
+  public static boolean isEnabled(TCProperties tcProperties) {
+    return tcProperties.getBoolean(TCPropertiesConsts.L1_RUNTIME_SHARED_ENABLED);
+  }
+
+  /**
+   * Returns the runtime of this JVM, starting it if no client holds it. Every call must be paired with a
+   * {@link #release()}.
+   */
+  public static synchronized SharedClientRuntime acquire(TCProperties tcProperties) {
+    if (current == null) {
+      current = new SharedClientRuntime(tcProperties);
+    }
+    current.references++;
+    return current;
+  }
+
+  public void release() {
+    synchronized (SharedClientRuntime.class) {
+      Assert.assertTrue(references > 0);
+      if (--references > 0) {
+        return;
+      }
+      if (current == this) {
+        current = null;
+      }
+    }
+    logger.info("Stopping shared client runtime");
+    connectionManager.shutdown();
+    stageExecutor.shutdown();
+  }
+
+  /**
+   * The executor the client stages are drained on. Contexts of one stage queue are never run concurrently. Stages a
+   * blocked handler may be waiting on, such as the response stages, must not be drained here.
+   */
+  public Executor getStageExecutor() {
+    return stageExecutor;
+  }
+
+  /**
+   * The connection manager owning the selector threads. Communications managers built on it do not shut it down.
+   */
+  public TCConnectionManager getConnectionManager() {
+    return connectionManager;
+  }
+
+  private static class RuntimeThreadFactory implements ThreadFactory {
+    private final AtomicInteger threadNumber = new AtomicInteger();
+    private final ThreadGroup   group;
+
+    RuntimeThreadFactory(ThreadGroup group) {
+      this.group = group;
+    }
+
+    @Override
+    public Thread newThread(Runnable r) {
+      Thread t = new Thread(group, r, "shared-client-stage-" + threadNumber.incrementAndGet());
+      t.setDaemon(true);
+      return t;
+    }
+  }
+}
@@ -27,6 +27,7 @@ import com.tc.object.context.PauseContext;
 import com.tc.object.handshakemanager.ClientHandshakeManager;
 import com.tc.object.msg.ClientHandshakeAckMessage;
 import com.tc.object.msg.ClientHandshakeRefusedMessage;
+import com.tc.object.msg.ClientHandshakeResendAckMessage;
 
 public class ClientCoordinationHandler<EC> extends AbstractEventHandler<EC> {
 
@@ -41,6 +42,8 @@ public class ClientCoordinationHandler<EC> extends AbstractEventHandler<EC> {
       throw new RuntimeException(((ClientHandshakeRefusedMessage) context).getRefualsCause());
     } else if (context instanceof ClientHandshakeAckMessage) {
       handleClientHandshakeAckMessage((ClientHandshakeAckMessage) context);
+    } else if (context instanceof ClientHandshakeResendAckMessage) {
+      clientHandshakeManager.acknowledgeResend((ClientHandshakeResendAckMessage) context);
     } else if (context instanceof PauseContext) {
       handlePauseContext((PauseContext) context);
     } else {
@@ -19,6 +19,7 @@
 package com.tc.object.handshakemanager;
 
 import com.tc.object.msg.ClientHandshakeAckMessage;
+import com.tc.object.msg.ClientHandshakeResendAckMessage;
 
 
 public interface ClientHandshakeManager {
@@ -48,6 +49,11 @@ public interface ClientHandshakeManager {
    */
   public void acknowledgeHandshake(ClientHandshakeAckMessage handshakeAck);
 
+  /**
+   * Called when the server has taken in one chunk of the resends streamed after the handshake, so that more can be sent.
+   */
+  public void acknowledgeResend(ClientHandshakeResendAckMessage resendAck);
+
   /**
    * @return True if the remote server is running in a persistent mode.
    */
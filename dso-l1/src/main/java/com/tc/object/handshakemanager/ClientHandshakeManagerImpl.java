@@ -18,12 +18,14 @@
  */
 package com.tc.object.handshakemanager;
 
+import com.tc.entity.ResendVoltronEntityMessage;
 import com.tc.logging.CustomerLogging;
 import com.tc.logging.TCLogger;
 import com.tc.net.ClientID;
 import com.tc.object.msg.ClientHandshakeAckMessage;
 import com.tc.object.msg.ClientHandshakeMessage;
 import com.tc.object.msg.ClientHandshakeMessageFactory;
+import com.tc.object.msg.ClientHandshakeResendAckMessage;
 import com.tc.object.session.SessionManager;
 import com.tc.properties.TCPropertiesConsts;
 import com.tc.properties.TCPropertiesImpl;
@@ -33,6 +35,7 @@ import com.tc.util.version.Version;
 import com.tc.util.version.VersionCompatibility;
 import com.tcclient.cluster.ClusterInternalEventsGun;
 import java.io.IOException;
+import java.util.Collection;
 
 /**
  * This class has been changed to be heavily synchronized. This is in attempt to 
@@ -60,11 +63,15 @@ public class ClientHandshakeManagerImpl implements ClientHandshakeManager {
   
   private final String   uuid;
   private final String name;
+  private final int resendChunkBytes;
+  private final int resendWindow;
 
   private State state;
   private volatile boolean disconnected;
   private volatile boolean serverIsPersistent = false;
   private volatile boolean isShutdown = false;
+  // Resends still being streamed behind the current handshake, if any.
+  private HandshakeResendStreamer resendStreamer;
 
   private final ClusterInternalEventsGun clusterEventsGun;
 
@@ -80,6 +87,8 @@ public class ClientHandshakeManagerImpl implements ClientHandshakeManager {
     this.name = name;
     this.clientVersion = clientVersion;
     this.callBacks = entities;
+    this.resendChunkBytes = TCPropertiesImpl.getProperties().getInt(TCPropertiesConsts.L1_RECONNECT_RESEND_CHUNK_BYTES, 1024 * 1024);
+    this.resendWindow = TCPropertiesImpl.getProperties().getInt(TCPropertiesConsts.L1_RECONNECT_RESEND_WINDOW, 2);
     this.state = State.PAUSED;
     this.disconnected = true;
     pauseCallbacks();
@@ -111,14 +120,22 @@ public class ClientHandshakeManagerImpl implements ClientHandshakeManager {
     changeToStarting();
     handshakeMessage = this.chmf.newClientHandshakeMessage(this.uuid, this.name, this.clientVersion, isEnterpriseClient());
     notifyCallbackOnHandshake(handshakeMessage);
+    // The handshake only says how many resends to expect, they are streamed behind it in bounded chunks.
+    Collection<ResendVoltronEntityMessage> resends = handshakeMessage.takeResendMessages();
+    handshakeMessage.setStreamedResendCount(resends.size());
+    this.resendStreamer = resends.isEmpty() ? null : new HandshakeResendStreamer(handshakeMessage.getChannel(), resends, this.resendChunkBytes, this.resendWindow);
 
     this.logger.info("Sending handshake message");
     if (!handshakeMessage.send()) {
+      this.resendStreamer = null;
       if (handshakeMessage.getChannel().isConnected()) {
         CONSOLE_LOGGER.fatal("handshake not sent but channel is connected", new Exception("FATAL HANDSHAKE ERROR"));
       } else {
         CONSOLE_LOGGER.info("handshake failed. channel not connected");
       }
+    } else if (null != this.resendStreamer) {
+      this.logger.info("Streaming " + resends.size() + " resends after handshake");
+      this.resendStreamer.sendAvailable();
     }
   }
 
@@ -141,6 +158,8 @@ public class ClientHandshakeManagerImpl implements ClientHandshakeManager {
       boolean isPaused = changeToPaused();
 
       if (isPaused) {
+        // Anything not yet streamed will be resent after the next handshake.
+        this.resendStreamer = null;
       // A thread might be waiting for us to change whether or not we are disconnected.
         notifyAll();
         pauseCallbacks();
@@ -167,11 +186,26 @@ public class ClientHandshakeManagerImpl implements ClientHandshakeManager {
         handshakeAck.getServerVersion());
   }
 
+  @Override
+  public synchronized void acknowledgeResend(ClientHandshakeResendAckMessage resendAck) {
+    if (getState() != State.STARTING || null == this.resendStreamer) {
+      this.logger.warn("Ignoring resend acknowledgement while " + getState());
+    } else {
+      this.resendStreamer.acknowledged(resendAck.getSequence());
+      if (this.resendStreamer.isComplete()) {
+        this.logger.info("All resends acknowledged");
+        this.resendStreamer = null;
+      }
+    }
+  }
+
   protected synchronized void acknowledgeHandshake(boolean persistentServer, ClientID thisNodeId, ClientID[] clusterMembers, String serverVersion) {
     this.logger.info("Received Handshake ack");
     if (getState() != State.STARTING) {
       this.logger.warn("Ignoring handshake acknowledgement while " + getState());
     } else {
+      // A server which was already started doesn't wait for resends.
+      this.resendStreamer = null;
       checkClientServerVersionCompatibility(serverVersion);
       this.serverIsPersistent = persistentServer;
 
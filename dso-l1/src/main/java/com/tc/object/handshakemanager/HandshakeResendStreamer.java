@@ -0,0 +1,91 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.object.handshakemanager;
+
+import com.tc.entity.ResendVoltronEntityMessage;
+import com.tc.net.protocol.tcm.MessageChannel;
+import com.tc.net.protocol.tcm.TCMessageType;
+import com.tc.object.msg.ClientHandshakeMessage;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+
+/**
+ * Streams the in-flight messages which need to be resent after a reconnect handshake in chunks of bounded size.  At most
+ * {@code window} chunks are ever waiting for the server to acknowledge them so the server only has to hold a bounded
+ * amount of the resends at once, no matter how many messages were in flight.
+ * <p>
+ * NOTE:  Not thread-safe.  The owning ClientHandshakeManagerImpl calls in under its own lock.
+ */
+class HandshakeResendStreamer {
+  // Rough allowance for the fixed fields of a resend (descriptor, transaction IDs, flags).
+  private static final int RESEND_OVERHEAD_BYTES = 64;
+
+  private final MessageChannel channel;
+  private final Deque<ResendVoltronEntityMessage> remaining;
+  private final int chunkBytes;
+  private final int window;
+  private int nextSequence;
+  private int acknowledged = -1;
+
+  HandshakeResendStreamer(MessageChannel channel, Collection<ResendVoltronEntityMessage> resends, int chunkBytes, int window) {
+    this.channel = channel;
+    this.remaining = new ArrayDeque<ResendVoltronEntityMessage>(resends);
+    this.chunkBytes = Math.max(1, chunkBytes);
+    this.window = Math.max(1, window);
+  }
+
+  /**
+   * Sends chunks until either everything has been sent or the window is full.
+   */
+  void sendAvailable() {
+    while (!this.remaining.isEmpty() && (this.nextSequence - this.acknowledged - 1) < this.window) {
+      sendChunk();
+    }
+  }
+
+  void acknowledged(int sequence) {
+    this.acknowledged = Math.max(this.acknowledged, sequence);
+    sendAvailable();
+  }
+
+  boolean isComplete() {
+    return this.remaining.isEmpty() && this.acknowledged == this.nextSequence - 1;
+  }
+
+  private void sendChunk() {
+    ClientHandshakeMessage chunk = (ClientHandshakeMessage) this.channel.createMessage(TCMessageType.CLIENT_HANDSHAKE_RESEND_MESSAGE);
+    long bytes = 0;
+    // Always send at least one message, even if it is larger than a whole chunk.
+    do {
+      ResendVoltronEntityMessage resend = this.remaining.poll();
+      bytes += sizeOf(resend);
+      chunk.addResendMessage(resend);
+    } while (!this.remaining.isEmpty() && bytes + sizeOf(this.remaining.peek()) <= this.chunkBytes);
+    chunk.setResendChunk(this.nextSequence, this.remaining.isEmpty());
+    this.nextSequence += 1;
+    chunk.send();
+  }
+
+  private static long sizeOf(ResendVoltronEntityMessage resend) {
+    byte[] extendedData = resend.getExtendedData();
+    return RESEND_OVERHEAD_BYTES + ((null != extendedData) ? extendedData.length : 0);
+  }
+}
@@ -23,10 +23,9 @@ import com.tc.async.api.AbstractEventHandler;
 import com.tc.async.api.EventHandlerException;
 import com.tc.entity.VoltronEntityMultiResponse;
 import com.tc.object.tx.TransactionID;
-import java.util.Map;
 
 
-public class MultiRequestReceiveHandler extends AbstractEventHandler<VoltronEntityMultiResponse> {
+public class MultiRequestReceiveHandler extends AbstractEventHandler<VoltronEntityMultiResponse> implements VoltronEntityMultiResponse.ReplayReceiver {
   private final RequestResponseHandler handler;
 
   public MultiRequestReceiveHandler(RequestResponseHandler handler) {
@@ -35,20 +34,26 @@ public class MultiRequestReceiveHandler extends AbstractEventHandler<VoltronEnti
 
   @Override
   public void handleEvent(VoltronEntityMultiResponse response) throws EventHandlerException {
-    for (TransactionID received : response.getReceivedTransactions()) {
-      handler.received(received);
-    }
-    Map<TransactionID, byte[]> results = response.getResults();
-    for (Map.Entry<TransactionID, byte[]> entry : results.entrySet()) {
-      byte[] result = entry.getValue();
-      if (result == null) {
-        handler.complete(entry.getKey());
-      } else {
-        handler.complete(entry.getKey(), result);
-      }
-    }
-    for (TransactionID retires : response.getRetiredTransactions()) {
-      handler.retired(retires);
+    // The response calls back into this handler for each ID so nothing is allocated to walk it.
+    response.replay(this);
+  }
+
+  @Override
+  public void received(long tid) {
+    handler.received(new TransactionID(tid));
+  }
+
+  @Override
+  public void result(long tid, byte[] result) {
+    if (result == null) {
+      handler.complete(new TransactionID(tid));
+    } else {
+      handler.complete(new TransactionID(tid), result);
     }
   }
+
+  @Override
+  public void retired(long tid) {
+    handler.retired(new TransactionID(tid));
+  }
 }
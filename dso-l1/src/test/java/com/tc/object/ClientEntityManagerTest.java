@@ -444,6 +444,8 @@ public class ClientEntityManagerTest extends TestCase {
     private final EntityException resultException;
     private final boolean autoComplete;
     private TransactionID transactionID;
+    private long handoffTimestamp;
+    private Object concurrencyHint;
     
     public TestRequestBatchMessage(ClientEntityManager clientEntityManager, byte[] resultObject, EntityException resultException, boolean autoComplete) {
       this.clientEntityManager = clientEntityManager;
@@ -553,6 +555,26 @@ public class ClientEntityManagerTest extends TestCase {
       throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
     }
 
+    @Override
+    public void setHandoffTimestamp(long nanos) {
+      this.handoffTimestamp = nanos;
+    }
+
+    @Override
+    public long getHandoffTimestamp() {
+      return this.handoffTimestamp;
+    }
+
+    @Override
+    public void setConcurrencyHint(Object hint) {
+      this.concurrencyHint = hint;
+    }
+
+    @Override
+    public Object getConcurrencyHint() {
+      return this.concurrencyHint;
+    }
+
     @Override
     public EntityMessage getEntityMessage() {
       throw new UnsupportedOperationException();
@@ -25,6 +25,7 @@ import com.tc.entity.VoltronEntityMessage.Acks;
 
 import java.util.Collections;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
 
 import junit.framework.TestCase;
 import static org.mockito.Mockito.mock;
@@ -46,7 +47,7 @@ public class InFlightMessageTest extends TestCase {
     
     // Start the thread: it will begin progressing to the get().
     thread.start();
-    // Wait for the other thread to enter the monitor.
+    // Wait for the other thread to block in get().
     message.waitOnEnter();
     // We can now interrupt the message and know that the other thread will receive the interrupt.
     message.interrupt();
@@ -85,37 +86,38 @@ public class InFlightMessageTest extends TestCase {
   }
 
   /**
-   * Even though we are trying to test InFlightMessage we need this subclass to expose details of the monitor state in order
-   * to test the thread interaction in a deterministic way.
+   * Even though we are trying to test InFlightMessage we need this subclass to expose when get() has been entered in
+   * order to test the thread interaction in a deterministic way.
    */
   private static class InterlockMessage extends InFlightMessage {
-    private boolean didEnter;
+    private final CountDownLatch didEnter = new CountDownLatch(1);
+    private volatile Thread getter;
     
     public InterlockMessage(NetworkVoltronEntityMessage message, Set<Acks> acks, boolean shouldBlockGetOnRetire) {
       super(message, acks, shouldBlockGetOnRetire);
-      this.didEnter = false;
     }
 
     @Override
-    public synchronized byte[] get() throws InterruptedException, EntityException {
-      // Notify anyone waiting so that they know we now have the monitor and are going to block in get().
-      this.didEnter = true;
-      notifyAll();
+    public byte[] get() throws InterruptedException, EntityException {
+      // Let anyone waiting know that we are going to block in get().
+      this.getter = Thread.currentThread();
+      this.didEnter.countDown();
       // Call the super to actually block.
       return super.get();
     }
     
     /**
-     * Blocks the caller until someone has called get() on the same instance.
+     * Blocks the caller until someone has called get() on the same instance and is parked waiting for the result.
      */
-    public synchronized void waitOnEnter() {
-      while (!this.didEnter) {
-        try {
-          wait();
-        } catch (InterruptedException e) {
-          // NOT expected.
-          fail();
+    public void waitOnEnter() {
+      try {
+        this.didEnter.await();
+        while (this.getter.getState() != Thread.State.WAITING) {
+          Thread.sleep(1);
         }
+      } catch (InterruptedException e) {
+        // NOT expected.
+        fail();
       }
     }
   }
@@ -0,0 +1,141 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.object.handshakemanager;
+
+import com.tc.entity.ResendVoltronEntityMessage;
+import com.tc.logging.TCLogger;
+import com.tc.net.protocol.tcm.MessageChannel;
+import com.tc.net.protocol.tcm.TCMessageType;
+import com.tc.object.msg.ClientHandshakeMessage;
+import com.tc.object.msg.ClientHandshakeMessageFactory;
+import com.tc.object.msg.ClientHandshakeResendAckMessage;
+import com.tc.object.session.SessionManager;
+import com.tc.properties.TCProperties;
+import com.tc.properties.TCPropertiesConsts;
+import com.tc.properties.TCPropertiesImpl;
+import com.tcclient.cluster.ClusterInternalEventsGun;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+
+public class ClientHandshakeManagerImplTest {
+  private String chunkBytes;
+  private String window;
+  private TCLogger logger;
+  private MessageChannel channel;
+  private ClientHandshakeMessage handshake;
+  private List<ClientHandshakeMessage> chunks;
+  private ClientHandshakeManagerImpl manager;
+
+  @Before
+  public void setUp() throws Exception {
+    // one resend per chunk, and only one chunk waiting for the server at a time
+    TCProperties properties = TCPropertiesImpl.getProperties();
+    this.chunkBytes = properties.getProperty(TCPropertiesConsts.L1_RECONNECT_RESEND_CHUNK_BYTES);
+    this.window = properties.getProperty(TCPropertiesConsts.L1_RECONNECT_RESEND_WINDOW);
+    properties.setProperty(TCPropertiesConsts.L1_RECONNECT_RESEND_CHUNK_BYTES, "1");
+    properties.setProperty(TCPropertiesConsts.L1_RECONNECT_RESEND_WINDOW, "1");
+
+    this.logger = mock(TCLogger.class);
+    this.channel = mock(MessageChannel.class);
+    this.chunks = new ArrayList<ClientHandshakeMessage>();
+    when(this.channel.createMessage(TCMessageType.CLIENT_HANDSHAKE_RESEND_MESSAGE)).thenAnswer(invocation -> {
+      ClientHandshakeMessage chunk = mock(ClientHandshakeMessage.class);
+      chunks.add(chunk);
+      return chunk;
+    });
+    this.handshake = mock(ClientHandshakeMessage.class);
+    when(this.handshake.getChannel()).thenReturn(this.channel);
+    when(this.handshake.send()).thenReturn(true);
+    ClientHandshakeMessageFactory factory = mock(ClientHandshakeMessageFactory.class);
+    when(factory.newClientHandshakeMessage("uuid", "name", "version", false)).thenReturn(this.handshake);
+    this.manager = new ClientHandshakeManagerImpl(this.logger, factory, mock(SessionManager.class),
+        mock(ClusterInternalEventsGun.class), "uuid", "name", "version", mock(ClientHandshakeCallback.class));
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    TCProperties properties = TCPropertiesImpl.getProperties();
+    properties.setProperty(TCPropertiesConsts.L1_RECONNECT_RESEND_CHUNK_BYTES, this.chunkBytes);
+    properties.setProperty(TCPropertiesConsts.L1_RECONNECT_RESEND_WINDOW, this.window);
+  }
+
+  @Test
+  public void testResendsFollowTheHandshakeAsTheyAreAcknowledged() throws Exception {
+    List<ResendVoltronEntityMessage> resends = new ArrayList<ResendVoltronEntityMessage>();
+    for (int i = 0; i < 3; i++) {
+      resends.add(new ResendVoltronEntityMessage(null, null, null, null, false, new byte[0], null));
+    }
+    when(this.handshake.takeResendMessages()).thenReturn(resends);
+
+    this.manager.connected();
+    verify(this.handshake).setStreamedResendCount(3);
+    verify(this.handshake).send();
+    // the window holds back everything but the first chunk
+    assertEquals(1, this.chunks.size());
+    verify(this.chunks.get(0)).addResendMessage(resends.get(0));
+
+    this.manager.acknowledgeResend(ack(0));
+    assertEquals(2, this.chunks.size());
+    verify(this.chunks.get(1)).addResendMessage(resends.get(1));
+    this.manager.acknowledgeResend(ack(1));
+    assertEquals(3, this.chunks.size());
+    verify(this.chunks.get(2)).setResendChunk(2, true);
+
+    // once the last chunk is acknowledged there is nothing left to stream
+    this.manager.acknowledgeResend(ack(2));
+    verify(this.logger, never()).warn("Ignoring resend acknowledgement while STARTING");
+    this.manager.acknowledgeResend(ack(2));
+    verify(this.logger).warn("Ignoring resend acknowledgement while STARTING");
+    assertEquals(3, this.chunks.size());
+  }
+
+  @Test
+  public void testDisconnectStopsStreaming() throws Exception {
+    List<ResendVoltronEntityMessage> resends = new ArrayList<ResendVoltronEntityMessage>();
+    for (int i = 0; i < 2; i++) {
+      resends.add(new ResendVoltronEntityMessage(null, null, null, null, false, new byte[0], null));
+    }
+    when(this.handshake.takeResendMessages()).thenReturn(resends);
+
+    this.manager.connected();
+    assertEquals(1, this.chunks.size());
+    // whatever wasn't streamed goes out again behind the next handshake
+    this.manager.disconnected();
+    this.manager.acknowledgeResend(ack(0));
+    assertEquals(1, this.chunks.size());
+    verify(this.logger).warn("Ignoring resend acknowledgement while PAUSED");
+  }
+
+  private static ClientHandshakeResendAckMessage ack(int sequence) {
+    ClientHandshakeResendAckMessage ack = mock(ClientHandshakeResendAckMessage.class);
+    when(ack.getSequence()).thenReturn(sequence);
+    return ack;
+  }
+}
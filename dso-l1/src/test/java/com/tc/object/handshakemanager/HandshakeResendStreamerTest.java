@@ -0,0 +1,135 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.object.handshakemanager;
+
+import com.tc.entity.ResendVoltronEntityMessage;
+import com.tc.net.protocol.tcm.MessageChannel;
+import com.tc.net.protocol.tcm.TCMessageType;
+import com.tc.object.msg.ClientHandshakeMessage;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+
+public class HandshakeResendStreamerTest {
+  // 64 bytes of fixed overhead per resend plus its extended data
+  private static final int RESEND_BYTES = 64 + 36;
+
+  private MessageChannel channel;
+  private List<ClientHandshakeMessage> chunks;
+
+  @Before
+  public void setUp() throws Exception {
+    this.channel = mock(MessageChannel.class);
+    this.chunks = new ArrayList<ClientHandshakeMessage>();
+    when(this.channel.createMessage(TCMessageType.CLIENT_HANDSHAKE_RESEND_MESSAGE)).thenAnswer(invocation -> {
+      ClientHandshakeMessage chunk = mock(ClientHandshakeMessage.class);
+      chunks.add(chunk);
+      return chunk;
+    });
+  }
+
+  @Test
+  public void testResendsAreSplitIntoChunksOfBoundedSize() throws Exception {
+    List<ResendVoltronEntityMessage> resends = resends(5);
+    HandshakeResendStreamer streamer = new HandshakeResendStreamer(this.channel, resends, 2 * RESEND_BYTES, 10);
+    streamer.sendAvailable();
+
+    assertEquals(3, this.chunks.size());
+    verifyChunk(0, false, resends, 0, 2);
+    verifyChunk(1, false, resends, 2, 4);
+    verifyChunk(2, true, resends, 4, 5);
+  }
+
+  @Test
+  public void testOversizedResendStillGoesOut() throws Exception {
+    List<ResendVoltronEntityMessage> resends = resends(2);
+    HandshakeResendStreamer streamer = new HandshakeResendStreamer(this.channel, resends, 1, 10);
+    streamer.sendAvailable();
+
+    assertEquals(2, this.chunks.size());
+    verifyChunk(0, false, resends, 0, 1);
+    verifyChunk(1, true, resends, 1, 2);
+  }
+
+  @Test
+  public void testWindowWaitsForAcksAndResumes() throws Exception {
+    List<ResendVoltronEntityMessage> resends = resends(5);
+    HandshakeResendStreamer streamer = new HandshakeResendStreamer(this.channel, resends, RESEND_BYTES, 2);
+
+    // only a window's worth goes out before the server acknowledges anything
+    streamer.sendAvailable();
+    assertEquals(2, this.chunks.size());
+    streamer.sendAvailable();
+    assertEquals(2, this.chunks.size());
+    assertFalse(streamer.isComplete());
+
+    // each acknowledgement frees room for one more chunk
+    streamer.acknowledged(0);
+    assertEquals(3, this.chunks.size());
+    verifyChunk(2, false, resends, 2, 3);
+
+    // a late or repeated acknowledgement doesn't open the window any further
+    streamer.acknowledged(0);
+    assertEquals(3, this.chunks.size());
+
+    // acknowledging a later chunk covers the earlier ones too
+    streamer.acknowledged(2);
+    assertEquals(5, this.chunks.size());
+    verifyChunk(3, false, resends, 3, 4);
+    verifyChunk(4, true, resends, 4, 5);
+    assertFalse(streamer.isComplete());
+
+    streamer.acknowledged(3);
+    assertFalse(streamer.isComplete());
+    streamer.acknowledged(4);
+    assertTrue(streamer.isComplete());
+    assertEquals(5, this.chunks.size());
+  }
+
+  /**
+   * Checks that the chunk carries exactly resends [from, to), in a single send.
+   */
+  private void verifyChunk(int sequence, boolean last, List<ResendVoltronEntityMessage> resends, int from, int to) {
+    ClientHandshakeMessage chunk = this.chunks.get(sequence);
+    verify(chunk).setResendChunk(sequence, last);
+    for (int i = 0; i < resends.size(); i++) {
+      verify(chunk, times((i >= from && i < to) ? 1 : 0)).addResendMessage(resends.get(i));
+    }
+    verify(chunk).send();
+  }
+
+  private static List<ResendVoltronEntityMessage> resends(int count) {
+    List<ResendVoltronEntityMessage> resends = new ArrayList<ResendVoltronEntityMessage>();
+    for (int i = 0; i < count; i++) {
+      resends.add(new ResendVoltronEntityMessage(null, null, null, null, false, new byte[RESEND_BYTES - 64], null));
+    }
+    return resends;
+  }
+}
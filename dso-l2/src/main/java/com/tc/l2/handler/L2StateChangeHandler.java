@@ -25,7 +25,7 @@ import com.tc.l2.context.StateChangedEvent;
 import com.tc.l2.state.StateManager;
 import com.tc.objectserver.core.api.ITopologyEventCollector;
 import com.tc.objectserver.core.api.ServerConfigurationContext;
-import com.tc.server.TCServerMain;
+import com.tc.server.TCServer;
 import com.tc.util.State;
 
 
@@ -35,10 +35,12 @@ public class L2StateChangeHandler extends AbstractEventHandler<StateChangedEvent
   private final StageController stageManager;
   private ConfigurationContext context;
   private final ITopologyEventCollector eventCollector;
+  private final TCServer server;
 
-  public L2StateChangeHandler(StageController stageManager, ITopologyEventCollector eventCollector) {
+  public L2StateChangeHandler(StageController stageManager, ITopologyEventCollector eventCollector, TCServer server) {
     this.stageManager = stageManager;
     this.eventCollector = eventCollector;
+    this.server = server;
   }
 
   @Override
@@ -51,7 +53,7 @@ public class L2StateChangeHandler extends AbstractEventHandler<StateChangedEvent
     stateManager.fireStateChangedEvent(sce);
     // Now that we have processed the event, the last thing we want to do is notify the collector that the server's state
     // has changed.
-    eventCollector.serverDidEnterState(newState, TCServerMain.getServer().getActivateTime());
+    eventCollector.serverDidEnterState(newState, server.getActivateTime());
   }
 
   @Override
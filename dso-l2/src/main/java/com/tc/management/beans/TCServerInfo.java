@@ -477,4 +477,14 @@ public class TCServerInfo extends AbstractTerracottaMBean implements TCServerInf
   public String getResourceState() {
     return server.getResourceState();
   }
+
+  @Override
+  public String getRequestLatencyReport() {
+    return server.getRequestLatencyReport();
+  }
+
+  @Override
+  public byte[] getFlightRecording() {
+    return server.getFlightRecording();
+  }
 }
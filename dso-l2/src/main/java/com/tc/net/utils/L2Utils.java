@@ -18,13 +18,16 @@
  */
 package com.tc.net.utils;
 
-import com.tc.bytes.TCByteBufferFactory;
+import com.tc.async.impl.ElasticThreadPool;
+import com.tc.properties.TCProperties;
 import com.tc.properties.TCPropertiesConsts;
 import com.tc.properties.TCPropertiesImpl;
 import com.tc.util.Assert;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class L2Utils {
   private static final int MAX_DEFAULT_COMM_THREADS = 16;
@@ -69,6 +72,60 @@ public class L2Utils {
         Math.min(threadsCount, MAX_ENTITY_PROCESSOR_THREADS));
   }
 
+  /**
+   * The entity request processor runs on an {@link com.tc.async.impl.ElasticThreadPool} only if it is turned on and
+   * {@code server.entity.processor.threads} does not fix the number of threads.
+   */
+  public static boolean isEntityProcessorElastic() {
+    TCProperties props = TCPropertiesImpl.getProperties();
+    return props.getBoolean(TCPropertiesConsts.ENTITY_PROCESSOR_ELASTIC_ENABLED, false)
+           && props.getProperty(TCPropertiesConsts.ENTITY_PROCESSOR_THREADS, true) == null;
+  }
+
+  /**
+   * Creates the pool the entity request processor runs on when {@link #isEntityProcessorElastic()}. It starts at
+   * {@link #getOptimalApplyStageWorkerThreads(boolean)} and is then sized with
+   * {@link #calculateOptimalThreadsCount(int, long, long, double)} over the measured wait and compute times.
+   */
+  public static ElasticThreadPool createEntityProcessorPool(String name, ThreadGroup group) {
+    final TCProperties props = TCPropertiesImpl.getProperties();
+    final int cpus = Runtime.getRuntime().availableProcessors();
+    final int min = props.getInt(TCPropertiesConsts.ENTITY_PROCESSOR_ELASTIC_MIN_THREADS, 2);
+    final int max = props.getInt(TCPropertiesConsts.ENTITY_PROCESSOR_ELASTIC_MAX_THREADS, MAX_ENTITY_PROCESSOR_THREADS);
+    final long sampleMillis = props.getLong(TCPropertiesConsts.ENTITY_PROCESSOR_ELASTIC_SAMPLE_INTERVAL, 1000);
+    return new ElasticThreadPool(name, group, min, max, getOptimalApplyStageWorkerThreads(true),
+        (wait, compute) -> calculateOptimalThreadsCount(cpus, wait, compute, 0.75), sampleMillis);
+  }
+
+  /**
+   * @return true if the entity request processor should drain its queues on virtual threads, where the JVM has them
+   */
+  public static boolean isEntityProcessorVirtual() {
+    return TCPropertiesImpl.getProperties().getBoolean(TCPropertiesConsts.ENTITY_PROCESSOR_VIRTUAL_THREADS, false);
+  }
+
+  /**
+   * Looked up reflectively, since the server is built for JVMs which predate virtual threads.
+   *
+   * @return an executor starting a virtual thread per task, or null if this JVM has no virtual threads
+   */
+  public static ExecutorService newVirtualThreadPerTaskExecutor() {
+    try {
+      return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (ReflectiveOperationException e) {
+      return null;
+    }
+  }
+
+  /**
+   * @return the number of queues concurrency keys are spread over when the entity request processor runs on a pool
+   * or on virtual threads
+   */
+  public static int getEntityProcessorQueueCount() {
+    return TCPropertiesImpl.getProperties().getInt(TCPropertiesConsts.ENTITY_PROCESSOR_ELASTIC_QUEUES,
+        MAX_ENTITY_PROCESSOR_THREADS);
+  }
+
   /**
    * Calculates the optimal number of worker threads based on the formula below:
    * <p/> {@code N_threads = N_cpu * U_cpu * (1 + W/C)}, where
@@ -100,8 +157,8 @@ public class L2Utils {
   }
 
   /**
-   * Calculates max possible direct memory consumption by TC Communication system. In fact, TC Comms can ask for more
-   * direct byte buffers than computed here if the buffer pool is fully used up, but its rare though.
+   * Calculates max possible direct memory consumption by TC Communication system. With pooling enabled this is the
+   * budget of the buffer arenas, since pooled direct requests beyond it are served from the heap.
    *
    * @return long - maximum consumable direct memory byte buffers in bytes by the comms system.
    */
@@ -111,15 +168,11 @@ public class L2Utils {
     final int totalCommsThreads = getOptimalCommWorkerThreads() * 2;
     final boolean poolingEnabled = TCPropertiesImpl.getProperties()
         .getBoolean(TCPropertiesConsts.TC_BYTEBUFFER_POOLING_ENABLED);
-    final int directMemoryCommonPool = (TCPropertiesImpl.getProperties()
-        .getInt(TCPropertiesConsts.TC_BYTEBUFFER_COMMON_POOL_MAXCOUNT, 3000));
-    final int directMemoryThreadLocalPool = TCPropertiesImpl.getProperties()
-        .getInt(TCPropertiesConsts.TC_BYTEBUFFER_THREADLOCAL_POOL_MAXCOUNT, 2000);
 
     long totalDirectMemeoryNeeded;
     if (poolingEnabled) {
-      totalDirectMemeoryNeeded = (totalCommsThreads * directMemoryThreadLocalPool * TCByteBufferFactory.FIXED_BUFFER_SIZE)
-                                 + (directMemoryCommonPool * TCByteBufferFactory.FIXED_BUFFER_SIZE);
+      totalDirectMemeoryNeeded = TCPropertiesImpl.getProperties()
+          .getLong(TCPropertiesConsts.TC_BYTEBUFFER_SLAB_DIRECT_MAX, 128L * 1024 * 1024);
     } else {
       int maxPossbileMessageBytesSend = (TCPropertiesImpl.getProperties()
           .getBoolean(TCPropertiesConsts.TC_MESSAGE_GROUPING_ENABLED) ? TCPropertiesImpl.getProperties()
@@ -19,6 +19,7 @@
 package com.tc.objectserver.api;
 
 import org.terracotta.entity.ClientDescriptor;
+import org.terracotta.entity.EntityMessage;
 import org.terracotta.entity.MessageCodec;
 
 import com.tc.net.ClientID;
@@ -97,4 +98,14 @@ public interface ManagedEntity extends StateDumpable {
    * @return The entity's local RetirementManager instance.
    */
   public RetirementManager getRetirementManager();
+
+  /**
+   * Works out the concurrency key of a decoded invoke ahead of time, on the thread which hydrated it rather than the
+   * one which sequences requests.  This is only done for a {@link StatelessConcurrencyStrategy}.
+   * 
+   * @param message the decoded invoke
+   * @return a hint for {@link MessagePayload#getConcurrencyKey}, or null if the key has to be worked out at sequencing
+   * time
+   */
+  MessagePayload.ConcurrencyHint prepareInvoke(EntityMessage message);
 }
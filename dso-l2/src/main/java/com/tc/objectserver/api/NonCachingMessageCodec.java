@@ -0,0 +1,34 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.objectserver.api;
+
+import org.terracotta.entity.EntityMessage;
+import org.terracotta.entity.EntityResponse;
+import org.terracotta.entity.MessageCodec;
+
+/**
+ * Marker for codecs whose decoded messages must not be shared with the entity invoke, for example because the entity
+ * mutates the message while handling it.
+ * <p>
+ * The server normally decodes each invoke once and hands the same {@link EntityMessage} to the concurrency strategy,
+ * the execution strategy, the retirement manager and the entity.  For codecs implementing this interface, the entity
+ * is handed a freshly decoded message on every invoke instead.
+ */
+public interface NonCachingMessageCodec<M extends EntityMessage, R extends EntityResponse> extends MessageCodec<M, R> {
+}
@@ -0,0 +1,33 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.objectserver.api;
+
+import org.terracotta.entity.ConcurrencyStrategy;
+import org.terracotta.entity.EntityMessage;
+
+/**
+ * Marker for concurrency strategies whose key depends on nothing but the message: {@link #concurrencyKey} keeps no
+ * state between calls and may be called from several threads at once, in any order.
+ * <p>
+ * The server normally asks the strategy for the key of each invoke on the single thread which sequences requests, in
+ * the order the requests are sequenced.  Keys of invokes bound for a strategy implementing this interface are worked
+ * out ahead of time instead, on the threads which hydrate the incoming messages.
+ */
+public interface StatelessConcurrencyStrategy<M extends EntityMessage> extends ConcurrencyStrategy<M> {
+}
@@ -24,6 +24,8 @@ import com.tc.object.net.ChannelStats;
 import com.tc.object.net.DSOChannelManagerMBean;
 import com.tc.objectserver.api.ObjectInstanceMonitorMBean;
 import com.tc.objectserver.core.api.GlobalServerStats;
+import com.tc.objectserver.entity.EntityConcurrencyStats;
+import com.tc.objectserver.entity.RequestLatencyStats;
 import com.tc.objectserver.locks.LockManagerMBean;
 
 public class ServerManagementContext {
@@ -35,12 +37,16 @@ public class ServerManagementContext {
   private final ObjectInstanceMonitorMBean    instanceMonitor;
   private final ConnectionPolicy              connectionPolicy;
   private final RemoteManagement              remoteManagement;
+  private final RequestLatencyStats           requestLatencyStats;
+  private final EntityConcurrencyStats        entityConcurrencyStats;
 
   public ServerManagementContext(LockManagerMBean lockMgr, DSOChannelManagerMBean channelMgr,
                                  GlobalServerStats serverStats, ChannelStats channelStats,
                                  ObjectInstanceMonitorMBean instanceMonitor,
                                  ConnectionPolicy connectionPolicy,
-                                 RemoteManagement remoteManagement) {
+                                 RemoteManagement remoteManagement,
+                                 RequestLatencyStats requestLatencyStats,
+                                 EntityConcurrencyStats entityConcurrencyStats) {
     this.lockMgr = lockMgr;
     this.channelMgr = channelMgr;
     this.serverStats = serverStats;
@@ -48,6 +54,8 @@ public class ServerManagementContext {
     this.instanceMonitor = instanceMonitor;
     this.connectionPolicy = connectionPolicy;
     this.remoteManagement = remoteManagement;
+    this.requestLatencyStats = requestLatencyStats;
+    this.entityConcurrencyStats = entityConcurrencyStats;
   }
 
   public DSOChannelManagerMBean getChannelManager() {
@@ -78,4 +86,12 @@ public class ServerManagementContext {
     return remoteManagement;
   }
 
+  public RequestLatencyStats getRequestLatencyStats() {
+    return requestLatencyStats;
+  }
+
+  public EntityConcurrencyStats getEntityConcurrencyStats() {
+    return entityConcurrencyStats;
+  }
+
 }
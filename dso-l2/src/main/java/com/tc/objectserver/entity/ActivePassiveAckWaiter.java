@@ -23,44 +23,73 @@ import com.tc.util.Assert;
 
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 
 /**
  * This type is used by ActiveToPassiveReplication in order to wait on all the passives either sending a RECEIVED or
  * COMPLETED acknowledgement for a specific message.
+ * <p>
+ * Waiting parks on a {@link Condition} rather than in {@link Object#wait()} so a virtual thread blocked on a slow
+ * passive gives its carrier back instead of pinning it.
  */
 public class ActivePassiveAckWaiter {
   private final Set<NodeID> receivedPending;
   private final Set<NodeID> completedPending;
+  private final Lock        lock      = new ReentrantLock();
+  private final Condition   received  = lock.newCondition();
+  private final Condition   completed = lock.newCondition();
 
   public ActivePassiveAckWaiter(Set<NodeID> allPassiveNodes) {
     this.receivedPending =  new HashSet<NodeID>(allPassiveNodes);
     this.completedPending =  new HashSet<NodeID>(allPassiveNodes);
   }
 
-  public synchronized void waitForReceived() throws InterruptedException {
-    while (!this.receivedPending.isEmpty()) {
-      wait();
+  public void waitForReceived() throws InterruptedException {
+    lock.lock();
+    try {
+      while (!this.receivedPending.isEmpty()) {
+        received.await();
+      }
+    } finally {
+      lock.unlock();
     }
   }
 
-  public synchronized void waitForCompleted() throws InterruptedException {
-    while (!this.completedPending.isEmpty()) {
-      wait();
+  public void waitForCompleted() throws InterruptedException {
+    lock.lock();
+    try {
+      while (!this.completedPending.isEmpty()) {
+        completed.await();
+      }
+    } finally {
+      lock.unlock();
     }
   }
 
-  public synchronized boolean isCompleted() {
-    return this.completedPending.isEmpty();
+  public boolean isCompleted() {
+    lock.lock();
+    try {
+      return this.completedPending.isEmpty();
+    } finally {
+      lock.unlock();
+    }
   }
 
-  public synchronized void didReceiveOnPassive(NodeID onePassive) {
-    boolean didContain = this.receivedPending.remove(onePassive);
-    // We must have contained this passive in order to receive.
-    Assert.assertTrue(didContain);
-    // Wake everyone up if this changed something.
-    if (this.receivedPending.isEmpty()) {
-      notifyAll();
+  public void didReceiveOnPassive(NodeID onePassive) {
+    lock.lock();
+    try {
+      boolean didContain = this.receivedPending.remove(onePassive);
+      // We must have contained this passive in order to receive.
+      Assert.assertTrue(didContain);
+      // Wake everyone up if this changed something.
+      if (this.receivedPending.isEmpty()) {
+        received.signalAll();
+      }
+    } finally {
+      lock.unlock();
     }
   }
 
@@ -71,22 +100,30 @@ public class ActivePassiveAckWaiter {
    * @param isNormalComplete True if this was a normal complete ack, false if we are completing because the node disappeared
    * @return True if this was the last outstanding completion required and the waiter is now done.
    */
-  public synchronized boolean didCompleteOnPassive(NodeID onePassive, boolean isNormalComplete) {
-    // Note that we will try to remove from the received set, but usually it will already have been removed.
-    boolean didContainInReceived = this.receivedPending.remove(onePassive);
-    // We know that it must still be in the completed set, though.
-    boolean didContainInCompleted = this.completedPending.remove(onePassive);
-    // We must have contained this passive in order to complete.
-    if (isNormalComplete) {
-      // In the unexpected case, we are just making sure this node is removed from all waiters, even though it might have
-      // already completed on some of them.
-      Assert.assertTrue(didContainInCompleted);
-    }
-    boolean isDoneWaiting = this.completedPending.isEmpty();
-    // Wake everyone up if this changed something.
-    if ((didContainInReceived && this.receivedPending.isEmpty()) || isDoneWaiting) {
-      notifyAll();
+  public boolean didCompleteOnPassive(NodeID onePassive, boolean isNormalComplete) {
+    lock.lock();
+    try {
+      // Note that we will try to remove from the received set, but usually it will already have been removed.
+      boolean didContainInReceived = this.receivedPending.remove(onePassive);
+      // We know that it must still be in the completed set, though.
+      boolean didContainInCompleted = this.completedPending.remove(onePassive);
+      // We must have contained this passive in order to complete.
+      if (isNormalComplete) {
+        // In the unexpected case, we are just making sure this node is removed from all waiters, even though it might have
+        // already completed on some of them.
+        Assert.assertTrue(didContainInCompleted);
+      }
+      boolean isDoneWaiting = this.completedPending.isEmpty();
+      // Wake everyone up if this changed something.
+      if (didContainInReceived && this.receivedPending.isEmpty()) {
+        received.signalAll();
+      }
+      if (isDoneWaiting) {
+        completed.signalAll();
+      }
+      return isDoneWaiting;
+    } finally {
+      lock.unlock();
     }
-    return isDoneWaiting;
   }
 }
@@ -32,6 +32,7 @@ import com.tc.objectserver.api.ManagedEntity;
 import com.tc.objectserver.handler.ProcessTransactionHandler;
 import com.tc.objectserver.handler.ReplicationSender;
 import com.tc.objectserver.persistence.EntityPersistor;
+import com.tc.stats.FlightRecorder;
 import com.tc.util.Assert;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
@@ -56,6 +57,7 @@ import java.util.concurrent.Semaphore;
 public class ActiveToPassiveReplication implements PassiveReplicationBroker, GroupEventsListener {
   
   private static final TCLogger logger           = TCLogging.getLogger(PassiveReplicationBroker.class);
+  private static final int FLIGHT_NAME = FlightRecorder.getInstance().name("active-to-passive");
   private final Iterable<ManagedEntity> entities;
   private final Iterable<NodeID> passives;
   private boolean activated = false;
@@ -159,6 +161,8 @@ public class ActiveToPassiveReplication implements PassiveReplicationBroker, Gro
   }
 
   public void ackReceived(GroupMessage msg) {
+    FlightRecorder.getInstance().record(FlightRecorder.Event.REPLICATION_ACK_RECEIVED, FLIGHT_NAME,
+                                        msg.inResponseTo().toLong(), 0);
     ActivePassiveAckWaiter waiter = waiters.get(msg.inResponseTo());
     if (null != waiter) {
       waiter.didReceiveOnPassive(msg.messageFrom());
@@ -168,6 +172,8 @@ public class ActiveToPassiveReplication implements PassiveReplicationBroker, Gro
   public void ackCompleted(GroupMessage msg) {
     // This is a normal completion.
     boolean isNormalComplete = true;
+    FlightRecorder.getInstance().record(FlightRecorder.Event.REPLICATION_ACK_COMPLETED, FLIGHT_NAME,
+                                        msg.inResponseTo().toLong(), 0);
     internalAckCompleted(msg.inResponseTo(), msg.messageFrom(), isNormalComplete);
   }
 
@@ -197,6 +203,8 @@ public class ActiveToPassiveReplication implements PassiveReplicationBroker, Gro
     copy.retainAll(passives());
     ActivePassiveAckWaiter waiter = new ActivePassiveAckWaiter(copy);
     if (!copy.isEmpty()) {
+      FlightRecorder.getInstance().record(FlightRecorder.Event.REPLICATION_SEND, FLIGHT_NAME,
+                                          msg.getMessageID().toLong(), copy.size());
       waiters.put(msg.getMessageID(), waiter);
       for (NodeID node : copy) {
         // This is a normal completion.
@@ -0,0 +1,183 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.objectserver.entity;
+
+import com.tc.object.EntityID;
+import com.tc.text.PrettyPrintable;
+import com.tc.text.PrettyPrinter;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Tracks how entity requests are spread over the request processor queues so that
+ * {@link org.terracotta.entity.ConcurrencyStrategy} implementations can be tuned.
+ * <p>
+ * For each entity this records the number of requests scheduled with each concurrency key, how often a request landed
+ * on a queue right behind a request for a different entity (a queue collision), and the time MANAGEMENT_KEY requests
+ * spent flushing every queue before they could run.
+ */
+public class EntityConcurrencyStats implements PrettyPrintable {
+  /** beyond this many distinct keys per entity, requests are counted under a single overflow bucket */
+  static final int MAX_TRACKED_KEYS = 1024;
+  /** how many of the busiest keys are reported for each entity */
+  static final int REPORTED_KEYS = 16;
+
+  private final boolean enabled;
+  private final int queueCount;
+  private final AtomicReferenceArray<EntityID> lastOnQueue;
+  private final ConcurrentMap<EntityID, EntityCounters> entities = new ConcurrentHashMap<>();
+
+  public EntityConcurrencyStats(boolean enabled, int queueCount) {
+    this.enabled = enabled;
+    this.queueCount = queueCount;
+    this.lastOnQueue = new AtomicReferenceArray<>(Math.max(queueCount, 1));
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * @param schedulingKey the scheduling key of the request as seen by the stage, null if the request can run on any
+   *        queue
+   */
+  public void scheduled(EntityID entity, int concurrencyKey, Object schedulingKey) {
+    if (!enabled) {
+      return;
+    }
+    EntityCounters counters = countersFor(entity);
+    counters.requests.increment();
+    counters.countKey(concurrencyKey);
+    if (schedulingKey != null) {
+//  same queue selection as the stage queue
+      int queue = Math.abs(schedulingKey.hashCode() % queueCount);
+      EntityID previous = lastOnQueue.getAndSet(queue, entity);
+      if (previous != null && !previous.equals(entity)) {
+        counters.collisions.increment();
+      }
+    }
+  }
+
+  public void flushed(EntityID entity, long stallNanos) {
+    if (!enabled) {
+      return;
+    }
+    EntityCounters counters = countersFor(entity);
+    counters.flushes.increment();
+    counters.flushStall.add(stallNanos);
+    counters.maxFlushStall.accumulate(stallNanos);
+  }
+
+  public void reset() {
+    entities.clear();
+    for (int x = 0; x < lastOnQueue.length(); x++) {
+      lastOnQueue.set(x, null);
+    }
+  }
+
+  /**
+   * @return keyed by entity, the request count, distinct keys, share of the busiest key (percent), queue collisions,
+   *         flush count and flush stall times (microseconds) followed by the counts of the busiest keys
+   */
+  public Map<String, Map<String, Long>> getStatistics() {
+    Map<String, Map<String, Long>> result = new TreeMap<>();
+    for (EntityCounters counters : entities.values()) {
+      result.put(counters.name, counters.toMap());
+    }
+    return result;
+  }
+
+  @Override
+  public PrettyPrinter prettyPrint(PrettyPrinter out) {
+    out.print(getClass().getName()).print(" queues=").print(queueCount).print(" enabled=").print(enabled).flush();
+    for (Map.Entry<String, Map<String, Long>> entity : getStatistics().entrySet()) {
+      out.duplicateAndIndent().indent().print(entity.getKey()).print(" ").print(entity.getValue()).flush();
+    }
+    return out;
+  }
+
+  private EntityCounters countersFor(EntityID entity) {
+    EntityCounters counters = entities.get(entity);
+    if (counters == null) {
+      counters = entities.computeIfAbsent(entity, EntityCounters::new);
+    }
+    return counters;
+  }
+
+  private static class EntityCounters {
+    private final String name;
+    private final LongAdder requests = new LongAdder();
+    private final ConcurrentMap<Integer, LongAdder> perKey = new ConcurrentHashMap<>();
+    private final LongAdder untrackedKeys = new LongAdder();
+    private final LongAdder collisions = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder flushStall = new LongAdder();
+    private final LongAccumulator maxFlushStall = new LongAccumulator(Math::max, 0L);
+
+    EntityCounters(EntityID entity) {
+      this.name = entity.getClassName() + ":" + entity.getEntityName();
+    }
+
+    void countKey(int key) {
+      LongAdder count = perKey.get(key);
+      if (count == null) {
+        if (perKey.size() >= MAX_TRACKED_KEYS) {
+          untrackedKeys.increment();
+          return;
+        }
+        count = perKey.computeIfAbsent(key, k -> new LongAdder());
+      }
+      count.increment();
+    }
+
+    Map<String, Long> toMap() {
+      List<Map.Entry<Integer, Long>> keys = new ArrayList<>();
+      for (Map.Entry<Integer, LongAdder> key : perKey.entrySet()) {
+        keys.add(new AbstractMap.SimpleImmutableEntry<>(key.getKey(), key.getValue().sum()));
+      }
+      keys.sort((a, b) -> Long.compare(b.getValue(), a.getValue()));
+
+      long total = requests.sum();
+      Map<String, Long> map = new LinkedHashMap<>();
+      map.put("requests", total);
+      map.put("distinctKeys", (long) keys.size());
+      map.put("untrackedKeyRequests", untrackedKeys.sum());
+      map.put("hottestKeyPercent", (total > 0 && !keys.isEmpty()) ? keys.get(0).getValue() * 100 / total : 0L);
+      map.put("queueCollisions", collisions.sum());
+      map.put("flushes", flushes.sum());
+      map.put("flushStallMicros", TimeUnit.NANOSECONDS.toMicros(flushStall.sum()));
+      map.put("maxFlushStallMicros", TimeUnit.NANOSECONDS.toMicros(maxFlushStall.get()));
+      for (Map.Entry<Integer, Long> key : keys.subList(0, Math.min(REPORTED_KEYS, keys.size()))) {
+        map.put("key." + key.getKey(), key.getValue());
+      }
+      return map;
+    }
+  }
+}
@@ -50,14 +50,18 @@ import com.tc.objectserver.handler.RetirementManager;
 import com.tc.properties.TCPropertiesConsts;
 import com.tc.properties.TCPropertiesImpl;
 import com.tc.services.InternalServiceRegistry;
+import com.tc.stats.FlightRecorder;
 import com.tc.util.Assert;
 import com.tc.util.concurrent.FlightControl;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.BiConsumer;
 import org.terracotta.entity.ConcurrencyStrategy;
@@ -80,6 +84,7 @@ public class ManagedEntityImpl implements ManagedEntity {
   private final RetirementManager retirementManager;
 
   private final EntityID id;
+  private final int flightName;
   private final long version;
   private final long consumerID;
   private final InternalServiceRegistry registry;
@@ -116,6 +121,7 @@ public class ManagedEntityImpl implements ManagedEntity {
                     RequestProcessor process, EntityServerService<EntityMessage, EntityResponse> factory,
                     boolean isInActiveState, boolean canDelete) {
     this.id = id;
+    this.flightName = FlightRecorder.getInstance().name(id.getClassName() + ":" + id.getEntityName());
     this.isDestroyed = true;
     this.version = version;
     this.consumerID = consumerID;
@@ -232,7 +238,7 @@ public class ManagedEntityImpl implements ManagedEntity {
   private void processInvokeRequest(final ServerEntityRequest request, ResultCapture response, MessagePayload message, int key) {
     ClientDescriptor client = request.getSourceDescriptor();
     if (isInActiveState) {
-      key = this.concurrencyStrategy.concurrencyKey(message.decodeRawMessage(codec));
+      key = message.getConcurrencyKey(this.concurrencyStrategy, codec);
     }
     int locked = key;
     scheduleInOrder(getEntityDescriptorForSource(client), request, response, message, ()->invoke(request, response, message, locked), locked);
@@ -448,7 +454,7 @@ public class ManagedEntityImpl implements ManagedEntity {
   private void receiveSyncEntityPayload(ResultCapture response, MessagePayload message) {
     // This only makes sense if we have a passive instance.
     Assert.assertNotNull(this.passiveServerEntity);
-    this.passiveServerEntity.invoke(message.decodeRawMessage(codec));
+    this.passiveServerEntity.invoke(message.decodeRawMessageForInvoke(codec));
     response.complete();
     // No retire on passive.
     Assert.assertFalse(this.isInActiveState);
@@ -615,12 +621,20 @@ public class ManagedEntityImpl implements ManagedEntity {
         throw new IllegalStateException("Actions on a non-existent entity.");
       } else {
         try {
-          final int concurrencyKey = this.concurrencyStrategy.concurrencyKey(em);
+          final int concurrencyKey = message.getConcurrencyKey(this.concurrencyStrategy, codec);
           this.retirementManager.registerWithMessage(em, concurrencyKey);
           ExecutionStrategy.Location loc = this.executionStrategy.getExecutionLocation(em);
           if (loc.runOnActive()) {
-            byte[] er = runWithHelper(()->codec.encodeResponse(this.activeServerEntity.invoke(wrappedRequest.getSourceDescriptor(), em)));
+            RequestLatencyStats latencyStats = executor.getLatencyStats();
+            long begin = latencyStats.timestamp();
+            EntityMessage toInvoke = message.decodeRawMessageForInvoke(codec);
+            FlightRecorder.getInstance().record(FlightRecorder.Event.INVOKE_BEGIN, flightName, concurrencyKey, 0);
+            byte[] er = runWithHelper(()->codec.encodeResponse(this.activeServerEntity.invoke(wrappedRequest.getSourceDescriptor(), toInvoke)));
+            FlightRecorder.getInstance().record(FlightRecorder.Event.INVOKE_END, flightName, concurrencyKey, 0);
+            long invoked = latencyStats.recordSince(id.getClassName(), RequestLatencyStats.Phase.ENTITY_INVOKE, begin);
+//  completing the response waits for the passives before handing the result back
             response.complete(er);
+            latencyStats.recordSince(id.getClassName(), RequestLatencyStats.Phase.REPLICATION_COMPLETED, invoked);
           } else {
             response.complete(new byte[0]);
           }
@@ -633,7 +647,12 @@ public class ManagedEntityImpl implements ManagedEntity {
       if (null == this.passiveServerEntity) {
         throw new IllegalStateException("Actions on a non-existent entity.");
       } else {
-        this.passiveServerEntity.invoke(em);
+        RequestLatencyStats latencyStats = executor.getLatencyStats();
+        long begin = latencyStats.timestamp();
+        FlightRecorder.getInstance().record(FlightRecorder.Event.INVOKE_BEGIN, flightName, message.getConcurrency(), 0);
+        this.passiveServerEntity.invoke(message.decodeRawMessageForInvoke(codec));
+        FlightRecorder.getInstance().record(FlightRecorder.Event.INVOKE_END, flightName, message.getConcurrency(), 0);
+        latencyStats.recordSince(id.getClassName(), RequestLatencyStats.Phase.ENTITY_INVOKE, begin);
         response.complete();
         // No retire on passive.
         Assert.assertFalse(this.isInActiveState);
@@ -651,6 +670,11 @@ public class ManagedEntityImpl implements ManagedEntity {
     return this.retirementManager;
   }
 
+  @Override
+  public MessagePayload.ConcurrencyHint prepareInvoke(EntityMessage message) {
+    return MessagePayload.prepareConcurrencyHint(this.concurrencyStrategy, message);
+  }
+
   @Override
   public void loadEntity(byte[] configuration) {
     this.loadExisting(configuration);
@@ -881,7 +905,8 @@ public class ManagedEntityImpl implements ManagedEntity {
     private final MessagePayload payload;
     private final Runnable original;
     private final int concurrency;
-    private ActivePassiveAckWaiter  waitFor;
+    private volatile ActivePassiveAckWaiter  waitFor;
+    private final CountDownLatch scheduled = new CountDownLatch(1);
 
     public SchedulingRunnable(EntityDescriptor desc, ServerEntityRequest request, MessagePayload payload, Runnable r, int concurrency) {
       this.desc = desc;
@@ -891,7 +916,7 @@ public class ManagedEntityImpl implements ManagedEntity {
       this.concurrency = concurrency;
     }
         
-    private synchronized void start() {
+    private void start() {
       if (concurrency == ConcurrencyStrategy.MANAGEMENT_KEY) {
         runnables.activate();
       }
@@ -903,7 +928,7 @@ public class ManagedEntityImpl implements ManagedEntity {
         }
       } 
       waitFor = executor.scheduleRequest(desc, request, payload, this, replicate, concurrency);
-      this.notifyAll();
+      scheduled.countDown();
     }
     
     public void run() {
@@ -923,11 +948,10 @@ public class ManagedEntityImpl implements ManagedEntity {
       }
     }
     
-    public synchronized void waitForPassives() {
+    public void waitForPassives() {
       try {
-        while (waitFor == null) {
-          this.wait();
-        }
+        // a latch rather than a monitor wait, so a virtual thread parked here does not pin its carrier
+        scheduled.await();
         waitFor.waitForCompleted();
       } catch (InterruptedException e) {
         throw new RuntimeException(e);
@@ -1023,6 +1047,8 @@ public class ManagedEntityImpl implements ManagedEntity {
     private final Consumer<byte[]> result;
     private final Consumer<EntityException> error;
     private SchedulingRunnable setOnce;
+    private final Lock doneLock = new ReentrantLock();
+    private final Condition finished = doneLock.newCondition();
     private boolean done = false;
 
     public ResultCapture(Consumer<byte[]> result, Consumer<EntityException> error) {
@@ -1035,24 +1061,38 @@ public class ManagedEntityImpl implements ManagedEntity {
       setOnce = waitFor;
     }
     
-    public synchronized void finish() {
-      Assert.assertFalse(done);
-      done = true;
-      this.notify();
+    public void finish() {
+      doneLock.lock();
+      try {
+        Assert.assertFalse(done);
+        done = true;
+        finished.signal();
+      } finally {
+        doneLock.unlock();
+      }
     }
        
     public void waitForCompletion() {
       this.waitForCompletion(0, TimeUnit.MILLISECONDS);
     }
     
-    public synchronized void waitForCompletion(long timeout, TimeUnit units) {
+    public void waitForCompletion(long timeout, TimeUnit units) {
       boolean interrupted = false;
-      while (!done) {
-        try {
-          this.wait(units.toMillis(timeout));
-        } catch (InterruptedException ie) {
-          interrupted = true;
+      doneLock.lock();
+      try {
+        while (!done) {
+          try {
+            if (timeout > 0) {
+              finished.await(timeout, units);
+            } else {
+              finished.await();
+            }
+          } catch (InterruptedException ie) {
+            interrupted = true;
+          }
         }
+      } finally {
+        doneLock.unlock();
       }
       if (interrupted) {
         Thread.currentThread().interrupt();
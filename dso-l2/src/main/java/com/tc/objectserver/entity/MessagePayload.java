@@ -18,21 +18,25 @@
  */
 package com.tc.objectserver.entity;
 
+import com.tc.objectserver.api.NonCachingMessageCodec;
+import com.tc.objectserver.api.StatelessConcurrencyStrategy;
 import org.terracotta.entity.ConcurrencyStrategy;
 import org.terracotta.entity.EntityMessage;
 import org.terracotta.entity.MessageCodec;
 import org.terracotta.entity.MessageCodecException;
 
 /**
- *
+ * The raw bytes of an entity request along with the decoded message.  The message is decoded at most once and the
+ * same instance is shared by every thread which handles the request.
  */
 public class MessagePayload {
   
   private final byte[] raw;
-  private EntityMessage message;
+  private volatile EntityMessage message;
   private final int concurrency;
   private final boolean replicate;
-  private String debugId;
+  private volatile String debugId;
+  private volatile ConcurrencyHint hint;
   
   public static final MessagePayload EMPTY = new MessagePayload(new byte[0], null, true);
   
@@ -73,18 +77,92 @@ public class MessagePayload {
   }
 
   public EntityMessage decodeMessage(MessageCodec codec) throws MessageCodecException {
-    if (message == null) {
-      message = codec.decodeMessage(raw);
-      setDebugId(message.toString());
+    EntityMessage decoded = message;
+    if (decoded == null) {
+      synchronized (this) {
+        decoded = message;
+        if (decoded == null) {
+          decoded = codec.decodeMessage(raw);
+          setDebugId(decoded.toString());
+          message = decoded;
+        }
+      }
     }
-    return message;
+    return decoded;
+  }
+
+  /**
+   * The message to hand to the entity.  This is the shared decoded message unless the codec is a
+   * {@link NonCachingMessageCodec}, in which case the raw payload is decoded again.
+   */
+  public EntityMessage decodeRawMessageForInvoke(MessageCodec codec) {
+    if (codec instanceof NonCachingMessageCodec) {
+      try {
+        return codec.decodeMessage(raw);
+      } catch (MessageCodecException mce) {
+        throw new RuntimeException(mce);
+      }
+    }
+    return decodeRawMessage(codec);
   }
   
   public int getConcurrency() {
     return concurrency;
   }
+
+  /**
+   * Works out the concurrency key of a decoded invoke ahead of time.  Only a {@link StatelessConcurrencyStrategy} is
+   * asked; any other strategy may depend on being called on the sequencing thread, in sequence order, so its key is
+   * left to {@link #getConcurrencyKey}.
+   * 
+   * @return a hint for {@link #setConcurrencyHint}, or null if the key has to be worked out at sequencing time
+   */
+  public static ConcurrencyHint prepareConcurrencyHint(ConcurrencyStrategy<EntityMessage> strategy, EntityMessage message) {
+    if (!(strategy instanceof StatelessConcurrencyStrategy)) {
+      return null;
+    }
+    try {
+      return new ConcurrencyHint(strategy, strategy.concurrencyKey(message));
+    } catch (RuntimeException e) {
+//  leave it to the voltron stage, which fails the request the way it always has
+      return null;
+    }
+  }
+
+  public void setConcurrencyHint(ConcurrencyHint hint) {
+    this.hint = hint;
+  }
+
+  /**
+   * The concurrency key of this message under the given strategy.  The key is worked out at most once per strategy:
+   * a hint left by the hydrate stage, or the key computed by an earlier caller, is reused as long as it came from the
+   * same strategy instance.  An entity gets a new strategy when it is reconfigured or promoted, and then the key is
+   * computed again.
+   */
+  public int getConcurrencyKey(ConcurrencyStrategy<EntityMessage> strategy, MessageCodec codec) {
+    ConcurrencyHint known = hint;
+    if (known != null && known.strategy == strategy) {
+      return known.key;
+    }
+    int key = strategy.concurrencyKey(decodeRawMessage(codec));
+    hint = new ConcurrencyHint(strategy, key);
+    return key;
+  }
   
   public boolean shouldReplicate() {
     return replicate;
   }
+
+  /**
+   * A concurrency key together with the strategy which produced it.
+   */
+  public static final class ConcurrencyHint {
+    private final ConcurrencyStrategy<?> strategy;
+    private final int key;
+
+    ConcurrencyHint(ConcurrencyStrategy<?> strategy, int key) {
+      this.strategy = strategy;
+      this.key = key;
+    }
+  }
 }
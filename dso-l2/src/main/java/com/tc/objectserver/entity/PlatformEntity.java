@@ -34,6 +34,7 @@ import java.util.concurrent.TimeoutException;
 import java.util.function.Consumer;
 
 import org.terracotta.entity.ClientDescriptor;
+import org.terracotta.entity.EntityMessage;
 import org.terracotta.entity.ExecutionStrategy;
 import org.terracotta.entity.MessageCodec;
 import org.terracotta.entity.StateDumper;
@@ -134,4 +135,9 @@ public class PlatformEntity implements ManagedEntity {
     Assert.fail();
     return null;
   }
+
+  @Override
+  public MessagePayload.ConcurrencyHint prepareInvoke(EntityMessage message) {
+    return null;
+  }
 }
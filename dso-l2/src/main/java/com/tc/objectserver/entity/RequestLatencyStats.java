@@ -0,0 +1,155 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.objectserver.entity;
+
+import com.tc.stats.LatencyHistogram;
+import com.tc.text.PrettyPrintable;
+import com.tc.text.PrettyPrinter;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency histograms for each hand-off an entity request goes through on the server, tagged by entity class.
+ * <p>
+ * Call sites take a {@link #timestamp()} when a request is handed off and {@link #recordSince} when it is picked up
+ * on the other side. When disabled, {@link #timestamp()} returns 0 without reading the clock and nothing is recorded.
+ */
+public class RequestLatencyStats implements PrettyPrintable {
+
+  public enum Phase {
+    /** from arrival off the wire until hydrated and queued for the voltron stage */
+    HYDRATE,
+    /** waiting in the voltron message stage queue */
+    VOLTRON_STAGE,
+    /** waiting in the request processor queue for the concurrency key */
+    REQUEST_QUEUE,
+    /** waiting for passives to acknowledge they received the replicated request */
+    REPLICATION_RECEIVED,
+    /** running the entity (including response encoding) */
+    ENTITY_INVOKE,
+    /** waiting for passives to complete the request before the result is released */
+    REPLICATION_COMPLETED,
+    /** from the first result being batched for a client until the response message is sent */
+    RESPONSE_SEND
+  }
+
+  /** tag for phases which are not attributable to a single entity class */
+  public static final String ALL_ENTITIES = "*";
+
+  private final boolean enabled;
+  private final ConcurrentMap<String, LatencyHistogram[]> histograms = new ConcurrentHashMap<>();
+
+  public RequestLatencyStats(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public long timestamp() {
+    return enabled ? System.nanoTime() : 0L;
+  }
+
+  /**
+   * Records the time since {@code start} (taken from {@link #timestamp()}) against the given phase.
+   * 
+   * @return the current timestamp, to be used as the start of the next phase
+   */
+  public long recordSince(String entityClass, Phase phase, long start) {
+    if (!enabled || start == 0L) {
+      return timestamp();
+    }
+    return histogramsFor(entityClass)[phase.ordinal()].recordSince(start);
+  }
+
+  public void reset() {
+    for (LatencyHistogram[] forClass : histograms.values()) {
+      for (LatencyHistogram histogram : forClass) {
+        histogram.reset();
+      }
+    }
+  }
+
+  /**
+   * @return keyed by {@code <entity class>/<phase>}, the count, mean, max and percentiles of each phase, in
+   *         microseconds. Phases with no recorded values are omitted.
+   */
+  public Map<String, Map<String, Long>> getHistograms() {
+    Map<String, Map<String, Long>> result = new TreeMap<>();
+    for (LatencyHistogram.Snapshot snapshot : snapshots()) {
+      result.put(snapshot.getName(), snapshot.toMap(TimeUnit.MICROSECONDS));
+    }
+    return result;
+  }
+
+  public String getReport() {
+    StringBuilder report = new StringBuilder();
+    report.append("Request latency histograms (microseconds)");
+    if (!enabled) {
+      report.append(" - disabled");
+    }
+    report.append('\n');
+    for (LatencyHistogram.Snapshot snapshot : snapshots()) {
+      report.append("  ").append(snapshot.getName()).append(' ')
+          .append(snapshot.toMap(TimeUnit.MICROSECONDS)).append('\n');
+    }
+    return report.toString();
+  }
+
+  @Override
+  public PrettyPrinter prettyPrint(PrettyPrinter out) {
+    out.print(getReport()).flush();
+    return out;
+  }
+
+  private Iterable<LatencyHistogram.Snapshot> snapshots() {
+    Map<String, LatencyHistogram.Snapshot> sorted = new TreeMap<>();
+    for (LatencyHistogram[] forClass : histograms.values()) {
+      for (LatencyHistogram histogram : forClass) {
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        if (snapshot.getCount() > 0) {
+          sorted.put(snapshot.getName(), snapshot);
+        }
+      }
+    }
+    return sorted.values();
+  }
+
+  private LatencyHistogram[] histogramsFor(String entityClass) {
+    LatencyHistogram[] forClass = histograms.get(entityClass);
+    if (forClass == null) {
+      forClass = histograms.computeIfAbsent(entityClass, RequestLatencyStats::createHistograms);
+    }
+    return forClass;
+  }
+
+  private static LatencyHistogram[] createHistograms(String entityClass) {
+    Phase[] phases = Phase.values();
+    LatencyHistogram[] forClass = new LatencyHistogram[phases.length];
+    for (Phase phase : phases) {
+      forClass[phase.ordinal()] = new LatencyHistogram(entityClass + "/" + phase);
+    }
+    return forClass;
+  }
+}
@@ -38,11 +38,27 @@ import org.terracotta.entity.ExecutionStrategy;
 public class RequestProcessor {
   private PassiveReplicationBroker passives;
   private final Sink<Runnable> requestExecution;
+  private final RequestLatencyStats latencyStats;
+  private final EntityConcurrencyStats concurrencyStats;
   private boolean isActive = false;
 //  TODO: do some accounting for transaction de-dupping on failover
 
   public RequestProcessor(Sink<Runnable> requestExecution) {
+    this(requestExecution, new RequestLatencyStats(false), new EntityConcurrencyStats(false, 1));
+  }
+
+  public RequestProcessor(Sink<Runnable> requestExecution, RequestLatencyStats latencyStats, EntityConcurrencyStats concurrencyStats) {
     this.requestExecution = requestExecution;
+    this.latencyStats = latencyStats;
+    this.concurrencyStats = concurrencyStats;
+  }
+
+  public RequestLatencyStats getLatencyStats() {
+    return latencyStats;
+  }
+
+  public EntityConcurrencyStats getConcurrencyStats() {
+    return concurrencyStats;
   }
 
   public void enterActiveState() {
@@ -72,7 +88,8 @@ public class RequestProcessor {
         ? passives.replicateMessage(createReplicationMessage(entity, request.getNodeID(), replicate ? request.getAction() : ServerEntityAction.NOOP, 
             request.getTransaction(), request.getOldestTransactionOnClient(), payload, concurrencyKey), replicateTo)
         : NoReplicationBroker.NOOP_WAITER;
-    EntityRequest entityRequest =  new EntityRequest(entity, call, concurrencyKey, token);
+    EntityRequest entityRequest =  new EntityRequest(entity, call, concurrencyKey, token, latencyStats, concurrencyStats);
+    concurrencyStats.scheduled(entity.getEntityID(), concurrencyKey, entityRequest.getSchedulingKey());
     requestExecution.addMultiThreaded(entityRequest);
     return token;
   }
@@ -126,13 +143,22 @@ public class RequestProcessor {
     private final Runnable invoke;
     private final ActivePassiveAckWaiter replicationWaiter;
     private final int key;
+    private final RequestLatencyStats latencyStats;
+    private final EntityConcurrencyStats concurrencyStats;
+    private final long enqueued;
+    private final long flushQueued;
     private boolean done = false;
 
-    public EntityRequest(EntityDescriptor entity, Runnable runnable, int key, ActivePassiveAckWaiter replicationWaiter) {
+    public EntityRequest(EntityDescriptor entity, Runnable runnable, int key, ActivePassiveAckWaiter replicationWaiter, RequestLatencyStats latencyStats, EntityConcurrencyStats concurrencyStats) {
       this.entity = entity;
       this.invoke = runnable;
       this.replicationWaiter = replicationWaiter;
       this.key = key;
+      this.latencyStats = latencyStats;
+      this.concurrencyStats = concurrencyStats;
+      this.enqueued = latencyStats.timestamp();
+//  flushes are rare, always time them so the stall they cause on every queue is visible
+      this.flushQueued = (flush() && concurrencyStats.isEnabled()) ? System.nanoTime() : 0L;
     }
 
     @Override
@@ -151,8 +177,14 @@ public class RequestProcessor {
     
     void invoke()  {
       try {
+        if (flushQueued != 0L) {
+          concurrencyStats.flushed(entity.getEntityID(), System.nanoTime() - flushQueued);
+        }
+        String entityClass = entity.getEntityID().getClassName();
+        long dequeued = latencyStats.recordSince(entityClass, RequestLatencyStats.Phase.REQUEST_QUEUE, enqueued);
         // NOTE:  We want to wait to hear that the passive has received the replicated invoke.
         this.replicationWaiter.waitForReceived();
+        latencyStats.recordSince(entityClass, RequestLatencyStats.Phase.REPLICATION_RECEIVED, dequeued);
         // We can now run the invoke.
         invoke.run();
         // Now that we are done, wait for the passive to finish.
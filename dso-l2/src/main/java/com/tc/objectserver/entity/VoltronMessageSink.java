@@ -20,33 +20,143 @@ package com.tc.objectserver.entity;
 
 import com.tc.entity.MessageCodecSupplier;
 import com.tc.async.api.Sink;
+import com.tc.async.api.SpecializedEventContext;
 import com.tc.entity.NetworkVoltronEntityMessage;
 import com.tc.entity.VoltronEntityMessage;
 import com.tc.net.protocol.tcm.HydrateContext;
 import com.tc.net.protocol.tcm.TCMessage;
 import com.tc.net.protocol.tcm.TCMessageSink;
+import com.tc.object.EntityDescriptor;
+import com.tc.objectserver.api.EntityManager;
+import com.tc.stats.Stats;
+import org.terracotta.entity.EntityMessage;
+import org.terracotta.exception.EntityException;
 
 public class VoltronMessageSink implements TCMessageSink {
   private final Sink<VoltronEntityMessage> destSink;
   private final Sink<HydrateContext> hydrateSink;
   private final MessageCodecSupplier codecSupplier;
+  private final RequestLatencyStats latencyStats;
   
 
   public VoltronMessageSink(Sink<VoltronEntityMessage> destSink, Sink<HydrateContext> hydrateSink, MessageCodecSupplier codecSupplier) {
-    this.destSink = destSink;
+    this(destSink, hydrateSink, codecSupplier, null, new RequestLatencyStats(false));
+  }
+
+  public VoltronMessageSink(Sink<VoltronEntityMessage> destSink, Sink<HydrateContext> hydrateSink, EntityManager entityManager, RequestLatencyStats latencyStats) {
+    this(destSink, hydrateSink, entityManager, entityManager, latencyStats);
+  }
+
+  private VoltronMessageSink(Sink<VoltronEntityMessage> destSink, Sink<HydrateContext> hydrateSink, MessageCodecSupplier codecSupplier, EntityManager entityManager, RequestLatencyStats latencyStats) {
+    this.destSink = (latencyStats.isEnabled() || entityManager != null) ? new HydratedSink(destSink, entityManager, latencyStats) : destSink;
     this.hydrateSink = hydrateSink;
     this.codecSupplier = codecSupplier;
+    this.latencyStats = latencyStats;
   }
 
   @Override
   public void putMessage(TCMessage message) { 
     if (message instanceof NetworkVoltronEntityMessage) {
-      ((NetworkVoltronEntityMessage)message).setMessageCodecSupplier(codecSupplier);
+      NetworkVoltronEntityMessage voltronMessage = (NetworkVoltronEntityMessage)message;
+      voltronMessage.setMessageCodecSupplier(codecSupplier);
+      voltronMessage.setHandoffTimestamp(latencyStats.timestamp());
     }
     HydrateContext<VoltronEntityMessage> context = new HydrateContext<>(message, destSink);
     hydrateSink.addMultiThreaded(context);
   }
-  
-    
-  
+
+  /**
+   * Sits between the hydrate stage and the voltron stage.  It runs on the hydrate threads, which are keyed by channel,
+   * and does the per-message work that doesn't depend on global order before the message joins the single voltron
+   * queue: it records how long the message took to get hydrated and, if the entity's concurrency strategy allows it,
+   * works out the concurrency key of an invoke.
+   */
+  private static class HydratedSink implements Sink<VoltronEntityMessage> {
+    private final Sink<VoltronEntityMessage> delegate;
+    private final EntityManager entityManager;
+    private final RequestLatencyStats latencyStats;
+
+    HydratedSink(Sink<VoltronEntityMessage> delegate, EntityManager entityManager, RequestLatencyStats latencyStats) {
+      this.delegate = delegate;
+      this.entityManager = entityManager;
+      this.latencyStats = latencyStats;
+    }
+
+    private void prepare(VoltronEntityMessage context) {
+      if (context instanceof NetworkVoltronEntityMessage) {
+        NetworkVoltronEntityMessage message = (NetworkVoltronEntityMessage)context;
+        if (latencyStats.isEnabled()) {
+          message.setHandoffTimestamp(latencyStats.recordSince(message.getEntityDescriptor().getEntityID().getClassName(), 
+              RequestLatencyStats.Phase.HYDRATE, message.getHandoffTimestamp()));
+        }
+        EntityMessage decoded = message.getEntityMessage();
+        if (entityManager != null && decoded != null) {
+          EntityDescriptor descriptor = message.getEntityDescriptor();
+          try {
+            entityManager.getEntity(descriptor.getEntityID(), descriptor.getClientSideVersion())
+                .ifPresent(entity->message.setConcurrencyHint(entity.prepareInvoke(decoded)));
+          } catch (EntityException ee) {
+//  the voltron stage looks the entity up again and reports this to the client
+          }
+        }
+      }
+    }
+
+    @Override
+    public void addSingleThreaded(VoltronEntityMessage context) {
+      prepare(context);
+      delegate.addSingleThreaded(context);
+    }
+
+    @Override
+    public void addMultiThreaded(VoltronEntityMessage context) {
+      prepare(context);
+      delegate.addMultiThreaded(context);
+    }
+
+    @Override
+    public void addSpecialized(SpecializedEventContext specialized) {
+      delegate.addSpecialized(specialized);
+    }
+
+    @Override
+    public int size() {
+      return delegate.size();
+    }
+
+    @Override
+    public void clear() {
+      delegate.clear();
+    }
+
+    @Override
+    public void setClosed(boolean closed) {
+      delegate.setClosed(closed);
+    }
+
+    @Override
+    public void enableStatsCollection(boolean enable) {
+      delegate.enableStatsCollection(enable);
+    }
+
+    @Override
+    public boolean isStatsCollectionEnabled() {
+      return delegate.isStatsCollectionEnabled();
+    }
+
+    @Override
+    public Stats getStats(long frequency) {
+      return delegate.getStats(frequency);
+    }
+
+    @Override
+    public Stats getStatsAndReset(long frequency) {
+      return delegate.getStatsAndReset(frequency);
+    }
+
+    @Override
+    public void resetStats() {
+      delegate.resetStats();
+    }
+  }
 }
@@ -41,6 +41,8 @@ import com.tc.object.net.DSOChannelManager;
 import com.tc.object.net.DSOChannelManagerEventListener;
 import com.tc.objectserver.core.api.ServerConfigurationContext;
 
+import java.util.function.Consumer;
+
 
 public class ChannelLifeCycleHandler implements DSOChannelManagerEventListener {
   private final CommunicationsManager   commsManager;
@@ -51,12 +53,18 @@ public class ChannelLifeCycleHandler implements DSOChannelManagerEventListener {
   private final Sink<HydrateContext> hydrateSink;
   private final Sink<VoltronEntityMessage> processTransactionSink;
   private final Sink<Runnable> requestProcessorSink;
+  private final Consumer<ClientID> clientRemoved;
 
+  /**
+   * @param clientRemoved told about each client once everything it sent has been processed, to drop what is still held
+   *        for it
+   */
   public ChannelLifeCycleHandler(CommunicationsManager commsManager, StageManager stageManager, 
-                                 DSOChannelManager channelManager, HaConfig haConfig) {
+                                 DSOChannelManager channelManager, HaConfig haConfig, Consumer<ClientID> clientRemoved) {
     this.commsManager = commsManager;
     this.channelMgr = channelManager;
     this.haConfig = haConfig;
+    this.clientRemoved = clientRemoved;
     hydrateSink = stageManager.getStage(ServerConfigurationContext.HYDRATE_MESSAGE_SINK, HydrateContext.class).getSink();
     processTransactionSink = stageManager.getStage(ServerConfigurationContext.VOLTRON_MESSAGE_STAGE, VoltronEntityMessage.class).getSink();
     requestProcessorSink = stageManager.getStage(ServerConfigurationContext.REQUEST_PROCESSOR_STAGE, Runnable.class).getSink();
@@ -195,6 +203,7 @@ public class ChannelLifeCycleHandler implements DSOChannelManagerEventListener {
     @Override
     public void run() {
       nodeDisconnected(clientID, product);
+      clientRemoved.accept(clientID);
     }
   }
 }
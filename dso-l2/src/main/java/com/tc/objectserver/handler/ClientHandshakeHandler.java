@@ -61,6 +61,11 @@ public class ClientHandshakeHandler extends AbstractEventHandler<ClientHandshake
 
   @Override
   public void handleEvent(ClientHandshakeMessage clientMsg) {
+    if (clientMsg.getResendChunkSequence() >= 0) {
+      // Not a handshake but one of the chunks of resends streamed after it.
+      this.handshakeManager.notifyResendChunk(clientMsg, transactionHandler);
+      return;
+    }
     try {
       NodeID remoteNodeID = clientMsg.getChannel().getRemoteNodeID();
       checkCompatibility(clientMsg.enterpriseClient(), remoteNodeID);
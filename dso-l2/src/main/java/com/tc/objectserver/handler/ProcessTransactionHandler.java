@@ -21,8 +21,8 @@ package com.tc.objectserver.handler;
 import com.tc.async.api.AbstractEventHandler;
 import com.tc.async.api.ConfigurationContext;
 import com.tc.async.api.EventHandlerException;
-import com.tc.async.api.Sink;
 import com.tc.async.api.Stage;
+import com.tc.entity.NetworkVoltronEntityMessage;
 import com.tc.entity.ResendVoltronEntityMessage;
 import com.tc.entity.VoltronEntityAppliedResponse;
 import com.tc.entity.VoltronEntityMessage;
@@ -32,7 +32,6 @@ import com.tc.logging.TCLogging;
 import com.tc.net.ClientID;
 import com.tc.net.NodeID;
 import com.tc.net.protocol.tcm.MessageChannel;
-import com.tc.net.protocol.tcm.TCMessage;
 import com.tc.net.protocol.tcm.TCMessageType;
 import com.tc.object.ClientInstanceID;
 import com.tc.object.EntityDescriptor;
@@ -45,11 +44,15 @@ import com.tc.objectserver.api.ManagedEntity;
 import com.tc.objectserver.api.ServerEntityAction;
 import com.tc.objectserver.core.api.ServerConfigurationContext;
 import com.tc.objectserver.entity.MessagePayload;
+import com.tc.objectserver.entity.RequestLatencyStats;
 import com.tc.objectserver.api.Retiree;
 import com.tc.objectserver.entity.ServerEntityRequestResponse;
 import com.tc.objectserver.persistence.EntityData;
 import com.tc.objectserver.persistence.EntityPersistor;
 import com.tc.objectserver.persistence.TransactionOrderPersistor;
+import com.tc.properties.TCProperties;
+import com.tc.properties.TCPropertiesConsts;
+import com.tc.properties.TCPropertiesImpl;
 import com.tc.util.Assert;
 import com.tc.util.SparseList;
 import java.util.ArrayList;
@@ -58,8 +61,6 @@ import java.util.LinkedList;
 
 import java.util.List;
 import java.util.Optional;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.function.Predicate;
 import org.terracotta.entity.EntityMessage;
 import org.terracotta.entity.MessageCodecException;
 import org.terracotta.exception.EntityException;
@@ -76,34 +77,20 @@ public class ProcessTransactionHandler {
   
   private final EntityManager entityManager;
   private final DSOChannelManager dsoChannelManager;
+  private final RequestLatencyStats latencyStats;
   
   // Data required for handling transaction resends.
   private SparseList<ResendVoltronEntityMessage> resendReplayList;
   private List<ResendVoltronEntityMessage> resendNewList;
   
-  private Sink<TCMessage> multiSend;
-  private ConcurrentHashMap<ClientID, TCMessage> invokeReturn = new ConcurrentHashMap<>();
-  
-  private void sendMultiResponse(VoltronEntityMultiResponse response) {
-    multiSend.addSingleThreaded(response);
+  private final ResponseBatcher responses;
+
+  public AbstractEventHandler<ResponseBatcher.ClientBatch> getMultiResponseSender() {
+    return responses.getSender();
   }
-  
-  private final AbstractEventHandler<TCMessage> multiSender = new AbstractEventHandler<TCMessage>() {
-    @Override
-    public void handleEvent(TCMessage context) throws EventHandlerException {
-      NodeID destinationID = context.getDestinationNodeID();
-      invokeReturn.remove((ClientID)destinationID, context);
-      boolean didSend = context.send();
-      if (!didSend) {
-        // It is possible for this send to fail.  Typically, it means that the client has disconnected.
-        LOGGER.warn("Failed to send message to: " + destinationID);
-      } else if (LOGGER.isDebugEnabled()) {
-        LOGGER.debug("sent " + context);
-      }
-    }
-  };
-  public AbstractEventHandler<TCMessage> getMultiResponseSender() {
-    return multiSender;
+
+  public ResponseBatcher getResponseBatcher() {
+    return responses;
   }
   
   private final AbstractEventHandler<VoltronEntityMessage> voltronHandler = new AbstractEventHandler<VoltronEntityMessage>() {
@@ -123,8 +110,18 @@ public class ProcessTransactionHandler {
       TransactionID transactionID = message.getTransactionID();
       boolean doesRequireReplication = message.doesRequireReplication();
       TransactionID oldestTransactionOnClient = message.getOldestTransactionOnClient();
+      MessagePayload payload = new MessagePayload(extendedData, entityMessage, doesRequireReplication);
+      if (message instanceof NetworkVoltronEntityMessage) {
+        NetworkVoltronEntityMessage networkMessage = (NetworkVoltronEntityMessage)message;
+        latencyStats.recordSince(descriptor.getEntityID().getClassName(), RequestLatencyStats.Phase.VOLTRON_STAGE, networkMessage.getHandoffTimestamp());
+//  the hydrate stage may already have worked out the concurrency key, see VoltronMessageSink
+        Object hint = networkMessage.getConcurrencyHint();
+        if (hint instanceof MessagePayload.ConcurrencyHint) {
+          payload.setConcurrencyHint((MessagePayload.ConcurrencyHint)hint);
+        }
+      }
       
-      ProcessTransactionHandler.this.addMessage(sourceNodeID, descriptor, action, new MessagePayload(extendedData, entityMessage, doesRequireReplication), transactionID, oldestTransactionOnClient);
+      ProcessTransactionHandler.this.addMessage(sourceNodeID, descriptor, action, payload, transactionID, oldestTransactionOnClient);
     }
 
     @Override
@@ -135,8 +132,8 @@ public class ProcessTransactionHandler {
       server.getL2Coordinator().getReplicatedClusterStateManager().setCurrentState(server.getL2Coordinator().getStateManager().getCurrentState());
       server.getL2Coordinator().getReplicatedClusterStateManager().goActiveAndSyncState();
       
-      Stage<TCMessage> mss = server.getStage(ServerConfigurationContext.RESPOND_TO_REQUEST_STAGE, TCMessage.class);
-      multiSend = mss.getSink();
+      Stage<ResponseBatcher.ClientBatch> mss = server.getStage(ServerConfigurationContext.RESPOND_TO_REQUEST_STAGE, ResponseBatcher.ClientBatch.class);
+      responses.setFlushSink(mss.getSink());
       
 //  go right to active state.  this only gets initialized once ACTIVE-COORDINATOR is entered
       entityManager.enterActiveState();
@@ -147,11 +144,21 @@ public class ProcessTransactionHandler {
   }
 
   public ProcessTransactionHandler(EntityPersistor entityPersistor, TransactionOrderPersistor transactionOrderPersistor, DSOChannelManager channelManager, EntityManager entityManager, Runnable stateManagerCleanup) {
+    this(entityPersistor, transactionOrderPersistor, channelManager, entityManager, stateManagerCleanup, new RequestLatencyStats(false));
+  }
+
+  public ProcessTransactionHandler(EntityPersistor entityPersistor, TransactionOrderPersistor transactionOrderPersistor, DSOChannelManager channelManager, EntityManager entityManager, Runnable stateManagerCleanup, RequestLatencyStats latencyStats) {
     this.entityPersistor = entityPersistor;
     this.transactionOrderPersistor = transactionOrderPersistor;
     this.dsoChannelManager = channelManager;
     this.entityManager = entityManager;
     this.stateManagerCleanup = stateManagerCleanup;
+    this.latencyStats = latencyStats;
+    TCProperties props = TCPropertiesImpl.getProperties();
+    this.responses = new ResponseBatcher(this::createMultiResponse, latencyStats,
+        props.getInt(TCPropertiesConsts.ENTITY_RESPONSE_BATCH_MAX_COUNT, 1024),
+        props.getLong(TCPropertiesConsts.ENTITY_RESPONSE_BATCH_MAX_BYTES, 256 * 1024),
+        props.getLong(TCPropertiesConsts.ENTITY_RESPONSE_BATCH_MAX_DELAY_MICROS, 0));
     
     this.resendReplayList = new SparseList<>();
     this.resendNewList = new LinkedList<>();
@@ -168,31 +175,8 @@ public class ProcessTransactionHandler {
     };
   }
   
-  private void addSequentially(ClientID target, Predicate<VoltronEntityMultiResponse> adder) {
-    boolean handled = false;
-    while (!handled) {
-      TCMessage old = invokeReturn.get(target);
-      if (old instanceof VoltronEntityMultiResponse) {
-        handled = adder.test((VoltronEntityMultiResponse)old);
-      }
-      if (!handled) {
-        Optional<MessageChannel> channel = safeGetChannel(target);
-        if (channel.isPresent()) {
-          VoltronEntityMultiResponse vmr = (VoltronEntityMultiResponse)channel.get().createMessage(TCMessageType.VOLTRON_ENTITY_MULTI_RESPONSE);
-          old = invokeReturn.putIfAbsent(target, vmr);
-          if (old instanceof VoltronEntityMultiResponse) {
-            handled = adder.test((VoltronEntityMultiResponse)old);
-          } else {
-            handled = adder.test(vmr);
-            Assert.assertTrue(handled);
-            sendMultiResponse(vmr);
-          }
-        } else {
-          handled = true;
-//  no more client.  ignore
-        }
-      }
-    }
+  private Optional<VoltronEntityMultiResponse> createMultiResponse(ClientID target) {
+    return safeGetChannel(target).map(channel -> (VoltronEntityMultiResponse)channel.createMessage(TCMessageType.VOLTRON_ENTITY_MULTI_RESPONSE));
   }
   
   private static void retireMessagesForEntity(ManagedEntity entity, EntityMessage message) {
@@ -271,18 +255,18 @@ public class ProcessTransactionHandler {
         if (ServerEntityAction.INVOKE_ACTION == action) {
           ManagedEntity locked = entity;
           try {
-            addSequentially(sourceNodeID, addto->addto.addReceived(transactionID));
+            responses.addReceived(sourceNodeID, transactionID);
 
             EntityMessage message = entityMessage.decodeMessage(entity.getCodec());
             
             locked.addRequestMessage(serverEntityRequest, entityMessage, (result)-> {
-              addSequentially(sourceNodeID, addTo->addTo.addResult(transactionID, result));
+              responses.addResult(sourceNodeID, transactionID, result);
               RetirementManager retirementManager = locked.getRetirementManager();
               
               retirementManager.updateWithRetiree(message, new Retiree() {
                 @Override
                 public void retired() {
-                  addSequentially(sourceNodeID, addTo->addTo.addRetired(serverEntityRequest.getTransaction()));
+                  responses.addRetired(sourceNodeID, serverEntityRequest.getTransaction());
                 }
                 @Override
                 public TransactionID getTransaction() {
@@ -295,14 +279,13 @@ public class ProcessTransactionHandler {
               safeGetChannel(sourceNodeID).ifPresent(channel -> {
                 VoltronEntityAppliedResponse failMessage = (VoltronEntityAppliedResponse)channel.createMessage(TCMessageType.VOLTRON_ENTITY_APPLIED_RESPONSE);
                 failMessage.setFailure(transactionID, fail, false);
-                invokeReturn.put(sourceNodeID, failMessage);
-                multiSend.addSingleThreaded(failMessage);
+                responses.addMessage(sourceNodeID, failMessage);
               });
               
               locked.getRetirementManager().updateWithRetiree(message, new Retiree() {
                 @Override
                 public void retired() {
-                  addSequentially(sourceNodeID, addTo->addTo.addRetired(serverEntityRequest.getTransaction()));
+                  responses.addRetired(sourceNodeID, serverEntityRequest.getTransaction());
                 }
 
                 @Override
@@ -49,6 +49,7 @@ import com.tc.objectserver.entity.PlatformEntity;
 import com.tc.objectserver.entity.ServerEntityRequestResponse;
 import com.tc.objectserver.persistence.EntityPersistor;
 import com.tc.objectserver.persistence.TransactionOrderPersistor;
+import com.tc.stats.FlightRecorder;
 import com.tc.util.Assert;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
@@ -59,6 +60,8 @@ import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.CountDownLatch;
 import org.terracotta.entity.ClientDescriptor;
 import org.terracotta.entity.ConcurrencyStrategy;
@@ -69,6 +72,7 @@ import org.terracotta.exception.EntityException;
 
 public class ReplicatedTransactionHandler {
   private static final TCLogger LOGGER = TCLogging.getLogger(ReplicatedTransactionHandler.class);
+  private static final int FLIGHT_NAME = FlightRecorder.getInstance().name("passive-replication");
   private final EntityManager entityManager;
   private final EntityPersistor entityPersistor;
   private final GroupManager<AbstractGroupMessage> groupManager;
@@ -199,6 +203,8 @@ public class ReplicatedTransactionHandler {
   }
 //  don't need to worry about resends here for lifecycle messages.  active will filer them  
   private void replicatedMessageReceived(ReplicationMessage rep) throws EntityException {
+    FlightRecorder.getInstance().record(FlightRecorder.Event.REPLICATION_RECEIVE, FLIGHT_NAME,
+                                        rep.getMessageID().toLong(), rep.getConcurrency());
     ClientID sourceNodeID = rep.getSource();
     TransactionID transactionID = rep.getTransactionID();
     TransactionID oldestTransactionOnClient = rep.getOldestTransactionOnClient();
@@ -207,17 +213,9 @@ public class ReplicatedTransactionHandler {
     // Send the RECEIVED ack before we run this.
     ackReceived(rep);
     
-    // Note that we only want to persist the messages with a true sourceNodeID.  Synthetic invocations and sync messages
-    // don't have one (although sync messages shouldn't come down this path).
-    if (!ClientInstanceID.NULL_ID.equals(sourceNodeID)) {
-      if (!oldestTransactionOnClient.isNull()) {
-        this.orderedTransactions.updateWithNewMessage(sourceNodeID, transactionID, oldestTransactionOnClient);
-      } else {
-        // This corresponds to a disconnect.
-        this.orderedTransactions.removeTrackingForClient(sourceNodeID);
-        this.entityPersistor.removeTrackingForClient(sourceNodeID);
-      }
-    }
+    // The ordering record is synced in the background so this stage can move on to the next message; the completed
+    // ack is held back until it is durable.
+    CompletableFuture<Void> ordered = persistOrdering(sourceNodeID, transactionID, oldestTransactionOnClient);
 
     long version = rep.getVersion();
     EntityID entityID = descriptor.getEntityID();
@@ -241,51 +239,44 @@ public class ReplicatedTransactionHandler {
           (result) -> {
             if (!sourceNodeID.isNull()) {
               entityPersistor.entityCreated(sourceNodeID, transactionID.toLong(), oldestTransactionOnClient.toLong(), entityID, descriptor.getClientSideVersion(), consumerID, true /*from client checked*/, extendedData);
-              acknowledge(rep);
+              acknowledgeWhenOrdered(rep, ordered);
             } else {
               entityPersistor.entityCreatedNoJournal(entityID, descriptor.getClientSideVersion(), consumerID, true, extendedData);
-              acknowledge(rep);
+              acknowledgeWhenOrdered(rep, ordered);
             }
           }, (exception) -> {
             entityPersistor.entityCreateFailed(sourceNodeID, transactionID.toLong(), oldestTransactionOnClient.toLong(), exception);
-            acknowledge(rep);
+            acknowledgeWhenOrdered(rep, ordered);
           });
       } catch (EntityException ee) {
-        acknowledge(rep);
+        acknowledgeWhenOrdered(rep, ordered);
         if (!sourceNodeID.isNull()) {
           entityPersistor.entityCreateFailed(sourceNodeID, transactionID.toLong(), oldestTransactionOnClient.toLong(), ee);
         }
       }
     } else if (entity.isPresent()) {
       ManagedEntity entityInstance = entity.get();
-      EntityMessage msg = null;
-      try {
-        if (rep.getReplicationType() == ReplicationMessage.ReplicationType.INVOKE_ACTION) {
-          msg = entityInstance.getCodec().decodeMessage(extendedData);
-        }
-      } catch (MessageCodecException codec) {
-        throw new RuntimeException(codec);
-      }
-      MessagePayload payload = new MessagePayload(extendedData, msg, rep.getConcurrency());
+      // The message is decoded lazily, on the request processor thread which runs its concurrency key.
+      MessagePayload payload = new MessagePayload(extendedData, null, rep.getConcurrency());
       if (null != request.getAction()) switch (request.getAction()) {
         case RECONFIGURE_ENTITY:  
           entity.get().addRequestMessage(request, payload, 
             (result)->{
               entityPersistor.entityReconfigureSucceeded(sourceNodeID, transactionID.toLong(), oldestTransactionOnClient.toLong(), entityID, version, result);
-              acknowledge(rep);
+              acknowledgeWhenOrdered(rep, ordered);
             } , (exception) -> {
               entityPersistor.entityReconfigureFailed(sourceNodeID, transactionID.toLong(), oldestTransactionOnClient.toLong(), exception);
-              acknowledge(rep);
+              acknowledgeWhenOrdered(rep, ordered);
             });
           break;
         case DESTROY_ENTITY:
           entityInstance.addRequestMessage(request, payload, 
             (result)-> {
               entityPersistor.entityDestroyed(sourceNodeID, transactionID.toLong(), oldestTransactionOnClient.toLong(), entityID);
-              acknowledge(rep);
+              acknowledgeWhenOrdered(rep, ordered);
             }, (exception) -> {
               entityPersistor.entityDestroyFailed(sourceNodeID, transactionID.toLong(), oldestTransactionOnClient.toLong(), exception);
-              acknowledge(rep);
+              acknowledgeWhenOrdered(rep, ordered);
             });
           break;
         case NOOP:
@@ -295,14 +286,29 @@ public class ReplicatedTransactionHandler {
           }
           //  fall-through to default
         default:
-          entityInstance.addRequestMessage(request, payload, (result)-> acknowledge(rep), (exception) -> acknowledge(rep));
+          entityInstance.addRequestMessage(request, payload, (result)-> acknowledgeWhenOrdered(rep, ordered), (exception) -> acknowledgeWhenOrdered(rep, ordered));
           break;
       }
     } else {
  //  fail, just ack
       LOGGER.debug("entity not found:" + rep);
-      acknowledge(rep);
+      acknowledgeWhenOrdered(rep, ordered);
+    }
+  }
+
+  private CompletableFuture<Void> persistOrdering(ClientID sourceNodeID, TransactionID transactionID, TransactionID oldestTransactionOnClient) {
+    // Note that we only want to persist the messages with a true sourceNodeID.  Synthetic invocations and sync messages
+    // don't have one (although sync messages shouldn't come down this path).
+    if (!ClientInstanceID.NULL_ID.equals(sourceNodeID)) {
+      if (!oldestTransactionOnClient.isNull()) {
+        return this.orderedTransactions.updateWithNewMessageAsync(sourceNodeID, transactionID, oldestTransactionOnClient);
+      } else {
+        // This corresponds to a disconnect.
+        this.orderedTransactions.removeTrackingForClient(sourceNodeID);
+        this.entityPersistor.removeTrackingForClient(sourceNodeID);
+      }
     }
+    return CompletableFuture.completedFuture(null);
   }
   
   private void requestPassiveSync() {
@@ -487,6 +493,28 @@ public class ReplicatedTransactionHandler {
     }
   }
 
+  private void acknowledgeWhenOrdered(ReplicationMessage rep, CompletableFuture<Void> ordered) {
+    if (ordered.isDone()) {
+      try {
+        ordered.join();
+      } catch (CompletionException e) {
+        throw Assert.failure("failed to persist the transaction order of " + rep, e.getCause());
+      }
+      acknowledge(rep);
+    } else {
+      ordered.whenComplete((result, exception) -> {
+        if (null == exception) {
+          acknowledge(rep);
+        } else {
+          // Never ack a transaction whose order isn't durable.  An exception thrown here would only fail the dependent
+          // future, so hand the failure to the completing thread's handler instead.
+          Thread current = Thread.currentThread();
+          current.getUncaughtExceptionHandler().uncaughtException(current, Assert.failure("failed to persist the transaction order of " + rep, exception));
+        }
+      });
+    }
+  }
+
   private void acknowledge(ReplicationMessage rep) {
 //  when is the right time to send the ack?
     try {
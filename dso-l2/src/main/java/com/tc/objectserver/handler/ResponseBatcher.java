@@ -0,0 +1,383 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.objectserver.handler;
+
+import com.tc.async.api.AbstractEventHandler;
+import com.tc.async.api.EventHandlerException;
+import com.tc.async.api.MultiThreadedEventContext;
+import com.tc.async.api.Sink;
+import com.tc.entity.VoltronEntityMultiResponse;
+import com.tc.logging.TCLogger;
+import com.tc.logging.TCLogging;
+import com.tc.net.ClientID;
+import com.tc.net.protocol.tcm.TCMessage;
+import com.tc.object.tx.TransactionID;
+import com.tc.objectserver.entity.RequestLatencyStats;
+import com.tc.text.PrettyPrintable;
+import com.tc.text.PrettyPrinter;
+import com.tc.util.Assert;
+
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Collects the received, result and retired acknowledgements for each client and sends them in
+ * {@link VoltronEntityMultiResponse} messages.
+ * <p>
+ * Request processor threads only append to a lock-free queue per client. Building and sending the messages happens on
+ * the respond stage, where each client's {@link ClientBatch} is a context keyed by the client. So one client's
+ * responses are sent by one thread in the order they were added, while different clients are spread over all the
+ * stage's threads.
+ * <p>
+ * A client's pending acknowledgements are flushed once any of these limits is reached:
+ * <ul>
+ * <li>{@code maxCount} acknowledgements are pending</li>
+ * <li>{@code maxBytes} of results are pending</li>
+ * <li>the oldest one has waited {@code maxDelayMicros}. With 0 a flush is queued on the first add, and whatever arrives
+ * while it waits in the stage goes in the same message.</li>
+ * </ul>
+ */
+public class ResponseBatcher implements PrettyPrintable {
+  private static final TCLogger LOGGER = TCLogging.getLogger(ResponseBatcher.class);
+  // rough wire size of an acknowledgement without a result: a delta encoded id
+  private static final int      ACK_BYTES = 8;
+
+  private final Function<ClientID, Optional<VoltronEntityMultiResponse>> messageFactory;
+  private final RequestLatencyStats latencyStats;
+  private final int             maxCount;
+  private final long            maxBytes;
+  private final long            maxDelayNanos;
+  private final ConcurrentHashMap<ClientID, ClientBatch> batches = new ConcurrentHashMap<>();
+  private final ScheduledExecutorService timer;
+  private volatile Sink<ClientBatch> flushSink;
+
+  private final LongAdder       urgentFlushes  = new LongAdder();
+  private final LongAdder       delayedFlushes = new LongAdder();
+  private final LongAdder       messages       = new LongAdder();
+  private final LongAdder       acks           = new LongAdder();
+  private final LongAdder       flushNanos     = new LongAdder();
+  private final LongAccumulator maxFlushNanos  = new LongAccumulator(Math::max, 0);
+
+  private final AbstractEventHandler<ClientBatch> sender = new AbstractEventHandler<ClientBatch>() {
+    @Override
+    public void handleEvent(ClientBatch batch) throws EventHandlerException {
+      batch.sendPending();
+    }
+
+    @Override
+    public void destroy() {
+      shutdown();
+      super.destroy();
+    }
+  };
+
+  public ResponseBatcher(Function<ClientID, Optional<VoltronEntityMultiResponse>> messageFactory,
+                         RequestLatencyStats latencyStats, int maxCount, long maxBytes, long maxDelayMicros) {
+    this.messageFactory = messageFactory;
+    this.latencyStats = latencyStats;
+    this.maxCount = Math.max(1, maxCount);
+    this.maxBytes = Math.max(1, maxBytes);
+    this.maxDelayNanos = TimeUnit.MICROSECONDS.toNanos(Math.max(0, maxDelayMicros));
+    if (this.maxDelayNanos > 0) {
+      ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, r -> {
+        Thread t = new Thread(r, "response batch flush timer");
+        t.setDaemon(true);
+        return t;
+      });
+      executor.setRemoveOnCancelPolicy(true);
+      this.timer = executor;
+    } else {
+      this.timer = null;
+    }
+  }
+
+  /**
+   * @param flushSink the sink of the stage running {@link #getSender()}
+   */
+  public void setFlushSink(Sink<ClientBatch> flushSink) {
+    this.flushSink = flushSink;
+  }
+
+  public AbstractEventHandler<ClientBatch> getSender() {
+    return sender;
+  }
+
+  public void addReceived(ClientID client, TransactionID tid) {
+    add(client, new Pending(Pending.RECEIVED, tid, null, null));
+  }
+
+  public void addResult(ClientID client, TransactionID tid, byte[] result) {
+    add(client, new Pending(Pending.RESULT, tid, result, null));
+  }
+
+  public void addRetired(ClientID client, TransactionID tid) {
+    add(client, new Pending(Pending.RETIRED, tid, null, null));
+  }
+
+  /**
+   * Sends a message of another type, in order with the acknowledgements already added for the client.
+   */
+  public void addMessage(ClientID client, TCMessage message) {
+    add(client, new Pending(Pending.MESSAGE, null, null, message));
+  }
+
+  private void add(ClientID client, Pending pending) {
+    ClientBatch batch = batches.get(client);
+    if (batch == null) {
+      ClientBatch created = new ClientBatch(client);
+      batch = batches.putIfAbsent(client, created);
+      if (batch == null) {
+        batch = created;
+      }
+    }
+    batch.add(pending);
+  }
+
+  /**
+   * Forgets a client that has gone. Anything still pending for it is discarded, and an add that races with this only
+   * makes a new batch which its own flush drops, as the client has no channel by then.
+   */
+  public void removeClient(ClientID client) {
+    ClientBatch batch = batches.remove(client);
+    if (batch != null) {
+      batch.drop();
+    }
+  }
+
+  int clientCount() {
+    return batches.size();
+  }
+
+  public void shutdown() {
+    if (timer != null) {
+      timer.shutdownNow();
+    }
+  }
+
+  @Override
+  public PrettyPrinter prettyPrint(PrettyPrinter out) {
+    long sent = messages.sum();
+    out.print(getClass().getName()).print(" maxCount=").print(maxCount).print(" maxBytes=").print(maxBytes)
+        .print(" maxDelayMicros=").print(TimeUnit.NANOSECONDS.toMicros(maxDelayNanos)).print(" clients=")
+        .print(batches.size()).print(" urgentFlushes=").print(urgentFlushes.sum()).print(" delayedFlushes=")
+        .print(delayedFlushes.sum()).print(" messages=").print(sent).print(" acksPerMessage=")
+        .print(sent == 0 ? 0 : acks.sum() / sent).print(" meanFlushMicros=")
+        .print(sent == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(flushNanos.sum() / sent)).print(" maxFlushMicros=")
+        .print(TimeUnit.NANOSECONDS.toMicros(maxFlushNanos.get())).flush();
+    return out;
+  }
+
+  private static final class Pending {
+    static final byte RECEIVED = 0;
+    static final byte RESULT   = 1;
+    static final byte RETIRED  = 2;
+    static final byte MESSAGE  = 3;
+
+    final byte          kind;
+    final TransactionID tid;
+    final byte[]        result;
+    final TCMessage     message;
+
+    Pending(byte kind, TransactionID tid, byte[] result, TCMessage message) {
+      this.kind = kind;
+      this.tid = tid;
+      this.result = result;
+      this.message = message;
+    }
+
+    int size() {
+      return ACK_BYTES + (result != null ? result.length : 0);
+    }
+  }
+
+  /**
+   * The acknowledgements pending for one client. Handing it to the respond stage asks for a flush.
+   */
+  public final class ClientBatch implements MultiThreadedEventContext {
+    private final ClientID                       client;
+    private final ConcurrentLinkedQueue<Pending> pending   = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger                  count     = new AtomicInteger();
+    private final AtomicLong                     bytes     = new AtomicLong();
+    // set while a flush is queued in the stage or on the timer, so adds behind it don't queue another
+    private final AtomicBoolean                  scheduled = new AtomicBoolean();
+    // set while an immediate flush is queued, so a limit being crossed is only acted on once
+    private final AtomicBoolean                  urgent    = new AtomicBoolean();
+    private volatile long                        firstAdded;
+
+    ClientBatch(ClientID client) {
+      this.client = client;
+    }
+
+    void add(Pending p) {
+      pending.add(p);
+      int c = count.incrementAndGet();
+      long b = bytes.addAndGet(p.size());
+      boolean now = maxDelayNanos == 0 || p.kind == Pending.MESSAGE || c >= maxCount || b >= maxBytes;
+      if (scheduled.compareAndSet(false, true)) {
+        firstAdded = System.nanoTime();
+        if (now) {
+          urgent.set(true);
+          urgentFlushes.increment();
+          post();
+        } else {
+          delayedFlushes.increment();
+          try {
+            timer.schedule(this::post, maxDelayNanos, TimeUnit.NANOSECONDS);
+          } catch (RejectedExecutionException shutdown) {
+            // the timer is gone with the stage, flush now rather than never
+            post();
+          }
+        }
+      } else if (now && urgent.compareAndSet(false, true)) {
+        urgentFlushes.increment();
+        post();
+      }
+    }
+
+    private void post() {
+      Sink<ClientBatch> sink = flushSink;
+      boolean posted = false;
+      try {
+        if (sink != null) {
+          sink.addMultiThreaded(this);
+          posted = true;
+        }
+      } finally {
+        if (!posted) {
+          // no flush is coming, so the next add has to ask for one again
+          urgent.set(false);
+          scheduled.set(false);
+        }
+      }
+    }
+
+    /**
+     * Sends up to one full message of what is pending. Only ever called from the respond stage, one thread per client.
+     */
+    void sendPending() {
+      long since = firstAdded;
+      // anything added from here on queues a flush of its own, so nothing is left behind
+      scheduled.set(false);
+      urgent.set(false);
+      VoltronEntityMultiResponse message = null;
+      int added = 0;
+      long size = 0;
+      Pending next;
+      while (added < maxCount && size < maxBytes && (next = pending.poll()) != null) {
+        count.decrementAndGet();
+        bytes.addAndGet(-next.size());
+        if (next.kind == Pending.MESSAGE) {
+          if (message != null) {
+            send(message, added, since);
+            message = null;
+            added = 0;
+            size = 0;
+          }
+          send(next.message, 1, since);
+          continue;
+        }
+        if (message == null) {
+          Optional<VoltronEntityMultiResponse> created = messageFactory.apply(client);
+          if (!created.isPresent()) {
+            // no more client
+            drop();
+            return;
+          }
+          message = created.get();
+        }
+        boolean ok;
+        switch (next.kind) {
+          case Pending.RECEIVED:
+            ok = message.addReceived(next.tid);
+            break;
+          case Pending.RESULT:
+            ok = message.addResult(next.tid, next.result);
+            break;
+          default:
+            ok = message.addRetired(next.tid);
+            break;
+        }
+        // a fresh message is only sealed by its own send
+        Assert.assertTrue(ok);
+        added++;
+        size += next.size();
+      }
+      if (message != null) {
+        send(message, added, since);
+      }
+      // more than a message's worth was pending, go round again behind the other clients
+      if (!pending.isEmpty() && scheduled.compareAndSet(false, true)) {
+        firstAdded = since;
+        urgent.set(true);
+        urgentFlushes.increment();
+        post();
+      }
+    }
+
+    private void send(TCMessage message, int count, long since) {
+      if (!message.send()) {
+        // It is possible for this send to fail.  Typically, it means that the client has disconnected.
+        LOGGER.warn("Failed to send message to: " + client);
+      } else if (LOGGER.isDebugEnabled()) {
+        LOGGER.debug("sent " + message);
+      }
+      long waited = System.nanoTime() - since;
+      messages.increment();
+      acks.add(count);
+      flushNanos.add(waited);
+      maxFlushNanos.accumulate(waited);
+      if (latencyStats.isEnabled()) {
+        latencyStats.recordSince(RequestLatencyStats.ALL_ENTITIES, RequestLatencyStats.Phase.RESPONSE_SEND, since);
+      }
+    }
+
+    private void drop() {
+      pending.clear();
+      count.set(0);
+      bytes.set(0);
+      batches.remove(client, this);
+    }
+
+    @Override
+    public Object getSchedulingKey() {
+      return client;
+    }
+
+    @Override
+    public boolean flush() {
+      return false;
+    }
+
+    @Override
+    public String toString() {
+      return "ClientBatch{" + client + ", pending=" + count.get() + "}";
+    }
+  }
+}
@@ -25,6 +25,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Stack;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.terracotta.entity.ConcurrencyStrategy;
 import org.terracotta.entity.EntityMessage;
@@ -43,54 +45,93 @@ import java.util.ArrayList;
  * The side-effect of these 2 statements is that it is possible for a single message completion to result in the
  * retirement of a great number of other messages, as each message unblocked can similarly unblock 2 more.
  * 
- * NOTE:  It may be possible to avoid the synchronization on most operations since we know that there is only one running
- * message, per key.
+ * Without any deferred retirement, the graph never leaves a concurrency key so the state for each key is guarded by
+ * a lock striped on the key and requests running on different keys do not contend.  Once the message a retirement was
+ * deferred to has registered, the graph can cross keys so every operation takes all of the stripes until that message
+ * completes.  A defer whose message has not registered yet links nothing across keys, so it only sends the registration
+ * of that one message down the slow path.
  */
 public class RetirementManager {
+  private static final int STRIPES = 32;
+
   private final Map<EntityMessage, LogicalSequence> currentlyRunning;
+//  only changed while holding all the stripes, so holding any one of them is enough to read it
   private final Map<EntityMessage, LogicalSequence> waitingForDeferredRegistration;
-  private final Map<Integer, LogicalSequence> mostRecentRegisteredToKey;
+  private final Stripe[] stripes;
+//  defers whose later message has registered but not yet completed.  only changed while holding all the stripes
+  private volatile int outstandingDefers;
 
 
   public RetirementManager() {
-    this.currentlyRunning = new HashMap<EntityMessage, LogicalSequence>();
-    this.waitingForDeferredRegistration = new HashMap<EntityMessage, LogicalSequence>();
-    this.mostRecentRegisteredToKey = new HashMap<Integer, LogicalSequence>();
+    this.currentlyRunning = new ConcurrentHashMap<EntityMessage, LogicalSequence>();
+    this.waitingForDeferredRegistration = new ConcurrentHashMap<EntityMessage, LogicalSequence>();
+    this.stripes = new Stripe[STRIPES];
+    for (int x = 0; x < STRIPES; x++) {
+      this.stripes[x] = new Stripe();
+    }
   }
   
-  public synchronized void updateWithRetiree(EntityMessage invokeMessage, Retiree response) {
+  public void updateWithRetiree(EntityMessage invokeMessage, Retiree response) {
     LogicalSequence seq = this.currentlyRunning.get(invokeMessage);
     if (seq == null) {
 //  already gone.  retire directly
       response.retired();
     } else {
-      seq.updateWithRetiree(response);
+      Stripe stripe = this.stripes[seq.stripe];
+      stripe.lock();
+      try {
+        seq.updateWithRetiree(response);
+      } finally {
+        stripe.unlock();
+      }
     }
   }
 
-  public synchronized void registerWithMessage(EntityMessage invokeMessage, int concurrencyKey) {    
-    LogicalSequence newWrapper = new LogicalSequence(invokeMessage);
+  public void registerWithMessage(EntityMessage invokeMessage, int concurrencyKey) {
     // if concurrencyKey is UNIVERSAL_KEY, then current request doesn't need to wait for other requests running on
-    // UNIVERSAL_KEY
+    // UNIVERSAL_KEY so any stripe will do
+    int index = (concurrencyKey != ConcurrencyStrategy.UNIVERSAL_KEY) ? stripeFor(concurrencyKey) : stripeFor(System.identityHashCode(invokeMessage));
+    LogicalSequence newWrapper = new LogicalSequence(invokeMessage, index);
+    Stripe stripe = this.stripes[index];
+    stripe.lock();
+    try {
+      if (this.outstandingDefers == 0 && !this.waitingForDeferredRegistration.containsKey(invokeMessage)) {
+        linkInKey(stripe, newWrapper, concurrencyKey);
+        LogicalSequence previous = this.currentlyRunning.put(invokeMessage, newWrapper);
+        // We can't find something else there.
+        Assert.assertNull(previous);
+        return;
+      }
+    } finally {
+      stripe.unlock();
+    }
+    lockAll();
+    try {
+      linkInKey(stripe, newWrapper, concurrencyKey);
+      LogicalSequence toUpdateWithReference = waitingForDeferredRegistration.remove(invokeMessage);
+      if (null != toUpdateWithReference) {
+        Assert.assertTrue(toUpdateWithReference.isWaitingForExplicitDeferOf(invokeMessage));
+        newWrapper.deferNotify = toUpdateWithReference;
+        this.outstandingDefers += 1;
+      }
+      LogicalSequence previous = this.currentlyRunning.put(invokeMessage, newWrapper);
+      // We can't find something else there.
+      Assert.assertNull(previous);
+    } finally {
+      unlockAll();
+    }
+  }
+
+  private static void linkInKey(Stripe stripe, LogicalSequence newWrapper, int concurrencyKey) {
     if(concurrencyKey != ConcurrencyStrategy.UNIVERSAL_KEY) {
       // See if there is anything for this key
-      LogicalSequence lastInKey = this.mostRecentRegisteredToKey.remove(concurrencyKey);
+      LogicalSequence lastInKey = stripe.mostRecentRegisteredToKey.remove(concurrencyKey);
       if ((null != lastInKey) && (!lastInKey.isRetired)) {
         lastInKey.nextInKey = newWrapper;
         newWrapper.isWaitingForPreviousInKey = true;
       }
-      this.mostRecentRegisteredToKey.put(concurrencyKey, newWrapper);
+      stripe.mostRecentRegisteredToKey.put(concurrencyKey, newWrapper);
     }
-    
-    LogicalSequence toUpdateWithReference = waitingForDeferredRegistration.remove(invokeMessage);
-    if (null != toUpdateWithReference) {
-      Assert.assertTrue(toUpdateWithReference.isWaitingForExplicitDeferOf(invokeMessage));
-      newWrapper.deferNotify = toUpdateWithReference;
-    }
-    
-    LogicalSequence previous = this.currentlyRunning.put(invokeMessage, newWrapper);
-    // We can't find something else there.
-    Assert.assertNull(previous);
   }
 
   /**
@@ -100,16 +141,35 @@ public class RetirementManager {
    * @param completedMessage
    * @return
    */
-  public synchronized List<Retiree> retireForCompletion(EntityMessage completedMessage) {
+  public List<Retiree> retireForCompletion(EntityMessage completedMessage) {
     List<Retiree> toRetire = new ArrayList<>();
     
     LogicalSequence completedRequest = this.currentlyRunning.remove(completedMessage);
     Assert.assertNotNull(completedRequest);
 
+    Stripe stripe = this.stripes[completedRequest.stripe];
+    stripe.lock();
+    try {
+      if (this.outstandingDefers == 0) {
+        completeAndTraverse(toRetire, completedRequest);
+        return toRetire;
+      }
+    } finally {
+      stripe.unlock();
+    }
+    lockAll();
+    try {
+      completeAndTraverse(toRetire, completedRequest);
+    } finally {
+      unlockAll();
+    }
+    return toRetire;
+  }
+
+  private void completeAndTraverse(List<Retiree> toRetire, LogicalSequence completedRequest) {
     Assert.assertFalse(completedRequest.isCompleted);
     completedRequest.isCompleted = true;
     traverseDependencyGraph(toRetire, completedRequest);
-    return toRetire;
   }
 
   private void traverseDependencyGraph(List<Retiree> toRetire, LogicalSequence completedRequest) {
@@ -138,42 +198,83 @@ public class RetirementManager {
 
         // since current request is completed, we can unblock any request waiting on this request if any
         if (currentRequest.deferNotify != null) {
+//  only reachable while holding all the stripes since a defer is outstanding
           currentRequest.deferNotify.entityMessageCompleted(currentRequest.entityMessage);
           requestStack.push(currentRequest.deferNotify);
           currentRequest.deferNotify = null;
+          this.outstandingDefers -= 1;
         }
       }
     }
   }
 
-  public synchronized void deferRetirement(EntityMessage invokeMessageToDefer, EntityMessage laterMessage) {
-    LogicalSequence myRequest = this.currentlyRunning.get(invokeMessageToDefer);
-    // We can only defer by currently running messages.
-    Assert.assertNotNull(myRequest);
-    
-    myRequest.retirementDeferredBy(laterMessage);
-    
-    LogicalSequence previous = this.waitingForDeferredRegistration.put(laterMessage, myRequest);
-    Assert.assertNull(previous);
+  public void deferRetirement(EntityMessage invokeMessageToDefer, EntityMessage laterMessage) {
+    lockAll();
+    try {
+      LogicalSequence myRequest = this.currentlyRunning.get(invokeMessageToDefer);
+      // We can only defer by currently running messages.
+      Assert.assertNotNull(myRequest);
+      
+      myRequest.retirementDeferredBy(laterMessage);
+      
+      LogicalSequence previous = this.waitingForDeferredRegistration.put(laterMessage, myRequest);
+      Assert.assertNull(previous);
+    } finally {
+      unlockAll();
+    }
   }
 
   /**
    * This method purely exists for verifying that nothing has been lost (since anything remaining in this object when the
    *  entity is destroyed would indicate a serious bug and possibly hung clients).
    */
-  public synchronized void entityWasDestroyed() {
-    Assert.assertTrue(this.currentlyRunning.isEmpty());
-    // Note that we don't assert mostRecentRegisteredToKey is empty since it is fixed-size and always contains the most
-    //  recent LogicalSequence, per-key (just so they aren't explicitly life-cycled from outside).
-    Assert.assertTrue(this.waitingForDeferredRegistration.isEmpty());
+  public void entityWasDestroyed() {
+    lockAll();
+    try {
+      Assert.assertTrue(this.currentlyRunning.isEmpty());
+      // Note that we don't assert mostRecentRegisteredToKey is empty since it is fixed-size and always contains the most
+      //  recent LogicalSequence, per-key (just so they aren't explicitly life-cycled from outside).
+      Assert.assertTrue(this.waitingForDeferredRegistration.isEmpty());
+    } finally {
+      unlockAll();
+    }
+  }
+
+  int outstandingDefers() {
+    return this.outstandingDefers;
   }
 
+  private static int stripeFor(int hash) {
+    int h = hash * 0x9E3779B9;
+    return (h ^ (h >>> 16)) & (STRIPES - 1);
+  }
+
+//  stripes are always taken in order so taking all of them cannot deadlock with another thread doing the same
+  private void lockAll() {
+    for (Stripe stripe : this.stripes) {
+      stripe.lock();
+    }
+  }
+
+  private void unlockAll() {
+    for (int x = this.stripes.length - 1; x >= 0; x--) {
+      this.stripes[x].unlock();
+    }
+  }
+
+  private static class Stripe extends ReentrantLock {
+    private static final long serialVersionUID = 1L;
+    // The most recent sequence registered to each concurrency key mapping to this stripe.
+    private final Map<Integer, LogicalSequence> mostRecentRegisteredToKey = new HashMap<Integer, LogicalSequence>();
+  }
 
   private static class LogicalSequence {
     // The thing to be retired
     public Retiree response;
     // Corresponding entity message
     public final EntityMessage entityMessage;
+    // The stripe guarding this sequence
+    public final int stripe;
     // The next message in the same key, which we will notify to retire when we retire.
     public LogicalSequence nextInKey;
     // The message which is explicitly waiting for us to retire before it can.
@@ -187,8 +288,9 @@ public class RetirementManager {
 
     private Set<EntityMessage> entityMessagesDeferringRetirement = new HashSet<>();
     
-    public LogicalSequence(EntityMessage entityMessage) {
+    public LogicalSequence(EntityMessage entityMessage, int stripe) {
       this.entityMessage = entityMessage;
+      this.stripe = stripe;
     }
     
     public void updateWithRetiree(Retiree response) {
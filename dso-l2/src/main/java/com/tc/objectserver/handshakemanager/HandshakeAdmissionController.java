@@ -0,0 +1,133 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.objectserver.handshakemanager;
+
+import com.tc.net.protocol.transport.ConnectionID;
+import com.tc.net.protocol.transport.ReconnectAdmission;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket pacing the reconnect storm after a failover.  While the server is waiting for its previous clients, each
+ * reconnecting transport takes a token and the bucket refills at the rate the single handshake thread has been measured
+ * to process handshakes.  A client which finds the bucket empty is told to come back once the clients deferred ahead of
+ * it should have been taken in, so the reconnect window drains at the server's pace instead of thrashing.  A deferred
+ * client which doesn't come back within twice the longest wait it can be given is assumed to have given up and no longer
+ * counts as queued.
+ */
+public class HandshakeAdmissionController implements ReconnectAdmission {
+  // Weight of the newest handshake in the average processing time.
+  private static final double ALPHA = 0.2;
+
+  private final int              burst;
+  private final double           initialRatePerMilli;
+  private final long             maxRetryAfterMillis;
+  // Deferred clients, least recently seen first, with when they were last seen.
+  private final Map<ConnectionID, Long> deferred = new LinkedHashMap<>(16, 0.75f, true);
+  private boolean                active;
+  private double                 tokens;
+  private long                   lastRefill;
+  private double                 averageHandshakeNanos = -1;
+
+  public HandshakeAdmissionController(int burst, int initialRatePerSecond, long maxRetryAfterMillis) {
+    this.burst = Math.max(1, burst);
+    this.initialRatePerMilli = Math.max(1, initialRatePerSecond) / 1000.0;
+    this.maxRetryAfterMillis = Math.max(1, maxRetryAfterMillis);
+  }
+
+  /**
+   * Starts pacing reconnects, called when the server starts waiting for its previous clients.
+   */
+  public synchronized void activate() {
+    this.active = true;
+    this.tokens = this.burst;
+    this.lastRefill = nanoTime();
+    this.deferred.clear();
+  }
+
+  /**
+   * Stops pacing, every reconnect is admitted once the server has started.
+   */
+  public synchronized void deactivate() {
+    this.active = false;
+    this.deferred.clear();
+  }
+
+  /**
+   * Records how long the handshake thread took to process one reconnect, which sets how fast the bucket refills.
+   */
+  public synchronized void recordHandshake(long elapsedNanos) {
+    if (this.averageHandshakeNanos < 0) {
+      this.averageHandshakeNanos = elapsedNanos;
+    } else {
+      this.averageHandshakeNanos += ALPHA * (elapsedNanos - this.averageHandshakeNanos);
+    }
+  }
+
+  @Override
+  public synchronized long admitReconnect(ConnectionID connectionId) {
+    if (!this.active) {
+      return 0;
+    }
+    long now = nanoTime();
+    double rate = ratePerMilli();
+    // Credit fractions of a token too, reconnects in a storm arrive well under a millisecond apart.
+    this.tokens = Math.min(this.burst, this.tokens + rate * (now - this.lastRefill) / TimeUnit.MILLISECONDS.toNanos(1));
+    this.lastRefill = now;
+    expireDeferred(now);
+    if (this.tokens >= 1) {
+      this.tokens -= 1;
+      this.deferred.remove(connectionId);
+      return 0;
+    }
+    // Everyone already deferred is assumed to be ahead in the queue.
+    this.deferred.put(connectionId, now);
+    long retryAfter = (long) Math.ceil((this.deferred.size() - this.tokens) / rate);
+    return Math.max(1, Math.min(this.maxRetryAfterMillis, retryAfter));
+  }
+
+  private void expireDeferred(long now) {
+    long expiry = now - TimeUnit.MILLISECONDS.toNanos(2 * this.maxRetryAfterMillis);
+    for (Iterator<Long> lastSeen = this.deferred.values().iterator(); lastSeen.hasNext();) {
+      if (lastSeen.next() - expiry > 0) {
+        break;
+      }
+      lastSeen.remove();
+    }
+  }
+
+  synchronized int deferredCount() {
+    return this.deferred.size();
+  }
+
+  synchronized double ratePerMilli() {
+    if (this.averageHandshakeNanos <= 0) {
+      return this.initialRatePerMilli;
+    }
+    // Never so slow that a deferred client would always be told the longest wait.
+    return Math.max(1.0 / this.maxRetryAfterMillis, TimeUnit.MILLISECONDS.toNanos(1) / this.averageHandshakeNanos);
+  }
+
+  long nanoTime() {
+    return System.nanoTime();
+  }
+}
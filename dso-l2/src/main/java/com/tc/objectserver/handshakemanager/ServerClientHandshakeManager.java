@@ -29,12 +29,14 @@ import com.tc.logging.TCLogger;
 import com.tc.net.ClientID;
 import com.tc.net.NodeID;
 import com.tc.net.protocol.tcm.ChannelID;
+import com.tc.net.protocol.tcm.TCMessageType;
 import com.tc.net.protocol.transport.ConnectionID;
 import com.tc.object.EntityDescriptor;
 import com.tc.object.EntityID;
 import com.tc.object.locks.ClientServerExchangeLockContext;
 import com.tc.object.msg.ClientEntityReferenceContext;
 import com.tc.object.msg.ClientHandshakeMessage;
+import com.tc.object.msg.ClientHandshakeResendAckMessage;
 import com.tc.object.net.DSOChannelManager;
 import com.tc.objectserver.api.EntityManager;
 import com.tc.objectserver.api.ManagedEntity;
@@ -69,13 +71,17 @@ public class ServerClientHandshakeManager {
   private final DSOChannelManager        channelManager;
   private final TCLogger                 logger;
   private final Set<ClientID>            existingUnconnectedClients        = new HashSet<>();
+  // Reconnected clients which are still streaming their resends, they remain in existingUnconnectedClients until done.
+  private final Set<ClientID>            streamingClients                  = new HashSet<>();
   private final boolean                  persistent;
   private final TCLogger                 consoleLogger;
+  private final HandshakeAdmissionController admission;
 
   public ServerClientHandshakeManager(TCLogger logger, DSOChannelManager channelManager,
                                       StageManager stageManager, 
                                       Timer timer, long reconnectTimeout,
-                                      boolean persistent, TCLogger consoleLogger) {
+                                      boolean persistent, TCLogger consoleLogger,
+                                      HandshakeAdmissionController admission) {
     this.logger = logger;
     this.channelManager = channelManager;
     this.stageManager = stageManager;
@@ -83,6 +89,7 @@ public class ServerClientHandshakeManager {
     this.timer = timer;
     this.persistent = persistent;
     this.consoleLogger = consoleLogger;
+    this.admission = admission;
     this.reconnectTimerTask = new ReconnectTimerTask(this, timer);
   }
 
@@ -113,6 +120,7 @@ public class ServerClientHandshakeManager {
         sendAckMessageFor(clientID);
       } else if (this.state == State.STARTING) {
         // This is a client reconnecting after a restart.
+        long start = System.nanoTime();
         
         this.channelManager.makeChannelActiveNoAck(handshake.getChannel());
         
@@ -144,14 +152,14 @@ public class ServerClientHandshakeManager {
           transactionHandler.handleResentMessage(resentMessage);
         }
 
-        // Now that we have processed everything from this resend, see if it was the last one.
-        this.logger.debug("Removing client " + clientID + " from set of existing unconnected clients.");
-        this.existingUnconnectedClients.remove(clientID);
-        if (this.existingUnconnectedClients.isEmpty()) {
-          this.logger.debug("Last existing unconnected client (" + clientID + ") now connected.  Cancelling timer");
-          this.timer.cancel();
-          start();
+        if (handshake.getStreamedResendCount() > 0) {
+          // The rest of the resends follow in chunks so the client isn't done reconnecting until the last one arrives.
+          this.logger.info("Client " + clientID + " streaming " + handshake.getStreamedResendCount() + " resends");
+          this.streamingClients.add(clientID);
+        } else {
+          clientReconnected(clientID);
         }
+        this.admission.recordHandshake(System.nanoTime() - start);
       } else {
         // This is an unexpected state.  We should only be able to receive handshakes while STARTING (reconnect) or STARTED (new clients).
         Assert.fail();
@@ -159,6 +167,37 @@ public class ServerClientHandshakeManager {
     }
   }
 
+  public synchronized void notifyResendChunk(ClientHandshakeMessage chunk, ProcessTransactionHandler transactionHandler) {
+    final ClientID clientID = (ClientID) chunk.getSourceNodeID();
+    if (this.state != State.STARTING || !this.streamingClients.contains(clientID)) {
+      // Either the reconnect window already closed on this client or it never told us it would stream.
+      this.logger.warn("Ignoring resend chunk " + chunk.getResendChunkSequence() + " from " + clientID + " while " + this.state);
+      return;
+    }
+    for (ResendVoltronEntityMessage resentMessage : chunk.getResendMessages()) {
+      transactionHandler.handleResentMessage(resentMessage);
+    }
+    ClientHandshakeResendAckMessage ack = (ClientHandshakeResendAckMessage) chunk.getChannel().createMessage(TCMessageType.CLIENT_HANDSHAKE_RESEND_ACK_MESSAGE);
+    ack.initialize(chunk.getResendChunkSequence());
+    ack.send();
+    if (chunk.isLastResendChunk()) {
+      this.streamingClients.remove(clientID);
+      clientReconnected(clientID);
+    }
+  }
+
+  // Should be called from within the sync block
+  private void clientReconnected(ClientID clientID) {
+    // Now that we have processed everything from this resend, see if it was the last one.
+    this.logger.debug("Removing client " + clientID + " from set of existing unconnected clients.");
+    this.existingUnconnectedClients.remove(clientID);
+    if (this.existingUnconnectedClients.isEmpty()) {
+      this.logger.debug("Last existing unconnected client (" + clientID + ") now connected.  Cancelling timer");
+      this.timer.cancel();
+      start();
+    }
+  }
+
   public void notifyClientRefused(ClientHandshakeMessage clientMsg, String message) {
     final ClientID clientID = (ClientID) clientMsg.getSourceNodeID();
     this.channelManager.makeChannelRefuse(clientID, message);
@@ -179,6 +218,7 @@ public class ServerClientHandshakeManager {
                 + this.existingUnconnectedClients);
       this.channelManager.closeAll(this.existingUnconnectedClients);
       this.existingUnconnectedClients.clear();
+      this.streamingClients.clear();
       this.consoleLogger.info("Reconnect window closed. All dead clients removed.");
       start();
     } else {
@@ -196,6 +236,7 @@ public class ServerClientHandshakeManager {
       sendAckMessageFor(clientID);
     }
     this.state = State.STARTED;
+    this.admission.deactivate();
     stageManager.getStage(ServerConfigurationContext.VOLTRON_MESSAGE_STAGE, VoltronEntityMessage.class).unpause();
     // Tell the transaction handler the message to replay any resends we received.  Schedule a noop 
     // in case all the clients are waiting on resends
@@ -212,6 +253,7 @@ public class ServerClientHandshakeManager {
       for (ConnectionID connID : existingConnections) {
         this.existingUnconnectedClients.add(this.channelManager.getClientIDFor(new ChannelID(connID.getChannelID())));
       }
+      this.admission.activate();
     }
   }
 
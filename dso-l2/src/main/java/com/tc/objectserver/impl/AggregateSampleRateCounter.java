@@ -18,66 +18,68 @@
  */
 package com.tc.objectserver.impl;
 
+import com.tc.stats.counter.StripedCounterImpl;
 import com.tc.stats.counter.sampled.SampledCounterConfig;
-import com.tc.stats.counter.sampled.SampledCounterImpl;
+import com.tc.stats.counter.sampled.StripedSampledCounterConfig;
+import com.tc.stats.counter.sampled.StripedSampledCounterImpl;
 import com.tc.stats.counter.sampled.derived.SampledRateCounter;
 
 /**
  *
  * @author mscott
  */
-public class AggregateSampleRateCounter extends SampledCounterImpl implements SampledRateCounter {
+public class AggregateSampleRateCounter extends StripedSampledCounterImpl implements SampledRateCounter {
     
-    private long numerator;
-    private long denominator;
-    private static SampledCounterConfig config = new SampledCounterConfig(5, 100, false, 0);
+    private final StripedCounterImpl numerator = new StripedCounterImpl();
+    private final StripedCounterImpl denominator = new StripedCounterImpl();
+    private static SampledCounterConfig config = new StripedSampledCounterConfig(5, 100, false, 0);
     
     public AggregateSampleRateCounter() {
         super(config);
     }
 
     @Override
-    public synchronized void increment(long numeratorParam, long denominatorParam) {
-        this.numerator += numeratorParam;
-        this.denominator += denominatorParam;
+    public void increment(long numeratorParam, long denominatorParam) {
+        this.numerator.increment(numeratorParam);
+        this.denominator.increment(denominatorParam);
         super.increment();
     }
 
     @Override
-    public synchronized void decrement(long numeratorParam, long denominatorParam) {
-        this.numerator -= numeratorParam;
-        this.denominator -= denominatorParam;
+    public void decrement(long numeratorParam, long denominatorParam) {
+        this.numerator.decrement(numeratorParam);
+        this.denominator.decrement(denominatorParam);
         super.decrement();
     }
 
     @Override
-    public synchronized void setValue(long numerator, long denominator) {
-        this.numerator = numerator;
-        this.denominator = denominator;
+    public void setValue(long numerator, long denominator) {
+        this.numerator.setValue(numerator);
+        this.denominator.setValue(denominator);
         super.setValue(0);
     }
 
     @Override
-    public synchronized void setNumeratorValue(long newValue) {
-        this.numerator = newValue;
+    public void setNumeratorValue(long newValue) {
+        this.numerator.setValue(newValue);
     }
 
     @Override
-    public synchronized void setDenominatorValue(long newValue) {
-        this.denominator = newValue;
+    public void setDenominatorValue(long newValue) {
+        this.denominator.setValue(newValue);
     }
     
     @Override
-    public synchronized long getValue() {
-      return this.numerator;
+    public long getValue() {
+      return this.numerator.getValue();
     }
     
-    public synchronized long getNumeratorValue() {
-        return this.numerator;
+    public long getNumeratorValue() {
+        return this.numerator.getValue();
     }
      
-    public synchronized long getDenominatorValue() {
-        return this.denominator;
+    public long getDenominatorValue() {
+        return this.denominator.getValue();
     }
     
     public long getCount() {
@@ -86,7 +88,7 @@ public class AggregateSampleRateCounter extends SampledCounterImpl implements Sa
 
     @Override
     public String toString() {
-        return "evictions=" + numerator + ", time=" + denominator + ", segments=" + super.getValue();
+        return "evictions=" + numerator.getValue() + ", time=" + denominator.getValue() + ", segments=" + super.getValue();
     }
     
 }
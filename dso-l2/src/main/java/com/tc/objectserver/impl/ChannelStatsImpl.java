@@ -28,7 +28,7 @@ import com.tc.stats.StatsConfig;
 import com.tc.stats.counter.BoundedCounterConfig;
 import com.tc.stats.counter.Counter;
 import com.tc.stats.counter.CounterManager;
-import com.tc.stats.counter.sampled.SampledCounterConfig;
+import com.tc.stats.counter.sampled.StripedSampledCounterConfig;
 import com.tc.util.Events;
 
 /**
@@ -38,9 +38,9 @@ import com.tc.util.Events;
 public class ChannelStatsImpl implements ChannelStats, DSOChannelManagerEventListener {
 
   private static final StatsConfig[] STATS_CONFIG = new StatsConfig[] {
-      new StatsConfig(READ_RATE, new SampledCounterConfig(1, 300, true, 0L)),
-      new StatsConfig(WRITE_RATE, new SampledCounterConfig(1, 300, true, 0L)),
-      new StatsConfig(TXN_RATE, new SampledCounterConfig(1, 300, true, 0L)),
+      new StatsConfig(READ_RATE, new StripedSampledCounterConfig(1, 300, true, 0L)),
+      new StatsConfig(WRITE_RATE, new StripedSampledCounterConfig(1, 300, true, 0L)),
+      new StatsConfig(TXN_RATE, new StripedSampledCounterConfig(1, 300, true, 0L)),
       new StatsConfig(PENDING_TRANSACTIONS, new BoundedCounterConfig(0L, 0L, Long.MAX_VALUE))};
 
   private final CounterManager    counterManager;
@@ -40,6 +40,7 @@ import com.tc.async.api.SEDA;
 import com.tc.async.api.Sink;
 import com.tc.async.api.Stage;
 import com.tc.async.api.StageManager;
+import com.tc.async.impl.ElasticThreadPool;
 import com.tc.async.impl.OrderedSink;
 import com.tc.async.impl.StageController;
 import com.tc.config.HaConfig;
@@ -122,6 +123,7 @@ import com.tc.net.groups.GroupEventsListener;
 import com.tc.net.groups.GroupException;
 import com.tc.net.groups.GroupManager;
 import com.tc.net.groups.Node;
+import com.tc.net.groups.TCGroupManagerImpl;
 import com.tc.net.protocol.HttpConnectionContext;
 import com.tc.net.protocol.NetworkStackHarnessFactory;
 import com.tc.net.protocol.PlainNetworkStackHarnessFactory;
@@ -154,6 +156,7 @@ import com.tc.object.msg.ClientHandshakeAckMessageImpl;
 import com.tc.object.msg.ClientHandshakeMessage;
 import com.tc.object.msg.ClientHandshakeMessageImpl;
 import com.tc.object.msg.ClientHandshakeRefusedMessageImpl;
+import com.tc.object.msg.ClientHandshakeResendAckMessageImpl;
 import com.tc.object.msg.ClusterMembershipMessage;
 import com.tc.object.msg.InvokeRegisteredServiceMessage;
 import com.tc.object.msg.InvokeRegisteredServiceResponseMessage;
@@ -174,8 +177,10 @@ import com.tc.objectserver.entity.ActiveToPassiveReplication;
 import com.tc.objectserver.handler.ChannelLifeCycleHandler;
 import com.tc.objectserver.handler.ClientHandshakeHandler;
 import com.tc.objectserver.handler.ProcessTransactionHandler;
+import com.tc.objectserver.handler.ResponseBatcher;
 import com.tc.objectserver.handler.RequestLockUnLockHandler;
 import com.tc.objectserver.handler.RespondToRequestLockHandler;
+import com.tc.objectserver.handshakemanager.HandshakeAdmissionController;
 import com.tc.objectserver.handshakemanager.ServerClientHandshakeManager;
 import com.tc.objectserver.locks.LockManagerImpl;
 import com.tc.objectserver.locks.LockResponseContext;
@@ -196,7 +201,6 @@ import com.tc.runtime.TCMemoryManagerImpl;
 import com.tc.runtime.logging.LongGCLogger;
 import com.tc.server.ServerConnectionValidator;
 import com.tc.server.TCServer;
-import com.tc.server.TCServerMain;
 import com.tc.services.CommunicatorResponseHandler;
 import com.tc.services.CommunicatorService;
 import com.tc.services.EntityMessengerProvider;
@@ -208,6 +212,8 @@ import com.tc.stats.counter.sampled.SampledCounter;
 import com.tc.stats.counter.sampled.SampledCounterConfig;
 import com.tc.stats.counter.sampled.SampledCumulativeCounter;
 import com.tc.stats.counter.sampled.SampledCumulativeCounterConfig;
+import com.tc.stats.counter.sampled.StripedSampledCounterConfig;
+import com.tc.stats.counter.sampled.StripedSampledCumulativeCounterConfig;
 import com.tc.stats.counter.sampled.derived.SampledRateCounter;
 import com.tc.stats.counter.sampled.derived.SampledRateCounterConfig;
 import com.tc.util.Assert;
@@ -232,6 +238,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Set;
 import java.util.Timer;
+import java.util.concurrent.ExecutorService;
 
 import com.tc.objectserver.entity.ClientEntityStateManager;
 import com.tc.objectserver.entity.ClientEntityStateManagerImpl;
@@ -239,6 +246,8 @@ import com.tc.objectserver.entity.EntityManagerImpl;
 import com.tc.objectserver.entity.NoopEntityMessage;
 import com.tc.objectserver.entity.RequestProcessor;
 import com.tc.objectserver.entity.RequestProcessorHandler;
+import com.tc.objectserver.entity.RequestLatencyStats;
+import com.tc.objectserver.entity.EntityConcurrencyStats;
 import com.tc.objectserver.entity.ServerEntityFactory;
 import com.tc.objectserver.entity.VoltronMessageSink;
 import com.tc.objectserver.handler.ReplicatedTransactionHandler;
@@ -288,6 +297,10 @@ public class DistributedObjectServer implements TCDumper, LockInfoDumpHandler, S
   private GroupManager<AbstractGroupMessage> groupCommManager;
   private Stage<HydrateContext>                                  hydrateStage;
   private StripeIDStateManagerImpl               stripeIDStateManager;
+  private RequestLatencyStats                    requestLatencyStats;
+  private EntityConcurrencyStats                 entityConcurrencyStats;
+  private ElasticThreadPool                      requestProcessorPool;
+  private ExecutorService                        requestProcessorVirtualThreads;
 
   private final CallbackDumpHandler              dumpHandler      = new CallbackDumpHandler();
 
@@ -427,7 +440,7 @@ public class DistributedObjectServer implements TCDumper, LockInfoDumpHandler, S
     this.dumpHandler.registerForDump(new CallbackDumpAdapter(stageManager));
 
     this.sampledCounterManager = new CounterManagerImpl();
-    final SampledCounterConfig sampledCounterConfig = new SampledCounterConfig(1, 300, true, 0L);
+    final SampledCounterConfig sampledCounterConfig = new StripedSampledCounterConfig(1, 300, true, 0L);
 
     // Set up the ServiceRegistry.
     PlatformConfiguration platformConfiguration = new PlatformConfigurationImpl(this.configSetupManager.getL2Identifier());
@@ -469,7 +482,7 @@ public class DistributedObjectServer implements TCDumper, LockInfoDumpHandler, S
     }
     final int serverPort = l2DSOConfig.tsaPort().getValue();
     final ProductInfo pInfo = ProductInfo.getInstance();
-    PlatformServer thisServer = new PlatformServer(server.getL2Identifier(), host, hostAddress, bindAddress, serverPort, l2DSOConfig.tsaGroupPort().getValue(), pInfo.buildVersion(), pInfo.buildID(), TCServerMain.getServer().getStartTime());
+    PlatformServer thisServer = new PlatformServer(server.getL2Identifier(), host, hostAddress, bindAddress, serverPort, l2DSOConfig.tsaGroupPort().getValue(), pInfo.buildVersion(), pInfo.buildID(), server.getStartTime());
     
     final LocalMonitoringProducer monitoringShimService = new LocalMonitoringProducer(this.serviceRegistry, thisServer);
     this.serviceRegistry.registerImplementationProvided(monitoringShimService);
@@ -536,8 +549,8 @@ public class DistributedObjectServer implements TCDumper, LockInfoDumpHandler, S
                                                                tcSecurityManager);
 
 
-    final SampledCumulativeCounterConfig sampledCumulativeCounterConfig = new SampledCumulativeCounterConfig(1, 300,
-                                                                                                             true, 0L);
+    final SampledCumulativeCounterConfig sampledCumulativeCounterConfig = new StripedSampledCumulativeCounterConfig(1, 300,
+                                                                                                                    true, 0L);
 
     final TCMemoryManagerImpl tcMemManager = new TCMemoryManagerImpl(this.threadGroup);
     final long timeOut = TCPropertiesImpl.getProperties().getLong(TCPropertiesConsts.LOGGING_LONG_GC_THRESHOLD);
@@ -551,6 +564,13 @@ public class DistributedObjectServer implements TCDumper, LockInfoDumpHandler, S
     this.connectionIdFactory = new ConnectionIDFactoryImpl(clientStateStore);
 
     final String dsoBind = l2DSOConfig.tsaPort().getBind();
+    final HandshakeAdmissionController handshakeAdmission = new HandshakeAdmissionController(
+        tcProperties.getInt(TCPropertiesConsts.L2_L1RECONNECT_ADMISSION_BURST, 64),
+        tcProperties.getInt(TCPropertiesConsts.L2_L1RECONNECT_ADMISSION_INITIAL_RATE, 200),
+        tcProperties.getLong(TCPropertiesConsts.L2_L1RECONNECT_ADMISSION_MAX_RETRY_AFTER_MILLIS, 5000));
+    if (tcProperties.getBoolean(TCPropertiesConsts.L2_L1RECONNECT_ADMISSION_ENABLED, true)) {
+      this.communicationsManager.setReconnectAdmission(handshakeAdmission);
+    }
     this.l1Listener = this.communicationsManager.createListener(sessionManager,
                                                                 new TCSocketAddress(dsoBind, serverPort), true,
                                                                 this.connectionIdFactory);
@@ -646,7 +666,8 @@ public class DistributedObjectServer implements TCDumper, LockInfoDumpHandler, S
                                                                                                            true),
                                                                                                  reconnectTimeout,
                                                                                                  serverIsRestartable,
-                                                                                                 consoleLogger);
+                                                                                                 consoleLogger,
+                                                                                                 handshakeAdmission);
     
     
     ManagementTopologyEventCollector eventCollector = new ManagementTopologyEventCollector(serviceInterface);
@@ -669,17 +690,45 @@ public class DistributedObjectServer implements TCDumper, LockInfoDumpHandler, S
         }
       });
 
-    final Stage<Runnable> requestProcessorStage = stageManager.createStage(ServerConfigurationContext.REQUEST_PROCESSOR_STAGE, Runnable.class, new RequestProcessorHandler(), L2Utils.getOptimalApplyStageWorkerThreads(true), maxStageSize);
+    final int requestProcessorQueues;
+    final Stage<Runnable> requestProcessorStage;
+    if (L2Utils.isEntityProcessorVirtual()) {
+      this.requestProcessorVirtualThreads = L2Utils.newVirtualThreadPerTaskExecutor();
+      if (this.requestProcessorVirtualThreads == null) {
+        logger.warn(TCPropertiesConsts.ENTITY_PROCESSOR_VIRTUAL_THREADS + " is set but this JVM has no virtual threads, using platform threads");
+      }
+    }
+    if (this.requestProcessorVirtualThreads != null) {
+      // one virtual thread per busy queue, so an invoke blocked on a slow passive holds no platform thread
+      requestProcessorQueues = L2Utils.getEntityProcessorQueueCount();
+      requestProcessorStage = stageManager.createStage(ServerConfigurationContext.REQUEST_PROCESSOR_STAGE, Runnable.class, new RequestProcessorHandler(), requestProcessorQueues, maxStageSize, this.requestProcessorVirtualThreads);
+    } else if (L2Utils.isEntityProcessorElastic()) {
+      // the queues stay fixed while the pool resizes, so a concurrency key always lands on the same queue
+      this.requestProcessorPool = L2Utils.createEntityProcessorPool(ServerConfigurationContext.REQUEST_PROCESSOR_STAGE, this.threadGroup);
+      this.dumpHandler.registerForDump(new CallbackDumpAdapter(this.requestProcessorPool));
+      requestProcessorQueues = L2Utils.getEntityProcessorQueueCount();
+      requestProcessorStage = stageManager.createStage(ServerConfigurationContext.REQUEST_PROCESSOR_STAGE, Runnable.class, new RequestProcessorHandler(), requestProcessorQueues, maxStageSize, this.requestProcessorPool);
+    } else {
+      requestProcessorQueues = L2Utils.getOptimalApplyStageWorkerThreads(true);
+      requestProcessorStage = stageManager.createStage(ServerConfigurationContext.REQUEST_PROCESSOR_STAGE, Runnable.class, new RequestProcessorHandler(), requestProcessorQueues, maxStageSize);
+    }
     final Sink<Runnable> requestProcessorSink = requestProcessorStage.getSink();
 
-    RequestProcessor processor = new RequestProcessor(requestProcessorSink);
+    this.requestLatencyStats = new RequestLatencyStats(TCPropertiesImpl.getProperties().getBoolean(TCPropertiesConsts.ENTITY_LATENCY_HISTOGRAMS_ENABLED, true));
+    this.dumpHandler.registerForDump(new CallbackDumpAdapter(this.requestLatencyStats));
+    this.entityConcurrencyStats = new EntityConcurrencyStats(TCPropertiesImpl.getProperties().getBoolean(TCPropertiesConsts.ENTITY_CONCURRENCY_STATS_ENABLED, true), requestProcessorQueues);
+    this.dumpHandler.registerForDump(new CallbackDumpAdapter(this.entityConcurrencyStats));
+    RequestProcessor processor = new RequestProcessor(requestProcessorSink, this.requestLatencyStats, this.entityConcurrencyStats);
     
     entityManager = new EntityManagerImpl(this.serviceRegistry, clientEntityStateManager, eventCollector, processor, this::sendNoop);
     channelManager.addEventListener(clientEntityStateManager);
     // We need to set up a stage to point at the ProcessTransactionHandler and we also need to register it for events, below.
-    final ProcessTransactionHandler processTransactionHandler = new ProcessTransactionHandler(this.persistor.getEntityPersistor(), this.persistor.getTransactionOrderPersistor(), channelManager, entityManager, () -> l2Coordinator.getStateManager().cleanupKnownServers());
+    final ProcessTransactionHandler processTransactionHandler = new ProcessTransactionHandler(this.persistor.getEntityPersistor(), this.persistor.getTransactionOrderPersistor(), channelManager, entityManager, () -> l2Coordinator.getStateManager().cleanupKnownServers(), this.requestLatencyStats);
     final Stage<VoltronEntityMessage> processTransactionStage_voltron = stageManager.createStage(ServerConfigurationContext.VOLTRON_MESSAGE_STAGE, VoltronEntityMessage.class, processTransactionHandler.getVoltronMessageHandler(), 1, maxStageSize);
-    final Stage<TCMessage> multiRespond = stageManager.createStage(ServerConfigurationContext.RESPOND_TO_REQUEST_STAGE, TCMessage.class, processTransactionHandler.getMultiResponseSender(), 1, maxStageSize);
+    // responses are batched per client, and each client always lands on the same sender thread
+    final int responseSenders = TCPropertiesImpl.getProperties().getInt(TCPropertiesConsts.ENTITY_RESPONSE_SENDERS, 4);
+    final Stage<ResponseBatcher.ClientBatch> multiRespond = stageManager.createStage(ServerConfigurationContext.RESPOND_TO_REQUEST_STAGE, ResponseBatcher.ClientBatch.class, processTransactionHandler.getMultiResponseSender(), responseSenders, maxStageSize);
+    this.dumpHandler.registerForDump(new CallbackDumpAdapter(processTransactionHandler.getResponseBatcher()));
     final Sink<VoltronEntityMessage> voltronMessageSink = processTransactionStage_voltron.getSink();
     
     // We need to connect the IInterEntityMessengerProvider to the voltronMessageSink.
@@ -695,13 +744,14 @@ public class DistributedObjectServer implements TCDumper, LockInfoDumpHandler, S
     final Stage<ClientHandshakeMessage> clientHandshake = stageManager.createStage(ServerConfigurationContext.CLIENT_HANDSHAKE_STAGE, ClientHandshakeMessage.class, createHandShakeHandler(entityManager, processTransactionHandler), 1, maxStageSize);
     this.hydrateStage = stageManager.createStage(ServerConfigurationContext.HYDRATE_MESSAGE_SINK, HydrateContext.class, new HydrateHandler(), stageWorkerThreadCount, maxStageSize);
 
-    final ChannelLifeCycleHandler channelLifeCycleHandler = new ChannelLifeCycleHandler(this.communicationsManager, stageManager, channelManager, this.haConfig);
+    final ChannelLifeCycleHandler channelLifeCycleHandler = new ChannelLifeCycleHandler(this.communicationsManager, stageManager, channelManager, this.haConfig, processTransactionHandler.getResponseBatcher()::removeClient);
     channelManager.addEventListener(channelLifeCycleHandler);
     
     final Sink<HydrateContext> hydrateSink = this.hydrateStage.getSink();
     messageRouter.routeMessageType(TCMessageType.NOOP_MESSAGE, requestLock.getSink(), hydrateSink);
     messageRouter.routeMessageType(TCMessageType.CLIENT_HANDSHAKE_MESSAGE, clientHandshake.getSink(), hydrateSink);
-    messageRouter.routeMessageType(TCMessageType.VOLTRON_ENTITY_MESSAGE, new VoltronMessageSink(voltronMessageSink, hydrateSink, entityManager));
+    messageRouter.routeMessageType(TCMessageType.CLIENT_HANDSHAKE_RESEND_MESSAGE, clientHandshake.getSink(), hydrateSink);
+    messageRouter.routeMessageType(TCMessageType.VOLTRON_ENTITY_MESSAGE, new VoltronMessageSink(voltronMessageSink, hydrateSink, entityManager, this.requestLatencyStats));
     messageRouter.routeMessageType(TCMessageType.SERVER_ENTITY_RESPONSE_MESSAGE, communicatorResponseStage.getSink(), hydrateSink);
 
     HASettingsChecker haChecker = new HASettingsChecker(configSetupManager, TCPropertiesImpl.getProperties());
@@ -713,7 +763,7 @@ public class DistributedObjectServer implements TCDumper, LockInfoDumpHandler, S
 
     this.dumpHandler.registerForDump(new CallbackDumpAdapter(this.groupCommManager));
 
-    final Stage<StateChangedEvent> stateChange = stageManager.createStage(ServerConfigurationContext.L2_STATE_CHANGE_STAGE, StateChangedEvent.class, new L2StateChangeHandler(createStageController(), eventCollector), 1, maxStageSize);
+    final Stage<StateChangedEvent> stateChange = stageManager.createStage(ServerConfigurationContext.L2_STATE_CHANGE_STAGE, StateChangedEvent.class, new L2StateChangeHandler(createStageController(), eventCollector, server), 1, maxStageSize);
     StateManager state = new StateManagerImpl(DistributedObjectServer.consoleLogger, this.groupCommManager, 
         stateChange.getSink(), stageManager, 
         new StateManagerConfigImpl(configSetupManager.getActiveServerGroupForThisL2().getElectionTimeInSecs()),
@@ -832,7 +882,8 @@ public class DistributedObjectServer implements TCDumper, LockInfoDumpHandler, S
         this.lockManager, (DSOChannelManagerMBean) channelManager,
                                                          serverStats, channelStats, instanceMonitor,
                                                          connectionPolicy,
-                                                         remoteManagement);
+                                                         remoteManagement, this.requestLatencyStats,
+                                                         this.entityConcurrencyStats);
 
     final CallbackOnExitHandler handler = new CallbackGroupExceptionHandler(logger, consoleLogger);
     this.threadGroup.addCallbackOnExitExceptionHandler(GroupException.class, handler);
@@ -977,6 +1028,8 @@ public class DistributedObjectServer implements TCDumper, LockInfoDumpHandler, S
     messageTypeClassMapping.put(TCMessageType.CLIENT_HANDSHAKE_ACK_MESSAGE, ClientHandshakeAckMessageImpl.class);
     messageTypeClassMapping
         .put(TCMessageType.CLIENT_HANDSHAKE_REFUSED_MESSAGE, ClientHandshakeRefusedMessageImpl.class);
+    messageTypeClassMapping.put(TCMessageType.CLIENT_HANDSHAKE_RESEND_MESSAGE, ClientHandshakeMessageImpl.class);
+    messageTypeClassMapping.put(TCMessageType.CLIENT_HANDSHAKE_RESEND_ACK_MESSAGE, ClientHandshakeResendAckMessageImpl.class);
     messageTypeClassMapping.put(TCMessageType.CLUSTER_MEMBERSHIP_EVENT_MESSAGE, ClusterMembershipMessage.class);
 
     messageTypeClassMapping.put(TCMessageType.LIST_REGISTERED_SERVICES_MESSAGE, ListRegisteredServicesMessage.class);
@@ -1065,6 +1118,25 @@ public class DistributedObjectServer implements TCDumper, LockInfoDumpHandler, S
     return sb.toString();
   }
 
+  /**
+   * Closes the group and client listeners, every connection and every stage without exiting the VM.
+   */
+  public void halt() {
+    if (this.groupCommManager instanceof TCGroupManagerImpl) {
+      ((TCGroupManagerImpl) this.groupCommManager).shutdown();
+    }
+    if (this.communicationsManager != null) {
+      this.communicationsManager.shutdown();
+    }
+    this.seda.getStageManager().stopAll();
+    if (this.requestProcessorPool != null) {
+      this.requestProcessorPool.shutdown();
+    }
+    if (this.requestProcessorVirtualThreads != null) {
+      this.requestProcessorVirtualThreads.shutdown();
+    }
+  }
+
   public boolean stopActiveMode() throws TCTimeoutException {
     // TODO:: Make this not take timeout and force stop
     consoleLogger.info("Stopping ACTIVE Terracotta Server instance on " + format(this.l1Listener) + ".");
@@ -1112,6 +1184,10 @@ public class DistributedObjectServer implements TCDumper, LockInfoDumpHandler, S
   public ServerManagementContext getManagementContext() {
     return this.managementContext;
   }
+
+  public RequestLatencyStats getRequestLatencyStats() {
+    return this.requestLatencyStats;
+  }
   
   public TerracottaOperatorEventHistoryProvider getOperatorEventsHistoryProvider() {
     return this.operatorEventHistoryProvider;
@@ -0,0 +1,368 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.objectserver.persistence;
+
+import org.terracotta.entity.StateDumpable;
+import org.terracotta.entity.StateDumper;
+import org.terracotta.persistence.IPlatformPersistence;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+
+/**
+ * An on-disk {@link IPlatformPersistence}.  Every change is appended to a {@link WriteAheadLog} before it is applied in
+ * memory, and the whole state (data elements as serialized bytes and the live sequence tuples) is checkpointed
+ * whenever a log segment fills.
+ * <p>
+ * {@link #fastStoreSequence(long, SequenceTuple, long)} returns a future completed once the tuple has been synced,
+ * so many callers share a single sync.  Tuples below the oldest valid sequence ID are not removed on the append path:
+ * they are dropped when the sequence is next loaded, when a checkpoint is written or when too many have built up.
+ */
+public class DurablePlatformPersistentStorage implements IPlatformPersistence, StateDumpable, Closeable {
+  private static final byte DATA = 1;
+  private static final byte APPEND = 2;
+  private static final byte DELETE_SEQUENCE = 3;
+  private static final int TRIM_THRESHOLD = 1024;
+
+  private final Object lock = new Object();
+  private final Map<String, byte[]> data = new HashMap<>();
+  private final Map<Long, Sequence> sequences = new HashMap<>();
+  private final WriteAheadLog log;
+
+  public DurablePlatformPersistentStorage(File directory, int segmentSize) throws IOException {
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("unable to create platform persistence directory " + directory.getAbsolutePath());
+    }
+    this.log = new WriteAheadLog(directory, segmentSize, this.lock, this::writeCheckpoint);
+    synchronized (this.lock) {
+      this.log.recover(new WriteAheadLog.Recovery() {
+        @Override
+        public void loadCheckpoint(DataInputStream in) throws IOException {
+          readCheckpoint(in);
+        }
+
+        @Override
+        public void replay(ByteBuffer record) throws IOException {
+          apply(record);
+        }
+      });
+    }
+  }
+
+  @Override
+  public Serializable loadDataElement(String name) throws IOException {
+    return loadDataElementInLoader(name, null);
+  }
+
+  @Override
+  public Serializable loadDataElementInLoader(String name, ClassLoader loader) throws IOException {
+    byte[] bytes;
+    synchronized (this.lock) {
+      bytes = this.data.get(name);
+    }
+    if (null == bytes) {
+      return null;
+    }
+    try (ObjectInputStream in = new LoaderObjectInputStream(new ByteArrayInputStream(bytes), loader)) {
+      return (Serializable) in.readObject();
+    } catch (ClassNotFoundException e) {
+      throw new IOException(e);
+    }
+  }
+
+  @Override
+  public void storeDataElement(String name, Serializable element) throws IOException {
+    waitFor(fastStoreDataElement(name, element));
+  }
+
+  /**
+   * The same as {@link #storeDataElement(String, Serializable)} but returns as soon as the element is in the log, with
+   * a future completed once it has been synced.  Records are synced in the order they were appended, so a later
+   * record being durable means this one is too.
+   */
+  public CompletableFuture<Void> fastStoreDataElement(String name, Serializable element) throws IOException {
+    byte[] bytes = null;
+    if (null != element) {
+      ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+      try (ObjectOutputStream out = new ObjectOutputStream(serialized)) {
+        out.writeObject(element);
+      }
+      bytes = serialized.toByteArray();
+    }
+    ByteArrayOutputStream record = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(record);
+    out.writeByte(DATA);
+    out.writeUTF(name);
+    if (null == bytes) {
+      out.writeInt(-1);
+    } else {
+      out.writeInt(bytes.length);
+      out.write(bytes);
+    }
+    CompletableFuture<Void> synced;
+    synchronized (this.lock) {
+      synced = this.log.append(record.toByteArray(), true);
+      if (null == bytes) {
+        this.data.remove(name);
+      } else {
+        this.data.put(name, bytes);
+      }
+    }
+    return synced;
+  }
+
+  @Override
+  public Future<Void> fastStoreSequence(long sequenceIndex, SequenceTuple newEntry, long oldestValidSequenceID) {
+    ByteBuffer record = ByteBuffer.allocate(33);
+    record.put(APPEND).putLong(sequenceIndex).putLong(oldestValidSequenceID)
+        .putLong(newEntry.localSequenceID).putLong(newEntry.globalSequenceID);
+    synchronized (this.lock) {
+      CompletableFuture<Void> synced;
+      try {
+        synced = this.log.append(record.array(), true);
+      } catch (IOException ioe) {
+        CompletableFuture<Void> failed = new CompletableFuture<>();
+        failed.completeExceptionally(ioe);
+        return failed;
+      }
+      appendTuple(sequenceIndex, newEntry.localSequenceID, newEntry.globalSequenceID, oldestValidSequenceID);
+      return synced;
+    }
+  }
+
+  @Override
+  public List<SequenceTuple> loadSequence(long sequenceIndex) {
+    synchronized (this.lock) {
+      Sequence sequence = this.sequences.get(sequenceIndex);
+      if (null == sequence) {
+        return null;
+      }
+      sequence.trim();
+      List<SequenceTuple> copy = new ArrayList<>(sequence.tuples.size());
+      for (SequenceTuple tuple : sequence.tuples) {
+        copy.add(tuple(tuple.localSequenceID, tuple.globalSequenceID));
+      }
+      return copy;
+    }
+  }
+
+  @Override
+  public void deleteSequence(long sequenceIndex) {
+    ByteBuffer record = ByteBuffer.allocate(9);
+    record.put(DELETE_SEQUENCE).putLong(sequenceIndex);
+    CompletableFuture<Void> synced;
+    synchronized (this.lock) {
+      try {
+        synced = this.log.append(record.array(), true);
+      } catch (IOException ioe) {
+        throw new RuntimeException(ioe);
+      }
+      this.sequences.remove(sequenceIndex);
+    }
+    try {
+      waitFor(synced);
+    } catch (IOException ioe) {
+      throw new RuntimeException(ioe);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    this.log.close();
+  }
+
+  @Override
+  public void dumpStateTo(StateDumper stateDumper) {
+    synchronized (this.lock) {
+      stateDumper.dumpState("directory", this.log.getDirectory().getAbsolutePath());
+      stateDumper.dumpState("segment", String.valueOf(this.log.getSegmentId()));
+      for (String key : this.data.keySet()) {
+        stateDumper.dumpState("key", key);
+      }
+      for (Map.Entry<Long, Sequence> entry : this.sequences.entrySet()) {
+        stateDumper.dumpState("sequence." + entry.getKey(), String.valueOf(entry.getValue().tuples.size()));
+      }
+    }
+  }
+
+  private void appendTuple(long sequenceIndex, long local, long global, long oldestValid) {
+    Sequence sequence = this.sequences.get(sequenceIndex);
+    if (null == sequence) {
+      sequence = new Sequence();
+      this.sequences.put(sequenceIndex, sequence);
+    }
+    sequence.oldestValid = Math.max(sequence.oldestValid, oldestValid);
+    sequence.tuples.add(tuple(local, global));
+    if (sequence.tuples.size() > TRIM_THRESHOLD) {
+      sequence.trim();
+    }
+  }
+
+  private void apply(ByteBuffer record) throws IOException {
+    byte type = record.get();
+    switch (type) {
+      case DATA: {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record.array(),
+            record.arrayOffset() + record.position(), record.remaining()));
+        String name = in.readUTF();
+        int length = in.readInt();
+        if (length < 0) {
+          this.data.remove(name);
+        } else {
+          byte[] bytes = new byte[length];
+          in.readFully(bytes);
+          this.data.put(name, bytes);
+        }
+        break;
+      }
+      case APPEND: {
+        long index = record.getLong();
+        long oldestValid = record.getLong();
+        long local = record.getLong();
+        long global = record.getLong();
+        appendTuple(index, local, global, oldestValid);
+        break;
+      }
+      case DELETE_SEQUENCE:
+        this.sequences.remove(record.getLong());
+        break;
+      default:
+        throw new IOException("unknown platform persistence record type " + type);
+    }
+  }
+
+  private void writeCheckpoint(DataOutputStream out) throws IOException {
+    out.writeInt(this.data.size());
+    for (Map.Entry<String, byte[]> entry : this.data.entrySet()) {
+      out.writeUTF(entry.getKey());
+      out.writeInt(entry.getValue().length);
+      out.write(entry.getValue());
+    }
+    out.writeInt(this.sequences.size());
+    for (Map.Entry<Long, Sequence> entry : this.sequences.entrySet()) {
+      Sequence sequence = entry.getValue();
+      sequence.trim();
+      out.writeLong(entry.getKey());
+      out.writeLong(sequence.oldestValid);
+      out.writeInt(sequence.tuples.size());
+      for (SequenceTuple tuple : sequence.tuples) {
+        out.writeLong(tuple.localSequenceID);
+        out.writeLong(tuple.globalSequenceID);
+      }
+    }
+  }
+
+  private void readCheckpoint(DataInputStream in) throws IOException {
+    int elements = in.readInt();
+    for (int i = 0; i < elements; ++i) {
+      String name = in.readUTF();
+      byte[] bytes = new byte[in.readInt()];
+      in.readFully(bytes);
+      this.data.put(name, bytes);
+    }
+    int count = in.readInt();
+    for (int i = 0; i < count; ++i) {
+      long index = in.readLong();
+      Sequence sequence = new Sequence();
+      sequence.oldestValid = in.readLong();
+      int tuples = in.readInt();
+      for (int j = 0; j < tuples; ++j) {
+        sequence.tuples.add(tuple(in.readLong(), in.readLong()));
+      }
+      this.sequences.put(index, sequence);
+    }
+  }
+
+  private static SequenceTuple tuple(long local, long global) {
+    SequenceTuple tuple = new SequenceTuple();
+    tuple.localSequenceID = local;
+    tuple.globalSequenceID = global;
+    return tuple;
+  }
+
+  private static void waitFor(Future<Void> synced) throws IOException {
+    boolean interrupted = false;
+    while (true) {
+      try {
+        synced.get();
+        break;
+      } catch (InterruptedException ie) {
+        interrupted = true;
+      } catch (ExecutionException e) {
+        throw new IOException(e.getCause());
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static class Sequence {
+    private final ArrayDeque<SequenceTuple> tuples = new ArrayDeque<>();
+    private long oldestValid = Long.MIN_VALUE;
+
+    private void trim() {
+//  sequences only ever grow so stop at the first tuple which is still valid
+      while (!this.tuples.isEmpty() && this.tuples.peek().localSequenceID < this.oldestValid) {
+        this.tuples.poll();
+      }
+    }
+  }
+
+  private static class LoaderObjectInputStream extends ObjectInputStream {
+    private final ClassLoader loader;
+
+    LoaderObjectInputStream(InputStream in, ClassLoader loader) throws IOException {
+      super(in);
+      this.loader = loader;
+    }
+
+    @Override
+    protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+      if (null != this.loader) {
+        try {
+          return Class.forName(desc.getName(), false, this.loader);
+        } catch (ClassNotFoundException notInLoader) {
+          // fall back to the default resolution
+        }
+      }
+      return super.resolveClass(desc);
+    }
+  }
+}
@@ -0,0 +1,167 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.objectserver.persistence;
+
+import org.terracotta.entity.PlatformConfiguration;
+import org.terracotta.entity.ServiceConfiguration;
+import org.terracotta.entity.ServiceProvider;
+import org.terracotta.entity.ServiceProviderCleanupException;
+import org.terracotta.entity.ServiceProviderConfiguration;
+import org.terracotta.entity.StateDumpable;
+import org.terracotta.entity.StateDumper;
+import org.terracotta.persistence.IPlatformPersistence;
+
+import com.tc.io.TCFile;
+import com.tc.io.TCFileImpl;
+import com.tc.io.TCRandomFileAccessImpl;
+import com.tc.logging.CustomerLogging;
+import com.tc.logging.TCLogger;
+import com.tc.logging.TCLogging;
+import com.tc.util.Assert;
+import com.tc.util.NonBlockingStartupLock;
+import com.tc.util.startuplock.FileNotCreatedException;
+import com.tc.util.startuplock.LocationNotCreatedException;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * Provides {@link IPlatformPersistence} backed by a {@link DurablePlatformPersistentStorage} per consumer, each in its
+ * own directory under a per-server directory of the configured path.
+ */
+public class DurablePlatformStorageServiceProvider implements ServiceProvider, StateDumpable, Closeable {
+  private static final TCLogger logger = TCLogging.getLogger(DurablePlatformStorageServiceProvider.class);
+  private static final TCLogger consoleLogger = CustomerLogging.getConsoleLogger();
+  private static final String CONSUMER_DIRECTORY_PREFIX = "platform_";
+
+  private final Map<Long, DurablePlatformPersistentStorage> storages = new ConcurrentHashMap<>();
+  private File directory;
+  private int segmentSize;
+  private NonBlockingStartupLock lock;
+
+  @Override
+  public boolean initialize(ServiceProviderConfiguration configuration, PlatformConfiguration platformConfiguration) {
+    Assert.assertTrue(configuration instanceof DurablePlatformStorageProviderConfiguration);
+    DurablePlatformStorageProviderConfiguration durableConfiguration = (DurablePlatformStorageProviderConfiguration)configuration;
+    File targetDirectory = durableConfiguration.getBasedir();
+    Assert.assertNotNull(targetDirectory);
+    // We want to use a per-server directory (since this path is likely the same for the entire stripe).
+    File singleServerDirectory = new File(targetDirectory, platformConfiguration.getServerName());
+    if (!singleServerDirectory.isDirectory() && !singleServerDirectory.mkdirs()) {
+      throw new IllegalArgumentException("Platform persistence directory did not exist and could not be created: " + singleServerDirectory.getAbsolutePath());
+    }
+    this.directory = singleServerDirectory;
+    this.segmentSize = durableConfiguration.getSegmentSize();
+    logger.info("Initialized durable platform storage to: " + this.directory);
+
+    // Same as the flat file provider:  make sure that another server instance isn't using the same top-level directory.
+    TCFile location = new TCFileImpl(targetDirectory);
+    Assert.assertNull(this.lock);
+    this.lock = new NonBlockingStartupLock(location, durableConfiguration.shouldBlockOnLock());
+    try {
+      if (!this.lock.canProceed(new TCRandomFileAccessImpl())) {
+        consoleLogger.error("Another L2 process is using the directory " + location + " as data directory.");
+        consoleLogger.error("Exiting...");
+        System.exit(1);
+      }
+    } catch (LocationNotCreatedException e) {
+      // Unexpected - fatal.
+      Assert.fail(e.getLocalizedMessage());
+    } catch (FileNotCreatedException e) {
+      // Unexpected - fatal.
+      Assert.fail(e.getLocalizedMessage());
+    }
+    return true;
+  }
+
+  @Override
+  public <T> T getService(long consumerID, ServiceConfiguration<T> configuration) {
+    DurablePlatformPersistentStorage storage = this.storages.computeIfAbsent(consumerID, id -> {
+      try {
+        return new DurablePlatformPersistentStorage(new File(this.directory, CONSUMER_DIRECTORY_PREFIX + id), this.segmentSize);
+      } catch (IOException ioe) {
+        throw new RuntimeException(ioe);
+      }
+    });
+    return configuration.getServiceType().cast(storage);
+  }
+
+  @Override
+  public Collection<Class<?>> getProvidedServiceTypes() {
+    return Collections.singleton(IPlatformPersistence.class);
+  }
+
+  @Override
+  public void clear() throws ServiceProviderCleanupException {
+    // check that either there are no consumers or platform is the only consumer
+    Assert.assertTrue((this.storages.size() == 0) || (this.storages.size() == 1 && this.storages.containsKey(0L)));
+    try {
+      closeStorages();
+    } catch (IOException ioe) {
+      throw new ServiceProviderCleanupException("DurablePlatformStorageServiceProvider clear failed - " + ioe.getLocalizedMessage());
+    }
+    File[] consumers = this.directory.listFiles();
+    if (null != consumers) {
+      for (File consumer : consumers) {
+        if (consumer.isDirectory() && consumer.getName().startsWith(CONSUMER_DIRECTORY_PREFIX)) {
+          File[] files = consumer.listFiles();
+          if (null != files) {
+            for (File file : files) {
+              if (!file.delete()) {
+                throw new ServiceProviderCleanupException("DurablePlatformStorageServiceProvider clear failed - can't delete " + file.getAbsolutePath());
+              }
+            }
+          }
+          if (!consumer.delete()) {
+            throw new ServiceProviderCleanupException("DurablePlatformStorageServiceProvider clear failed - can't delete " + consumer.getAbsolutePath());
+          }
+        }
+      }
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    closeStorages();
+    // Do the null check since someone might close without init.
+    if (null != this.lock) {
+      this.lock.release();
+    }
+  }
+
+  @Override
+  public void dumpStateTo(StateDumper stateDumper) {
+    for (Map.Entry<Long, DurablePlatformPersistentStorage> entry : this.storages.entrySet()) {
+      entry.getValue().dumpStateTo(stateDumper.subStateDumper(String.valueOf(entry.getKey())));
+    }
+  }
+
+  private void closeStorages() throws IOException {
+    for (DurablePlatformPersistentStorage storage : this.storages.values()) {
+      storage.close();
+    }
+    this.storages.clear();
+  }
+}
@@ -20,7 +20,12 @@ package com.tc.objectserver.persistence;
 
 import java.io.IOException;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.terracotta.entity.StateDumpable;
@@ -36,40 +41,30 @@ import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Implements an entire IPersistentStorage data store on top of an underlying IPlatformPersistence implementation.
+ * <p>
+ * The combined store is only written out as a snapshot on create, close and once enough changes have built up.  In
+ * between, each change is persisted as a batch of per-map, per-key deltas:  one batch per write or, while the writing
+ * thread has a {@link Transaction} open, one batch when its outermost transaction commits.  Aborting a transaction
+ * puts back what its writes replaced.
  * NOTE:  This is just temporary until IPersistentStorage can be fully removed.
  */
 public class EmulatedPersistentStorage implements IPersistentStorage, StateDumpable {
   private static final String FILE_NAME = "IPersistenceStorage.dat";
+  private static final String DELTA_BASE_NAME = "IPersistenceStorage.delta_base";
+  private static final String DELTA_NAME_PREFIX = "IPersistenceStorage.delta.";
   private static final String KEY_PROPERTIES = "properties";
   private static final String KEY_MAPS = "maps";
+  private static final int COMPACTION_THRESHOLD = 1024;
 
   private final Object lock = new Object();
   private final IPlatformPersistence platformPersistence;
   private PersistentStorageProperties properties;
   private Map<String, SynchronizedKeyValueStorage<?, ?>> maps;
-  
-  private final FlushingWrite doFlush = new FlushingWrite() {
-    @Override
-    public <T> T run(Callable<T> r) {
-      T result = null;
-      try {
-        synchronized (lock) {
-            result = r.call();
-            
-            // Build the HashMap to write.
-            HashMap<String, Serializable> map = new HashMap<>();
-            map.put(KEY_PROPERTIES, properties);
-            map.put(KEY_MAPS, (Serializable)maps);
-            
-            platformPersistence.storeDataElement(FILE_NAME, map);
-        }
-      } catch (Exception e) {
-        // If something happened here, that is a serious bug so we need to assert.
-        throw Assert.failure("Failure writing EmulatedPersistentStorage", e);
-      }
-      return result;
-    }
-  };
+  // The first batch not folded into the snapshot and the sequence number of the next batch to write.
+  private long deltaBase;
+  private long nextDelta;
+  // The transaction each thread has open.  Only that thread's changes wait for it, other threads keep writing through.
+  private final Map<Thread, StorageTransaction> openTransactions = new HashMap<>();
   
   public EmulatedPersistentStorage(IPlatformPersistence platformPersistence) {
     this.platformPersistence = platformPersistence;
@@ -84,25 +79,47 @@ public class EmulatedPersistentStorage implements IPersistentStorage, StateDumpa
       throw new IOException("not found");
     }
     
-    this.properties = (PersistentStorageProperties) combinedMap.get(KEY_PROPERTIES);
-    this.maps = (Map<String, SynchronizedKeyValueStorage<?, ?>>) combinedMap.get(KEY_MAPS);
-    for (Map.Entry<String, SynchronizedKeyValueStorage<?, ?>> entry : maps.entrySet()) {
-      entry.getValue().setFlushCallback(doFlush);
+    synchronized (lock) {
+      this.properties = (PersistentStorageProperties) combinedMap.get(KEY_PROPERTIES);
+      this.maps = (Map<String, SynchronizedKeyValueStorage<?, ?>>) combinedMap.get(KEY_MAPS);
+      for (Map.Entry<String, SynchronizedKeyValueStorage<?, ?>> entry : maps.entrySet()) {
+        entry.getValue().setFlushCallback(new MapWrite(entry.getKey(), entry.getValue()));
+      }
+      this.properties.setWriter(new PropertiesWrite());
+      // Replay whatever was written since the last snapshot.
+      loadDeltaBase();
+      List<Delta> batch = (List<Delta>) this.platformPersistence.loadDataElement(deltaName(this.nextDelta));
+      while (null != batch) {
+        for (Delta delta : batch) {
+          apply(delta);
+        }
+        this.nextDelta += 1;
+        batch = (List<Delta>) this.platformPersistence.loadDataElement(deltaName(this.nextDelta));
+      }
     }
-    this.properties.setWriter(doFlush);
   }
 
   @Override
   public void create() throws IOException {
-    this.properties = new PersistentStorageProperties(doFlush);
-    this.maps = new ConcurrentHashMap<>();
-    // Write the file, for the first time, so that we can attempt to open it later, even if we don't write anything.
-    this.doFlush.run(()->null);
+    synchronized (lock) {
+      this.properties = new PersistentStorageProperties(new PropertiesWrite());
+      this.maps = new ConcurrentHashMap<>();
+      // Any batches left behind by a previous store with this name must not be replayed over this one.
+      loadDeltaBase();
+      while (null != this.platformPersistence.loadDataElement(deltaName(this.nextDelta))) {
+        this.nextDelta += 1;
+      }
+      // Write the file, for the first time, so that we can attempt to open it later, even if we don't write anything.
+      compact();
+    }
   }
 
   @Override
   public void close() {
-    doFlush.run(()->null);
+    synchronized (lock) {
+      // The snapshot includes whatever open transactions have written so far.
+      compact();
+    }
   }
 
   @Override
@@ -116,8 +133,7 @@ public class EmulatedPersistentStorage implements IPersistentStorage, StateDumpa
     // It appears as though we often don't create these, ahead-of-time.
     synchronized (lock) {
     if (!maps.containsKey(name)) {
-      SynchronizedKeyValueStorage<K, V> storage = new SynchronizedKeyValueStorage<>(doFlush);
-      maps.put(name, storage);
+      newMap(name);
     }
     return (KeyValueStorage<K, V>) maps.get(name);
     }
@@ -128,9 +144,7 @@ public class EmulatedPersistentStorage implements IPersistentStorage, StateDumpa
   public synchronized <K, V> KeyValueStorage<K, V> createKeyValueStorage(String name, Class<K> keyClass, Class<V> valueClass) {
     synchronized (lock) {
     if (!maps.containsKey(name)) {
-      SynchronizedKeyValueStorage<K, V> storage = new SynchronizedKeyValueStorage<>(doFlush);
-      maps.put(name, storage);
-      return storage;
+      return newMap(name);
     }
     return (KeyValueStorage<K, V>)maps.get(name);
     }
@@ -141,23 +155,47 @@ public class EmulatedPersistentStorage implements IPersistentStorage, StateDumpa
     synchronized (lock) {
       @SuppressWarnings("unchecked")
       KeyValueStorage<K, V> storage =  (KeyValueStorage<K, V>)maps.get(name);
-      maps.remove(name);
+      if (null != storage) {
+        StorageTransaction txn = openTransactions.get(Thread.currentThread());
+        if (null != txn) {
+          txn.undo.add(Arrays.asList(new Delta(DeltaType.CREATE_MAP, name, null, null),
+              new Delta(DeltaType.REPLACE_MAP, name, null, maps.get(name).copyContents())));
+        }
+        maps.remove(name);
+        record(txn, Collections.singletonList(new Delta(DeltaType.DESTROY_MAP, name, null, null)));
+      }
       return storage;
     }
   }  
 
   @Override
   public Transaction begin() {
+    StorageTransaction txn;
+    synchronized (lock) {
+      txn = openTransactions.computeIfAbsent(Thread.currentThread(), StorageTransaction::new);
+      txn.depth += 1;
+    }
     return new Transaction() {
+      private boolean done;
 
       @Override
       public void commit() {
-        doFlush.run(()->null);
+        synchronized (lock) {
+          if (!done) {
+            done = true;
+            txn.commit();
+          }
+        }
       }
 
       @Override
       public void abort() {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+        synchronized (lock) {
+          if (!done) {
+            done = true;
+            txn.abort();
+          }
+        }
       }
     };
   }
@@ -165,8 +203,288 @@ public class EmulatedPersistentStorage implements IPersistentStorage, StateDumpa
 
   @Override
   public void dumpStateTo(StateDumper stateDumper) {
+    stateDumper.dumpState("uncompactedBatches", String.valueOf(nextDelta - deltaBase));
+    stateDumper.dumpState("openTransactions", String.valueOf(openTransactions.size()));
     for (Map.Entry<String, SynchronizedKeyValueStorage<?, ?>> entry : maps.entrySet()) {
       entry.getValue().dumpStateTo(stateDumper.subStateDumper(entry.getKey()));
     }
   }
+
+  private <K, V> SynchronizedKeyValueStorage<K, V> newMap(String name) {
+    SynchronizedKeyValueStorage<K, V> storage = new SynchronizedKeyValueStorage<>(null);
+    storage.setFlushCallback(new MapWrite(name, storage));
+    maps.put(name, storage);
+    StorageTransaction txn = openTransactions.get(Thread.currentThread());
+    if (null != txn) {
+      txn.undo.add(Collections.singletonList(new Delta(DeltaType.DESTROY_MAP, name, null, null)));
+    }
+    record(txn, Collections.singletonList(new Delta(DeltaType.CREATE_MAP, name, null, null)));
+    return storage;
+  }
+
+  /**
+   * Queues the deltas behind the writing thread's open transaction or writes them as a batch on their own.
+   * NOTE:  Must be called under lock.
+   */
+  private void record(StorageTransaction txn, List<Delta> deltas) {
+    if (null != txn) {
+      txn.pending.addAll(deltas);
+    } else {
+      writeBatch(deltas);
+    }
+  }
+
+  private void writeBatch(List<Delta> batch) {
+    if (!batch.isEmpty()) {
+      store(deltaName(nextDelta), new ArrayList<>(batch));
+      nextDelta += 1;
+      if (nextDelta - deltaBase >= COMPACTION_THRESHOLD) {
+        compact();
+      }
+    }
+  }
+
+  /**
+   * Writes the combined snapshot, moves the delta base past every batch written so far and deletes those batches.
+   * Batches are only ever replayed in order and every delta sets an absolute value, so a failure before the base is
+   * stored just replays batches the snapshot already includes.
+   */
+  private void compact() {
+    // Build the HashMap to write.
+    HashMap<String, Serializable> map = new HashMap<>();
+    map.put(KEY_PROPERTIES, properties);
+    map.put(KEY_MAPS, (Serializable)maps);
+    store(FILE_NAME, map);
+    long oldBase = deltaBase;
+    deltaBase = nextDelta;
+    store(DELTA_BASE_NAME, deltaBase);
+    for (long batch = oldBase; batch < deltaBase; ++batch) {
+      store(deltaName(batch), null);
+    }
+  }
+
+  private void loadDeltaBase() throws IOException {
+    Long base = (Long) this.platformPersistence.loadDataElement(DELTA_BASE_NAME);
+    this.deltaBase = (null != base) ? base : 0;
+    this.nextDelta = this.deltaBase;
+  }
+
+  private void apply(Delta delta) {
+    switch (delta.type) {
+      case PUT:
+      case REMOVE:
+      case REPLACE_MAP:
+        // An aborted transaction restores the contents of maps it created before it removes them, and those maps
+        // were never persisted.
+        SynchronizedKeyValueStorage<?, ?> target = maps.get(delta.mapName);
+        if (null == target) {
+          break;
+        }
+        if (DeltaType.REPLACE_MAP == delta.type) {
+          target.restoreContents((Map<?, ?>) delta.value);
+        } else {
+          target.restore(delta.key, delta.value, DeltaType.REMOVE == delta.type);
+        }
+        break;
+      case CREATE_MAP:
+        if (!maps.containsKey(delta.mapName)) {
+          SynchronizedKeyValueStorage<Object, Object> storage = new SynchronizedKeyValueStorage<>(null);
+          storage.setFlushCallback(new MapWrite(delta.mapName, storage));
+          maps.put(delta.mapName, storage);
+        }
+        break;
+      case DESTROY_MAP:
+        maps.remove(delta.mapName);
+        break;
+      case PROPERTY:
+        properties.restore((String) delta.key, (String) delta.value);
+        break;
+      default:
+        throw Assert.failure("Unknown EmulatedPersistentStorage delta " + delta.type);
+    }
+  }
+
+  private void store(String name, Serializable element) {
+    try {
+      this.platformPersistence.storeDataElement(name, element);
+    } catch (IOException e) {
+      // If something happened here, that is a serious bug so we need to assert.
+      throw Assert.failure("Failure writing EmulatedPersistentStorage", e);
+    }
+  }
+
+  private static String deltaName(long batch) {
+    return DELTA_NAME_PREFIX + batch;
+  }
+
+  private abstract class DeltaWrite implements FlushingWrite {
+    @Override
+    public <T> T run(Callable<T> r) {
+      synchronized (lock) {
+        StorageTransaction txn = openTransactions.get(Thread.currentThread());
+        if (null != txn) {
+          txn.undo.add(snapshotAll());
+        }
+        T result = call(r);
+        record(txn, snapshotAll());
+        return result;
+      }
+    }
+
+    @Override
+    public <T> T runOnKeys(Collection<?> keys, Callable<T> r) {
+      synchronized (lock) {
+        StorageTransaction txn = openTransactions.get(Thread.currentThread());
+        if (null != txn) {
+          txn.undo.add(snapshotKeys(keys));
+        }
+        T result = call(r);
+        record(txn, snapshotKeys(keys));
+        return result;
+      }
+    }
+
+    /**
+     * The deltas which set everything this writer covers to its current value.
+     */
+    protected abstract List<Delta> snapshotAll();
+
+    protected abstract Delta snapshotKey(Object key);
+
+    private List<Delta> snapshotKeys(Collection<?> keys) {
+      List<Delta> deltas = new ArrayList<>(keys.size());
+      for (Object key : keys) {
+        deltas.add(snapshotKey(key));
+      }
+      return deltas;
+    }
+
+    private <T> T call(Callable<T> r) {
+      try {
+        return r.call();
+      } catch (Exception e) {
+        // If something happened here, that is a serious bug so we need to assert.
+        throw Assert.failure("Failure writing EmulatedPersistentStorage", e);
+      }
+    }
+  }
+
+  private class MapWrite extends DeltaWrite {
+    private final String name;
+    private final SynchronizedKeyValueStorage<?, ?> storage;
+
+    MapWrite(String name, SynchronizedKeyValueStorage<?, ?> storage) {
+      this.name = name;
+      this.storage = storage;
+    }
+
+    @Override
+    protected List<Delta> snapshotAll() {
+      return Collections.singletonList(new Delta(DeltaType.REPLACE_MAP, name, null, storage.copyContents()));
+    }
+
+    @Override
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    protected Delta snapshotKey(Object key) {
+      SynchronizedKeyValueStorage raw = storage;
+      if (raw.containsKey(key)) {
+        return new Delta(DeltaType.PUT, name, key, raw.get(key));
+      } else {
+        return new Delta(DeltaType.REMOVE, name, key, null);
+      }
+    }
+  }
+
+  private class PropertiesWrite extends DeltaWrite {
+    @Override
+    protected List<Delta> snapshotAll() {
+      List<Delta> deltas = new ArrayList<>();
+      for (String key : properties.keySet()) {
+        deltas.add(snapshotKey(key));
+      }
+      return deltas;
+    }
+
+    @Override
+    protected Delta snapshotKey(Object key) {
+      // A null value means the property isn't set.
+      return new Delta(DeltaType.PROPERTY, null, key, properties.get(key));
+    }
+  }
+
+  /**
+   * The changes one thread made while it had a transaction open.  Nested begins on the same thread join it.
+   * NOTE:  Only touched under lock.
+   */
+  private class StorageTransaction {
+    private final Thread owner;
+    private final List<Delta> pending = new ArrayList<>();
+    // For each write, the deltas which put back what it replaced, oldest first.
+    private final List<List<Delta>> undo = new ArrayList<>();
+    private int depth;
+    private boolean closed;
+
+    StorageTransaction(Thread owner) {
+      this.owner = owner;
+    }
+
+    void commit() {
+      if (!closed) {
+        depth -= 1;
+        if (0 == depth) {
+          close();
+          writeBatch(pending);
+        }
+      }
+    }
+
+    /**
+     * Discards the transaction's writes, including those of any transaction nested in it, and restores the values they
+     * replaced.  The storage never saw the discarded writes but another thread may have written the same keys since,
+     * so the restored values are written through as well.
+     */
+    void abort() {
+      if (!closed) {
+        close();
+        List<Delta> restored = new ArrayList<>();
+        for (int i = undo.size() - 1; i >= 0; --i) {
+          for (Delta delta : undo.get(i)) {
+            apply(delta);
+            restored.add(delta);
+          }
+        }
+        writeBatch(restored);
+      }
+    }
+
+    private void close() {
+      closed = true;
+      openTransactions.remove(owner);
+    }
+  }
+
+  private static enum DeltaType {
+    PUT,
+    REMOVE,
+    REPLACE_MAP,
+    CREATE_MAP,
+    DESTROY_MAP,
+    PROPERTY,
+  }
+
+  private static class Delta implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final DeltaType type;
+    private final String mapName;
+    private final Object key;
+    private final Object value;
+
+    Delta(DeltaType type, String mapName, Object key, Object value) {
+      this.type = type;
+      this.mapName = mapName;
+      this.key = key;
+      this.value = value;
+    }
+  }
 }
@@ -18,6 +18,8 @@
  */
 package com.tc.objectserver.persistence;
 
+import com.tc.net.ClientID;
+
 import java.io.Serializable;
 
 import org.terracotta.exception.EntityException;
@@ -88,4 +90,40 @@ public class EntityData {
       return "JournalEntry{" + "operation=" + operation + ", transactionID=" + transactionID + '}';
     }
   }
+
+  public static enum DeltaType implements Serializable {
+    ENTITY_PUT,
+    ENTITY_REMOVE,
+    JOURNAL_ADD,
+    JOURNAL_REMOVE_CLIENT,
+    COUNTER,
+  }
+
+  /**
+   * A single change to the persisted entity state, appended to storage instead of rewriting the maps it changes.
+   * Applying a delta more than once must have the same effect as applying it once, since deltas may be replayed over a
+   * snapshot which already contains them.
+   */
+  public static class Delta implements Serializable {
+    private static final long serialVersionUID = 1L;
+    
+    public DeltaType type;
+    // ENTITY_PUT and ENTITY_REMOVE.
+    public Key key;
+    // ENTITY_PUT only.
+    public Value value;
+    // JOURNAL_ADD and JOURNAL_REMOVE_CLIENT.
+    public ClientID client;
+    // JOURNAL_ADD only.
+    public long oldestTransactionOnClient;
+    public JournalEntry entry;
+    // COUNTER only.
+    public String counterName;
+    public long counterValue;
+
+    @Override
+    public String toString() {
+      return "Delta{" + "type=" + type + '}';
+    }
+  }
 }
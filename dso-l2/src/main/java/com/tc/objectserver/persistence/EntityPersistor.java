@@ -32,12 +32,12 @@ import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
-import java.util.Vector;
 
 import org.terracotta.exception.EntityException;
 import org.terracotta.persistence.IPlatformPersistence;
@@ -45,6 +45,10 @@ import org.terracotta.persistence.IPlatformPersistence;
 
 /**
  * Stores the information relating to the entities currently alive on the platform into persistent storage.
+ * <p>
+ * Each lifecycle operation is persisted as a small {@link EntityData.Delta} record, under its own sequence number,
+ * rather than by rewriting the maps it touches.  Once enough deltas have built up, the maps are written out as a new
+ * snapshot and the deltas it covers are deleted.
  */
 public class EntityPersistor {
   private static final TCLogger LOGGER = TCLogging.getLogger(EntityPersistor.class);
@@ -53,11 +57,17 @@ public class EntityPersistor {
   private static final String JOURNAL_CONTAINER_FILE_NAME = "journal_container.map";
   private static final String COUNTERS_FILE_NAME = "counters.map";
   private static final String COUNTERS_CONSUMER_ID = "counters:consumerID";
+  private static final String DELTA_BASE_NAME = "entity_persistor.delta_base";
+  private static final String DELTA_NAME_PREFIX = "entity_persistor.delta.";
+  private static final int COMPACTION_THRESHOLD = 1024;
 
   private final IPlatformPersistence storageManager;
   private final HashMap<EntityData.Key, EntityData.Value> entities;
   private final HashMap<ClientID, List<EntityData.JournalEntry>> entityLifeJournal;
   private final HashMap<String, Long> counters;
+  // The first delta not folded into the stored maps and the sequence number of the next delta to write.
+  private long deltaBase;
+  private long nextDelta;
 
   @SuppressWarnings({ "unchecked" })
   public EntityPersistor(IPlatformPersistence storageManager) {
@@ -73,10 +83,24 @@ public class EntityPersistor {
       if (!this.counters.containsKey(COUNTERS_CONSUMER_ID)) {
         this.counters.put(COUNTERS_CONSUMER_ID, new Long(1));
       }
+      // Replay whatever was written since the last snapshot.
+      Long base = (Long) this.storageManager.loadDataElement(DELTA_BASE_NAME);
+      this.deltaBase = (null != base) ? base : 0;
+      this.nextDelta = this.deltaBase;
+      EntityData.Delta delta = (EntityData.Delta) this.storageManager.loadDataElement(deltaName(this.nextDelta));
+      while (null != delta) {
+        applyDelta(delta);
+        this.nextDelta += 1;
+        delta = (EntityData.Delta) this.storageManager.loadDataElement(deltaName(this.nextDelta));
+      }
     } catch (IOException e) {
       // We don't expect this during startup so just throw it as runtime.
       throw new RuntimeException("Failure reading EntityPersistor map files", e);
     }
+    if (this.nextDelta > this.deltaBase) {
+      LOGGER.debug("replayed " + (this.nextDelta - this.deltaBase) + " entity deltas");
+      compact();
+    }
   }
 
   public synchronized void clear() {
@@ -88,6 +112,12 @@ public class EntityPersistor {
     }
     // We can destroy the backing for these objects.
     try {
+      for (long delta = this.deltaBase; delta < this.nextDelta; ++delta) {
+        this.storageManager.storeDataElement(deltaName(delta), null);
+      }
+      this.storageManager.storeDataElement(DELTA_BASE_NAME, null);
+      this.deltaBase = 0;
+      this.nextDelta = 0;
       this.storageManager.storeDataElement(ENTITIES_ALIVE_FILE_NAME, null);
       this.storageManager.storeDataElement(JOURNAL_CONTAINER_FILE_NAME, null);
       this.storageManager.storeDataElement(COUNTERS_FILE_NAME, null);
@@ -182,7 +212,10 @@ public class EntityPersistor {
     key.entityName = id.getEntityName();
     Assert.assertTrue(this.entities.containsKey(key));
     this.entities.remove(key);
-    storeToDisk(ENTITIES_ALIVE_FILE_NAME, this.entities);
+    EntityData.Delta delta = new EntityData.Delta();
+    delta.type = EntityData.DeltaType.ENTITY_REMOVE;
+    delta.key = key;
+    storeDelta(delta);
     
     // Record this in the journal - null error on success.
     addToJournal(clientID, transactionID, oldestTransactionOnClient, EntityData.Operation.DESTROY, null, null);
@@ -227,7 +260,11 @@ public class EntityPersistor {
     Assert.assertEquals(version, val.version);
     
     this.entities.put(key, val);
-    storeToDisk(ENTITIES_ALIVE_FILE_NAME, this.entities);
+    EntityData.Delta delta = new EntityData.Delta();
+    delta.type = EntityData.DeltaType.ENTITY_PUT;
+    delta.key = key;
+    delta.value = val;
+    storeDelta(delta);
     
     // Record this in the journal.
     addToJournal(clientID, transactionID, oldestTransactionOnClient, EntityData.Operation.RECONFIGURE, previousConfiguration, null);
@@ -236,44 +273,58 @@ public class EntityPersistor {
     return previousConfiguration;
   }
 
-  public long getNextConsumerID() {
+  public synchronized long getNextConsumerID() {
     long consumerID = this.counters.get(COUNTERS_CONSUMER_ID);
     this.counters.put(COUNTERS_CONSUMER_ID, new Long(consumerID + 1));
-    storeToDisk(COUNTERS_FILE_NAME, this.counters);
+    EntityData.Delta delta = new EntityData.Delta();
+    delta.type = EntityData.DeltaType.COUNTER;
+    delta.counterName = COUNTERS_CONSUMER_ID;
+    delta.counterValue = consumerID + 1;
+    storeDelta(delta);
     return consumerID;
   }
 
   public synchronized void removeTrackingForClient(ClientID sourceNodeID) {
-    this.entityLifeJournal.remove(sourceNodeID);
-  }
-
-
-  private List<JournalEntry> filterJournal(List<JournalEntry> list, long oldestTransactionOnClient) {
-    Assert.assertNotNull(list);
-    List<JournalEntry> newList = new Vector<>();
-    for (JournalEntry entry : list) {
-      if (entry.transactionID >= oldestTransactionOnClient) {
-        newList.add(entry);
-      }
+    if (null != this.entityLifeJournal.remove(sourceNodeID)) {
+      EntityData.Delta delta = new EntityData.Delta();
+      delta.type = EntityData.DeltaType.JOURNAL_REMOVE_CLIENT;
+      delta.client = sourceNodeID;
+      storeDelta(delta);
     }
-    return newList;
   }
 
+
   private synchronized void addToJournal(ClientID clientID, long transactionID, long oldestTransactionOnClient, EntityData.Operation operation, byte[] reconfigureResult, EntityException error) {
-    List<EntityData.JournalEntry> rawJournal = this.entityLifeJournal.get(clientID);
-    // Note that this may be the first time we encountered this client.
-    if (null == rawJournal) {
-      rawJournal = new Vector<>();
-    }
-    List<EntityData.JournalEntry> clientJournal = filterJournal(rawJournal, oldestTransactionOnClient);
     JournalEntry newEntry = new JournalEntry();
     newEntry.operation = operation;
     newEntry.transactionID = transactionID;
     newEntry.failure = error;
     newEntry.reconfigureResponse = reconfigureResult;
+    addJournalEntry(clientID, oldestTransactionOnClient, newEntry);
+    EntityData.Delta delta = new EntityData.Delta();
+    delta.type = EntityData.DeltaType.JOURNAL_ADD;
+    delta.client = clientID;
+    delta.oldestTransactionOnClient = oldestTransactionOnClient;
+    delta.entry = newEntry;
+    storeDelta(delta);
+  }
+
+  private void addJournalEntry(ClientID clientID, long oldestTransactionOnClient, JournalEntry newEntry) {
+    List<EntityData.JournalEntry> clientJournal = this.entityLifeJournal.get(clientID);
+    // Note that this may be the first time we encountered this client.
+    if (null == clientJournal) {
+      clientJournal = new ArrayList<>();
+      this.entityLifeJournal.put(clientID, clientJournal);
+    }
+    // Retire the entries the client will never resend, in place.
+    clientJournal.removeIf(entry -> entry.transactionID < oldestTransactionOnClient);
+    // A replayed delta may already be part of the snapshot.
+    for (JournalEntry entry : clientJournal) {
+      if (entry.transactionID == newEntry.transactionID) {
+        return;
+      }
+    }
     clientJournal.add(newEntry);
-    this.entityLifeJournal.put(clientID, clientJournal);
-    storeToDisk(JOURNAL_CONTAINER_FILE_NAME, this.entityLifeJournal);
   }
 
   private synchronized JournalEntry getEntryForTransaction(ClientID clientID, long transactionID) {
@@ -307,7 +358,11 @@ public class EntityPersistor {
     value.entityName = entityName;
     value.configuration = configuration;
     this.entities.put(key, value);
-    storeToDisk(ENTITIES_ALIVE_FILE_NAME, this.entities);
+    EntityData.Delta delta = new EntityData.Delta();
+    delta.type = EntityData.DeltaType.ENTITY_PUT;
+    delta.key = key;
+    delta.value = value;
+    storeDelta(delta);
   }
   
   public synchronized void setState(State state, Set<ConnectionID> connectedClients) {
@@ -319,7 +374,7 @@ public class EntityPersistor {
     for (ClientID client : clients) {
       this.entityLifeJournal.remove(client);
     }
-    storeToDisk(JOURNAL_CONTAINER_FILE_NAME, this.entityLifeJournal);
+    compact();
   }
   
   public synchronized void serialize(ObjectOutput bucket) throws IOException {
@@ -361,7 +416,59 @@ public class EntityPersistor {
     } catch (ClassNotFoundException cnf) {
       throw new IOException(cnf);
     }
+    // This merges whole journals so write a new snapshot instead of a delta per entry.
+    compact();
+  }
+
+  private synchronized void storeDelta(EntityData.Delta delta) {
+    storeToDisk(deltaName(this.nextDelta), delta);
+    this.nextDelta += 1;
+    if (this.nextDelta - this.deltaBase >= COMPACTION_THRESHOLD) {
+      compact();
+    }
+  }
+
+  /**
+   * Writes the maps as a new snapshot, moves the delta base past every delta written so far and deletes those deltas.
+   * A failure before the base is stored only means that those deltas are replayed over a snapshot which already
+   * includes them.
+   */
+  private synchronized void compact() {
+    storeToDisk(ENTITIES_ALIVE_FILE_NAME, this.entities);
     storeToDisk(JOURNAL_CONTAINER_FILE_NAME, this.entityLifeJournal);
+    storeToDisk(COUNTERS_FILE_NAME, this.counters);
+    long oldBase = this.deltaBase;
+    this.deltaBase = this.nextDelta;
+    storeToDisk(DELTA_BASE_NAME, this.deltaBase);
+    for (long delta = oldBase; delta < this.deltaBase; ++delta) {
+      storeToDisk(deltaName(delta), null);
+    }
+  }
+
+  private void applyDelta(EntityData.Delta delta) {
+    switch (delta.type) {
+      case ENTITY_PUT:
+        this.entities.put(delta.key, delta.value);
+        break;
+      case ENTITY_REMOVE:
+        this.entities.remove(delta.key);
+        break;
+      case JOURNAL_ADD:
+        addJournalEntry(delta.client, delta.oldestTransactionOnClient, delta.entry);
+        break;
+      case JOURNAL_REMOVE_CLIENT:
+        this.entityLifeJournal.remove(delta.client);
+        break;
+      case COUNTER:
+        this.counters.put(delta.counterName, delta.counterValue);
+        break;
+      default:
+        throw new AssertionError("unknown delta " + delta);
+    }
+  }
+
+  private static String deltaName(long sequence) {
+    return DELTA_NAME_PREFIX + sequence;
   }
 
   private void storeToDisk(String dataName, Serializable dataElement) {
@@ -18,6 +18,7 @@
  */
 package com.tc.objectserver.persistence;
 
+import java.util.Collection;
 import java.util.concurrent.Callable;
 
 import com.tc.classloader.CommonComponent;
@@ -27,5 +28,13 @@ import com.tc.classloader.CommonComponent;
  */
 @CommonComponent
 public interface FlushingWrite {
+  /**
+   * Runs a change which may touch any part of the store and persists it.
+   */
   <T> T run(Callable<T> r);
+
+  /**
+   * Runs a change which only touches the given keys so that only those keys need to be persisted.
+   */
+  <T> T runOnKeys(Collection<?> keys, Callable<T> r);
 }
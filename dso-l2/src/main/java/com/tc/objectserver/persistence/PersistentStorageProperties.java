@@ -19,6 +19,7 @@
 package com.tc.objectserver.persistence;
 
 import java.io.Serializable;
+import java.util.Collections;
 import java.util.concurrent.ConcurrentHashMap;
 
 import com.tc.classloader.CommonComponent;
@@ -39,9 +40,20 @@ public class PersistentStorageProperties extends ConcurrentHashMap<String, Strin
     this.write = write;
   }
 
+  /**
+   * Sets a value without persisting it, used when restoring the properties from storage.  A null value removes it.
+   */
+  void restore(String key, String value) {
+    if (null == value) {
+      super.remove(key);
+    } else {
+      super.put(key, value);
+    }
+  }
+
   @Override
   public synchronized String put(String key, String value) {
-    return write.run(()->PersistentStorageProperties.super.put(key, value));
+    return write.runOnKeys(Collections.singleton(key), ()->PersistentStorageProperties.super.put(key, value));
   }
   
 }
@@ -23,7 +23,9 @@ import com.tc.util.Assert;
 
 import java.io.Serializable;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
 
@@ -33,8 +35,7 @@ import org.terracotta.persistence.KeyValueStorage;
 
 /**
  * Implements a KeyValueStorage interface on top of a provided flush routine which allows all writes to be synchronized
- * into a single store.  This means that the entire store of which it is a part will be read or written, at once, which is
- * slow but also means that they represent an atomic snapshot of data.
+ * into a single store.  Each write tells the flush routine which keys it changed so that only those need to be persisted.
  * NOTE:  This is just temporary until IPersistentStorage can be fully removed.
  */
 @CommonComponent
@@ -91,7 +92,7 @@ public class SynchronizedKeyValueStorage<K, V> implements KeyValueStorage<K, V>,
 
   @Override
   public void put(K key, V value) {
-    doFlush.run(()->storage.put(key, value));
+    doFlush.runOnKeys(Collections.singleton(key), ()->storage.put(key, value));
   }
 
   @Override
@@ -101,12 +102,12 @@ public class SynchronizedKeyValueStorage<K, V> implements KeyValueStorage<K, V>,
 
   @Override
   public boolean remove(K key) {
-    return doFlush.run(()->(null != storage.remove(key)));
+    return doFlush.runOnKeys(Collections.singleton(key), ()->(null != storage.remove(key)));
   }
 
   @Override
   public void removeAll(Collection<K> keys) {
-    doFlush.run(makeCallable(()->keys.stream().forEach(key -> storage.remove(key))));
+    doFlush.runOnKeys(keys, makeCallable(()->keys.stream().forEach(key -> storage.remove(key))));
   }
 
   @Override
@@ -119,6 +120,31 @@ public class SynchronizedKeyValueStorage<K, V> implements KeyValueStorage<K, V>,
     return storage.values();
   }
 
+  /**
+   * Returns a copy of the contents, used when persisting a change to the whole map.
+   */
+  HashMap<K, V> copyContents() {
+    return new HashMap<>(storage);
+  }
+
+  /**
+   * Applies a persisted change without flushing it again, used when restoring the map from storage.
+   */
+  @SuppressWarnings("unchecked")
+  void restore(Object key, Object value, boolean removed) {
+    if (removed) {
+      storage.remove(key);
+    } else {
+      storage.put((K) key, (V) value);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  void restoreContents(Map<?, ?> contents) {
+    storage.clear();
+    storage.putAll((Map<K, V>) contents);
+  }
+
   private static Callable<Void> makeCallable(Runnable r) {
     return ()-> { r.run(); return null; };
   }
@@ -33,6 +33,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 
@@ -66,15 +67,32 @@ public class TransactionOrderPersistor {
       // We don't expect this during startup so just throw it as runtime.
       throw new RuntimeException("Failure reading TransactionOrderPersistor count file", e);
     }
-    this.receivedTransactionCount = (null != receivedTransactionCount) ? receivedTransactionCount : new Long(0L);
+    this.receivedTransactionCount = (null != receivedTransactionCount) ? receivedTransactionCount : Long.valueOf(0L);
   }
 
   /**
    * Called to handle the changes to persisted transactions, based on a new one.
    * This new transactionID will be enqueued as the most recent transaction for the given source but also globally.
    * Any transactions for this source which are older than oldestTransactionOnClient will be removed from persistence.
+   * Blocks until the new ordering information is durable.
    */
-  public synchronized void updateWithNewMessage(ClientID source, TransactionID transactionID, TransactionID oldestTransactionOnClient) {
+  public void updateWithNewMessage(ClientID source, TransactionID transactionID, TransactionID oldestTransactionOnClient) {
+    Future<Void> syncFuture = updateWithNewMessageAsync(source, transactionID, oldestTransactionOnClient);
+    try {
+      syncFuture.get();
+    } catch (InterruptedException e) {
+      Assert.fail(e.getLocalizedMessage());
+    } catch (ExecutionException e) {
+      Assert.fail(e.getLocalizedMessage());
+    }
+  }
+
+  /**
+   * The same as {@link #updateWithNewMessage(ClientID, TransactionID, TransactionID)} but returns as soon as the new
+   * transaction has been placed in the global order, without waiting for the underlying storage to sync it.  Callers
+   * must not report the transaction as complete before the returned future completes.
+   */
+  public synchronized CompletableFuture<Void> updateWithNewMessageAsync(ClientID source, TransactionID transactionID, TransactionID oldestTransactionOnClient) {
     // We need to ensure that the arguments are sane.
     if ((null == oldestTransactionOnClient) || (null == transactionID)) {
       throw new IllegalArgumentException("Transactions cannot be null");
@@ -89,9 +107,10 @@ public class TransactionOrderPersistor {
     // Make sure we have tracking for this client.
     this.clientNodeIDs.add(source.toLong());
     
-    // Increment the number of received transactions.
+    // Increment the number of received transactions.  The count is written through every time since it is also the
+    // election weight, and the trimmed sequences can't recover it after a restart.
     this.receivedTransactionCount += 1;
-    storeToDisk(RECEIVED_TRANSACTION_COUNT_FILE_NAME, this.receivedTransactionCount);
+    CompletableFuture<Void> countSynced = storeCount();
     
     // Create the new pair.
     IPlatformPersistence.SequenceTuple transaction = new IPlatformPersistence.SequenceTuple();
@@ -99,18 +118,39 @@ public class TransactionOrderPersistor {
     transaction.globalSequenceID = this.receivedTransactionCount;
     
     // We now pass this straight into the underlying storage.
+    CompletableFuture<Void> synced = CompletableFuture.completedFuture(null);
     if (!source.isNull()) {
       Future<Void> syncFuture = this.storageManager.fastStoreSequence(source.toLong(), transaction, oldestTransactionOnClient.toLong());
-    
-    // TODO:  We need to float this future blocking on the sync further out.
+      if (syncFuture instanceof CompletableFuture) {
+        synced = (CompletableFuture<Void>) syncFuture;
+      } else {
+        // Storage which doesn't expose completion can only be waited on.
+        try {
+          syncFuture.get();
+        } catch (InterruptedException e) {
+          Assert.fail(e.getLocalizedMessage());
+        } catch (ExecutionException e) {
+          Assert.fail(e.getLocalizedMessage());
+        }
+      }
+    }
+    return CompletableFuture.allOf(countSynced, synced);
+  }
+
+  /**
+   * Writes the count without waiting for the sync where the storage allows it, so the caller only waits once, on the
+   * returned future, for both the count and the ordering record.
+   */
+  private CompletableFuture<Void> storeCount() {
+    if (this.storageManager instanceof DurablePlatformPersistentStorage) {
       try {
-        syncFuture.get();
-      } catch (InterruptedException e) {
-        Assert.fail(e.getLocalizedMessage());
-      } catch (ExecutionException e) {
-        Assert.fail(e.getLocalizedMessage());
+        return ((DurablePlatformPersistentStorage) this.storageManager).fastStoreDataElement(RECEIVED_TRANSACTION_COUNT_FILE_NAME, this.receivedTransactionCount);
+      } catch (IOException e) {
+        throw new RuntimeException("Failure storing TransactionOrderPersistor data", e);
       }
     }
+    storeToDisk(RECEIVED_TRANSACTION_COUNT_FILE_NAME, this.receivedTransactionCount);
+    return CompletableFuture.completedFuture(null);
   }
 
   /**
@@ -160,6 +200,10 @@ public class TransactionOrderPersistor {
         } catch (IOException e) {
           Assert.fail(e.getLocalizedMessage());
         }
+        if (null == transactions) {
+          // Nothing has been stored for this client.
+          continue;
+        }
         for (IPlatformPersistence.SequenceTuple tuple : transactions) {
           ClientTransaction transaction = new ClientTransaction();
           transaction.clientID = clientID;
@@ -0,0 +1,421 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.objectserver.persistence;
+
+import com.tc.logging.TCLogger;
+import com.tc.logging.TCLogging;
+import com.tc.stats.FlightRecorder;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+
+/**
+ * A write-ahead log over preallocated, memory-mapped segment files with a checkpoint taken every time a segment fills.
+ * <p>
+ * Each record is written as its length, a CRC32 of its payload and the payload itself.  Segments are zero filled
+ * when they are created so a zero length marks the end of the log and a bad CRC marks a torn write, which ends
+ * recovery.  When a segment cannot hold the next record, it is forced to disk, a new segment is started and the owner
+ * writes a checkpoint of its complete state.  The checkpoint records the first segment it does not cover, so every older
+ * segment can be deleted.
+ * <p>
+ * Syncs are group committed:  a single flusher thread forces the mapped segment and completes every future waiting on
+ * a record written before the force began.  If a force fails, nothing written since the last good one can be trusted
+ * to be on disk, so every waiting future is failed and so is every later append.
+ * <p>
+ * NOTE:  this class does not synchronize on its own.  All calls must be made holding the lock given to the constructor
+ * and the owner must append a record before applying the change it describes, so that a checkpoint taken during the
+ * append never already contains the change.
+ */
+class WriteAheadLog implements Closeable {
+  private static final TCLogger LOGGER = TCLogging.getLogger(WriteAheadLog.class);
+
+  interface Checkpoint {
+    void write(DataOutputStream out) throws IOException;
+  }
+
+  interface Recovery {
+    void loadCheckpoint(DataInputStream in) throws IOException;
+
+    void replay(ByteBuffer record) throws IOException;
+  }
+
+  static final String CHECKPOINT_FILE = "checkpoint";
+  private static final String SEGMENT_PREFIX = "wal-";
+  private static final String SEGMENT_SUFFIX = ".seg";
+  private static final int SEGMENT_MAGIC = 0x57414c31;
+  private static final int SEGMENT_HEADER_SIZE = 12;
+  private static final int RECORD_HEADER_SIZE = 8;
+  private static final int ZERO_FILL_CHUNK = 64 * 1024;
+
+  private final File directory;
+  private final int segmentSize;
+  private final Object lock;
+  private final Checkpoint checkpoint;
+  private final ExecutorService flusher;
+  private final CRC32 crc = new CRC32();
+  private final ArrayDeque<PendingSync> pending = new ArrayDeque<>();
+  private final int flightName;
+
+  private long segmentId;
+  private MappedByteBuffer segment;
+//  logical positions, in bytes appended since this log was opened
+  private long written;
+  private long forced;
+  private boolean flushScheduled;
+//  set once a force has failed, after which the log accepts nothing more
+  private IOException failure;
+
+  WriteAheadLog(File directory, int segmentSize, Object lock, Checkpoint checkpoint) {
+    this.directory = directory;
+    this.segmentSize = segmentSize;
+    this.lock = lock;
+    this.checkpoint = checkpoint;
+    this.flightName = FlightRecorder.getInstance().name("wal:" + directory.getName());
+    this.flusher = Executors.newSingleThreadExecutor(r -> {
+      Thread thread = new Thread(r, "WAL flusher - " + directory.getName());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Loads the last checkpoint and replays every intact record written after it, then starts a new segment.
+   */
+  void recover(Recovery recovery) throws IOException {
+    File checkpointFile = new File(directory, CHECKPOINT_FILE);
+    long firstSegment = 0;
+    if (checkpointFile.exists()) {
+      try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(checkpointFile)))) {
+        firstSegment = in.readLong();
+        recovery.loadCheckpoint(in);
+      }
+    }
+    long last = firstSegment - 1;
+    boolean torn = false;
+    for (long id : listSegments()) {
+      if (id < firstSegment || torn) {
+        deleteSegment(id);
+      } else {
+        torn = !replaySegment(id, recovery);
+        last = id;
+      }
+    }
+    startSegment(Math.max(last + 1, firstSegment), segmentSize);
+    writeCheckpoint();
+  }
+
+  /**
+   * @return a future completed once the record is on disk, or null if {@code sync} is false
+   */
+  CompletableFuture<Void> append(byte[] payload, boolean sync) throws IOException {
+    if (failure != null) {
+      throw new IOException("write-ahead log in " + directory + " failed to sync", failure);
+    }
+    int needed = RECORD_HEADER_SIZE + payload.length;
+    if (segment.remaining() < needed) {
+      roll(needed);
+    }
+    crc.reset();
+    crc.update(payload, 0, payload.length);
+    segment.putInt(payload.length);
+    segment.putInt((int) crc.getValue());
+    segment.put(payload);
+    written += needed;
+    if (!sync) {
+      return null;
+    }
+    CompletableFuture<Void> future = new CompletableFuture<>();
+    pending.add(new PendingSync(written, future));
+    if (!flushScheduled) {
+      flushScheduled = true;
+      flusher.execute(this::flush);
+    }
+    return future;
+  }
+
+  long getSegmentId() {
+    return segmentId;
+  }
+
+  File getDirectory() {
+    return directory;
+  }
+
+  @Override
+  public void close() throws IOException {
+    List<CompletableFuture<Void>> done = new ArrayList<>();
+    List<CompletableFuture<Void>> lost = new ArrayList<>();
+    IOException closeFailure = null;
+    synchronized (lock) {
+      if (failure != null) {
+        closeFailure = failure;
+      } else if (segment != null) {
+        try {
+          force(segment);
+          forced = written;
+          drainForced(done);
+        } catch (Throwable t) {
+          closeFailure = fail(t, lost);
+        }
+      }
+    }
+    complete(done);
+    fail(lost, closeFailure);
+    flusher.shutdown();
+    try {
+      flusher.awaitTermination(10, TimeUnit.SECONDS);
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+    }
+    if (closeFailure != null) {
+      throw closeFailure;
+    }
+  }
+
+  private void flush() {
+    MappedByteBuffer target;
+    long upTo;
+    synchronized (lock) {
+      flushScheduled = false;
+      target = segment;
+      upTo = written;
+    }
+//  force outside the lock so appends can continue and be picked up by the next flush
+    FlightRecorder.getInstance().record(FlightRecorder.Event.PERSIST_FLUSH_BEGIN, flightName, upTo, 0);
+    Throwable forceFailure = null;
+    try {
+      force(target);
+    } catch (Throwable t) {
+      forceFailure = t;
+    }
+    FlightRecorder.getInstance().record(FlightRecorder.Event.PERSIST_FLUSH_END, flightName, upTo, 0);
+    List<CompletableFuture<Void>> done = new ArrayList<>();
+    IOException failed = null;
+    synchronized (lock) {
+      if (forceFailure != null) {
+        failed = fail(forceFailure, done);
+      } else {
+        forced = Math.max(forced, upTo);
+        drainForced(done);
+      }
+    }
+    if (failed != null) {
+      fail(done, failed);
+    } else {
+      complete(done);
+    }
+  }
+
+  /**
+   * Forces the segment to disk.  Overridden by tests to simulate a failing device.
+   */
+  void force(MappedByteBuffer target) {
+    target.force();
+  }
+
+  /**
+   * Records a failed force and hands back every future still waiting, which can never be completed normally.  Must be
+   * called holding the lock.
+   */
+  private IOException fail(Throwable cause, List<CompletableFuture<Void>> waiting) {
+    if (failure == null) {
+      failure = (cause instanceof IOException) ? (IOException) cause : new IOException(cause);
+      LOGGER.error("failed to sync write-ahead log in " + directory, cause);
+    }
+    while (!pending.isEmpty()) {
+      waiting.add(pending.poll().future);
+    }
+    return failure;
+  }
+
+  private static void fail(List<CompletableFuture<Void>> waiting, IOException failure) {
+    for (CompletableFuture<Void> future : waiting) {
+      future.completeExceptionally(failure);
+    }
+  }
+
+  private void drainForced(List<CompletableFuture<Void>> done) {
+    while (!pending.isEmpty() && pending.peek().position <= forced) {
+      done.add(pending.poll().future);
+    }
+  }
+
+  private static void complete(List<CompletableFuture<Void>> done) {
+    for (CompletableFuture<Void> future : done) {
+      future.complete(null);
+    }
+  }
+
+  private void roll(int needed) throws IOException {
+    FlightRecorder.getInstance().record(FlightRecorder.Event.PERSIST_FLUSH_BEGIN, flightName, written, 0);
+    List<CompletableFuture<Void>> done = new ArrayList<>();
+    try {
+      force(segment);
+    } catch (Throwable t) {
+      IOException failed = fail(t, done);
+      fail(done, failed);
+      throw failed;
+    } finally {
+      FlightRecorder.getInstance().record(FlightRecorder.Event.PERSIST_FLUSH_END, flightName, written, 0);
+    }
+    forced = written;
+    drainForced(done);
+    complete(done);
+    startSegment(segmentId + 1, Math.max(segmentSize, SEGMENT_HEADER_SIZE + needed));
+    writeCheckpoint();
+  }
+
+  private void startSegment(long id, int size) throws IOException {
+    File file = segmentFile(id);
+    try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+      FileChannel channel = raf.getChannel();
+//  write the zeros now so that forcing the mapped buffer never has to allocate blocks
+      ByteBuffer zeros = ByteBuffer.allocate(ZERO_FILL_CHUNK);
+      long position = 0;
+      while (position < size) {
+        zeros.clear();
+        zeros.limit((int) Math.min(ZERO_FILL_CHUNK, size - position));
+        position += channel.write(zeros, position);
+      }
+      channel.force(true);
+      this.segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+    this.segmentId = id;
+    this.segment.putInt(SEGMENT_MAGIC);
+    this.segment.putLong(id);
+  }
+
+  private void writeCheckpoint() throws IOException {
+    File target = new File(directory, CHECKPOINT_FILE);
+    File temp = new File(directory, CHECKPOINT_FILE + ".tmp");
+    try (FileOutputStream file = new FileOutputStream(temp)) {
+      DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file));
+      out.writeLong(segmentId);
+      checkpoint.write(out);
+      out.flush();
+      file.getFD().sync();
+    }
+    Files.move(temp.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    for (long id : listSegments()) {
+      if (id < segmentId) {
+        deleteSegment(id);
+      }
+    }
+  }
+
+  private boolean replaySegment(long id, Recovery recovery) throws IOException {
+    ByteBuffer buffer;
+    try (RandomAccessFile raf = new RandomAccessFile(segmentFile(id), "r")) {
+      buffer = ByteBuffer.allocate((int) raf.length());
+      FileChannel channel = raf.getChannel();
+      while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+        // keep reading
+      }
+      buffer.flip();
+    }
+    if (buffer.remaining() < SEGMENT_HEADER_SIZE || buffer.getInt() != SEGMENT_MAGIC || buffer.getLong() != id) {
+      LOGGER.warn("ignoring write-ahead log segment with a bad header " + segmentFile(id));
+      return false;
+    }
+    while (buffer.remaining() >= RECORD_HEADER_SIZE) {
+      int length = buffer.getInt();
+      int expected = buffer.getInt();
+      if (length == 0) {
+        return true;
+      } else if (length < 0 || length > buffer.remaining()) {
+        LOGGER.warn("torn record at the end of write-ahead log segment " + segmentFile(id));
+        return false;
+      }
+      ByteBuffer record = buffer.slice();
+      record.limit(length);
+      crc.reset();
+      crc.update(buffer.array(), buffer.arrayOffset() + buffer.position(), length);
+      if ((int) crc.getValue() != expected) {
+        LOGGER.warn("torn record at the end of write-ahead log segment " + segmentFile(id));
+        return false;
+      }
+      buffer.position(buffer.position() + length);
+      recovery.replay(record);
+    }
+    return true;
+  }
+
+  private List<Long> listSegments() {
+    List<Long> ids = new ArrayList<>();
+    String[] names = directory.list();
+    if (names != null) {
+      for (String name : names) {
+        if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+          try {
+            ids.add(Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+          } catch (NumberFormatException notOurs) {
+            // ignore
+          }
+        }
+      }
+    }
+    Collections.sort(ids);
+    return ids;
+  }
+
+  private void deleteSegment(long id) {
+    File file = segmentFile(id);
+//  on some platforms a file cannot be deleted while mapped, it will be cleaned up on the next recovery
+    if (!file.delete() && file.exists()) {
+      LOGGER.debug("unable to delete write-ahead log segment " + file);
+    }
+  }
+
+  private File segmentFile(long id) {
+    return new File(directory, String.format("%s%016d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+  }
+
+  private static class PendingSync {
+    private final long position;
+    private final CompletableFuture<Void> future;
+
+    PendingSync(long position, CompletableFuture<Void> future) {
+      this.position = position;
+      this.future = future;
+    }
+  }
+}
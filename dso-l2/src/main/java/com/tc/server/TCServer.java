@@ -102,4 +102,8 @@ public interface TCServer extends StateChangeListener {
 
   String getResourceState();
 
+  String getRequestLatencyReport();
+
+  byte[] getFlightRecording();
+
 }
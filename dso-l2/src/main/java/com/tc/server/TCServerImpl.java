@@ -21,6 +21,8 @@ package com.tc.server;
 import org.apache.commons.io.IOUtils;
 
 import com.tc.async.api.SEDA;
+import com.tc.bytes.SlabAllocatorMBean;
+import com.tc.bytes.TCByteBufferFactory;
 import com.tc.config.schema.ActiveServerGroupConfig;
 import com.tc.config.schema.CommonL2Config;
 import com.tc.config.schema.L2Info;
@@ -53,6 +55,7 @@ import com.tc.objectserver.core.impl.ServerManagementContext;
 import com.tc.objectserver.impl.DistributedObjectServer;
 import com.tc.operatorevent.TerracottaOperatorEventHistoryProvider;
 import com.tc.stats.DSO;
+import com.tc.stats.FlightRecorder;
 import com.tc.stats.api.DSOMBean;
 import com.tc.text.StringUtils;
 import com.tc.util.Assert;
@@ -260,6 +263,33 @@ public class TCServerImpl extends SEDA<HttpConnectionContext> implements TCServe
     }
   }
 
+  /**
+   * Stops this server without exiting the VM: its listeners, connections and stages are closed and its MBeans are
+   * unregistered. Peers and clients see the same thing they would see if the process had died. Only meant for harnesses
+   * that run several servers in one VM.
+   */
+  public synchronized void halt() {
+    synchronized (this.stateLock) {
+      if (!isStarted() || this.serverState.equals(StateManager.STOP_STATE)) {
+        logger.warn("Server in incorrect state (" + serverState + ") to be halted.");
+        return;
+      }
+      setState(StateManager.STOP_STATE);
+    }
+    consoleLogger.info("Server halting...");
+    if (this.dsoServer != null) {
+      this.dsoServer.halt();
+    }
+    MBeanServer mbs = getMBeanServer();
+    try {
+      unregisterDSOMBeans(mbs);
+      unregisterServerMBeans(mbs);
+    } catch (MBeanRegistrationException | InstanceNotFoundException e) {
+      logger.warn("Could not unregister server MBeans", e);
+    }
+    notifyShutdown();
+  }
+
   @Override
   public long getStartTime() {
     return this.startTime;
@@ -416,7 +446,7 @@ public class TCServerImpl extends SEDA<HttpConnectionContext> implements TCServe
                                                                   TCServerImpl serverImpl) {
     DistributedObjectServer dso = new DistributedObjectServer(configSetupManager, getThreadGroup(), policy, this, this, securityManager);
     try {
-      registerServerMBeans(dso, ManagementFactory.getPlatformMBeanServer());
+      registerServerMBeans(dso, getMBeanServer());
     } catch (NotCompliantMBeanException | InstanceAlreadyExistsException | MBeanRegistrationException exp) {
       throw new RuntimeException(exp);
     }
@@ -435,19 +465,33 @@ public class TCServerImpl extends SEDA<HttpConnectionContext> implements TCServe
 
     ServerManagementContext mgmtContext = this.dsoServer.getManagementContext();
     ServerConfigurationContext configContext = this.dsoServer.getContext();
-    MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+    MBeanServer mBeanServer = getMBeanServer();
     registerDSOMBeans(mgmtContext, configContext, dumper, mBeanServer);
   }
   
+  /**
+   * The MBean server this server registers itself in. Harnesses that run several servers in one VM give each its own.
+   */
+  protected MBeanServer getMBeanServer() {
+    return ManagementFactory.getPlatformMBeanServer();
+  }
+
   protected void registerServerMBeans(TCDumper tcDumper, MBeanServer mBeanServer) 
       throws NotCompliantMBeanException, InstanceAlreadyExistsException, MBeanRegistrationException {
     mBeanServer.registerMBean(new TCServerInfo(this), L2MBeanNames.TC_SERVER_INFO);
     mBeanServer.registerMBean(new L2Dumper(tcDumper, mBeanServer), L2MBeanNames.DUMPER);
+    SlabAllocatorMBean bufferPool = TCByteBufferFactory.getAllocatorStats();
+    if (bufferPool != null) {
+      mBeanServer.registerMBean(bufferPool, L2MBeanNames.BUFFER_POOL);
+    }
   }
   
   protected void unregisterServerMBeans(MBeanServer mbs) throws MBeanRegistrationException, InstanceNotFoundException {
     mbs.unregisterMBean(L2MBeanNames.TC_SERVER_INFO);
     mbs.unregisterMBean(L2MBeanNames.DUMPER);
+    if (mbs.isRegistered(L2MBeanNames.BUFFER_POOL)) {
+      mbs.unregisterMBean(L2MBeanNames.BUFFER_POOL);
+    }
   }
   protected void registerDSOMBeans(ServerManagementContext mgmtContext, ServerConfigurationContext configContext, TCDumper tcDumper,
                                    MBeanServer mBeanServer) throws NotCompliantMBeanException,
@@ -532,6 +576,19 @@ public class TCServerImpl extends SEDA<HttpConnectionContext> implements TCServe
     return "";
   }
 
+  @Override
+  public String getRequestLatencyReport() {
+    if (this.dsoServer != null && this.dsoServer.getRequestLatencyStats() != null) {
+      return this.dsoServer.getRequestLatencyStats().getReport();
+    }
+    return "";
+  }
+
+  @Override
+  public byte[] getFlightRecording() {
+    return FlightRecorder.getInstance().dump();
+  }
+
   @Override
   public boolean isSecure() {
     return securityManager != null;
@@ -29,6 +29,7 @@ import com.tc.management.beans.L1MBeanNames;
 import com.tc.management.beans.L2DumperMBean;
 import com.tc.management.beans.L2MBeanNames;
 import com.tc.management.beans.TCServerInfoMBean;
+import com.tc.stats.FlightRecording;
 import com.tc.util.Conversion;
 
 import java.io.ByteArrayInputStream;
@@ -54,6 +55,7 @@ public class ClusterDumper {
   private final String           password;
 
   private static final String    FILENAME_FORMAT = "cluster-thread-dump-%s.zip";
+  private static final String    FLIGHT_FILENAME_FORMAT = "cluster-flight-recording-%s.zip";
   private static final int       ZIP_BUFFER_SIZE = 2048;
   private static final String    DEFAULT_HOST    = "localhost";
   private static final int       DEFAULT_PORT    = 9520;
@@ -73,6 +75,8 @@ public class ClusterDumper {
     commandLineBuilder.addOption("w", "password", true, "password", String.class, false);
     commandLineBuilder.addOption("d", "Take cluster state dump. Check server/client logs for the dump.", String.class,
                                  false);
+    commandLineBuilder.addOption("l", "Print server request latency histograms.", String.class, false);
+    commandLineBuilder.addOption("f", "Save server flight recordings.", String.class, false);
     commandLineBuilder.addOption("h", "help", String.class, false);
 
     commandLineBuilder.parse();
@@ -125,7 +129,11 @@ public class ClusterDumper {
     ClusterDumper dumper = new ClusterDumper(host, port, username, password);
     try {
       System.out.println("Connecting " + host + ":" + port + "...");
-      if (commandLineBuilder.hasOption('d')) {
+      if (commandLineBuilder.hasOption('l')) {
+        dumper.takeRequestLatencyReport();
+      } else if (commandLineBuilder.hasOption('f')) {
+        dumper.takeFlightRecordings();
+      } else if (commandLineBuilder.hasOption('d')) {
         dumper.takeClusterStateDump(server, client);
       } else {
         dumper.takeClusterThreadDump(server, client);
@@ -185,6 +193,91 @@ public class ClusterDumper {
     System.out.println("Zipped to " + file.getAbsolutePath());
   }
 
+  public void takeRequestLatencyReport() throws Exception {
+    ServerGroupInfo[] serverGrpInfos = getServerGroupInfo();
+    System.out.println("\nTaking Server request latency histograms.");
+    System.out.println("=========================================\n");
+    for (ServerGroupInfo serverGrpInfo : serverGrpInfos) {
+      L2Info[] members = serverGrpInfo.members();
+      for (L2Info member : members) {
+        JMXConnector jmxConnector = null;
+
+        try {
+          String hostName = member.host();
+          int jmxPort = member.jmxPort();
+          jmxConnector = CommandLineBuilder.getJMXConnector(username, password, hostName, jmxPort);
+          final MBeanServerConnection mbs = jmxConnector.getMBeanServerConnection();
+          TCServerInfoMBean mbean = MBeanServerInvocationProxy.newMBeanProxy(mbs, L2MBeanNames.TC_SERVER_INFO, TCServerInfoMBean.class,
+                                                           false);
+          System.out.println("Request latency for " + hostName + ":" + jmxPort);
+          System.out.println(mbean.getRequestLatencyReport());
+        } catch (Exception e) {
+          System.out.println((e.getCause() == null ? e.getMessage() : e.getCause().getMessage()));
+        } finally {
+          if (jmxConnector != null) {
+            try {
+              jmxConnector.close();
+            } catch (Exception e) {
+              // ignore
+            }
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Saves each server's raw flight recording (decodable later with {@link FlightRecording}) alongside its decoded
+   * timeline.
+   */
+  public void takeFlightRecordings() throws Exception {
+    ServerGroupInfo[] serverGrpInfos = getServerGroupInfo();
+    System.out.println("\nTaking Server flight recordings.");
+    System.out.println("================================\n");
+    String date = dateFormat.format(new Date());
+    File file = new File(String.format(FLIGHT_FILENAME_FORMAT, date));
+    ZipOutputStream zout = new ZipOutputStream(new FileOutputStream(file));
+    try {
+      for (ServerGroupInfo serverGrpInfo : serverGrpInfos) {
+        L2Info[] members = serverGrpInfo.members();
+        for (L2Info member : members) {
+          JMXConnector jmxConnector = null;
+
+          try {
+            String hostName = member.host();
+            int jmxPort = member.jmxPort();
+            jmxConnector = CommandLineBuilder.getJMXConnector(username, password, hostName, jmxPort);
+            final MBeanServerConnection mbs = jmxConnector.getMBeanServerConnection();
+            TCServerInfoMBean mbean = MBeanServerInvocationProxy.newMBeanProxy(mbs, L2MBeanNames.TC_SERVER_INFO,
+                                                                             TCServerInfoMBean.class, false);
+            byte[] recording = mbean.getFlightRecording();
+            String node = hostName + "/" + jmxPort;
+            zout.putNextEntry(new ZipEntry(String.format("server-%s/%s.tcfr", node, date)));
+            zout.write(recording);
+            zout.closeEntry();
+            zout.putNextEntry(new ZipEntry(String.format("server-%s/%s.log", node, date)));
+            zout.write(FlightRecording.format(FlightRecording.read(recording).getEntries()).getBytes("UTF-8"));
+            zout.closeEntry();
+            System.out.println("Flight recording taken for " + hostName + ":" + jmxPort);
+          } catch (Exception e) {
+            System.out.println((e.getCause() == null ? e.getMessage() : e.getCause().getMessage()));
+          } finally {
+            if (jmxConnector != null) {
+              try {
+                jmxConnector.close();
+              } catch (Exception e) {
+                // ignore
+              }
+            }
+          }
+        }
+      }
+    } finally {
+      zout.close();
+    }
+    System.out.println("Zipped to " + file.getAbsolutePath());
+  }
+
   private void doServerStateDumps(ServerGroupInfo[] serverGrpInfos) {
     System.out.println("\nTaking Server State dumps.");
     System.out.println("==========================\n");
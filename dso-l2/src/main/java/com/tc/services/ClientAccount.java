@@ -25,37 +25,48 @@ import com.tc.net.protocol.tcm.TCMessageType;
 import com.tc.object.EntityDescriptor;
 import com.tc.util.Assert;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Messages pushed by entities to one client. Sends are not serialized against each other: response IDs come from an
+ * atomic sequence and outstanding responses are tracked in a concurrent map, so entity threads fanning messages out to
+ * the same client only contend in the channel itself.
+ */
 public class ClientAccount {
   private final MessageChannel channel;
-  private final Map<Long, ResponseWaiter> waitingResponse = new HashMap<>();
+  private final ConcurrentMap<Long, ResponseWaiter> waitingResponse = new ConcurrentHashMap<>();
+  private final AtomicLong responseIds = new AtomicLong();
   private volatile boolean open = true;
-  private long responseId = 0;
 
   ClientAccount(MessageChannel channel) {
     this.channel = channel;
   }
 
-  synchronized ResponseWaiter send(EntityDescriptor entityDescriptor, byte[] payload) {
+  ResponseWaiter send(EntityDescriptor entityDescriptor, byte[] payload) {
     ResponseWaiter responseWaiter = new ResponseWaiter();
     if (!open) {
       responseWaiter.done();
-    } else {
-      waitingResponse.put(responseId, responseWaiter);
-      ServerEntityMessage message = (ServerEntityMessage) channel.createMessage(TCMessageType.SERVER_ENTITY_MESSAGE);
-      message.setMessage(entityDescriptor, payload, responseId++);
-      if (!message.send()) {
-        if (waitingResponse.remove(responseId, responseWaiter)) {
-          responseWaiter.done();
-        }
-      }
+      return responseWaiter;
+    }
+    long responseId = responseIds.getAndIncrement();
+    waitingResponse.put(responseId, responseWaiter);
+    // close() may have swept the waiters just before this one was added
+    if (!open) {
+      complete(responseId, responseWaiter);
+      return responseWaiter;
+    }
+    ServerEntityMessage message = (ServerEntityMessage) channel.createMessage(TCMessageType.SERVER_ENTITY_MESSAGE);
+    message.setMessage(entityDescriptor, payload, responseId);
+    if (!message.send()) {
+      complete(responseId, responseWaiter);
     }
     return responseWaiter;
   }
 
-  synchronized void sendNoResponse(EntityDescriptor entityDescriptor, byte[] payload) {
+  void sendNoResponse(EntityDescriptor entityDescriptor, byte[] payload) {
     if (open) {
       ServerEntityMessage message = (ServerEntityMessage) channel.createMessage(TCMessageType.SERVER_ENTITY_MESSAGE);
       message.setMessage(entityDescriptor, payload);
@@ -65,15 +76,17 @@ public class ClientAccount {
     }
   }
 
-  synchronized void close() {
+  void close() {
     open = false;
-    for (ResponseWaiter responseWaiter : waitingResponse.values()) {
+    for (Iterator<ResponseWaiter> i = waitingResponse.values().iterator(); i.hasNext();) {
+      ResponseWaiter responseWaiter = i.next();
+      i.remove();
       // Client closed, whether or not it received the message is not important anymore since it's gone.
       responseWaiter.done();
     }
   }
 
-  synchronized void response(long responseId) {
+  void response(long responseId) {
     if (open) {
       ResponseWaiter responseWaiter = waitingResponse.remove(responseId);
       if (responseWaiter != null) {
@@ -81,4 +94,10 @@ public class ClientAccount {
       }
     }
   }
+
+  private void complete(long responseId, ResponseWaiter responseWaiter) {
+    if (waitingResponse.remove(responseId, responseWaiter)) {
+      responseWaiter.done();
+    }
+  }
 }
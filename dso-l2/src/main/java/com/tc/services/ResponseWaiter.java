@@ -18,16 +18,18 @@
  */
 package com.tc.services;
 
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
 /**
- *
+ * Completes when the client acknowledges a message, or leaves. Callers only get a read-only view of the completion;
+ * it can't be cancelled.
  */
 class ResponseWaiter implements Future<Void> {
-  private boolean done;
+  private final CompletableFuture<Void> completion = new CompletableFuture<>();
   private final long start = System.currentTimeMillis();
 
   @Override
@@ -41,35 +43,22 @@ class ResponseWaiter implements Future<Void> {
   }
 
   @Override
-  public synchronized boolean isDone() {
-    return done;
+  public boolean isDone() {
+    return completion.isDone();
   }
 
   @Override
-  public synchronized Void get() throws InterruptedException, ExecutionException {
-    while (!done) {
-      wait();
-    }
-    System.out.println("returning " + this);
-    return null;
+  public Void get() throws InterruptedException, ExecutionException {
+    return completion.get();
   }
 
   @Override
-  public synchronized Void get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
-    long timeoutTime = unit.toNanos(timeout) + System.nanoTime();
-    while (!done) {
-      long waitTime = TimeUnit.NANOSECONDS.toMillis(timeoutTime - System.nanoTime());
-      if (waitTime <= 0) {
-        throw new TimeoutException();
-      }
-      wait(waitTime);
-    }
-    return null;
+  public Void get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+    return completion.get(timeout, unit);
   }
 
-  synchronized void done() {
-    done = true;
-    notifyAll();
+  void done() {
+    completion.complete(null);
   }
 
   @Override
@@ -31,6 +31,8 @@ import com.tc.object.net.DSOChannelManagerMBean;
 import com.tc.objectserver.api.ObjectInstanceMonitorMBean;
 import com.tc.objectserver.core.api.ServerConfigurationContext;
 import com.tc.objectserver.core.impl.ServerManagementContext;
+import com.tc.objectserver.entity.EntityConcurrencyStats;
+import com.tc.objectserver.entity.RequestLatencyStats;
 import com.tc.objectserver.locks.LockMBean;
 import com.tc.objectserver.locks.LockManagerMBean;
 import com.tc.operatorevent.TerracottaOperatorEvent;
@@ -88,6 +90,8 @@ public class DSO extends AbstractNotifyingMBean implements DSOMBean {
   private final TerracottaOperatorEventHistoryProvider operatorEventHistoryProvider;
   private final ConnectionPolicy                       connectionPolicy;
   private final RemoteManagement                       remoteManagement;
+  private final RequestLatencyStats                    requestLatencyStats;
+  private final EntityConcurrencyStats                 entityConcurrencyStats;
 
   public DSO(ServerManagementContext managementContext, ServerConfigurationContext configContext,
              MBeanServer mbeanServer,
@@ -107,6 +111,8 @@ public class DSO extends AbstractNotifyingMBean implements DSOMBean {
     this.operatorEventHistoryProvider = operatorEventHistoryProvider;
     this.connectionPolicy = managementContext.getConnectionPolicy();
     this.remoteManagement = managementContext.getRemoteManagement();
+    this.requestLatencyStats = managementContext.getRequestLatencyStats();
+    this.entityConcurrencyStats = managementContext.getEntityConcurrencyStats();
 
     // add various listeners (do this before the setupXXX() methods below so we don't ever miss anything)
     channelMgr.addEventListener(new ChannelManagerListener());
@@ -673,4 +679,28 @@ public class DSO extends AbstractNotifyingMBean implements DSOMBean {
   public RemoteManagement getRemoteManagement() {
     return remoteManagement;
   }
+
+  @Override
+  public Map<String, Map<String, Long>> getRequestLatencyHistograms() {
+    return (this.requestLatencyStats != null) ? this.requestLatencyStats.getHistograms() : new HashMap<String, Map<String, Long>>();
+  }
+
+  @Override
+  public void resetRequestLatencyHistograms() {
+    if (this.requestLatencyStats != null) {
+      this.requestLatencyStats.reset();
+    }
+  }
+
+  @Override
+  public Map<String, Map<String, Long>> getEntityConcurrencyStatistics() {
+    return (this.entityConcurrencyStats != null) ? this.entityConcurrencyStats.getStatistics() : new HashMap<String, Map<String, Long>>();
+  }
+
+  @Override
+  public void resetEntityConcurrencyStatistics() {
+    if (this.entityConcurrencyStats != null) {
+      this.entityConcurrencyStats.reset();
+    }
+  }
 }
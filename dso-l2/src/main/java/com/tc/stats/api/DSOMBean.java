@@ -107,4 +107,20 @@ public interface DSOMBean extends Stats, TerracottaMBean {
 
   RemoteManagement getRemoteManagement();
 
+  /**
+   * Latency percentiles in microseconds for each stage an entity request passes through, keyed by
+   * "entity class/stage".
+   */
+  Map<String, Map<String, Long>> getRequestLatencyHistograms();
+
+  void resetRequestLatencyHistograms();
+
+  /**
+   * Per entity request counts by concurrency key, request queue collisions with other entities and the time spent
+   * stalled behind MANAGEMENT_KEY flushes, keyed by "entity class:entity name".
+   */
+  Map<String, Map<String, Long>> getEntityConcurrencyStatistics();
+
+  void resetEntityConcurrencyStatistics();
+
 }
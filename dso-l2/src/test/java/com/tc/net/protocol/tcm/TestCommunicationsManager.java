@@ -24,6 +24,7 @@ import com.tc.net.core.ConnectionAddressProvider;
 import com.tc.net.core.TCConnectionManager;
 import com.tc.net.protocol.transport.ConnectionIDFactory;
 import com.tc.net.protocol.transport.MessageTransportFactory;
+import com.tc.net.protocol.transport.ReconnectAdmission;
 import com.tc.net.protocol.transport.WireProtocolMessageSink;
 import com.tc.object.session.SessionProvider;
 
@@ -69,6 +70,11 @@ public class TestCommunicationsManager implements CommunicationsManager {
     throw new UnsupportedOperationException();
   }
 
+  @Override
+  public void setReconnectAdmission(ReconnectAdmission reconnectAdmission) {
+    throw new UnsupportedOperationException();
+  }
+
   @Override
   public NetworkListener createListener(SessionProvider sessionProvider, TCSocketAddress addr,
                                         boolean transportDisconnectRemovesChannel,
@@ -0,0 +1,81 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.objectserver.entity;
+
+import com.tc.object.EntityID;
+import java.util.Map;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+public class EntityConcurrencyStatsTest {
+  private final EntityID foo = new EntityID("Foo", "foo");
+  private final EntityID bar = new EntityID("Bar", "bar");
+
+  @Test
+  public void testCountsRequestsPerKey() throws Exception {
+    EntityConcurrencyStats stats = new EntityConcurrencyStats(true, 4);
+    stats.scheduled(foo, 1, 1);
+    stats.scheduled(foo, 1, 1);
+    stats.scheduled(foo, 1, 1);
+    stats.scheduled(foo, 2, 2);
+
+    Map<String, Long> fooStats = stats.getStatistics().get("Foo:foo");
+    assertEquals(4L, (long)fooStats.get("requests"));
+    assertEquals(2L, (long)fooStats.get("distinctKeys"));
+    assertEquals(75L, (long)fooStats.get("hottestKeyPercent"));
+    assertEquals(3L, (long)fooStats.get("key.1"));
+    assertEquals(0L, (long)fooStats.get("queueCollisions"));
+  }
+
+  @Test
+  public void testQueueCollisions() throws Exception {
+    EntityConcurrencyStats stats = new EntityConcurrencyStats(true, 4);
+//  scheduling keys 1 and 5 both map to queue 1
+    stats.scheduled(foo, 1, 1);
+    stats.scheduled(bar, 1, 5);
+    stats.scheduled(foo, 1, 1);
+//  a request which can run on any queue never collides
+    stats.scheduled(bar, 0, null);
+
+    assertEquals(1L, (long)stats.getStatistics().get("Foo:foo").get("queueCollisions"));
+    assertEquals(1L, (long)stats.getStatistics().get("Bar:bar").get("queueCollisions"));
+  }
+
+  @Test
+  public void testFlushStalls() throws Exception {
+    EntityConcurrencyStats stats = new EntityConcurrencyStats(true, 4);
+    stats.flushed(foo, 2000);
+    stats.flushed(foo, 6000);
+
+    Map<String, Long> fooStats = stats.getStatistics().get("Foo:foo");
+    assertEquals(2L, (long)fooStats.get("flushes"));
+    assertEquals(8L, (long)fooStats.get("flushStallMicros"));
+    assertEquals(6L, (long)fooStats.get("maxFlushStallMicros"));
+  }
+
+  @Test
+  public void testDisabled() throws Exception {
+    EntityConcurrencyStats stats = new EntityConcurrencyStats(false, 4);
+    stats.scheduled(foo, 1, 1);
+    stats.flushed(foo, 1000);
+    assertTrue(stats.getStatistics().isEmpty());
+  }
+}
@@ -0,0 +1,186 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.objectserver.entity;
+
+import com.tc.objectserver.api.NonCachingMessageCodec;
+import com.tc.objectserver.api.StatelessConcurrencyStrategy;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import org.terracotta.entity.ConcurrencyStrategy;
+import org.terracotta.entity.EntityMessage;
+import org.terracotta.entity.EntityResponse;
+import org.terracotta.entity.MessageCodec;
+import org.terracotta.entity.MessageCodecException;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+
+public class MessagePayloadTest {
+
+  @Test
+  public void testDecodesOnceAcrossThreads() throws Exception {
+    CountingCodec codec = new CountingCodec();
+    MessagePayload payload = new MessagePayload(new byte[] {1}, null, 1);
+    CountDownLatch start = new CountDownLatch(1);
+    EntityMessage[] decoded = new EntityMessage[8];
+    Thread[] threads = new Thread[decoded.length];
+    for (int x = 0; x < threads.length; x++) {
+      int slot = x;
+      threads[x] = new Thread(()->{
+        try {
+          start.await();
+        } catch (InterruptedException ie) {
+          throw new RuntimeException(ie);
+        }
+        decoded[slot] = payload.decodeRawMessage(codec);
+      });
+      threads[x].start();
+    }
+    start.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(1, codec.decodes.get());
+    for (EntityMessage message : decoded) {
+      assertSame(decoded[0], message);
+    }
+    assertSame(decoded[0], payload.decodeRawMessageForInvoke(codec));
+    assertEquals(1, codec.decodes.get());
+  }
+
+  @Test
+  public void testPreDecodedMessageIsUsed() throws Exception {
+    CountingCodec codec = new CountingCodec();
+    EntityMessage message = new EntityMessage() {};
+    MessagePayload payload = new MessagePayload(new byte[] {1}, message, 1);
+    assertSame(message, payload.decodeRawMessage(codec));
+    assertSame(message, payload.decodeRawMessageForInvoke(codec));
+    assertEquals(0, codec.decodes.get());
+  }
+
+  @Test
+  public void testNonCachingCodecDecodesForInvoke() throws Exception {
+    NonCachingCodec codec = new NonCachingCodec();
+    MessagePayload payload = new MessagePayload(new byte[] {1}, null, 1);
+    EntityMessage shared = payload.decodeRawMessage(codec);
+    assertSame(shared, payload.decodeRawMessage(codec));
+    assertNotSame(shared, payload.decodeRawMessageForInvoke(codec));
+    assertEquals(2, codec.decodes.get());
+  }
+
+  @Test
+  public void testConcurrencyHintIsUsedForItsStrategy() throws Exception {
+    CountingCodec codec = new CountingCodec();
+    CountingStrategy hinted = new CountingStrategy(7);
+    MessagePayload payload = new MessagePayload(new byte[] {1}, new EntityMessage() {}, true);
+    payload.setConcurrencyHint(new MessagePayload.ConcurrencyHint(hinted, 3));
+    assertEquals(3, payload.getConcurrencyKey(hinted, codec));
+    assertEquals(0, hinted.keys.get());
+    assertEquals(0, codec.decodes.get());
+  }
+
+  @Test
+  public void testConcurrencyKeyIsComputedOncePerStrategy() throws Exception {
+    CountingCodec codec = new CountingCodec();
+    CountingStrategy stale = new CountingStrategy(7);
+    CountingStrategy current = new CountingStrategy(9);
+    MessagePayload payload = new MessagePayload(new byte[] {1}, null, true);
+    payload.setConcurrencyHint(new MessagePayload.ConcurrencyHint(stale, 3));
+    assertEquals(9, payload.getConcurrencyKey(current, codec));
+    assertEquals(9, payload.getConcurrencyKey(current, codec));
+    assertEquals(1, current.keys.get());
+    assertEquals(0, stale.keys.get());
+    assertEquals(1, codec.decodes.get());
+  }
+
+  @Test
+  public void testConcurrencyHintIsOnlyPreparedForStatelessStrategies() throws Exception {
+    EntityMessage message = new EntityMessage() {};
+    CountingStrategy stateful = new CountingStrategy(7);
+    assertNull(MessagePayload.prepareConcurrencyHint(stateful, message));
+    assertNull(MessagePayload.prepareConcurrencyHint(null, message));
+    assertEquals(0, stateful.keys.get());
+
+    StatelessStrategy stateless = new StatelessStrategy(9);
+    MessagePayload payload = new MessagePayload(new byte[] {1}, message, true);
+    payload.setConcurrencyHint(MessagePayload.prepareConcurrencyHint(stateless, message));
+    assertEquals(1, stateless.keys.get());
+    assertEquals(9, payload.getConcurrencyKey(stateless, new CountingCodec()));
+    assertEquals(1, stateless.keys.get());
+  }
+
+  private static class StatelessStrategy extends CountingStrategy implements StatelessConcurrencyStrategy<EntityMessage> {
+    StatelessStrategy(int key) {
+      super(key);
+    }
+  }
+
+  private static class CountingStrategy implements ConcurrencyStrategy<EntityMessage> {
+    final AtomicInteger keys = new AtomicInteger();
+    private final int key;
+
+    CountingStrategy(int key) {
+      this.key = key;
+    }
+
+    @Override
+    public int concurrencyKey(EntityMessage message) {
+      keys.incrementAndGet();
+      return key;
+    }
+
+    @Override
+    public Set<Integer> getKeysForSynchronization() {
+      return Collections.emptySet();
+    }
+  }
+
+  private static class CountingCodec implements MessageCodec<EntityMessage, EntityResponse> {
+    final AtomicInteger decodes = new AtomicInteger();
+
+    @Override
+    public byte[] encodeMessage(EntityMessage message) throws MessageCodecException {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public EntityMessage decodeMessage(byte[] payload) throws MessageCodecException {
+      decodes.incrementAndGet();
+      return new EntityMessage() {};
+    }
+
+    @Override
+    public byte[] encodeResponse(EntityResponse response) throws MessageCodecException {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public EntityResponse decodeResponse(byte[] payload) throws MessageCodecException {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  private static class NonCachingCodec extends CountingCodec implements NonCachingMessageCodec<EntityMessage, EntityResponse> {
+  }
+}
@@ -0,0 +1,55 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.objectserver.entity;
+
+import java.util.Map;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+public class RequestLatencyStatsTest {
+
+  @Test
+  public void testDisabledRecordsNothing() throws Exception {
+    RequestLatencyStats stats = new RequestLatencyStats(false);
+    assertEquals(0L, stats.timestamp());
+    stats.recordSince("foo", RequestLatencyStats.Phase.ENTITY_INVOKE, 1L);
+    assertTrue(stats.getHistograms().isEmpty());
+  }
+
+  @Test
+  public void testRecordsByEntityAndPhase() throws Exception {
+    RequestLatencyStats stats = new RequestLatencyStats(true);
+    long start = stats.timestamp();
+    long next = stats.recordSince("foo", RequestLatencyStats.Phase.REQUEST_QUEUE, start);
+    stats.recordSince("foo", RequestLatencyStats.Phase.ENTITY_INVOKE, next);
+    stats.recordSince("bar", RequestLatencyStats.Phase.ENTITY_INVOKE, next);
+//  a zero start means the hand-off was stamped while disabled, skip it
+    stats.recordSince("bar", RequestLatencyStats.Phase.HYDRATE, 0L);
+
+    Map<String, Map<String, Long>> histograms = stats.getHistograms();
+    assertEquals(3, histograms.size());
+    assertEquals(1L, (long)histograms.get("foo/REQUEST_QUEUE").get("count"));
+    assertEquals(1L, (long)histograms.get("bar/ENTITY_INVOKE").get("count"));
+
+    stats.reset();
+    assertTrue(stats.getHistograms().isEmpty());
+  }
+}
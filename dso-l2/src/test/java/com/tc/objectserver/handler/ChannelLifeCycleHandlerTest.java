@@ -58,7 +58,7 @@ public class ChannelLifeCycleHandlerTest {
     Stage<HydrateContext> stage = mock(Stage.class);
     when(stage.getSink()).thenReturn(mock(Sink.class));
     when(stageManager.getStage(any(String.class), (Class<HydrateContext>)any(Class.class))).thenReturn(stage);
-    this.handler = new ChannelLifeCycleHandler(commsManager, stageManager, channelManager, haConfig);
+    this.handler = new ChannelLifeCycleHandler(commsManager, stageManager, channelManager, haConfig, c -> {});
   }
 
   @After
@@ -59,12 +59,14 @@ import com.tc.util.Assert;
 import java.nio.ByteBuffer;
 import java.util.Optional;
 import java.util.Random;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Consumer;
 import org.junit.Test;
 import org.mockito.Matchers;
 import static org.mockito.Matchers.anyBoolean;
 import static org.mockito.Matchers.anyLong;
 import org.mockito.Mockito;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import org.mockito.invocation.InvocationOnMock;
@@ -92,6 +94,7 @@ public class ReplicatedTransactionHandlerTest {
   public void setUp() throws Exception {
     this.entityPersistor = mock(EntityPersistor.class);
     this.transactionOrderPersistor = mock(TransactionOrderPersistor.class);
+    when(this.transactionOrderPersistor.updateWithNewMessageAsync(Matchers.any(), Matchers.any(), Matchers.any())).thenReturn(CompletableFuture.completedFuture(null));
     this.stateManager = mock(StateManager.class);
     this.entityManager = mock(EntityManager.class);
     this.groupManager = mock(GroupManager.class);
@@ -153,9 +156,9 @@ public class ReplicatedTransactionHandlerTest {
     this.loopbackSink.addSingleThreaded(PassiveSyncMessage.createEndEntityKeyMessage(eid, 1, rand));
     this.loopbackSink.addSingleThreaded(PassiveSyncMessage.createEndEntityMessage(eid, 1));
     this.loopbackSink.addSingleThreaded(PassiveSyncMessage.createEndSyncMessage(new byte[0]));
-//  verify there was an attempt to decode the invoke message
+//  verify the invoke message was handed over without being decoded on the replication stage
     verify(msg).getExtendedData();
-    verify(entity).getCodec();
+    verify(entity, never()).getCodec();
     // Note that we want to verify 2 ACK messages:  RECEIVED and COMPLETED.
     verify(groupManager, times(2)).sendTo(Matchers.eq(sid), Matchers.any());
   }  
@@ -196,6 +199,40 @@ public class ReplicatedTransactionHandlerTest {
     verify(groupManager, times(2)).sendTo(Matchers.eq(sid), Matchers.any());
   }
   
+  @Test
+  public void testCompletedAckWaitsForOrdering() throws Exception {
+    EntityID eid = new EntityID("foo", "bar");
+    EntityDescriptor descriptor = new EntityDescriptor(eid, ClientInstanceID.NULL_ID, 1);
+    ServerID sid = new ServerID("test", "test".getBytes());
+    ManagedEntity entity = mock(ManagedEntity.class);
+    ReplicationMessage msg = mock(ReplicationMessage.class);
+    when(msg.getType()).thenReturn(ReplicationMessage.REPLICATE);
+    when(msg.getReplicationType()).thenReturn(ReplicationMessage.ReplicationType.INVOKE_ACTION);
+    when(msg.getEntityID()).thenReturn(eid);
+    when(msg.messageFrom()).thenReturn(sid);
+    when(msg.getEntityDescriptor()).thenReturn(descriptor);
+    when(msg.getSource()).thenReturn(this.source);
+    when(msg.getTransactionID()).thenReturn(new TransactionID(2));
+    when(msg.getOldestTransactionOnClient()).thenReturn(new TransactionID(1));
+    when(this.entityManager.getEntity(Matchers.any(), Matchers.anyInt())).thenReturn(Optional.of(entity));
+    CompletableFuture<Void> ordered = new CompletableFuture<>();
+    when(this.transactionOrderPersistor.updateWithNewMessageAsync(Matchers.any(), Matchers.any(), Matchers.any())).thenReturn(ordered);
+    Mockito.doAnswer(invocation->{
+      Consumer consumer = (Consumer)invocation.getArguments()[2];
+      if (consumer != null) {
+        consumer.accept(new byte[0]);
+      }
+      return null;
+    }).when(entity).addRequestMessage(Matchers.any(), Matchers.any(), Matchers.any(), Matchers.any());
+    this.loopbackSink.addSingleThreaded(PassiveSyncMessage.createStartSyncMessage());
+    this.loopbackSink.addSingleThreaded(PassiveSyncMessage.createEndSyncMessage(new byte[0]));
+    this.loopbackSink.addSingleThreaded(msg);
+    // The entity is done but the ordering record is not yet durable so only the RECEIVED ack can have gone out.
+    verify(groupManager, times(1)).sendTo(Matchers.eq(sid), Matchers.any());
+    ordered.complete(null);
+    verify(groupManager, times(2)).sendTo(Matchers.eq(sid), Matchers.any());
+  }
+  
   @Test
   public void testDestroy() throws Exception {
     this.rth.getEventHandler().destroy();
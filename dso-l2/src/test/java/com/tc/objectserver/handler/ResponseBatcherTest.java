@@ -0,0 +1,287 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.objectserver.handler;
+
+import com.tc.async.api.Sink;
+import com.tc.async.api.SpecializedEventContext;
+import com.tc.entity.VoltronEntityMultiResponse;
+import com.tc.entity.VoltronEntityMultiResponseImpl;
+import com.tc.io.TCByteBufferOutputStream;
+import com.tc.net.ClientID;
+import com.tc.net.protocol.tcm.NullMessageMonitor;
+import com.tc.net.protocol.tcm.TCMessageType;
+import com.tc.object.session.SessionID;
+import com.tc.object.tx.TransactionID;
+import com.tc.objectserver.entity.RequestLatencyStats;
+import com.tc.stats.Stats;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+
+public class ResponseBatcherTest {
+  private final ClientID                 client = new ClientID(1);
+  private final List<RecordingResponse>  sent   = new ArrayList<>();
+  private final QueueSink                sink   = new QueueSink();
+  private ResponseBatcher                batcher;
+
+  @After
+  public void tearDown() {
+    if (batcher != null) {
+      batcher.shutdown();
+    }
+  }
+
+  @Test
+  public void testAcksAddedBeforeTheFlushShareOneMessage() throws Exception {
+    batcher = create(1024, 1024 * 1024, 0);
+    batcher.addReceived(client, new TransactionID(1));
+    batcher.addResult(client, new TransactionID(1), new byte[] { 1 });
+    batcher.addRetired(client, new TransactionID(1));
+    // the first add queued a flush, the others rode along
+    assertEquals(1, sink.queue.size());
+    runFlushes();
+
+    assertEquals(1, sent.size());
+    assertEquals("received 1, result 1, retired 1", sent.get(0).replayed());
+  }
+
+  @Test
+  public void testCountLimitSplitsMessages() throws Exception {
+    batcher = create(2, 1024 * 1024, 0);
+    for (int i = 1; i <= 5; i++) {
+      batcher.addReceived(client, new TransactionID(i));
+    }
+    runFlushes();
+
+    assertEquals(3, sent.size());
+    assertEquals("received 1, received 2", sent.get(0).replayed());
+    assertEquals("received 3, received 4", sent.get(1).replayed());
+    assertEquals("received 5", sent.get(2).replayed());
+  }
+
+  @Test
+  public void testOtherMessagesKeepTheirPlace() throws Exception {
+    batcher = create(1024, 1024 * 1024, 0);
+    RecordingResponse failure = new RecordingResponse();
+    batcher.addReceived(client, new TransactionID(1));
+    batcher.addMessage(client, failure);
+    batcher.addRetired(client, new TransactionID(1));
+    runFlushes();
+
+    assertEquals(3, sent.size());
+    assertEquals("received 1", sent.get(0).replayed());
+    assertSame(failure, sent.get(1));
+    assertEquals("retired 1", sent.get(2).replayed());
+  }
+
+  @Test
+  public void testDelayedFlush() throws Exception {
+    batcher = create(3, 1024 * 1024, TimeUnit.MILLISECONDS.toMicros(50));
+    batcher.addReceived(client, new TransactionID(1));
+    // nothing is queued until the delay is up
+    assertNull(sink.queue.poll(10, TimeUnit.MILLISECONDS));
+    ResponseBatcher.ClientBatch batch = sink.queue.poll(10, TimeUnit.SECONDS);
+    assertNotNull(batch);
+    batch.sendPending();
+    assertEquals("received 1", sent.get(0).replayed());
+  }
+
+  @Test
+  public void testLimitOverridesDelay() throws Exception {
+    batcher = create(2, 1024 * 1024, TimeUnit.SECONDS.toMicros(60));
+    batcher.addReceived(client, new TransactionID(1));
+    assertEquals(0, sink.queue.size());
+    batcher.addReceived(client, new TransactionID(2));
+    assertEquals(1, sink.queue.size());
+    runFlushes();
+
+    assertEquals(1, sent.size());
+    assertEquals("received 1, received 2", sent.get(0).replayed());
+  }
+
+  @Test
+  public void testGoneClientIsDropped() throws Exception {
+    batcher = new ResponseBatcher(c -> Optional.empty(), new RequestLatencyStats(false), 1024, 1024, 0);
+    batcher.setFlushSink(sink);
+    batcher.addReceived(client, new TransactionID(1));
+    runFlushes();
+    assertEquals(0, sent.size());
+  }
+
+  @Test
+  public void testRemovedClientIsForgotten() throws Exception {
+    batcher = create(1024, 1024 * 1024, 0);
+    batcher.addReceived(client, new TransactionID(1));
+    runFlushes();
+    assertEquals(1, batcher.clientCount());
+
+    batcher.removeClient(client);
+    assertEquals(0, batcher.clientCount());
+  }
+
+  @Test
+  public void testAddBeforeTheSinkIsSetDoesNotStallTheClient() throws Exception {
+    batcher = new ResponseBatcher(c -> Optional.<VoltronEntityMultiResponse>of(new RecordingResponse()),
+        new RequestLatencyStats(false), 1024, 1024 * 1024, 0);
+    batcher.addReceived(client, new TransactionID(1));
+    batcher.setFlushSink(sink);
+    batcher.addReceived(client, new TransactionID(2));
+    assertEquals(1, sink.queue.size());
+    runFlushes();
+
+    assertEquals(1, sent.size());
+    assertEquals("received 1, received 2", sent.get(0).replayed());
+  }
+
+  @Test
+  public void testDelayedAddAfterShutdownFlushesNow() throws Exception {
+    batcher = create(3, 1024 * 1024, TimeUnit.SECONDS.toMicros(60));
+    batcher.shutdown();
+    batcher.addReceived(client, new TransactionID(1));
+    assertEquals(1, sink.queue.size());
+    runFlushes();
+
+    assertEquals("received 1", sent.get(0).replayed());
+  }
+
+  private ResponseBatcher create(int maxCount, long maxBytes, long maxDelayMicros) {
+    ResponseBatcher created = new ResponseBatcher(c -> Optional.<VoltronEntityMultiResponse>of(new RecordingResponse()),
+        new RequestLatencyStats(true), maxCount, maxBytes, maxDelayMicros);
+    created.setFlushSink(sink);
+    return created;
+  }
+
+  private void runFlushes() {
+    ResponseBatcher.ClientBatch batch;
+    while ((batch = sink.queue.poll()) != null) {
+      batch.sendPending();
+    }
+  }
+
+  private class RecordingResponse extends VoltronEntityMultiResponseImpl {
+    RecordingResponse() {
+      super(new SessionID(0), new NullMessageMonitor(), new TCByteBufferOutputStream(), null,
+          TCMessageType.VOLTRON_ENTITY_MULTI_RESPONSE);
+    }
+
+    @Override
+    public synchronized boolean send() {
+      sent.add(this);
+      return true;
+    }
+
+    String replayed() {
+      final StringBuilder out = new StringBuilder();
+      replay(new ReplayReceiver() {
+        @Override
+        public void received(long tid) {
+          append("received " + tid);
+        }
+
+        @Override
+        public void result(long tid, byte[] result) {
+          append("result " + tid);
+        }
+
+        @Override
+        public void retired(long tid) {
+          append("retired " + tid);
+        }
+
+        private void append(String ack) {
+          if (out.length() > 0) {
+            out.append(", ");
+          }
+          out.append(ack);
+        }
+      });
+      return out.toString();
+    }
+  }
+
+  private static class QueueSink implements Sink<ResponseBatcher.ClientBatch> {
+    final LinkedBlockingQueue<ResponseBatcher.ClientBatch> queue = new LinkedBlockingQueue<>();
+
+    @Override
+    public void addSingleThreaded(ResponseBatcher.ClientBatch context) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void addMultiThreaded(ResponseBatcher.ClientBatch context) {
+      queue.add(context);
+    }
+
+    @Override
+    public void addSpecialized(SpecializedEventContext specialized) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int size() {
+      return queue.size();
+    }
+
+    @Override
+    public void clear() {
+      queue.clear();
+    }
+
+    @Override
+    public void setClosed(boolean closed) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void enableStatsCollection(boolean enable) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean isStatsCollectionEnabled() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Stats getStats(long frequency) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Stats getStatsAndReset(long frequency) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void resetStats() {
+      throw new UnsupportedOperationException();
+    }
+  }
+}
@@ -90,6 +90,35 @@ public class RetirementManagerTest {
     Assert.assertEquals(2, toRetire.size());
   }
 
+  @Test
+  public void testUnregisteredDeferDoesNotForceAllStripes() throws Exception {
+    Retiree request = makeResponse();
+    EntityMessage invokeMessage = mock(EntityMessage.class);
+    registerWithMessage(request, invokeMessage, 1);
+    // the message it defers to never arrives
+    this.retirementManager.deferRetirement(invokeMessage, mock(EntityMessage.class));
+    Assert.assertEquals(0, this.retirementManager.retireForCompletion(invokeMessage).size());
+    Assert.assertEquals(0, this.retirementManager.outstandingDefers());
+
+    sendNormalMessage(2);
+    Assert.assertEquals(0, this.retirementManager.outstandingDefers());
+  }
+
+  @Test
+  public void testRegisteredDeferIsOutstandingUntilCompleted() throws Exception {
+    Retiree request = makeResponse();
+    EntityMessage invokeMessage = mock(EntityMessage.class);
+    registerWithMessage(request, invokeMessage, 1);
+    EntityMessage newMessage = mock(EntityMessage.class);
+    this.retirementManager.deferRetirement(invokeMessage, newMessage);
+    Assert.assertEquals(0, this.retirementManager.retireForCompletion(invokeMessage).size());
+
+    registerWithMessage(makeResponse(), newMessage, 2);
+    Assert.assertEquals(1, this.retirementManager.outstandingDefers());
+    Assert.assertEquals(2, this.retirementManager.retireForCompletion(newMessage).size());
+    Assert.assertEquals(0, this.retirementManager.outstandingDefers());
+  }
+
   @Test
   public void testSequenceAndDefer() throws Exception {
     int concurrencyKey = 1;
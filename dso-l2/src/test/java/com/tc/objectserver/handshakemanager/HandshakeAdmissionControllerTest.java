@@ -0,0 +1,133 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.objectserver.handshakemanager;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.tc.net.protocol.transport.ConnectionID;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+
+public class HandshakeAdmissionControllerTest {
+  private long now;
+  private HandshakeAdmissionController admission;
+
+  @Before
+  public void setUp() throws Exception {
+    this.admission = new HandshakeAdmissionController(2, 1000, 5000) {
+      @Override
+      long nanoTime() {
+        return now;
+      }
+    };
+  }
+
+  @Test
+  public void testAdmitsEverythingWhenInactive() throws Exception {
+    for (int i = 0; i < 100; ++i) {
+      assertEquals(0, this.admission.admitReconnect(mock(ConnectionID.class)));
+    }
+  }
+
+  @Test
+  public void testDefersBeyondBurst() throws Exception {
+    this.admission.activate();
+    assertEquals(0, this.admission.admitReconnect(mock(ConnectionID.class)));
+    assertEquals(0, this.admission.admitReconnect(mock(ConnectionID.class)));
+    // At the initial 1 per ms, later clients are spread out by their place in the queue.
+    long first = this.admission.admitReconnect(mock(ConnectionID.class));
+    long second = this.admission.admitReconnect(mock(ConnectionID.class));
+    assertEquals(1, first);
+    assertEquals(2, second);
+
+    // Once a token has refilled, the next one is admitted.
+    this.now += TimeUnit.MILLISECONDS.toNanos(1);
+    assertEquals(0, this.admission.admitReconnect(mock(ConnectionID.class)));
+  }
+
+  @Test
+  public void testRefillsBetweenSubMillisecondArrivals() throws Exception {
+    this.admission.activate();
+    this.admission.admitReconnect(new ConnectionID("jvm", 1));
+    this.admission.admitReconnect(new ConnectionID("jvm", 2));
+    // At 1 per ms, a token builds up over calls only 0.25ms apart.
+    int admitted = 0;
+    for (int i = 0; i < 8; ++i) {
+      this.now += TimeUnit.MICROSECONDS.toNanos(250);
+      if (0 == this.admission.admitReconnect(new ConnectionID("jvm", 10 + i))) {
+        admitted += 1;
+      }
+    }
+    assertEquals(2, admitted);
+  }
+
+  @Test
+  public void testClientsWhichGiveUpStopCounting() throws Exception {
+    this.admission.activate();
+    this.admission.admitReconnect(new ConnectionID("jvm", 1));
+    this.admission.admitReconnect(new ConnectionID("jvm", 2));
+    for (int i = 0; i < 5; ++i) {
+      this.admission.admitReconnect(new ConnectionID("jvm", 10 + i));
+    }
+    assertEquals(5, this.admission.deferredCount());
+
+    // None of them come back within twice the longest wait they could be given.
+    this.now += TimeUnit.MILLISECONDS.toNanos(10001);
+    this.admission.admitReconnect(new ConnectionID("jvm", 20));
+    assertEquals(0, this.admission.deferredCount());
+  }
+
+  @Test
+  public void testRateFollowsMeasuredHandshakes() throws Exception {
+    this.admission.activate();
+    this.admission.recordHandshake(TimeUnit.MILLISECONDS.toNanos(10));
+    this.admission.admitReconnect(mock(ConnectionID.class));
+    this.admission.admitReconnect(mock(ConnectionID.class));
+    // One handshake every 10ms means the first deferred client waits 10ms.
+    assertEquals(10, this.admission.admitReconnect(mock(ConnectionID.class)));
+  }
+
+  @Test
+  public void testRetryAfterIsCapped() throws Exception {
+    this.admission.activate();
+    this.admission.recordHandshake(TimeUnit.SECONDS.toNanos(60));
+    this.admission.admitReconnect(mock(ConnectionID.class));
+    this.admission.admitReconnect(mock(ConnectionID.class));
+    for (int i = 0; i < 10; ++i) {
+      long retryAfter = this.admission.admitReconnect(mock(ConnectionID.class));
+      assertTrue(retryAfter > 0 && retryAfter <= 5000);
+    }
+  }
+
+  @Test
+  public void testDeactivateAdmitsEverything() throws Exception {
+    this.admission.activate();
+    this.admission.admitReconnect(mock(ConnectionID.class));
+    this.admission.admitReconnect(mock(ConnectionID.class));
+    assertTrue(this.admission.admitReconnect(mock(ConnectionID.class)) > 0);
+    this.admission.deactivate();
+    assertEquals(0, this.admission.admitReconnect(mock(ConnectionID.class)));
+  }
+}
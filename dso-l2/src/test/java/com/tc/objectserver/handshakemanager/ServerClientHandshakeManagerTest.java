@@ -30,8 +30,10 @@ import com.tc.logging.TCLogger;
 import com.tc.net.ClientID;
 import com.tc.net.protocol.tcm.ChannelID;
 import com.tc.net.protocol.tcm.MessageChannel;
+import com.tc.net.protocol.tcm.TCMessageType;
 import com.tc.net.protocol.transport.ConnectionID;
 import com.tc.object.msg.ClientHandshakeMessage;
+import com.tc.object.msg.ClientHandshakeResendAckMessage;
 import com.tc.object.net.DSOChannelManager;
 import com.tc.objectserver.api.EntityManager;
 import com.tc.objectserver.entity.NoopEntityMessage;
@@ -45,8 +47,11 @@ import java.util.Timer;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -56,6 +61,7 @@ public class ServerClientHandshakeManagerTest {
   private EntityManager entityManager;
   private ProcessTransactionHandler transactionHandler;
   private ServerClientHandshakeManager manager;
+  private HandshakeAdmissionController admission;
   private Stage voltronStage;
   private Sink voltronSink;
 
@@ -73,7 +79,8 @@ public class ServerClientHandshakeManagerTest {
     voltronSink = mock(Sink.class);
     when(voltronStage.getSink()).thenReturn(voltronSink);
     when(stageManager.getStage(any(), any())).thenReturn(voltronStage);
-    this.manager = new ServerClientHandshakeManager(logger, this.channelManager, stageManager, timer, reconnectTimeout, persistent, consoleLogger);
+    this.admission = spy(new HandshakeAdmissionController(64, 200, 5000));
+    this.manager = new ServerClientHandshakeManager(logger, this.channelManager, stageManager, timer, reconnectTimeout, persistent, consoleLogger, this.admission);
   }
 
   @Test
@@ -164,6 +171,56 @@ public class ServerClientHandshakeManagerTest {
     verify(this.voltronSink).addSingleThreaded(any(NoopEntityMessage.class));
   }
 
+  @Test
+  public void testReconnectWithStreamedResends() throws Exception {
+    ClientID client1 = new ClientID(1);
+    ConnectionID connection1 = mock(ConnectionID.class);
+    when(connection1.getChannelID()).thenReturn(1L);
+    when(this.channelManager.getClientIDFor(new ChannelID(1))).thenReturn(client1);
+    this.manager.setStarting(Collections.singleton(connection1));
+    this.manager.startReconnectWindow();
+
+    // The handshake only announces the resends so the server must keep waiting for them.
+    MessageChannel messageChannel = mock(MessageChannel.class);
+    ClientHandshakeResendAckMessage ack = mock(ClientHandshakeResendAckMessage.class);
+    when(messageChannel.createMessage(TCMessageType.CLIENT_HANDSHAKE_RESEND_ACK_MESSAGE)).thenReturn(ack);
+    ClientHandshakeMessage handshake = mock(ClientHandshakeMessage.class);
+    when(handshake.getChannel()).thenReturn(messageChannel);
+    when(handshake.getSourceNodeID()).thenReturn(client1);
+    when(handshake.getStreamedResendCount()).thenReturn(2);
+    this.manager.notifyClientConnect(handshake, entityManager, transactionHandler);
+    assertTrue(this.manager.isStarting());
+
+    // The first chunk is applied and acknowledged, but doesn't start the server.
+    ResendVoltronEntityMessage resend1 = mock(ResendVoltronEntityMessage.class);
+    ClientHandshakeMessage chunk1 = mock(ClientHandshakeMessage.class);
+    when(chunk1.getChannel()).thenReturn(messageChannel);
+    when(chunk1.getSourceNodeID()).thenReturn(client1);
+    when(chunk1.getResendChunkSequence()).thenReturn(0);
+    when(chunk1.getResendMessages()).thenReturn(Collections.singleton(resend1));
+    this.manager.notifyResendChunk(chunk1, transactionHandler);
+    verify(this.transactionHandler).handleResentMessage(resend1);
+    verify(ack).initialize(0);
+    assertTrue(this.manager.isStarting());
+    verify(this.voltronSink, never()).addSingleThreaded(any(NoopEntityMessage.class));
+
+    // The last chunk completes the reconnect.
+    ResendVoltronEntityMessage resend2 = mock(ResendVoltronEntityMessage.class);
+    ClientHandshakeMessage chunk2 = mock(ClientHandshakeMessage.class);
+    when(chunk2.getChannel()).thenReturn(messageChannel);
+    when(chunk2.getSourceNodeID()).thenReturn(client1);
+    when(chunk2.getResendChunkSequence()).thenReturn(1);
+    when(chunk2.isLastResendChunk()).thenReturn(true);
+    when(chunk2.getResendMessages()).thenReturn(Collections.singleton(resend2));
+    this.manager.notifyResendChunk(chunk2, transactionHandler);
+    verify(this.transactionHandler).handleResentMessage(resend2);
+    verify(ack).initialize(1);
+    assertTrue(this.manager.isStarted());
+    verify(this.voltronSink).addSingleThreaded(any(NoopEntityMessage.class));
+    // one reconnect, however many chunks its resends came in
+    verify(this.admission, times(1)).recordHandshake(anyLong());
+  }
+
   @Test
   public void testFailedReconnects() throws Exception {
     ClientID client1 = new ClientID(1);
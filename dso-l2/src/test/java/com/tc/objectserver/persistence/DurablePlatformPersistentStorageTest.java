@@ -0,0 +1,132 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.objectserver.persistence;
+
+import com.tc.test.TCTestCase;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.terracotta.persistence.IPlatformPersistence.SequenceTuple;
+
+
+public class DurablePlatformPersistentStorageTest extends TCTestCase {
+  private static final int SMALL_SEGMENT = 4 * 1024;
+
+  private File directory;
+
+  @Override
+  public void setUp() throws Exception {
+    directory = new File(getTempDirectory(), "platform");
+  }
+
+  public void testDataElementsSurviveRestart() throws Exception {
+    DurablePlatformPersistentStorage storage = new DurablePlatformPersistentStorage(directory, SMALL_SEGMENT);
+    storage.storeDataElement("one", "first");
+    storage.storeDataElement("two", 2L);
+    storage.storeDataElement("one", "replaced");
+    storage.storeDataElement("two", null);
+    storage.close();
+
+    storage = new DurablePlatformPersistentStorage(directory, SMALL_SEGMENT);
+    assertEquals("replaced", storage.loadDataElement("one"));
+    assertNull(storage.loadDataElement("two"));
+    assertEquals("replaced", storage.loadDataElementInLoader("one", getClass().getClassLoader()));
+    storage.close();
+  }
+
+  public void testSequencesSurviveSegmentRolls() throws Exception {
+    DurablePlatformPersistentStorage storage = new DurablePlatformPersistentStorage(directory, SMALL_SEGMENT);
+    List<Future<Void>> futures = new ArrayList<>();
+//  enough appends to roll the small segment several times
+    for (long i = 0; i < 1000; ++i) {
+      futures.add(storage.fastStoreSequence(i % 2, tuple(i, i + 1), i - 10));
+    }
+    storage.fastStoreSequence(7, tuple(1, 1), 0);
+    storage.deleteSequence(7);
+    for (Future<Void> future : futures) {
+      future.get(10, TimeUnit.SECONDS);
+    }
+    storage.close();
+    assertTrue(segmentCount() <= 2);
+
+    storage = new DurablePlatformPersistentStorage(directory, SMALL_SEGMENT);
+    List<SequenceTuple> even = storage.loadSequence(0);
+    assertEquals(6, even.size());
+    assertEquals(988, even.get(0).localSequenceID);
+    assertEquals(999, even.get(5).globalSequenceID);
+    assertEquals(6, storage.loadSequence(1).size());
+    assertNull(storage.loadSequence(7));
+    assertNull(storage.loadSequence(3));
+    storage.close();
+  }
+
+  public void testTornTailIsDiscarded() throws Exception {
+    DurablePlatformPersistentStorage storage = new DurablePlatformPersistentStorage(directory, SMALL_SEGMENT);
+    storage.fastStoreSequence(1, tuple(1, 1), 0).get();
+    storage.fastStoreSequence(1, tuple(2, 2), 0).get();
+    storage.close();
+
+//  corrupt the payload of the last record in the current segment
+    File segment = lastSegment();
+    try (RandomAccessFile raf = new RandomAccessFile(segment, "rw")) {
+      long position = 12 + 2 * (8 + 33) - 1;
+      raf.seek(position);
+      int value = raf.read();
+      raf.seek(position);
+      raf.write(value ^ 0xff);
+    }
+
+    storage = new DurablePlatformPersistentStorage(directory, SMALL_SEGMENT);
+    List<SequenceTuple> sequence = storage.loadSequence(1);
+    assertEquals(1, sequence.size());
+    assertEquals(1, sequence.get(0).localSequenceID);
+    storage.fastStoreSequence(1, tuple(3, 3), 0).get();
+    storage.close();
+
+    storage = new DurablePlatformPersistentStorage(directory, SMALL_SEGMENT);
+    assertEquals(2, storage.loadSequence(1).size());
+    storage.close();
+  }
+
+  private int segmentCount() {
+    return directory.list((dir, name) -> name.endsWith(".seg")).length;
+  }
+
+  private File lastSegment() {
+    File last = null;
+    for (File file : directory.listFiles((dir, name) -> name.endsWith(".seg"))) {
+      if (null == last || file.getName().compareTo(last.getName()) > 0) {
+        last = file;
+      }
+    }
+    return last;
+  }
+
+  private static SequenceTuple tuple(long local, long global) {
+    SequenceTuple tuple = new SequenceTuple();
+    tuple.localSequenceID = local;
+    tuple.globalSequenceID = global;
+    return tuple;
+  }
+}
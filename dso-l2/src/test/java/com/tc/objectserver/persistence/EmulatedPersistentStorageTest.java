@@ -0,0 +1,180 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.objectserver.persistence;
+
+import com.tc.test.TCTestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.terracotta.persistence.IPersistentStorage;
+import org.terracotta.persistence.KeyValueStorage;
+
+
+public class EmulatedPersistentStorageTest extends TCTestCase {
+  private final List<String> written = new ArrayList<>();
+  private NullPlatformPersistentStorage recordingStorage;
+
+  @Override
+  public void setUp() {
+    this.recordingStorage = new NullPlatformPersistentStorage() {
+      @Override
+      public void storeDataElement(String name, Serializable element) throws IOException {
+        written.add(name);
+        super.storeDataElement(name, element);
+      }
+    };
+  }
+
+  /**
+   * Test that each write only persists a delta batch, not the combined store.
+   */
+  public void testWritesPersistDeltas() throws IOException {
+    EmulatedPersistentStorage storage = new EmulatedPersistentStorage(this.recordingStorage);
+    storage.create();
+    KeyValueStorage<String, Long> counters = storage.getKeyValueStorage("counters", String.class, Long.class);
+    this.written.clear();
+    counters.put("a", 1L);
+    counters.put("b", 2L);
+    counters.remove("a");
+    storage.getProperties().put("version", "1");
+    Assert.assertEquals(Arrays.asList("IPersistenceStorage.delta.1", "IPersistenceStorage.delta.2",
+        "IPersistenceStorage.delta.3", "IPersistenceStorage.delta.4"), this.written);
+  }
+
+  /**
+   * Test that writes made inside a transaction are only persisted, as one batch, when the outermost transaction commits.
+   */
+  public void testTransactionDefersWrites() throws IOException {
+    EmulatedPersistentStorage storage = new EmulatedPersistentStorage(this.recordingStorage);
+    storage.create();
+    KeyValueStorage<String, Long> counters = storage.getKeyValueStorage("counters", String.class, Long.class);
+    this.written.clear();
+    IPersistentStorage.Transaction outer = storage.begin();
+    IPersistentStorage.Transaction inner = storage.begin();
+    counters.put("a", 1L);
+    counters.put("b", 2L);
+    inner.commit();
+    counters.put("c", 3L);
+    Assert.assertTrue(this.written.isEmpty());
+    outer.commit();
+    Assert.assertEquals(Arrays.asList("IPersistenceStorage.delta.1"), this.written);
+  }
+
+  /**
+   * Test that an open transaction only holds back the writes of the thread which began it.
+   */
+  public void testTransactionDoesNotHoldOtherThreads() throws Exception {
+    EmulatedPersistentStorage storage = new EmulatedPersistentStorage(this.recordingStorage);
+    storage.create();
+    KeyValueStorage<String, Long> counters = storage.getKeyValueStorage("counters", String.class, Long.class);
+    this.written.clear();
+    IPersistentStorage.Transaction transaction = storage.begin();
+    counters.put("a", 1L);
+    Thread other = new Thread(()->counters.put("b", 2L));
+    other.start();
+    other.join();
+    Assert.assertEquals(Arrays.asList("IPersistenceStorage.delta.1"), this.written);
+    transaction.commit();
+    Assert.assertEquals(Arrays.asList("IPersistenceStorage.delta.1", "IPersistenceStorage.delta.2"), this.written);
+  }
+
+  /**
+   * Test that aborting a transaction discards its writes and leaves later writes unaffected.
+   */
+  public void testAbortRestoresReplacedValues() throws Exception {
+    File directory = new File(getTempDirectory(), "aborted");
+    DurablePlatformPersistentStorage platform = new DurablePlatformPersistentStorage(directory, 64 * 1024);
+    EmulatedPersistentStorage storage = new EmulatedPersistentStorage(platform);
+    storage.create();
+    KeyValueStorage<String, Long> counters = storage.getKeyValueStorage("counters", String.class, Long.class);
+    counters.put("a", 1L);
+    storage.getProperties().put("version", "1");
+
+    IPersistentStorage.Transaction outer = storage.begin();
+    IPersistentStorage.Transaction inner = storage.begin();
+    counters.put("a", 2L);
+    counters.put("b", 3L);
+    storage.getKeyValueStorage("scratch", String.class, String.class).put("x", "y");
+    storage.getProperties().put("version", "2");
+    storage.getProperties().put("added", "true");
+    inner.commit();
+    outer.abort();
+    outer.commit();
+
+    Assert.assertEquals(1L, (long) counters.get("a"));
+    Assert.assertFalse(counters.containsKey("b"));
+    Assert.assertEquals("1", storage.getProperties().get("version"));
+    Assert.assertFalse(storage.getProperties().containsKey("added"));
+    counters.put("c", 4L);
+    platform.close();
+
+    platform = new DurablePlatformPersistentStorage(directory, 64 * 1024);
+    storage = new EmulatedPersistentStorage(platform);
+    storage.open();
+    counters = storage.getKeyValueStorage("counters", String.class, Long.class);
+    Assert.assertEquals(1L, (long) counters.get("a"));
+    Assert.assertFalse(counters.containsKey("b"));
+    Assert.assertEquals(4L, (long) counters.get("c"));
+    Assert.assertEquals(0, storage.getKeyValueStorage("scratch", String.class, String.class).size());
+    Assert.assertEquals("1", storage.getProperties().get("version"));
+    Assert.assertFalse(storage.getProperties().containsKey("added"));
+    platform.close();
+  }
+
+  /**
+   * Test that the snapshot and any uncompacted batches are restored on open.
+   */
+  public void testReopenReplaysDeltas() throws Exception {
+    File directory = new File(getTempDirectory(), "emulated");
+    DurablePlatformPersistentStorage platform = new DurablePlatformPersistentStorage(directory, 64 * 1024);
+    EmulatedPersistentStorage storage = new EmulatedPersistentStorage(platform);
+    storage.create();
+    KeyValueStorage<String, Long> counters = storage.getKeyValueStorage("counters", String.class, Long.class);
+    KeyValueStorage<String, String> doomed = storage.getKeyValueStorage("doomed", String.class, String.class);
+    doomed.put("x", "y");
+    for (long i = 0; i < 1500; ++i) {
+      counters.put("key" + (i % 10), i);
+    }
+    counters.remove("key0");
+    storage.destroyKeyValueStorage("doomed");
+    KeyValueStorage<String, String> cleared = storage.getKeyValueStorage("cleared", String.class, String.class);
+    cleared.put("x", "y");
+    cleared.clear();
+    storage.getProperties().put("version", "2");
+    platform.close();
+
+    platform = new DurablePlatformPersistentStorage(directory, 64 * 1024);
+    storage = new EmulatedPersistentStorage(platform);
+    storage.open();
+    counters = storage.getKeyValueStorage("counters", String.class, Long.class);
+    Assert.assertEquals(9, counters.size());
+    Assert.assertFalse(counters.containsKey("key0"));
+    Assert.assertEquals(1499L, (long) counters.get("key9"));
+    Assert.assertEquals(0, storage.getKeyValueStorage("cleared", String.class, String.class).size());
+    Assert.assertEquals(0, storage.getKeyValueStorage("doomed", String.class, String.class).size());
+    Assert.assertEquals("2", storage.getProperties().get("version"));
+    platform.close();
+  }
+}
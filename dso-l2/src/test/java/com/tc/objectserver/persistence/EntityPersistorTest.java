@@ -22,6 +22,12 @@ import com.tc.net.ClientID;
 import com.tc.object.EntityID;
 import com.tc.test.TCTestCase;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
 import org.junit.Assert;
 import org.terracotta.exception.EntityException;
 
@@ -221,4 +227,68 @@ public class EntityPersistorTest extends TCTestCase {
       // Expected.
     }
   }
+
+  /**
+   * Test that lifecycle operations only write a delta each, rather than rewriting the maps.
+   */
+  public void testOperationsWriteDeltas() throws EntityException {
+    List<String> written = new ArrayList<>();
+    NullPlatformPersistentStorage recordingStorage = new NullPlatformPersistentStorage() {
+      @Override
+      public void storeDataElement(String name, Serializable element) throws IOException {
+        written.add(name);
+        super.storeDataElement(name, element);
+      }
+    };
+    EntityPersistor persistor = new EntityPersistor(recordingStorage);
+    EntityID id = new EntityID("class name", "entity name");
+    long consumerID = persistor.getNextConsumerID();
+    persistor.entityCreated(this.client, 1, 1, id, 1, consumerID, true, new byte[0]);
+    persistor.entityReconfigureSucceeded(this.client, 2, 1, id, 1, new byte[1]);
+    persistor.entityDestroyed(this.client, 3, 1, id);
+    for (String name : written) {
+      Assert.assertTrue(name, name.startsWith("entity_persistor.delta."));
+    }
+    Assert.assertEquals(7, written.size());
+  }
+
+  /**
+   * Test that the persisted state, including deltas not yet compacted, survives a restart.
+   */
+  public void testRestartReplaysDeltas() throws Exception {
+    File directory = new File(getTempDirectory(), "restart");
+    DurablePlatformPersistentStorage storage = new DurablePlatformPersistentStorage(directory, 64 * 1024);
+    EntityPersistor persistor = new EntityPersistor(storage);
+    EntityID kept = new EntityID("class name", "kept");
+    EntityID destroyed = new EntityID("class name", "destroyed");
+    persistor.entityCreated(this.client, 1, 1, kept, 1, persistor.getNextConsumerID(), true, new byte[0]);
+    persistor.entityCreated(this.client, 2, 1, destroyed, 1, persistor.getNextConsumerID(), true, new byte[0]);
+    persistor.entityDestroyed(this.client, 3, 1, destroyed);
+    EntityException error = new EntityNotFoundException("class", "name");
+    persistor.entityCreateFailed(this.client, 4, 1, error);
+//  enough churn from another client to force a compaction
+    ClientID other = new ClientID(2);
+    for (long i = 0; i < 1500; ++i) {
+      persistor.entityReconfigureSucceeded(other, i, i, kept, 1, new byte[] { (byte) i });
+    }
+    long nextConsumer = persistor.getNextConsumerID();
+    storage.close();
+
+    storage = new DurablePlatformPersistentStorage(directory, 64 * 1024);
+    persistor = new EntityPersistor(storage);
+    Assert.assertEquals(1, persistor.loadEntityData().size());
+    Assert.assertTrue(persistor.containsEntity(this.client, 5, 1, kept));
+    Assert.assertFalse(persistor.containsEntity(this.client, 5, 1, destroyed));
+    Assert.assertTrue(persistor.wasEntityDestroyedInJournal(this.client, 3));
+    try {
+      persistor.wasEntityCreatedInJournal(this.client, 4);
+      fail();
+    } catch (EntityException e) {
+      // Expected.
+    }
+    Assert.assertEquals((byte) 1498, persistor.reconfiguredResultInJournal(other, 1499)[0]);
+    Assert.assertNull(persistor.reconfiguredResultInJournal(other, 1498));
+    Assert.assertEquals(nextConsumer + 1, persistor.getNextConsumerID());
+    storage.close();
+  }
 }
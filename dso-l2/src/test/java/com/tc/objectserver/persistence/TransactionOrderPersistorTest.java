@@ -19,12 +19,15 @@
 package com.tc.objectserver.persistence;
 
 import com.tc.net.ClientID;
+import com.tc.net.protocol.tcm.ChannelID;
 import com.tc.object.tx.TransactionID;
 
 import com.tc.test.TCTestCase;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
 
 
 public class TransactionOrderPersistorTest extends TCTestCase {
@@ -298,6 +301,62 @@ public class TransactionOrderPersistorTest extends TCTestCase {
     thread2.join();
   }
 
+  /**
+   * Test that the asynchronous update places the transaction in the global order before its record is synced.
+   */
+  public void testAsyncUpdateOrdersImmediately() {
+    TransactionID oldest = new TransactionID(0);
+    CompletableFuture<Void> first = this.orderPersistor.updateWithNewMessageAsync(this.client1, new TransactionID(1), oldest);
+    CompletableFuture<Void> second = this.orderPersistor.updateWithNewMessageAsync(this.client2, new TransactionID(1), oldest);
+    assertEquals(0, this.orderPersistor.getIndexToReplay(this.client1, new TransactionID(1)));
+    assertEquals(1, this.orderPersistor.getIndexToReplay(this.client2, new TransactionID(1)));
+    first.join();
+    second.join();
+    assertEquals(2, this.orderPersistor.getReceivedTransactionCount());
+  }
+
+  /**
+   * Test that the received count survives a reload even once the client has retired every stored sequence, since it is
+   * used as the election weight.
+   */
+  public void testReloadRestoresCount() {
+    NullPlatformPersistentStorage storage = new NullPlatformPersistentStorage();
+    TransactionOrderPersistor persistor = new TransactionOrderPersistor(storage, Collections.emptySet());
+    for (int i = 1; i <= 10; ++i) {
+      persistor.updateWithNewMessage(this.client1, new TransactionID(i), new TransactionID(i));
+    }
+    
+    persistor = new TransactionOrderPersistor(storage, Collections.singleton(new ChannelID(this.client1.toLong())));
+    assertEquals(10, persistor.getReceivedTransactionCount());
+    TransactionID oldest = new TransactionID(0);
+    persistor.updateWithNewMessage(this.client2, new TransactionID(1), oldest);
+    assertEquals(1, persistor.getIndexToReplay(this.client2, new TransactionID(1)));
+  }
+
+
+  /**
+   * Test that, on durable storage, the future returned by the asynchronous update also covers the received count.
+   */
+  public void testAsyncUpdateCoversCountOnDurableStorage() throws IOException {
+    File directory = new File(getTempDirectory(), "durable");
+    DurablePlatformPersistentStorage storage = new DurablePlatformPersistentStorage(directory, 64 * 1024);
+    TransactionOrderPersistor persistor = new TransactionOrderPersistor(storage, Collections.emptySet());
+    CompletableFuture<Void> last = null;
+    for (int i = 1; i <= 10; ++i) {
+      last = persistor.updateWithNewMessageAsync(this.client1, new TransactionID(i), new TransactionID(i));
+    }
+    last.join();
+    storage.close();
+    
+    storage = new DurablePlatformPersistentStorage(directory, 64 * 1024);
+    try {
+      persistor = new TransactionOrderPersistor(storage, Collections.singleton(new ChannelID(this.client1.toLong())));
+      assertEquals(10, persistor.getReceivedTransactionCount());
+    } finally {
+      storage.close();
+    }
+  }
+
 
   private static class ClientThread extends Thread {
     private TransactionOrderPersistor persistor;
@@ -0,0 +1,104 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.objectserver.persistence;
+
+import com.tc.test.TCTestCase;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+
+public class WriteAheadLogTest extends TCTestCase {
+  private final Object lock = new Object();
+
+  public void testFailedForceFailsWaitersAndLaterAppends() throws Exception {
+    WriteAheadLog log = new WriteAheadLog(getTempDirectory(), 4 * 1024, lock, out -> {}) {
+      @Override
+      void force(MappedByteBuffer target) {
+        throw new UncheckedIOException(new IOException("device gone"));
+      }
+    };
+    CompletableFuture<Void> synced;
+    synchronized (lock) {
+      log.recover(new NoRecovery());
+      synced = log.append(new byte[] { 1 }, true);
+    }
+    try {
+      synced.get(10, TimeUnit.SECONDS);
+      fail();
+    } catch (ExecutionException expected) {
+      assertTrue(expected.getCause() instanceof IOException);
+    }
+
+    synchronized (lock) {
+      try {
+        log.append(new byte[] { 2 }, true);
+        fail();
+      } catch (IOException expected) {
+        // the log is no good any more
+      }
+    }
+    try {
+      log.close();
+      fail();
+    } catch (IOException expected) {
+      // and neither is anything it still held
+    }
+  }
+
+  public void testFailedForceOnRollFailsWaiters() throws Exception {
+    boolean[] failing = new boolean[1];
+    WriteAheadLog log = new WriteAheadLog(getTempDirectory(), 4 * 1024, lock, out -> {}) {
+      @Override
+      void force(MappedByteBuffer target) {
+        if (failing[0]) {
+          throw new UncheckedIOException(new IOException("device gone"));
+        }
+        super.force(target);
+      }
+    };
+    synchronized (lock) {
+      log.recover(new NoRecovery());
+      failing[0] = true;
+      try {
+        // too big for what is left of the segment, so this rolls
+        log.append(new byte[8 * 1024], true);
+        fail();
+      } catch (IOException expected) {
+        // the force before the roll failed
+      }
+    }
+  }
+
+  private static class NoRecovery implements WriteAheadLog.Recovery {
+    @Override
+    public void loadCheckpoint(DataInputStream in) {
+    }
+
+    @Override
+    public void replay(ByteBuffer record) {
+    }
+  }
+}
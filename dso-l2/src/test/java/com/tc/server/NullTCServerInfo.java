@@ -279,6 +279,16 @@ public class NullTCServerInfo extends AbstractTerracottaMBean implements TCServe
     return "";
   }
 
+  @Override
+  public String getRequestLatencyReport() {
+    return "";
+  }
+
+  @Override
+  public byte[] getFlightRecording() {
+    return new byte[0];
+  }
+
   @Override
   public Map<String, String> getBackupStatuses() {
     return null;
@@ -0,0 +1,135 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.services;
+
+import com.tc.entity.ServerEntityMessage;
+import com.tc.net.protocol.tcm.MessageChannel;
+import com.tc.net.protocol.tcm.TCMessageType;
+import com.tc.object.ClientInstanceID;
+import com.tc.object.EntityDescriptor;
+import com.tc.object.EntityID;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ClientAccountTest {
+  private final Set<Long>  sentIds = ConcurrentHashMap.newKeySet();
+  private MessageChannel   channel;
+  private EntityDescriptor entityDescriptor;
+  private ClientAccount    account;
+
+  @Before
+  public void setUp() throws Exception {
+    channel = mock(MessageChannel.class);
+    when(channel.createMessage(TCMessageType.SERVER_ENTITY_MESSAGE)).thenAnswer(new Answer<ServerEntityMessage>() {
+      @Override
+      public ServerEntityMessage answer(InvocationOnMock invocation) throws Throwable {
+        ServerEntityMessage message = mock(ServerEntityMessage.class);
+        doAnswer(new Answer<Void>() {
+          @Override
+          public Void answer(InvocationOnMock setMessage) throws Throwable {
+            sentIds.add((Long) setMessage.getArguments()[2]);
+            return null;
+          }
+        }).when(message).setMessage(any(EntityDescriptor.class), any(byte[].class), anyLong());
+        when(message.send()).thenReturn(true);
+        return message;
+      }
+    });
+    entityDescriptor = new EntityDescriptor(new EntityID("foo", "bar"), new ClientInstanceID(1), 1);
+    account = new ClientAccount(channel);
+  }
+
+  @Test
+  public void testConcurrentSendsGetDistinctResponseIds() throws Exception {
+    final int threads = 8;
+    final int perThread = 500;
+    final CountDownLatch start = new CountDownLatch(1);
+    final List<ResponseWaiter> waiters = new ArrayList<>();
+    List<Thread> senders = new ArrayList<>();
+    for (int t = 0; t < threads; t++) {
+      Thread sender = new Thread() {
+        @Override
+        public void run() {
+          List<ResponseWaiter> mine = new ArrayList<>();
+          try {
+            start.await();
+          } catch (InterruptedException e) {
+            throw new AssertionError(e);
+          }
+          for (int i = 0; i < perThread; i++) {
+            mine.add(account.send(entityDescriptor, new byte[1]));
+          }
+          synchronized (waiters) {
+            waiters.addAll(mine);
+          }
+        }
+      };
+      sender.start();
+      senders.add(sender);
+    }
+    start.countDown();
+    for (Thread sender : senders) {
+      sender.join();
+    }
+
+    assertEquals(threads * perThread, sentIds.size());
+    for (ResponseWaiter waiter : waiters) {
+      assertFalse(waiter.isDone());
+    }
+    for (long id : sentIds) {
+      account.response(id);
+    }
+    for (ResponseWaiter waiter : waiters) {
+      assertTrue(waiter.isDone());
+    }
+  }
+
+  @Test
+  public void testCloseReleasesOutstandingAndLaterSends() throws Exception {
+    ResponseWaiter outstanding = account.send(entityDescriptor, new byte[1]);
+    account.close();
+    assertTrue(outstanding.isDone());
+    assertTrue(account.send(entityDescriptor, new byte[1]).isDone());
+  }
+
+  @Test
+  public void testUndeliveredSendCompletes() throws Exception {
+    ServerEntityMessage message = mock(ServerEntityMessage.class);
+    when(message.send()).thenReturn(false);
+    when(channel.createMessage(TCMessageType.SERVER_ENTITY_MESSAGE)).thenReturn(message);
+    assertTrue(account.send(entityDescriptor, new byte[1]).isDone());
+  }
+}
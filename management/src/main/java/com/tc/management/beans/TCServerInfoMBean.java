@@ -128,5 +128,12 @@ public interface TCServerInfoMBean extends TerracottaMBean, RuntimeStatisticCons
 
   String getResourceState();
 
+  String getRequestLatencyReport();
+
+  /**
+   * The flight recorder's per-thread event rings as a binary image, decodable with com.tc.stats.FlightRecording.
+   */
+  byte[] getFlightRecording();
+
   boolean isLegacyProductionModeEnabled();
 }
@@ -0,0 +1,333 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.bytes;
+
+import com.tc.logging.TCLogger;
+import com.tc.logging.TCLogging;
+import com.tc.util.VicariousThreadLocal;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pools TCByteBuffer instances in power-of-two size classes.
+ * <p>
+ * Direct buffers are carved out of large direct arenas which are reserved against a fixed budget, so direct memory use
+ * is bounded and no pooled buffer goes through the {@code Cleaner} on its own. Once the budget is spent, direct
+ * requests are served from the heap. A buffer which is dropped instead of returned, or left in the cache of a thread
+ * which has died, is noticed once the collector finds it unreachable. When that has happened to every buffer carved
+ * from a full arena, the arena's share of the budget is handed back and the arena is left to the collector. Heap
+ * buffers are pooled individually.
+ * <p>
+ * Each size class keeps an unsynchronized cache per thread for threads in a registered group and a shared lock-free
+ * overflow for everyone else. A returned buffer goes to the cache of the thread returning it.
+ */
+public class SlabAllocator implements SlabAllocatorMBean {
+
+  private static final TCLogger logger = TCLogging.getLogger(SlabAllocator.class);
+  private static final int MIN_CLASS_SHIFT = 8;
+  static final int MIN_CLASS_SIZE = 1 << MIN_CLASS_SHIFT; // 256B
+  private static final ArrayDeque<TCByteBuffer> NO_CACHE = new ArrayDeque<TCByteBuffer>(0);
+
+  private final int maxClassSize;
+  private final int arenaSize;
+  private final long maxDirectBytes;
+  private final SizeClass[] directClasses;
+  private final SizeClass[] heapClasses;
+  private final Set<ThreadGroup> handledGroups = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<ThreadGroup, Boolean>()));
+
+  private final AtomicLong reservedDirectBytes = new AtomicLong();
+  private final LongAdder inUseDirectBytes = new LongAdder();
+  private final LongAdder fallbackAllocations = new LongAdder();
+  private final LongAdder unpooledAllocations = new LongAdder();
+  private final AtomicBoolean exhaustedWarned = new AtomicBoolean();
+
+  // one per direct buffer ever carved, kept here so the reference lives as long as its buffer
+  private final Set<CarvedBuffer> carved = ConcurrentHashMap.newKeySet();
+  private final ReferenceQueue<ByteBuffer> unreachable = new ReferenceQueue<ByteBuffer>();
+
+  /**
+   * @param maxClassSize largest buffer size which is pooled, rounded up to a power of two
+   * @param arenaSize size of each direct arena, rounded up to a power of two no smaller than the largest class
+   * @param maxDirectBytes budget for all direct arenas
+   * @param threadCacheBytes bytes each registered thread may cache per size class
+   * @param sharedCacheBytes bytes of heap buffers the shared overflow may hold per size class
+   */
+  public SlabAllocator(int maxClassSize, int arenaSize, long maxDirectBytes, long threadCacheBytes, long sharedCacheBytes) {
+    if (maxClassSize < MIN_CLASS_SIZE) { throw new IllegalArgumentException("Largest size class cannot be less than " + MIN_CLASS_SIZE); }
+    this.maxClassSize = roundUpToPowerOfTwo(maxClassSize);
+    this.arenaSize = roundUpToPowerOfTwo(Math.max(arenaSize, this.maxClassSize));
+    this.maxDirectBytes = maxDirectBytes;
+
+    int classes = classIndex(this.maxClassSize) + 1;
+    this.directClasses = new SizeClass[classes];
+    this.heapClasses = new SizeClass[classes];
+    for (int i = 0; i < classes; i++) {
+      int size = MIN_CLASS_SIZE << i;
+      int threadCacheCount = (int) Math.max(1, threadCacheBytes / size);
+      int sharedCacheCount = (int) Math.max(1, sharedCacheBytes / size);
+      this.directClasses[i] = new SizeClass(size, true, threadCacheCount, Integer.MAX_VALUE);
+      this.heapClasses[i] = new SizeClass(size, false, threadCacheCount, sharedCacheCount);
+    }
+  }
+
+  public void registerThreadGroup(ThreadGroup group) {
+    handledGroups.add(group);
+  }
+
+  /**
+   * Takes a buffer of at least the given size from the pools. The capacity and limit of the buffer are those of its
+   * size class.
+   *
+   * @return a pooled buffer or null if the size is larger than the largest size class
+   */
+  public TCByteBuffer allocate(boolean direct, int size) {
+    if (size > maxClassSize) {
+      unpooledAllocations.increment();
+      return null;
+    }
+    int index = classIndex(size);
+    if (direct) {
+      TCByteBuffer buffer = directClasses[index].take();
+      if (buffer != null) { return buffer; }
+      fallbackAllocations.increment();
+    }
+    return heapClasses[index].take();
+  }
+
+  public int getMaxClassSize() {
+    return maxClassSize;
+  }
+
+  @Override
+  public long getMaxDirectBytes() {
+    return maxDirectBytes;
+  }
+
+  @Override
+  public long getReservedDirectBytes() {
+    return reservedDirectBytes.get();
+  }
+
+  @Override
+  public long getInUseDirectBytes() {
+    return inUseDirectBytes.sum();
+  }
+
+  @Override
+  public long getFallbackAllocations() {
+    return fallbackAllocations.sum();
+  }
+
+  @Override
+  public long getUnpooledAllocations() {
+    return unpooledAllocations.sum();
+  }
+
+  static int classIndex(int size) {
+    if (size <= MIN_CLASS_SIZE) { return 0; }
+    return (32 - Integer.numberOfLeadingZeros(size - 1)) - MIN_CLASS_SHIFT;
+  }
+
+  private static int roundUpToPowerOfTwo(int size) {
+    int rounded = Integer.highestOneBit(size);
+    return (rounded == size) ? size : rounded << 1;
+  }
+
+  /**
+   * Accounts for the direct buffers the collector has found unreachable since the last call.
+   */
+  private void reclaimUnreachable() {
+    Reference<? extends ByteBuffer> ref;
+    while ((ref = unreachable.poll()) != null) {
+      CarvedBuffer lost = (CarvedBuffer) ref;
+      carved.remove(lost);
+      if (lost.inUse) {
+        inUseDirectBytes.add(-lost.pool.size);
+      }
+      lost.arena.release();
+    }
+  }
+
+  private Arena reserveArena() {
+    reclaimUnreachable();
+    if (reservedDirectBytes.addAndGet(arenaSize) > maxDirectBytes) {
+      reservedDirectBytes.addAndGet(-arenaSize);
+      if (exhaustedWarned.compareAndSet(false, true)) {
+        logger.warn("Direct buffer arenas exhausted at " + maxDirectBytes + " bytes - further direct buffers will be allocated on the heap");
+      }
+      return null;
+    }
+    try {
+      return new Arena(ByteBuffer.allocateDirect(arenaSize));
+    } catch (OutOfMemoryError oome) {
+      reservedDirectBytes.addAndGet(-arenaSize);
+      logger.error("OOME trying to allocate direct buffer arena of size " + arenaSize + " with " + reservedDirectBytes.get() + " bytes already reserved");
+      return null;
+    }
+  }
+
+  /**
+   * A direct arena. It holds one reference for each buffer carved from it that is still reachable, plus one while it
+   * is still being carved, and gives its bytes back to the budget when the last is released.
+   */
+  private final class Arena {
+    private final ByteBuffer memory;
+    private final AtomicInteger references = new AtomicInteger(1);
+
+    Arena(ByteBuffer memory) {
+      this.memory = memory;
+    }
+
+    void release() {
+      if (references.decrementAndGet() == 0) {
+        reservedDirectBytes.addAndGet(-arenaSize);
+        exhaustedWarned.set(false);
+      }
+    }
+  }
+
+  /**
+   * Tracks one direct buffer, and is the pool it is returned through so that a buffer lost while checked out is taken
+   * off the in use count as well.
+   */
+  private static final class CarvedBuffer extends PhantomReference<ByteBuffer> implements BufferPool {
+    private final SizeClass pool;
+    private final Arena arena;
+    private volatile boolean inUse = true;
+
+    CarvedBuffer(ByteBuffer slice, SizeClass pool, Arena arena, ReferenceQueue<ByteBuffer> queue) {
+      super(slice, queue);
+      this.pool = pool;
+      this.arena = arena;
+    }
+
+    @Override
+    public void offer(TCByteBuffer buf) {
+      inUse = false;
+      pool.offer(buf);
+    }
+  }
+
+  private class SizeClass implements BufferPool {
+    private final int size;
+    private final boolean direct;
+    private final int threadCacheCount;
+    private final int sharedCacheCount;
+    private final ConcurrentLinkedQueue<TCByteBuffer> shared = new ConcurrentLinkedQueue<TCByteBuffer>();
+    private final AtomicInteger sharedCount = new AtomicInteger();
+    private final ThreadLocal<ArrayDeque<TCByteBuffer>> cache = new VicariousThreadLocal<ArrayDeque<TCByteBuffer>>() {
+      @Override
+      protected ArrayDeque<TCByteBuffer> initialValue() {
+        if (handledGroups.contains(Thread.currentThread().getThreadGroup())) {
+          return new ArrayDeque<TCByteBuffer>();
+        } else {
+          return NO_CACHE;
+        }
+      }
+    };
+    // guarded by this
+    private Arena arena;
+
+    SizeClass(int size, boolean direct, int threadCacheCount, int sharedCacheCount) {
+      this.size = size;
+      this.direct = direct;
+      this.threadCacheCount = threadCacheCount;
+      this.sharedCacheCount = sharedCacheCount;
+    }
+
+    TCByteBuffer take() {
+      ArrayDeque<TCByteBuffer> local = cache.get();
+      TCByteBuffer buffer = (local != NO_CACHE) ? local.pollLast() : null;
+      if (buffer == null) {
+        buffer = shared.poll();
+        if (buffer != null) {
+          sharedCount.decrementAndGet();
+        }
+      }
+      if (buffer != null) {
+        buffer.checkedOut();
+        if (direct) {
+          ((CarvedBuffer) buffer.getBufferPool()).inUse = true;
+        }
+      } else {
+        buffer = create();
+        if (buffer == null) { return null; }
+      }
+      if (direct) {
+        inUseDirectBytes.add(size);
+      }
+      return buffer;
+    }
+
+    private TCByteBuffer create() {
+      if (!direct) {
+        return new TCByteBufferImpl(ByteBuffer.allocate(size), this);
+      }
+      synchronized (this) {
+        if (arena == null) {
+          arena = reserveArena();
+          if (arena == null) { return null; }
+        }
+        ByteBuffer memory = arena.memory;
+        memory.limit(memory.position() + size);
+        ByteBuffer slice = memory.slice();
+        memory.position(memory.limit());
+        memory.limit(memory.capacity());
+        arena.references.incrementAndGet();
+        CarvedBuffer tracked = new CarvedBuffer(slice, this, arena, unreachable);
+        carved.add(tracked);
+        if (memory.remaining() < size) {
+          // full, from here on only the buffers carved from it keep it
+          arena.release();
+          arena = null;
+        }
+        return new TCByteBufferImpl(slice, tracked);
+      }
+    }
+
+    @Override
+    public void offer(TCByteBuffer buf) {
+      if (direct) {
+        inUseDirectBytes.add(-size);
+      }
+      ArrayDeque<TCByteBuffer> local = cache.get();
+      if (local != NO_CACHE && local.size() < threadCacheCount) {
+        local.addLast(buf);
+      } else if (sharedCount.incrementAndGet() <= sharedCacheCount) {
+        shared.offer(buf);
+      } else {
+        // Only heap buffers are ever dropped, direct ones always fit since their count is unbounded.
+        sharedCount.decrementAndGet();
+      }
+    }
+  }
+}
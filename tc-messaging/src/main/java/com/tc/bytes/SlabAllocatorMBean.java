@@ -0,0 +1,50 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.bytes;
+
+/**
+ * Memory accounting for the {@link SlabAllocator} behind {@link TCByteBufferFactory}.
+ */
+public interface SlabAllocatorMBean {
+
+  /**
+   * @return the most direct memory the allocator will ever carve into arenas
+   */
+  long getMaxDirectBytes();
+
+  /**
+   * @return direct memory currently held in arenas, whether checked out or cached
+   */
+  long getReservedDirectBytes();
+
+  /**
+   * @return direct memory currently checked out of the arenas
+   */
+  long getInUseDirectBytes();
+
+  /**
+   * @return number of direct buffer requests served from the heap because the arenas were exhausted
+   */
+  long getFallbackAllocations();
+
+  /**
+   * @return number of requests too large for any size class, which were allocated without pooling
+   */
+  long getUnpooledAllocations();
+}
@@ -20,20 +20,12 @@ package com.tc.bytes;
 
 import com.tc.logging.TCLogger;
 import com.tc.logging.TCLogging;
-import com.tc.util.Assert;
 import com.tc.util.ServiceUtil;
-import com.tc.util.VicariousThreadLocal;
-
-import java.util.Collections;
-import java.util.Set;
-import java.util.WeakHashMap;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.TimeUnit;
 
 /**
  * TCByteBuffer source that hides JDK dependencies and that can pool instances. Instance pooling is likely to be a good
  * idea for fixed size buffers and definitely a good idea for java direct buffers (since their allocation/deallocation
- * is more expensive than regular java objects).
+ * is more expensive than regular java objects). Pooled buffers come from a {@link SlabAllocator}.
  * 
  * @author teck
  */
@@ -46,50 +38,23 @@ public class TCByteBufferFactory {
   private static final TCLogger            logger                  = TCLogging.getLogger(TCByteBufferFactory.class);
   
   private static final boolean             disablePooling;
-  private static final int                 poolMaxBufCount;
-  private static final int                 commonPoolMaxBufCount;
+  private static final SlabAllocator       allocator;
   
   static {
     TCByteBufferFactoryConfig config = getConfig();
     disablePooling = config.isDisabled();
-    poolMaxBufCount = config.getPoolMaxBufCount();
-    commonPoolMaxBufCount = config.getCommonPoolMaxBufCount();
+    if (disablePooling) {
+      allocator = null;
+    } else {
+      allocator = new SlabAllocator(config.getSlabMaxClassSize(), config.getSlabArenaSize(), config.getSlabMaxDirectBytes(),
+                                    (long) config.getPoolMaxBufCount() * FIXED_BUFFER_SIZE,
+                                    (long) config.getCommonPoolMaxBufCount() * FIXED_BUFFER_SIZE);
+    }
   }
-  
-
-  // always use ThreadLocal variables for accessing the buffer pools.
-  private static final LinkedBlockingQueue<TCByteBuffer> directCommonFreePool    = new LinkedBlockingQueue<TCByteBuffer>(commonPoolMaxBufCount);
-  private static final LinkedBlockingQueue<TCByteBuffer> nonDirectCommonFreePool = new LinkedBlockingQueue<TCByteBuffer>(commonPoolMaxBufCount);
-
-  private static final Set<ThreadGroup> handledGroups = Collections.newSetFromMap(new WeakHashMap<ThreadGroup, Boolean>());
-  
-  private static final ThreadLocal<LinkedBlockingQueue<TCByteBuffer>> directFreePool = new VicariousThreadLocal<LinkedBlockingQueue<TCByteBuffer>>() {
-                                                                     @Override
-                                                                     protected LinkedBlockingQueue<TCByteBuffer> initialValue() {
-                                                                       if (handledGroups.contains(Thread.currentThread().getThreadGroup())) {
-                                                                         return new LinkedBlockingQueue<TCByteBuffer>(poolMaxBufCount);
-                                                                       } else {
-                                                                         logger.debug("Buf pool direct for " + Thread.currentThread().getName() + " - using Common Pool");
-                                                                         return directCommonFreePool;
-                                                                       }
-                                                                     }
-                                                                   };
-  private static final ThreadLocal<LinkedBlockingQueue<TCByteBuffer>> nonDirectFreePool = new VicariousThreadLocal<LinkedBlockingQueue<TCByteBuffer>>() {
-                                                                     @Override
-                                                                     protected LinkedBlockingQueue<TCByteBuffer> initialValue() {
-                                                                       if (handledGroups.contains(Thread.currentThread().getThreadGroup())) {
-                                                                         return new LinkedBlockingQueue<TCByteBuffer>(poolMaxBufCount);
-                                                                       } else {
-                                                                         logger.debug("Buf pool nonDirect for " + Thread.currentThread().getName() + " - using Common Pool");
-                                                                         return nonDirectCommonFreePool;
-                                                                       }
-                                                                     }
-                                                                   };
 
   private static TCByteBuffer createNewInstance(boolean direct, int capacity, int index, int totalCount) {
     try {
-      LinkedBlockingQueue<TCByteBuffer> poolQueue = direct ? directFreePool.get() : nonDirectFreePool.get();
-      TCByteBuffer rv = new TCByteBufferImpl(capacity, direct, poolQueue);
+      TCByteBuffer rv = new TCByteBufferImpl(capacity, direct);
       // Assert.assertEquals(0, rv.position());
       // Assert.assertEquals(capacity, rv.capacity());
       // Assert.assertEquals(capacity, rv.limit());
@@ -107,14 +72,13 @@ public class TCByteBufferFactory {
   }
 
   /**
-   * Get a single variable sized TCByteBuffer instance Note: These are not pooled (yet)
+   * Get a single variable sized TCByteBuffer instance. Sizes up to the largest slab size class are pooled.
    * 
    * @param size The desired minimum capacity of the buffer. The actual capacity may be higher. The buffer's limit will
    *        be equal to it's capacity.
    * @param direct True to hint that the buffer should be a direct buffer (ie. not on the Java heap). A direct buffer
    *        will never be returned if this parameter is false. A direct buffer may or MAY NOT returned if the parameter
-   *        is true TODO :: Make this the only interface and make it return fixed size buffer also make sure only
-   *        fixedBufferSize gets to the pool back.
+   *        is true. Direct buffers are only handed out from the bounded slab arenas while pooling is enabled.
    */
   public static TCByteBuffer getInstance(boolean direct, int size) {
 
@@ -124,21 +88,20 @@ public class TCByteBufferFactory {
     if (size < 0) { throw new IllegalArgumentException("Requested length cannot be less than zero"); }
     if (size == 0) { return ZERO_BYTE_BUFFER; }
 
-    // Don't give 4k ByteBuffer from pool for smaller size requests.
-    if (disablePooling || size < (FIXED_BUFFER_SIZE - 500) || size > FIXED_BUFFER_SIZE) {
+    // Small heap buffers are cheaper to allocate than to pool.
+    if (disablePooling || (!direct && size < SlabAllocator.MIN_CLASS_SIZE)) {
       return createNewInstance(direct, size);
-    } else {
-      return getFromPoolOrCreate(direct);
     }
-  }
-
-  private static TCByteBuffer getFromPoolOrCreate(boolean direct) {
-    return getFromPoolOrCreate(direct, 0, 1);
+    TCByteBuffer buffer = allocator.allocate(direct, size);
+    if (null == buffer) {
+      // Too large to pool so keep it off the direct memory budget.
+      buffer = createNewInstance(false, size);
+    }
+    return buffer;
   }
 
   private static TCByteBuffer getFromPoolOrCreate(boolean direct, int i, int numBuffers) {
-
-    TCByteBuffer buffer = getFromPool(direct);
+    TCByteBuffer buffer = allocator.allocate(direct, FIXED_BUFFER_SIZE);
     if (null == buffer) {
       buffer = createNewInstance(direct, FIXED_BUFFER_SIZE, i, numBuffers);
     }
@@ -150,7 +113,16 @@ public class TCByteBufferFactory {
   }
 
   public static void registerThreadGroup(ThreadGroup group) {
-    handledGroups.add(group);
+    if (!disablePooling) {
+      allocator.registerThreadGroup(group);
+    }
+  }
+
+  /**
+   * @return the allocator behind the pooled buffers, or null if pooling is disabled
+   */
+  public static SlabAllocatorMBean getAllocatorStats() {
+    return allocator;
   }
   
   /**
@@ -206,26 +178,6 @@ public class TCByteBufferFactory {
     return (getBufferCountNeededForMessageSize(length) * FIXED_BUFFER_SIZE);
   }
 
-  private static TCByteBuffer getFromPool(boolean direct) {
-    if (disablePooling) return null;
-    TCByteBuffer buf = null;
-
-    LinkedBlockingQueue<TCByteBuffer> poolQueue = direct ? directFreePool.get() : nonDirectFreePool.get();
-
-    Assert.assertNotNull(poolQueue);
-
-    try {
-      if ((buf = poolQueue.poll(0, TimeUnit.MILLISECONDS)) != null) {
-        buf.checkedOut();
-      }
-    } catch (InterruptedException e) {
-      logger.warn("interrupted while getting buffer from pool");
-      Thread.currentThread().interrupt();
-      return null;
-    }
-    return buf;
-  }
-
   public static void returnBuffers(TCByteBuffer buffers[]) {
     if (disablePooling) { return; }
 
@@ -237,17 +189,14 @@ public class TCByteBufferFactory {
   public static void returnBuffer(TCByteBuffer buf) {
     if (disablePooling) { return; }
 
-    if (buf.capacity() == FIXED_BUFFER_SIZE) {
-      BufferPool bufferPool = buf.getBufferPool();
+    BufferPool bufferPool = buf.getBufferPool();
+    if (bufferPool != null) {
       buf.commit();
-
-      if (bufferPool != null) {
-        try {
-          bufferPool.offer(buf);
-        } catch (InterruptedException e) {
-          logger.warn("interrupted while trying to return buffer", e);
-          Thread.currentThread().interrupt();
-        }
+      try {
+        bufferPool.offer(buf);
+      } catch (InterruptedException e) {
+        logger.warn("interrupted while trying to return buffer", e);
+        Thread.currentThread().interrupt();
       }
     }
   }
@@ -260,7 +209,7 @@ public class TCByteBufferFactory {
     TCByteBuffer rv = null;
     if (buf != null) {
       rv = getInstance(false, buf.length);
-      rv.put(buf).rewind();
+      rv.put(buf).flip();
     } else {
       rv = getInstance(false, 0);
     }
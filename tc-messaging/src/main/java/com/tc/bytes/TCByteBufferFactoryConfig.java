@@ -24,4 +24,10 @@ public interface TCByteBufferFactoryConfig {
   int getPoolMaxBufCount();
 
   int getCommonPoolMaxBufCount();
+
+  int getSlabMaxClassSize();
+
+  int getSlabArenaSize();
+
+  long getSlabMaxDirectBytes();
 }
@@ -38,4 +38,20 @@ public interface NetworkVoltronEntityMessage extends VoltronEntityMessage, TCMes
   public void setContents(ClientID clientID, TransactionID transactionID, EntityDescriptor entityDescriptor, Type type, boolean requiresReplication, byte[] extendedData, TransactionID oldestTransactionPending);
 
   public void setMessageCodecSupplier(MessageCodecSupplier supplier);
+
+  /**
+   * Records when this message was last handed from one server stage to the next so that the time spent waiting in
+   * each stage can be measured.  Not serialized.
+   */
+  public void setHandoffTimestamp(long nanos);
+
+  public long getHandoffTimestamp();
+
+  /**
+   * Carries whatever the server worked out about this message while hydrating it, so the stage which sequences
+   * requests doesn't have to work it out again.  Opaque to the messaging layer and not serialized.
+   */
+  public void setConcurrencyHint(Object hint);
+
+  public Object getConcurrencyHint();
 }
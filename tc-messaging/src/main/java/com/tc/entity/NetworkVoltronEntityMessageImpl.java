@@ -50,6 +50,8 @@ public class NetworkVoltronEntityMessageImpl extends DSOMessageBase implements N
   private TransactionID oldestTransactionPending;
   private MessageCodecSupplier supplier;
   private EntityMessage message;
+  private long handoffTimestamp;
+  private Object concurrencyHint;
 
   @Override
   public ClientID getSource() {
@@ -115,6 +117,26 @@ public class NetworkVoltronEntityMessageImpl extends DSOMessageBase implements N
     this.supplier = supplier;
   }
 
+  @Override
+  public void setHandoffTimestamp(long nanos) {
+    this.handoffTimestamp = nanos;
+  }
+
+  @Override
+  public long getHandoffTimestamp() {
+    return this.handoffTimestamp;
+  }
+
+  @Override
+  public void setConcurrencyHint(Object hint) {
+    this.concurrencyHint = hint;
+  }
+
+  @Override
+  public Object getConcurrencyHint() {
+    return this.concurrencyHint;
+  }
+
   public NetworkVoltronEntityMessageImpl(SessionID sessionID, MessageMonitor monitor, TCByteBufferOutputStream out, MessageChannel channel, TCMessageType type) {
     super(sessionID, monitor, out, channel, type);
   }
@@ -163,7 +185,10 @@ public class NetworkVoltronEntityMessageImpl extends DSOMessageBase implements N
     try {
       if (this.type == Type.INVOKE_ACTION) {
         MessageCodec<EntityMessage, EntityResponse> codec = supplier.getMessageCodec(this.entityDescriptor.getEntityID());
-        this.message = codec.decodeMessage(extendedData);
+//  no codec means no such entity type, which the voltron stage reports back to the client
+        if (codec != null) {
+          this.message = codec.decodeMessage(extendedData);
+        }
       }
     } catch (MessageCodecException exception) {
 /*  swallow it - this is an optimzation which does not handle the failure case.  
@@ -19,6 +19,7 @@
 
 package com.tc.entity;
 
+import com.tc.async.api.MultiThreadedEventContext;
 import com.tc.bytes.TCByteBuffer;
 import com.tc.io.TCByteBufferOutputStream;
 import com.tc.net.protocol.tcm.MessageChannel;
@@ -32,9 +33,12 @@ import com.tc.object.session.SessionID;
 import java.io.IOException;
 
 /**
+ * Delivered to the client in a multi-threaded stage keyed by entity, so messages for one entity keep their order while
+ * different entities are handled in parallel.
+ *
  * @author twu
  */
-public class ServerEntityMessageImpl extends DSOMessageBase implements ServerEntityMessage {
+public class ServerEntityMessageImpl extends DSOMessageBase implements ServerEntityMessage, MultiThreadedEventContext {
   private static final byte ENTITY_DESCRIPTOR = 0;
   private static final byte MESSAGE = 1;
   private static final byte RESPONSE_ID = 2;
@@ -79,6 +83,16 @@ public class ServerEntityMessageImpl extends DSOMessageBase implements ServerEnt
     return message;
   }
 
+  @Override
+  public Object getSchedulingKey() {
+    return this.entityDescriptor;
+  }
+
+  @Override
+  public boolean flush() {
+    return false;
+  }
+
   @Override
   protected void dehydrateValues() {
     putNVPair(ENTITY_DESCRIPTOR, this.entityDescriptor);
@@ -21,7 +21,6 @@ package com.tc.entity;
 
 import com.tc.net.protocol.tcm.TCMessage;
 import com.tc.object.tx.TransactionID;
-import java.util.Map;
 
 
 /**
@@ -30,10 +29,20 @@ import java.util.Map;
  * In the future, it would be ideal to remove this in favor of a different SEDA implementation.
  */
 public interface VoltronEntityMultiResponse extends TCMessage {
-  TransactionID[] getReceivedTransactions();
-  TransactionID[] getRetiredTransactions();
-  Map<TransactionID, byte[]> getResults();
+  /**
+   * Hands every acknowledgement in the message to the receiver, as raw transaction IDs:  first all the received, then
+   * all the results and then all the retired.
+   * 
+   * @return the number of acknowledgements replayed
+   */
+  int replay(ReplayReceiver receiver);
   boolean addReceived(TransactionID tid);
   boolean addRetired(TransactionID tid);
   boolean addResult(TransactionID tid, byte[] result);
+
+  interface ReplayReceiver {
+    void received(long tid);
+    void result(long tid, byte[] result);
+    void retired(long tid);
+  }
 }
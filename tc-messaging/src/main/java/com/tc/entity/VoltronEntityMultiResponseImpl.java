@@ -28,24 +28,23 @@ import com.tc.net.protocol.tcm.TCMessageType;
 import com.tc.object.msg.DSOMessageBase;
 import com.tc.object.session.SessionID;
 import com.tc.object.tx.TransactionID;
+import com.tc.object.tx.TransactionIDList;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 
-import java.util.Map;
-
 
 public class VoltronEntityMultiResponseImpl extends DSOMessageBase implements VoltronEntityMultiResponse {
   private static final byte TRANSACTION_ID = 0;
   private static final byte RESULTS_ID = 1;
   private static final byte RECEIVED_ID = 2;
   
-  private List<TransactionID> receivedIDs;
-  private List<TransactionID> retiredIDs;
-  private Map<TransactionID, byte[]> results;
+  private TransactionIDList receivedIDs;
+  private TransactionIDList retiredIDs;
+  // results are kept as parallel lists, the ID at an index goes with the value at the same index.
+  // an ID appears at most once, like the map this replaced, so a re-sent transaction is answered once.
+  private TransactionIDList resultIDs;
+  private List<byte[]> resultValues;
   
   public VoltronEntityMultiResponseImpl(SessionID sessionID, MessageMonitor monitor, TCByteBufferOutputStream out, MessageChannel channel, TCMessageType type) {
     super(sessionID, monitor, out, channel, type);
@@ -59,26 +58,14 @@ public class VoltronEntityMultiResponseImpl extends DSOMessageBase implements Vo
   public synchronized boolean send() {
     return super.send();
   }
-    
-  public void setReceivedTransactions(TransactionID[] tids) {
-    receivedIDs = Arrays.asList(tids);
-  }
-  
-  public void setRetiredTransactions(TransactionID[] tids) {
-    retiredIDs = Arrays.asList(tids);
-  }
-  
-  public void setResults(Map<TransactionID, byte[]> r) {
-    results = r;
-  }
 
   @Override
   public synchronized boolean addReceived(TransactionID tid) {
     if (!isSealed()) {
       if (receivedIDs == null) {
-        receivedIDs = new ArrayList<TransactionID>(128);
+        receivedIDs = new TransactionIDList(128);
       }
-      receivedIDs.add(tid);
+      receivedIDs.add(tid.toLong());
       return true;
     }
     return false;
@@ -88,9 +75,9 @@ public class VoltronEntityMultiResponseImpl extends DSOMessageBase implements Vo
   public synchronized boolean addRetired(TransactionID tid) {
     if (!isSealed()) {
       if (retiredIDs == null) {
-        retiredIDs = new ArrayList<TransactionID>(128);
+        retiredIDs = new TransactionIDList(128);
       }
-      retiredIDs.add(tid);
+      retiredIDs.add(tid.toLong());
       return true;
     }
     return false;
@@ -99,28 +86,44 @@ public class VoltronEntityMultiResponseImpl extends DSOMessageBase implements Vo
   @Override
   public synchronized boolean addResult(TransactionID tid, byte[] result) {
     if (!isSealed()) {
-      if (results == null) {
-        results = new HashMap<TransactionID, byte[]>();
+      if (resultIDs == null) {
+        resultIDs = new TransactionIDList();
+        resultValues = new ArrayList<byte[]>();
+      }
+      int index = resultIDs.lastIndexOf(tid.toLong());
+      if (index >= 0) {
+        resultValues.set(index, result);
+      } else {
+        resultIDs.add(tid.toLong());
+        resultValues.add(result);
       }
-      results.put(tid, result);
       return true;
     }
     return false;
   }
-  
-  @Override
-  public TransactionID[] getReceivedTransactions() {
-    return (this.receivedIDs != null) ? receivedIDs.toArray(new TransactionID[receivedIDs.size()]) : new TransactionID[0];
-  }
-  
-  @Override
-  public TransactionID[] getRetiredTransactions() {
-    return (this.retiredIDs != null) ? retiredIDs.toArray(new TransactionID[retiredIDs.size()]) : new TransactionID[0];
-  }
 
   @Override
-  public Map<TransactionID, byte[]> getResults() {
-    return (this.results == null) ? Collections.<TransactionID, byte[]>emptyMap() : Collections.unmodifiableMap(this.results);
+  public int replay(ReplayReceiver receiver) {
+    int count = 0;
+    if (receivedIDs != null) {
+      for (int x=0;x<receivedIDs.size();x++) {
+        receiver.received(receivedIDs.get(x));
+      }
+      count += receivedIDs.size();
+    }
+    if (resultIDs != null) {
+      for (int x=0;x<resultIDs.size();x++) {
+        receiver.result(resultIDs.get(x), resultValues.get(x));
+      }
+      count += resultIDs.size();
+    }
+    if (retiredIDs != null) {
+      for (int x=0;x<retiredIDs.size();x++) {
+        receiver.retired(retiredIDs.get(x));
+      }
+      count += retiredIDs.size();
+    }
+    return count;
   }
 
   @Override
@@ -128,26 +131,27 @@ public class VoltronEntityMultiResponseImpl extends DSOMessageBase implements Vo
     TCByteBufferInputStream input = getInputStream();
     if (name == RECEIVED_ID) {
       int size = getIntValue();
-      receivedIDs = new ArrayList<TransactionID>(size);
-      for (int x=0;x<size;x++) {
-        receivedIDs.add(new TransactionID(input.readLong()));
-      }
+      receivedIDs = TransactionIDList.readFrom(input, size);
       return true;
     } else if (name == TRANSACTION_ID) {
       int size = getIntValue();
-      retiredIDs = new ArrayList<TransactionID>(size);
-      for (int x=0;x<size;x++) {
-        retiredIDs.add(new TransactionID(input.readLong()));
-      }
+      retiredIDs = TransactionIDList.readFrom(input, size);
       return true;
     } else {
       int size = getIntValue();
-      results = new HashMap<TransactionID, byte[]>();
+      resultIDs = new TransactionIDList(size);
+      resultValues = new ArrayList<byte[]>(size);
+      long previous = 0;
       for (int x=0;x<size;x++) {
-        TransactionID id = new TransactionID(input.readLong());
-        byte[] read = new byte[input.readInt()];
-        input.readFully(read);
-        results.put(id, read);
+        previous = TransactionIDList.readDelta(input, previous);
+        int length = input.readInt();
+        byte[] read = null;
+        if (length >= 0) {
+          read = new byte[length];
+          input.readFully(read);
+        }
+        resultIDs.add(previous);
+        resultValues.add(read);
       }
       return true;
     }
@@ -157,24 +161,27 @@ public class VoltronEntityMultiResponseImpl extends DSOMessageBase implements Vo
   protected void dehydrateValues() {
     TCByteBufferOutputStream outputStream = getOutputStream();
     // We don't want to use the NVpair stuff:  it is horrendously complicated, doesn't work well with all types, and doesn't buy us anything.
+    // IDs are delta encoded, see TransactionIDList.
     putNVPair(RECEIVED_ID, receivedIDs != null ? receivedIDs.size() : 0);
     if (receivedIDs != null) {
-      for (TransactionID tid : receivedIDs) {
-        outputStream.writeLong(tid.toLong());
-      }
+      receivedIDs.writeTo(outputStream);
     }
     putNVPair(TRANSACTION_ID, retiredIDs != null ? retiredIDs.size() : 0);
     if (retiredIDs != null) {
-      for (TransactionID tid : retiredIDs) {
-        outputStream.writeLong(tid.toLong());
-      }
+      retiredIDs.writeTo(outputStream);
     }
-    putNVPair(RESULTS_ID, results != null ? results.size() : 0);
-    if (results != null) {
-      for(Map.Entry<TransactionID, byte[]> entries : results.entrySet()) {
-        outputStream.writeLong(entries.getKey().toLong());
-        outputStream.writeInt(entries.getValue().length);
-        outputStream.write(entries.getValue());
+    putNVPair(RESULTS_ID, resultIDs != null ? resultIDs.size() : 0);
+    if (resultIDs != null) {
+      long previous = 0;
+      for (int x=0;x<resultIDs.size();x++) {
+        previous = TransactionIDList.writeDelta(outputStream, previous, resultIDs.get(x));
+        byte[] value = resultValues.get(x);
+        if (value != null) {
+          outputStream.writeInt(value.length);
+          outputStream.write(value);
+        } else {
+          outputStream.writeInt(-1);
+        }
       }
     }
   }
@@ -26,6 +26,8 @@ public interface SynAckMessage extends TransportHandshakeMessage {
 
   public boolean hasErrorContext();
 
+  public long getRetryAfterMillis();
+
   @Override
   public boolean isMaxConnectionsExceeded();
 
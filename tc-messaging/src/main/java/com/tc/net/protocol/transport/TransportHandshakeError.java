@@ -29,8 +29,14 @@ public interface TransportHandshakeError {
   public static final short ERROR_GENERIC               = 4;
   public static final short ERROR_MAX_CONNECTION_EXCEED = 5;
   public static final short ERROR_RECONNECTION_REJECTED = 6;
+  public static final short ERROR_RETRY_LATER           = 7;
 
   public String getMessage();
 
   public short getErrorType();
+
+  /**
+   * For ERROR_RETRY_LATER, how long the client should wait before it tries to connect again.
+   */
+  public long getRetryAfterMillis();
 }
@@ -109,6 +109,9 @@ public class TransportMessageFactoryImpl implements TransportHandshakeMessageFac
       bbos.writeShort(errorType);
       if (errorType == TransportHandshakeError.ERROR_STACK_MISMATCH) bbos.writeString(errorContext.getMessage());
       else bbos.writeString(errorContext.toString());
+      if (errorType == TransportHandshakeError.ERROR_RETRY_LATER) {
+        bbos.writeLong(errorContext.getRetryAfterMillis());
+      }
     }
     if (type == TransportMessageImpl.TIME_CHECK) {
       bbos.writeLong(System.currentTimeMillis()); // timestamp
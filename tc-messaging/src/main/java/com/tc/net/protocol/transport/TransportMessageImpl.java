@@ -62,6 +62,7 @@ class TransportMessageImpl extends WireProtocolMessageImpl implements SynMessage
   private final short        errorType;
   private final int          callbackPort;
   private final long         timestamp;
+  private final long         retryAfterMillis;
 
   @SuppressWarnings("resource")
   TransportMessageImpl(TCConnection source, TCNetworkHeader header, TCByteBuffer[] payload) throws TCProtocolException {
@@ -90,6 +91,7 @@ class TransportMessageImpl extends WireProtocolMessageImpl implements SynMessage
         this.errorType = TransportHandshakeError.ERROR_NONE;
         this.errorContext = null;
       }
+      this.retryAfterMillis = (this.errorType == TransportHandshakeError.ERROR_RETRY_LATER) ? in.readLong() : 0;
       this.timestamp = (type == TIME_CHECK) ? in.readLong() : -1;
     } catch (TCProtocolException e) {
       throw e;
@@ -150,6 +152,11 @@ class TransportMessageImpl extends WireProtocolMessageImpl implements SynMessage
     return this.errorType;
   }
 
+  @Override
+  public long getRetryAfterMillis() {
+    return this.retryAfterMillis;
+  }
+
   @Override
   public boolean isPing() {
     return type == PING;
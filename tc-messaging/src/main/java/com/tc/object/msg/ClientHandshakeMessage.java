@@ -59,4 +59,33 @@ public interface ClientHandshakeMessage extends TCMessage {
   void addResendMessage(ResendVoltronEntityMessage message);
 
   Collection<ResendVoltronEntityMessage> getResendMessages();
+
+  /**
+   * Removes the resend messages from this message so that they can be streamed after it.
+   * 
+   * @return The removed messages, in transaction order.
+   */
+  Collection<ResendVoltronEntityMessage> takeResendMessages();
+
+  /**
+   * Records, on the handshake, how many resends will follow it in resend chunks.
+   */
+  void setStreamedResendCount(int count);
+
+  int getStreamedResendCount();
+
+  /**
+   * Marks this message as one chunk of the resends streamed after a handshake.
+   * 
+   * @param sequence The sequence number of this chunk, starting at 0
+   * @param last True if no more chunks follow this one
+   */
+  void setResendChunk(int sequence, boolean last);
+
+  /**
+   * @return The sequence number of this resend chunk or -1 if this is a handshake.
+   */
+  int getResendChunkSequence();
+
+  boolean isLastResendChunk();
 }
@@ -30,6 +30,7 @@ import com.tc.object.session.SessionID;
 import com.tc.util.Assert;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Set;
@@ -47,6 +48,9 @@ public class ClientHandshakeMessageImpl extends DSOMessageBase implements Client
   private static final byte   CLIENT_PID               = 7;
   private static final byte   CLIENT_UUID              = 8;
   private static final byte   CLIENT_NAME              = 9;
+  private static final byte   STREAMED_RESEND_COUNT    = 10;
+  private static final byte   RESEND_CHUNK_SEQUENCE    = 11;
+  private static final byte   LAST_RESEND_CHUNK        = 12;
 
   private final Set<ClientServerExchangeLockContext> lockContexts             = new HashSet<ClientServerExchangeLockContext>();
   private long                currentLocalTimeMills    = System.currentTimeMillis();
@@ -55,6 +59,9 @@ public class ClientHandshakeMessageImpl extends DSOMessageBase implements Client
   private String              name                     = "";
   private String              clientVersion            = "UNKNOWN";
   private int                 pid                      = -1;
+  private int                 streamedResendCount      = 0;
+  private int                 resendChunkSequence      = -1;
+  private boolean             lastResendChunk          = false;
   private final Set<ClientEntityReferenceContext> reconnectReferences = new HashSet<ClientEntityReferenceContext>();
   private final Set<ResendVoltronEntityMessage> resendMessages = new TreeSet<ResendVoltronEntityMessage>(new Comparator<ResendVoltronEntityMessage>() {
     @Override
@@ -155,6 +162,13 @@ public class ClientHandshakeMessageImpl extends DSOMessageBase implements Client
     for (final ResendVoltronEntityMessage resendMessage : this.resendMessages) {
       putNVPair(RESEND_MESSAGES, resendMessage);
     }
+    if (this.streamedResendCount > 0) {
+      putNVPair(STREAMED_RESEND_COUNT, this.streamedResendCount);
+    }
+    if (this.resendChunkSequence >= 0) {
+      putNVPair(RESEND_CHUNK_SEQUENCE, this.resendChunkSequence);
+      putNVPair(LAST_RESEND_CHUNK, this.lastResendChunk);
+    }
   }
 
   @Override
@@ -187,6 +201,15 @@ public class ClientHandshakeMessageImpl extends DSOMessageBase implements Client
       case CLIENT_NAME:
         this.name = getStringValue();
         return true;
+      case STREAMED_RESEND_COUNT:
+        this.streamedResendCount = getIntValue();
+        return true;
+      case RESEND_CHUNK_SEQUENCE:
+        this.resendChunkSequence = getIntValue();
+        return true;
+      case LAST_RESEND_CHUNK:
+        this.lastResendChunk = getBooleanValue();
+        return true;
       default:
         return false;
     }
@@ -213,4 +236,38 @@ public class ClientHandshakeMessageImpl extends DSOMessageBase implements Client
   public Collection<ResendVoltronEntityMessage> getResendMessages() {
     return this.resendMessages;
   }
+
+  @Override
+  public Collection<ResendVoltronEntityMessage> takeResendMessages() {
+    Collection<ResendVoltronEntityMessage> taken = new ArrayList<ResendVoltronEntityMessage>(this.resendMessages);
+    this.resendMessages.clear();
+    return taken;
+  }
+
+  @Override
+  public void setStreamedResendCount(int count) {
+    this.streamedResendCount = count;
+  }
+
+  @Override
+  public int getStreamedResendCount() {
+    return this.streamedResendCount;
+  }
+
+  @Override
+  public void setResendChunk(int sequence, boolean last) {
+    Assert.assertTrue(sequence >= 0);
+    this.resendChunkSequence = sequence;
+    this.lastResendChunk = last;
+  }
+
+  @Override
+  public int getResendChunkSequence() {
+    return this.resendChunkSequence;
+  }
+
+  @Override
+  public boolean isLastResendChunk() {
+    return this.lastResendChunk;
+  }
 }
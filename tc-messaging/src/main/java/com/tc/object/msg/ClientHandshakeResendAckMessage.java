@@ -0,0 +1,32 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.object.msg;
+
+import com.tc.net.protocol.tcm.TCMessage;
+
+/**
+ * Sent by the server once it has taken in one chunk of the resends streamed after a reconnect handshake, allowing the
+ * client to send another.
+ */
+public interface ClientHandshakeResendAckMessage extends TCMessage {
+  int getSequence();
+
+  void initialize(int sequence);
+
+}
@@ -0,0 +1,130 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.object.tx;
+
+import com.tc.io.TCByteBufferInput;
+import com.tc.io.TCByteBufferOutput;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A growable list of raw transaction IDs, kept as a long[] so that acknowledging a transaction doesn't box it.
+ * <p>
+ * On the wire each ID is written as the zig-zag varint of its difference from the previous one.  A client's
+ * transactions are nearly sequential so most IDs take a single byte instead of eight.
+ */
+public final class TransactionIDList {
+  private long[] ids;
+  private int    size;
+
+  public TransactionIDList() {
+    this(16);
+  }
+
+  public TransactionIDList(int capacity) {
+    this.ids = new long[Math.max(1, capacity)];
+  }
+
+  public void add(long id) {
+    if (this.size == this.ids.length) {
+      this.ids = Arrays.copyOf(this.ids, this.size * 2);
+    }
+    this.ids[this.size++] = id;
+  }
+
+  public int size() {
+    return this.size;
+  }
+
+  public long get(int index) {
+    if (index >= this.size) {
+      throw new IndexOutOfBoundsException(index + " >= " + this.size);
+    }
+    return this.ids[index];
+  }
+
+  /**
+   * Returns the index of the last occurrence of id, or -1.  The search runs from the end since a repeated ID is
+   * usually one that was just added.
+   */
+  public int lastIndexOf(long id) {
+    for (int i = this.size - 1; i >= 0; --i) {
+      if (this.ids[i] == id) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Writes the IDs, the caller is responsible for writing size() first so the reader knows how many to expect.
+   */
+  public void writeTo(TCByteBufferOutput out) {
+    long previous = 0;
+    for (int i = 0; i < this.size; ++i) {
+      previous = writeDelta(out, previous, this.ids[i]);
+    }
+  }
+
+  public static TransactionIDList readFrom(TCByteBufferInput in, int count) throws IOException {
+    TransactionIDList list = new TransactionIDList(count);
+    long previous = 0;
+    for (int i = 0; i < count; ++i) {
+      previous = readDelta(in, previous);
+      list.add(previous);
+    }
+    return list;
+  }
+
+  /**
+   * Writes id relative to previous, returning id so callers interleaving other data can chain it.
+   */
+  public static long writeDelta(TCByteBufferOutput out, long previous, long id) {
+    long delta = id - previous;
+    // zig-zag so small negative deltas are small too
+    long value = (delta << 1) ^ (delta >> 63);
+    while ((value & ~0x7FL) != 0) {
+      out.writeByte((int) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    out.writeByte((int) value);
+    return id;
+  }
+
+  public static long readDelta(TCByteBufferInput in, long previous) throws IOException {
+    long value = 0;
+    int shift = 0;
+    byte b;
+    do {
+      if (shift > 63) {
+        throw new IOException("Malformed transaction ID delta");
+      }
+      b = in.readByte();
+      value |= (long) (b & 0x7F) << shift;
+      shift += 7;
+    } while ((b & 0x80) != 0);
+    return previous + ((value >>> 1) ^ -(value & 1));
+  }
+
+  @Override
+  public String toString() {
+    return "TransactionIDList" + Arrays.toString(Arrays.copyOf(this.ids, this.size));
+  }
+}
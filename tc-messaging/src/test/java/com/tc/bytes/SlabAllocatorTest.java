@@ -0,0 +1,133 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.bytes;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SlabAllocatorTest {
+
+  private static final int ARENA = 64 * 1024;
+
+  @Test
+  public void testSizeClasses() {
+    SlabAllocator allocator = new SlabAllocator(16 * 1024, ARENA, ARENA, ARENA, ARENA);
+    assertEquals(SlabAllocator.MIN_CLASS_SIZE, allocator.allocate(false, 1).capacity());
+    assertEquals(SlabAllocator.MIN_CLASS_SIZE, allocator.allocate(false, SlabAllocator.MIN_CLASS_SIZE).capacity());
+    assertEquals(4096, allocator.allocate(false, 4096).capacity());
+    TCByteBuffer buffer = allocator.allocate(false, 4097);
+    assertEquals(8192, buffer.capacity());
+    assertEquals(8192, buffer.limit());
+    assertEquals(0, allocator.getUnpooledAllocations());
+    assertNull(allocator.allocate(false, 16 * 1024 + 1));
+    assertEquals(1, allocator.getUnpooledAllocations());
+  }
+
+  @Test
+  public void testDirectBuffersAreRecycled() throws Exception {
+    SlabAllocator allocator = new SlabAllocator(16 * 1024, ARENA, ARENA, ARENA, ARENA);
+    TCByteBuffer buffer = allocator.allocate(true, 4096);
+    assertTrue(buffer.isDirect());
+    assertEquals(ARENA, allocator.getReservedDirectBytes());
+    assertEquals(4096, allocator.getInUseDirectBytes());
+
+    release(buffer);
+    assertEquals(0, allocator.getInUseDirectBytes());
+    assertSame(buffer, allocator.allocate(true, 4000));
+    assertEquals(ARENA, allocator.getReservedDirectBytes());
+  }
+
+  @Test
+  public void testDirectBudgetFallsBackToHeap() {
+    SlabAllocator allocator = new SlabAllocator(16 * 1024, ARENA, ARENA, ARENA, ARENA);
+    // held so the collector cannot hand the arena back
+    List<TCByteBuffer> held = new ArrayList<TCByteBuffer>();
+    for (int i = 0; i < ARENA / 4096; i++) {
+      held.add(allocator.allocate(true, 4096));
+      assertTrue(held.get(i).isDirect());
+    }
+    TCByteBuffer overflow = allocator.allocate(true, 4096);
+    assertFalse(overflow.isDirect());
+    assertEquals(4096, overflow.capacity());
+    assertEquals(1, allocator.getFallbackAllocations());
+    assertEquals(ARENA, allocator.getReservedDirectBytes());
+    assertEquals(ARENA, allocator.getInUseDirectBytes());
+  }
+
+  @Test
+  public void testRegisteredThreadsCacheLocally() throws Exception {
+    SlabAllocator allocator = new SlabAllocator(16 * 1024, ARENA, ARENA, 4096, 4096);
+    allocator.registerThreadGroup(Thread.currentThread().getThreadGroup());
+    TCByteBuffer first = allocator.allocate(false, 4096);
+    TCByteBuffer second = allocator.allocate(false, 4096);
+    release(first);
+    // The thread cache only holds one buffer of this class so the second one spills to the shared overflow.
+    release(second);
+    assertSame(first, allocator.allocate(false, 4096));
+    assertSame(second, allocator.allocate(false, 4096));
+  }
+
+  @Test
+  public void testHeapOverflowIsBounded() throws Exception {
+    SlabAllocator allocator = new SlabAllocator(16 * 1024, ARENA, ARENA, 4096, 4096);
+    TCByteBuffer first = allocator.allocate(false, 4096);
+    TCByteBuffer second = allocator.allocate(false, 4096);
+    release(first);
+    release(second);
+    assertSame(first, allocator.allocate(false, 4096));
+    TCByteBuffer fresh = allocator.allocate(false, 4096);
+    assertFalse(fresh == first || fresh == second);
+  }
+
+  @Test
+  public void testUnreachableBuffersReturnTheBudget() throws Exception {
+    SlabAllocator allocator = new SlabAllocator(16 * 1024, ARENA, ARENA, ARENA, ARENA);
+    // fill the arena and drop every buffer without returning it
+    for (int i = 0; i < ARENA / 4096; i++) {
+      assertTrue(allocator.allocate(true, 4096).isDirect());
+    }
+    assertEquals(ARENA, allocator.getReservedDirectBytes());
+    assertEquals(ARENA, allocator.getInUseDirectBytes());
+
+    long deadline = System.currentTimeMillis() + 30000;
+    TCByteBuffer buffer = allocator.allocate(true, 16 * 1024);
+    while (!buffer.isDirect() && System.currentTimeMillis() < deadline) {
+      System.gc();
+      Thread.sleep(10);
+      buffer = allocator.allocate(true, 16 * 1024);
+    }
+    assertTrue(buffer.isDirect());
+    assertEquals(ARENA, allocator.getReservedDirectBytes());
+    assertEquals(16 * 1024, allocator.getInUseDirectBytes());
+  }
+
+  private static void release(TCByteBuffer buffer) throws InterruptedException {
+    buffer.reInit();
+    buffer.commit();
+    buffer.getBufferPool().offer(buffer);
+  }
+}
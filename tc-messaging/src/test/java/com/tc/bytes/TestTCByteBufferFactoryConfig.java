@@ -45,5 +45,20 @@ public class TestTCByteBufferFactoryConfig implements TCByteBufferFactoryConfig
   public int getCommonPoolMaxBufCount() {
     return 3000;
   }
+
+  @Override
+  public int getSlabMaxClassSize() {
+    return 1024 * 1024;
+  }
+
+  @Override
+  public int getSlabArenaSize() {
+    return 4 * 1024 * 1024;
+  }
+
+  @Override
+  public long getSlabMaxDirectBytes() {
+    return 64L * 1024 * 1024;
+  }
   
 }
@@ -0,0 +1,146 @@
+/*
+ *
+ *  The contents of this file are subject to the Terracotta Public License Version
+ *  2.0 (the "License"); You may not use this file except in compliance with the
+ *  License. You may obtain a copy of the License at
+ *
+ *  http://terracotta.org/legal/terracotta-public-license.
+ *
+ *  Software distributed under the License is distributed on an "AS IS" basis,
+ *  WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License for
+ *  the specific language governing rights and limitations under the License.
+ *
+ *  The Covered Software is Terracotta Core.
+ *
+ *  The Initial Developer of the Covered Software is
+ *  Terracotta, Inc., a Software AG company
+ *
+ */
+package com.tc.entity;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.tc.bytes.TCByteBuffer;
+import com.tc.io.TCByteBufferOutputStream;
+import com.tc.net.protocol.tcm.MessageMonitor;
+import com.tc.net.protocol.tcm.TCMessageHeader;
+import com.tc.net.protocol.tcm.TCMessageType;
+import com.tc.net.protocol.tcm.UnknownNameException;
+import com.tc.object.session.SessionID;
+import com.tc.object.tx.TransactionID;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+
+/**
+ * Ensures the delta encoded transaction IDs of this message serialize/deserialize correctly, in order.
+ */
+public class VoltronEntityMultiResponseImplTest {
+  @Test
+  public void testSerialization() throws UnknownNameException, IOException {
+    MessageMonitor monitor = mock(MessageMonitor.class);
+    TCByteBufferOutputStream outputStream = new TCByteBufferOutputStream(4, 4096, false);
+    VoltronEntityMultiResponseImpl message = new VoltronEntityMultiResponseImpl(new SessionID(0), monitor, outputStream, null, TCMessageType.VOLTRON_ENTITY_MULTI_RESPONSE);
+
+    // Mostly sequential, but with gaps, a step backwards and the extremes of the range.
+    long[] received = new long[] { 1, 2, 3, 4, 1000000, 999999, Long.MAX_VALUE, 0 };
+    for (long id : received) {
+      message.addReceived(new TransactionID(id));
+    }
+    message.addResult(new TransactionID(2), new byte[] { 1, 2, 3 });
+    message.addResult(new TransactionID(1), null);
+    message.addRetired(new TransactionID(5));
+    message.addRetired(new TransactionID(6));
+    message.dehydrate();
+
+    TCMessageHeader header = (TCMessageHeader) message.getHeader();
+    TCByteBuffer[] payload = message.getPayload();
+    outputStream.close();
+    VoltronEntityMultiResponseImpl decodingMessage = new VoltronEntityMultiResponseImpl(SessionID.NULL_ID, monitor, null, header, payload);
+    decodingMessage.hydrate();
+
+    Recorder recorder = new Recorder();
+    assertEquals(received.length + 4, decodingMessage.replay(recorder));
+    assertEquals(received.length, recorder.received.size());
+    for (int i = 0; i < received.length; ++i) {
+      assertEquals(received[i], (long) recorder.received.get(i));
+    }
+    assertEquals(2, recorder.results.size());
+    assertEquals(2L, (long) recorder.results.get(0));
+    assertArrayEquals(new byte[] { 1, 2, 3 }, recorder.values.get(0));
+    assertEquals(1L, (long) recorder.results.get(1));
+    assertNull(recorder.values.get(1));
+    assertEquals(2, recorder.retired.size());
+    assertEquals(5L, (long) recorder.retired.get(0));
+    assertEquals(6L, (long) recorder.retired.get(1));
+  }
+
+  @Test
+  public void testRepeatedResultIsAnsweredOnce() throws Exception {
+    MessageMonitor monitor = mock(MessageMonitor.class);
+    TCByteBufferOutputStream outputStream = new TCByteBufferOutputStream(4, 4096, false);
+    VoltronEntityMultiResponseImpl message = new VoltronEntityMultiResponseImpl(new SessionID(0), monitor, outputStream, null, TCMessageType.VOLTRON_ENTITY_MULTI_RESPONSE);
+    message.addResult(new TransactionID(7), new byte[] { 1 });
+    message.addResult(new TransactionID(8), new byte[] { 2 });
+    message.addResult(new TransactionID(7), new byte[] { 3 });
+    message.dehydrate();
+
+    TCMessageHeader header = (TCMessageHeader) message.getHeader();
+    TCByteBuffer[] payload = message.getPayload();
+    outputStream.close();
+    VoltronEntityMultiResponseImpl decodingMessage = new VoltronEntityMultiResponseImpl(SessionID.NULL_ID, monitor, null, header, payload);
+    decodingMessage.hydrate();
+
+    Recorder recorder = new Recorder();
+    assertEquals(2, decodingMessage.replay(recorder));
+    assertEquals(7L, (long) recorder.results.get(0));
+    // the later result replaces the earlier one, as a map put would
+    assertArrayEquals(new byte[] { 3 }, recorder.values.get(0));
+    assertEquals(8L, (long) recorder.results.get(1));
+    assertArrayEquals(new byte[] { 2 }, recorder.values.get(1));
+  }
+
+  @Test
+  public void testSequentialIDsAreCompact() throws Exception {
+    MessageMonitor monitor = mock(MessageMonitor.class);
+    TCByteBufferOutputStream outputStream = new TCByteBufferOutputStream(4, 4096, false);
+    VoltronEntityMultiResponseImpl message = new VoltronEntityMultiResponseImpl(new SessionID(0), monitor, outputStream, null, TCMessageType.VOLTRON_ENTITY_MULTI_RESPONSE);
+    for (long id = 100000; id < 101000; ++id) {
+      message.addReceived(new TransactionID(id));
+    }
+    message.dehydrate();
+    // A thousand 8 byte longs would be 8000 bytes, the deltas take one byte each.
+    assertTrue(message.getDataLength() < 1100);
+  }
+
+  private static class Recorder implements VoltronEntityMultiResponse.ReplayReceiver {
+    private final List<Long> received = new ArrayList<Long>();
+    private final List<Long> results = new ArrayList<Long>();
+    private final List<byte[]> values = new ArrayList<byte[]>();
+    private final List<Long> retired = new ArrayList<Long>();
+
+    @Override
+    public void received(long tid) {
+      this.received.add(tid);
+    }
+
+    @Override
+    public void result(long tid, byte[] result) {
+      this.results.add(tid);
+      this.values.add(result);
+    }
+
+    @Override
+    public void retired(long tid) {
+      this.retired.add(tid);
+    }
+  }
+}